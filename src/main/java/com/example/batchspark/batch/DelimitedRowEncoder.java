@@ -0,0 +1,94 @@
+package com.example.batchspark.batch;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+
+/**
+ * Encodes rows as delimited lines the reader can load again. Fields are appended to one reused
+ * line buffer, numbers without intermediate strings, and each completed line is copied to the
+ * output in a single write. Values containing the delimiter, a quote or a line break are quoted.
+ */
+class DelimitedRowEncoder {
+    
+    private final Writer out;
+    private final String delimiter;
+    private final StringBuilder line = new StringBuilder(1024);
+    private char[] chars = new char[1024];
+    private boolean firstField = true;
+    
+    DelimitedRowEncoder(Writer out, String delimiter) {
+        this.out = out;
+        this.delimiter = delimiter;
+    }
+    
+    void appendNull() {
+        separate();
+    }
+    
+    void appendLong(long value) {
+        separate();
+        line.append(value);
+    }
+    
+    void appendDecimal(BigDecimal value) {
+        separate();
+        if (value != null) {
+            line.append(value.toPlainString());
+        }
+    }
+    
+    void appendText(CharSequence value) {
+        separate();
+        if (value == null) {
+            return;
+        }
+        if (!needsQuotes(value)) {
+            line.append(value);
+            return;
+        }
+        
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+    
+    /**
+     * Writes the fields appended since the last call as one line.
+     */
+    void endRow() throws IOException {
+        line.append('\n');
+        int length = line.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        line.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+        line.setLength(0);
+        firstField = true;
+    }
+    
+    private void separate() {
+        if (!firstField) {
+            line.append(delimiter);
+        }
+        firstField = false;
+    }
+    
+    private boolean needsQuotes(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\n' || c == '\r' || c == delimiter.charAt(0)
+                    && (delimiter.length() == 1 || value.toString().startsWith(delimiter, i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,302 @@
+package com.example.batchspark.batch;
+
+import com.example.batchspark.delta.DeltaIndex;
+import com.example.batchspark.delta.DeltaIndexBuilder;
+import com.example.batchspark.model.ColumnConfig;
+import com.example.batchspark.model.FileConfig;
+import com.example.batchspark.model.GenericDataRecord;
+import com.example.batchspark.repository.AnalyticsStateRepository;
+import com.example.batchspark.service.FileTailService;
+import com.example.batchspark.service.GenericDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.Chunk;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Turns full snapshot loads of DELTA_LOAD configs into delta loads. Every written record is
+ * hashed with its primary key and looked up in the {@link DeltaIndex} of the previous snapshot:
+ * unchanged records are removed from the chunk, new and changed ones are written (as a MERGE by
+ * {@link GenericItemWriter}), and keys of the previous snapshot that did not occur again are
+ * deleted from the table when the step completes. The new snapshot's index then replaces the
+ * previous one; after a failed step the previous index stays, so the next run compares against
+ * the same snapshot again.
+ *
+ * Records that are in the snapshot but not written, because they failed validation or their
+ * lookups, are {@linkplain #retain retained}: their previous row stays in the table and in the
+ * index. A load that updates or deletes rows drops the table's incremental analytics state,
+ * as neither moves the ID high-water mark it is kept up to.
+ *
+ * Only full snapshots are compared: a tail read or an upload holds part of the rows, and every
+ * row missing from it would be deleted, so delta configs {@linkplain #checkSource refuse} both.
+ * Routed loads do not detect deltas; their child configs are loaded as they are. The table needs
+ * a unique index on the primary key columns, which it gets when it is created for a delta config.
+ */
+@Component
+public class DeltaDetector implements StepExecutionListener {
+    
+    private static final Logger log = LoggerFactory.getLogger(DeltaDetector.class);
+    
+    private static final char SEPARATOR = '\u001F';
+    private static final String NULL_VALUE = "\u0000";
+    
+    private final GenericDataService genericDataService;
+    private final AnalyticsStateRepository analyticsStateRepository;
+    
+    @Value("${app.load.delta.path:output/delta}")
+    private String basePath;
+    
+    @Value("${app.load.delta.run-size:1000000}")
+    private int runSize;
+    
+    @Value("${app.load.delta.delete-batch-size:1000}")
+    private int deleteBatchSize;
+    
+    private FileConfig fileConfig;
+    private List<ColumnConfig> keyColumns = List.of();
+    
+    private DeltaIndex previous;
+    private AtomicLongArray seen;
+    private DeltaIndexBuilder builder;
+    private final LongAdder inserted = new LongAdder();
+    private final LongAdder updated = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+    private final LongAdder retained = new LongAdder();
+    
+    public DeltaDetector(GenericDataService genericDataService, AnalyticsStateRepository analyticsStateRepository) {
+        this.genericDataService = genericDataService;
+        this.analyticsStateRepository = analyticsStateRepository;
+    }
+    
+    /**
+     * Rejects a load of a delta config that does not read its full snapshot: an upload, or a
+     * tail read of the source file.
+     */
+    public static void checkSource(FileConfig fileConfig, boolean upload) {
+        if (!Boolean.TRUE.equals(fileConfig.getDeltaLoad()) || fileConfig.isRouting()) {
+            return;
+        }
+        if (upload) {
+            throw new IllegalArgumentException("Config " + fileConfig.getConfigName()
+                    + " loads full snapshots as deltas, so it cannot load an upload that may hold only part of the rows");
+        }
+        if (FileTailService.isTailMode(fileConfig)) {
+            throw new IllegalArgumentException("Config " + fileConfig.getConfigName()
+                    + " loads full snapshots as deltas, so it cannot read its source file in tail mode");
+        }
+    }
+    
+    public void configure(FileConfig fileConfig, boolean upload) {
+        this.fileConfig = fileConfig;
+        this.keyColumns = List.of();
+        if (fileConfig.isRouting()) {
+            for (FileConfig child : fileConfig.getChildConfigs()) {
+                if (Boolean.TRUE.equals(child.getDeltaLoad())) {
+                    log.warn("Child config {} requests delta loads, but routing config {} loads its records as they are",
+                            child.getConfigName(), fileConfig.getConfigName());
+                }
+            }
+            return;
+        }
+        if (!Boolean.TRUE.equals(fileConfig.getDeltaLoad())) {
+            return;
+        }
+        checkSource(fileConfig, upload);
+        
+        List<ColumnConfig> keys = GenericDataService.primaryKeyColumns(fileConfig);
+        if (keys.isEmpty()) {
+            log.warn("Config {} requests delta loads but has no primary key columns; loading the full snapshot",
+                    fileConfig.getConfigName());
+            return;
+        }
+        // Without an index every MERGE and delete scans the table; tables created for delta configs have one
+        if (!genericDataService.hasUniqueIndex(fileConfig.getTargetTableName(), keys)) {
+            throw new IllegalStateException("Config " + fileConfig.getConfigName() + " requests delta loads, but table "
+                    + fileConfig.getTargetTableName() + " has no unique index on its primary key columns "
+                    + keys.stream().map(ColumnConfig::getTargetColumnName).toList());
+        }
+        this.keyColumns = keys;
+    }
+    
+    public boolean isActive() {
+        return !keyColumns.isEmpty();
+    }
+    
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        if (!isActive()) {
+            return;
+        }
+        try {
+            previous = DeltaIndex.open(indexDirectory());
+            seen = new AtomicLongArray((previous.size() + 63) / 64);
+            builder = new DeltaIndexBuilder(workDirectory(), runSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the delta index of config " + fileConfig.getConfigName(), e);
+        }
+        inserted.reset();
+        updated.reset();
+        unchanged.reset();
+        retained.reset();
+        log.info("Comparing snapshot of config {} against the previous one ({} rows)",
+                fileConfig.getConfigName(), previous.size());
+    }
+    
+    /**
+     * Removes records that are unchanged since the previous snapshot from the chunk.
+     */
+    public void filter(Chunk<? extends GenericDataRecord> chunk) throws IOException {
+        if (!isActive()) {
+            return;
+        }
+        
+        Iterator<? extends GenericDataRecord> iterator = chunk.iterator();
+        while (iterator.hasNext()) {
+            GenericDataRecord record = iterator.next();
+            String key = join(record, keyColumns);
+            long keyHash = DeltaIndex.hash(key);
+            long rowHash = DeltaIndex.hash(join(record, fileConfig.getColumnConfigs()));
+            builder.add(keyHash, rowHash, key);
+            
+            int position = previous.find(keyHash, key);
+            if (position < 0) {
+                inserted.increment();
+                continue;
+            }
+            markSeen(position);
+            if (previous.rowHash(position) == rowHash) {
+                unchanged.increment();
+                iterator.remove();
+            } else {
+                updated.increment();
+            }
+        }
+    }
+    
+    /**
+     * Keeps the previous row of a record that is not written: its key counts as seen, so the
+     * row is not deleted, and the new index keeps the row's previous hash.
+     */
+    public void retain(GenericDataRecord record) throws IOException {
+        if (!isActive() || builder == null) {
+            return;
+        }
+        
+        String key = join(record, keyColumns);
+        long keyHash = DeltaIndex.hash(key);
+        int position = previous.find(keyHash, key);
+        if (position >= 0) {
+            markSeen(position);
+            builder.add(keyHash, previous.rowHash(position), key);
+            retained.increment();
+        }
+    }
+    
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (!isActive() || builder == null) {
+            return null;
+        }
+        
+        try {
+            if (stepExecution.getStatus() != BatchStatus.COMPLETED) {
+                builder.discard();
+                return null;
+            }
+            
+            long deleted = deleteMissing();
+            if (updated.sum() > 0 || deleted > 0) {
+                analyticsStateRepository.deleteByTableName(fileConfig.getTargetTableName());
+            }
+            builder.finish(indexDirectory());
+            log.info("Delta load of config {}: {} inserted, {} updated, {} deleted, {} unchanged, {} kept for rejected records",
+                    fileConfig.getConfigName(), inserted.sum(), updated.sum(), deleted, unchanged.sum(), retained.sum());
+            return null;
+        } catch (Exception e) {
+            log.error("Could not complete the delta load of config {}", fileConfig.getConfigName(), e);
+            try {
+                builder.discard();
+            } catch (IOException discardFailure) {
+                e.addSuppressed(discardFailure);
+            }
+            return ExitStatus.FAILED.addExitDescription(e);
+        } finally {
+            previous = null;
+            seen = null;
+            builder = null;
+        }
+    }
+    
+    private long deleteMissing() {
+        long deleted = 0;
+        List<Object[]> batch = new ArrayList<>();
+        for (int position = 0; position < previous.size(); position++) {
+            if (isSeen(position)) {
+                continue;
+            }
+            batch.add(split(previous.key(position)));
+            if (batch.size() == deleteBatchSize) {
+                genericDataService.deleteByKeys(batch, keyColumns, fileConfig);
+                deleted += batch.size();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            genericDataService.deleteByKeys(batch, keyColumns, fileConfig);
+            deleted += batch.size();
+        }
+        return deleted;
+    }
+    
+    private void markSeen(int position) {
+        seen.getAndAccumulate(position >>> 6, 1L << (position & 63), (bits, bit) -> bits | bit);
+    }
+    
+    private boolean isSeen(int position) {
+        return (seen.get(position >>> 6) & (1L << (position & 63))) != 0;
+    }
+    
+    private static String join(GenericDataRecord record, List<ColumnConfig> columns) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                joined.append(SEPARATOR);
+            }
+            Object value = record.getColumnValue(columns.get(i).getSourceColumnName());
+            joined.append(value != null ? value.toString() : NULL_VALUE);
+        }
+        return joined.toString();
+    }
+    
+    private Object[] split(String key) {
+        String[] parts = key.split(String.valueOf(SEPARATOR), -1);
+        Object[] values = new Object[keyColumns.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = NULL_VALUE.equals(parts[i]) ? null : parts[i];
+        }
+        return values;
+    }
+    
+    private Path indexDirectory() {
+        return Paths.get(basePath, fileConfig.getConfigName(), "index");
+    }
+    
+    private Path workDirectory() {
+        return Paths.get(basePath, fileConfig.getConfigName(), "build");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.example.batchspark.batch;
+
+import com.example.batchspark.service.FileTailService.Segment;
+import org.springframework.core.io.AbstractResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads byte ranges of one or more files as a single stream, positioned without reading the
+ * bytes before each range. A newline is inserted after a range that does not end with one, so
+ * lines of consecutive files are never joined.
+ */
+public class FileSegmentResource extends AbstractResource {
+    
+    private static final byte[] NEWLINE = {'\n'};
+    
+    private final List<Segment> segments;
+    
+    public FileSegmentResource(List<Segment> segments) {
+        this.segments = List.copyOf(segments);
+    }
+    
+    @Override
+    public boolean exists() {
+        return true;
+    }
+    
+    @Override
+    public String getDescription() {
+        return "file segments " + segments;
+    }
+    
+    @Override
+    public InputStream getInputStream() throws IOException {
+        List<InputStream> streams = new ArrayList<>();
+        try {
+            for (Segment segment : segments) {
+                FileChannel channel = FileChannel.open(segment.path(), StandardOpenOption.READ);
+                boolean terminated = endsWithNewline(channel, segment);
+                channel.position(segment.start());
+                streams.add(new LimitedInputStream(Channels.newInputStream(channel), segment.end() - segment.start()));
+                if (!terminated) {
+                    streams.add(new ByteArrayInputStream(NEWLINE));
+                }
+            }
+        } catch (IOException e) {
+            for (InputStream stream : streams) {
+                stream.close();
+            }
+            throw e;
+        }
+        return new SequenceInputStream(Collections.enumeration(streams));
+    }
+    
+    private static boolean endsWithNewline(FileChannel channel, Segment segment) throws IOException {
+        if (segment.end() <= segment.start()) {
+            return true;
+        }
+        ByteBuffer last = ByteBuffer.allocate(1);
+        return channel.read(last, segment.end() - 1) == 1 && last.get(0) == '\n';
+    }
+    
+    /**
+     * Stops after a fixed number of bytes.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        
+        private long remaining;
+        
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+        
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
\ No newline at end of file
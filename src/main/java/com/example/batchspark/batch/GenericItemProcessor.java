@@ -1,25 +1,49 @@
 package com.example.batchspark.batch;
 
+import com.example.batchspark.expression.Expression;
 import com.example.batchspark.model.ColumnConfig;
 import com.example.batchspark.model.FileConfig;
 import com.example.batchspark.model.GenericDataRecord;
+import com.example.batchspark.service.FileConfigPlan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
-import java.util.regex.Pattern;
+import java.util.HashMap;
+import java.util.Map;
 
 @Component
 public class GenericItemProcessor implements ItemProcessor<GenericDataRecord, GenericDataRecord> {
     
     private static final Logger log = LoggerFactory.getLogger(GenericItemProcessor.class);
     
+    /**
+     * The compiled rules of one target config, index-aligned with its columns.
+     */
+    private record CompiledColumns(ColumnConfig[] columns, Expression[] validations, Expression[] transformations) {}
+    
+    private final DeltaDetector deltaDetector;
     private FileConfig fileConfig;
+    private Map<String, CompiledColumns> compiledColumns;
+    
+    public GenericItemProcessor(DeltaDetector deltaDetector) {
+        this.deltaDetector = deltaDetector;
+    }
     
-    public void configure(FileConfig fileConfig) {
-        this.fileConfig = fileConfig;
+    public void configure(FileConfigPlan plan) {
+        // The plan holds the compiled column rules; a routing config uses those of each child
+        // config its records are routed to
+        Map<String, CompiledColumns> compiledColumns = new HashMap<>();
+        for (FileConfigPlan target : plan.targets()) {
+            compiledColumns.put(target.getFileConfig().getConfigName(), new CompiledColumns(
+                    target.getColumns().toArray(new ColumnConfig[0]),
+                    target.getValidations().toArray(new Expression[0]),
+                    target.getTransformations().toArray(new Expression[0])));
+        }
+        
+        this.compiledColumns = compiledColumns;
+        this.fileConfig = plan.getFileConfig();
     }
     
     @Override
@@ -29,19 +53,32 @@ public class GenericItemProcessor implements ItemProcessor<GenericDataRecord, Ge
             return null;
         }
         
+        CompiledColumns compiled = record.getConfigName() != null ? compiledColumns.get(record.getConfigName()) : null;
+        if (compiled == null) {
+            log.warn("No child config of {} matches the discriminator of a record, skipping it", fileConfig.getConfigName());
+            return null;
+        }
+        ColumnConfig[] columns = compiled.columns();
+        Expression[] validations = compiled.validations();
+        Expression[] transformations = compiled.transformations();
+        
         // Process each column according to its configuration
-        for (ColumnConfig column : fileConfig.getColumnConfigs()) {
+        for (int i = 0; i < columns.length; i++) {
+            ColumnConfig column = columns[i];
             Object value = record.getColumnValue(column.getSourceColumnName());
             
             // Apply validation rules
-            if (!validateValue(value, column)) {
+            if (!Boolean.TRUE.equals(validations[i].evaluate(value, record))) {
                 log.warn("Validation failed for column {} with value: {}", 
                         column.getSourceColumnName(), value);
+                retainKey(record, compiled, i);
                 return null; // Skip this record
             }
             
             // Apply transformation rules
-            Object transformedValue = transformValue(value, column);
+            Object transformedValue = value != null
+                    ? transformations[i].evaluate(value, record)
+                    : column.getDefaultValue();
             record.addColumnValue(column.getSourceColumnName(), transformedValue);
         }
         
@@ -49,82 +86,25 @@ public class GenericItemProcessor implements ItemProcessor<GenericDataRecord, Ge
         return record;
     }
     
-    private boolean validateValue(Object value, ColumnConfig column) {
-        String validationRule = column.getValidationRule();
-        
-        if (validationRule == null || validationRule.isEmpty()) {
-            return true;
-        }
-        
-        String stringValue = value != null ? value.toString().trim() : "";
-        
-        switch (validationRule.toUpperCase()) {
-            case "NOT_NULL":
-                return !stringValue.isEmpty();
-                
-            case "NUMERIC":
-                try {
-                    new BigDecimal(stringValue);
-                    return true;
-                } catch (NumberFormatException e) {
-                    return false;
-                }
-                
-            case "EMAIL":
-                return Pattern.matches("^[A-Za-z0-9+_.-]+@(.+)$", stringValue);
-                
-            case "POSITIVE_NUMBER":
-                try {
-                    BigDecimal bd = new BigDecimal(stringValue);
-                    return bd.compareTo(BigDecimal.ZERO) > 0;
-                } catch (NumberFormatException e) {
-                    return false;
-                }
-                
-            default:
-                // Treat as regex pattern
-                return Pattern.matches(validationRule, stringValue);
-        }
-    }
-    
-    private Object transformValue(Object value, ColumnConfig column) {
-        if (value == null) {
-            return column.getDefaultValue();
-        }
-        
-        String transformationRule = column.getTransformationRule();
-        
-        if (transformationRule == null || transformationRule.isEmpty()) {
-            return value;
+    /**
+     * Tells a delta load that a rejected record's key is still in the snapshot. The columns from
+     * the failed one on are untransformed, so they are transformed here to build the key.
+     */
+    private void retainKey(GenericDataRecord record, CompiledColumns compiled, int failed) throws Exception {
+        if (!deltaDetector.isActive()) {
+            return;
         }
-        
-        String stringValue = value.toString();
-        
-        switch (transformationRule.toUpperCase()) {
-            case "UPPER":
-                return stringValue.toUpperCase();
-                
-            case "LOWER":
-                return stringValue.toLowerCase();
-                
-            case "TRIM":
-                return stringValue.trim();
-                
-            case "CAPITALIZE":
-                return capitalizeFirstLetter(stringValue);
-                
-            case "TRIM_UPPER":
-                return stringValue.trim().toUpperCase();
-                
-            default:
-                return value;
-        }
-    }
-    
-    private String capitalizeFirstLetter(String str) {
-        if (str == null || str.isEmpty()) {
-            return str;
+        ColumnConfig[] columns = compiled.columns();
+        for (int i = failed; i < columns.length; i++) {
+            Object value = record.getColumnValue(columns[i].getSourceColumnName());
+            try {
+                record.addColumnValue(columns[i].getSourceColumnName(), value != null
+                        ? compiled.transformations()[i].evaluate(value, record)
+                        : columns[i].getDefaultValue());
+            } catch (RuntimeException e) {
+                log.debug("Could not transform column {} of a rejected record: {}", columns[i].getSourceColumnName(), e.getMessage());
+            }
         }
-        return str.substring(0, 1).toUpperCase() + str.substring(1).toLowerCase();
+        deltaDetector.retain(record);
     }
 }
\ No newline at end of file
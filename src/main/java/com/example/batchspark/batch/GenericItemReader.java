@@ -3,51 +3,103 @@ package com.example.batchspark.batch;
 import com.example.batchspark.model.ColumnConfig;
 import com.example.batchspark.model.FileConfig;
 import com.example.batchspark.model.GenericDataRecord;
+import com.example.batchspark.service.FileConfigPlan;
+import com.example.batchspark.service.FileTailService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.LineMapper;
 import org.springframework.batch.item.file.mapping.DefaultLineMapper;
 import org.springframework.batch.item.file.mapping.FieldSetMapper;
 import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
 import org.springframework.batch.item.file.transform.FieldSet;
+import org.springframework.batch.item.file.transform.IncorrectTokenCountException;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Component
 public class GenericItemReader extends FlatFileItemReader<GenericDataRecord> {
     
     private static final Logger log = LoggerFactory.getLogger(GenericItemReader.class);
     
-    public void configure(FileConfig fileConfig) {
+    private final FileTailService fileTailService;
+    
+    public GenericItemReader(FileTailService fileTailService) {
+        this.fileTailService = fileTailService;
+    }
+    
+    public void configure(FileConfigPlan plan) {
+        configure(plan, null);
+    }
+    
+    /**
+     * The load step reads from several threads; lines are read and mapped one at a time so the
+     * line numbers of tail records are in read order.
+     */
+    @Override
+    public synchronized GenericDataRecord read() throws Exception {
+        return super.read();
+    }
+    
+    /**
+     * Configures the reader for a source other than the config's file, such as the body of an
+     * upload request. The source is read once, as the step pulls its chunks.
+     */
+    public void configure(FileConfigPlan plan, Resource source) {
+        FileConfig fileConfig = plan.getFileConfig();
         setName("genericItemReader");
-        setResource(new FileSystemResource(fileConfig.getSourceFilePath()));
         
+        // A routing config maps each line to the child config named by its discriminator field
+        LineMapper<GenericDataRecord> lineMapper;
+        if (fileConfig.isRouting()) {
+            RoutingLineMapper routingLineMapper = new RoutingLineMapper(plan);
+            lineMapper = routingLineMapper;
+            log.info("Configured reader for file: {} routing on field {} to {} child configs",
+                    fileConfig.getSourceFilePath(), fileConfig.getDiscriminatorPosition(), routingLineMapper.routes.size());
+        } else {
+            lineMapper = columnLineMapper(plan);
+            log.info("Configured reader for file: {} with {} columns", 
+                    fileConfig.getSourceFilePath(), fileConfig.getColumnConfigs().size());
+        }
+        
+        // Tail mode reads only the lines appended since the last run; the header is skipped by offset
+        boolean tail = source == null && FileTailService.isTailMode(fileConfig);
+        if (source != null) {
+            setResource(source);
+        } else if (tail) {
+            setResource(new FileSegmentResource(fileTailService.prepare(fileConfig)));
+        } else {
+            setResource(new FileSystemResource(fileConfig.getSourceFilePath()));
+        }
+        
+        if (tail) {
+            // Lines a failed run already loaded are skipped; records carry their lines for TailStateListener
+            int loadedLines = fileTailService.loadedLines(fileConfig.getConfigName());
+            setLineMapper(new LineTrackingLineMapper(lineMapper, loadedLines));
+            setLinesToSkip(loadedLines);
+        } else {
+            setLineMapper(lineMapper);
+            setLinesToSkip(fileConfig.getHasHeader() ? 1 : 0);
+        }
+    }
+    
+    private static DefaultLineMapper<GenericDataRecord> columnLineMapper(FileConfigPlan plan) {
         // Configure line mapper
         DefaultLineMapper<GenericDataRecord> lineMapper = new DefaultLineMapper<>();
         
         // Configure tokenizer
         DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();
-        tokenizer.setDelimiter(fileConfig.getDelimiter());
-        
-        String[] columnNames = fileConfig.getColumnConfigs().stream()
-                .sorted((c1, c2) -> c1.getColumnOrder().compareTo(c2.getColumnOrder()))
-                .map(ColumnConfig::getSourceColumnName)
-                .toArray(String[]::new);
-        
-        tokenizer.setNames(columnNames);
+        tokenizer.setDelimiter(plan.getFileConfig().getDelimiter());
+        tokenizer.setNames(plan.getSourceColumnNames().toArray(new String[0]));
         lineMapper.setLineTokenizer(tokenizer);
         
         // Configure field set mapper
-        lineMapper.setFieldSetMapper(new GenericFieldSetMapper(fileConfig));
-        
-        setLineMapper(lineMapper);
-        
-        if (fileConfig.getHasHeader()) {
-            setLinesToSkip(1);
-        }
-        
-        log.info("Configured reader for file: {} with {} columns", 
-                fileConfig.getSourceFilePath(), columnNames.length);
+        lineMapper.setFieldSetMapper(new GenericFieldSetMapper(plan.getFileConfig()));
+        return lineMapper;
     }
     
     private static class GenericFieldSetMapper implements FieldSetMapper<GenericDataRecord> {
@@ -61,6 +113,7 @@ public class GenericItemReader extends FlatFileItemReader<GenericDataRecord> {
         @Override
         public GenericDataRecord mapFieldSet(FieldSet fieldSet) {
             GenericDataRecord record = new GenericDataRecord(fileConfig.getTargetTableName());
+            record.setConfigName(fileConfig.getConfigName());
             
             for (ColumnConfig column : fileConfig.getColumnConfigs()) {
                 String sourceColumn = column.getSourceColumnName();
@@ -71,4 +124,84 @@ public class GenericItemReader extends FlatFileItemReader<GenericDataRecord> {
             return record;
         }
     }
+    
+    /**
+     * Tags each record with the source lines it was read from: its own line and the comment lines
+     * the reader skipped since the previous record.
+     */
+    private static class LineTrackingLineMapper implements LineMapper<GenericDataRecord> {
+        
+        private final LineMapper<GenericDataRecord> delegate;
+        private int lastLine;
+        
+        LineTrackingLineMapper(LineMapper<GenericDataRecord> delegate, int skippedLines) {
+            this.delegate = delegate;
+            this.lastLine = skippedLines;
+        }
+        
+        @Override
+        public GenericDataRecord mapLine(String line, int lineNumber) throws Exception {
+            GenericDataRecord record = delegate.mapLine(line, lineNumber);
+            record.setFirstLine(lastLine + 1);
+            record.setLastLine(lineNumber);
+            lastLine = lineNumber;
+            return record;
+        }
+    }
+    
+    /**
+     * Maps the lines of a mixed-record file. Each line is split once; its discriminator field
+     * selects the child config whose columns name the fields. Lines matching no child config
+     * become records without a config, which the processor filters out.
+     */
+    private static class RoutingLineMapper implements LineMapper<GenericDataRecord> {
+        
+        private record Route(FileConfig fileConfig, String[] columnNames) {}
+        
+        private final DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();
+        private final int discriminatorIndex;
+        private final Map<String, Route> routes = new HashMap<>();
+        
+        RoutingLineMapper(FileConfigPlan plan) {
+            FileConfig fileConfig = plan.getFileConfig();
+            tokenizer.setDelimiter(fileConfig.getDelimiter());
+            discriminatorIndex = fileConfig.getDiscriminatorPosition() - 1;
+            
+            for (FileConfigPlan childPlan : plan.getChildren()) {
+                FileConfig child = childPlan.getFileConfig();
+                String[] columnNames = childPlan.getSourceColumnNames().toArray(new String[0]);
+                Route previous = routes.put(child.getDiscriminatorValue(), new Route(child, columnNames));
+                if (previous != null) {
+                    throw new IllegalStateException("Child configs " + previous.fileConfig().getConfigName() + " and "
+                            + child.getConfigName() + " share discriminator value " + child.getDiscriminatorValue());
+                }
+            }
+            if (routes.isEmpty()) {
+                throw new IllegalStateException("Config " + fileConfig.getConfigName() + " has no active child configs to route to");
+            }
+        }
+        
+        @Override
+        public GenericDataRecord mapLine(String line, int lineNumber) {
+            FieldSet fieldSet = tokenizer.tokenize(line);
+            Route route = fieldSet.getFieldCount() > discriminatorIndex
+                    ? routes.get(fieldSet.readString(discriminatorIndex))
+                    : null;
+            if (route == null) {
+                return new GenericDataRecord();
+            }
+            
+            String[] columnNames = route.columnNames();
+            if (fieldSet.getFieldCount() != columnNames.length) {
+                throw new IncorrectTokenCountException(columnNames.length, fieldSet.getFieldCount(), line);
+            }
+            
+            GenericDataRecord record = new GenericDataRecord(route.fileConfig().getTargetTableName());
+            record.setConfigName(route.fileConfig().getConfigName());
+            for (int i = 0; i < columnNames.length; i++) {
+                record.addColumnValue(columnNames[i], fieldSet.readString(i));
+            }
+            return record;
+        }
+    }
 }
\ No newline at end of file
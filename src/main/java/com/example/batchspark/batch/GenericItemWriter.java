@@ -2,29 +2,87 @@ package com.example.batchspark.batch;
 
 import com.example.batchspark.model.FileConfig;
 import com.example.batchspark.model.GenericDataRecord;
+import com.example.batchspark.service.FileConfigPlan;
 import com.example.batchspark.service.GenericDataService;
+import com.example.batchspark.service.ReferenceDataService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.item.Chunk;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes each chunk to the config's target table after resolving its lookup columns. Records
+ * whose lookup fails are dropped from the chunk here, after the processor has run, so they are
+ * added to the step's filter count when the step ends.
+ */
 @Component
-public class GenericItemWriter implements ItemWriter<GenericDataRecord> {
+public class GenericItemWriter implements ItemWriter<GenericDataRecord>, StepExecutionListener {
     
     private static final Logger log = LoggerFactory.getLogger(GenericItemWriter.class);
     
     private final GenericDataService genericDataService;
+    private final ReferenceDataService referenceDataService;
+    private final DeltaDetector deltaDetector;
+    private FileConfigPlan plan;
     private FileConfig fileConfig;
+    private Map<String, FileConfigPlan> targets;
+    private final LongAdder lookupRejected = new LongAdder();
     
-    public GenericItemWriter(GenericDataService genericDataService) {
+    public GenericItemWriter(GenericDataService genericDataService, ReferenceDataService referenceDataService,
+                             DeltaDetector deltaDetector) {
         this.genericDataService = genericDataService;
+        this.referenceDataService = referenceDataService;
+        this.deltaDetector = deltaDetector;
+    }
+    
+    /**
+     * Prepares the target tables of the plan; {@code upload} tells whether the run loads an
+     * upload rather than the config's source file.
+     */
+    public void configure(FileConfigPlan plan, boolean upload) {
+        this.plan = plan;
+        this.fileConfig = plan.getFileConfig();
+        Map<String, FileConfigPlan> targets = new HashMap<>();
+        for (FileConfigPlan target : plan.targets()) {
+            // Ensure table exists
+            genericDataService.createTableIfNotExists(target);
+            // Reset and preload reference-data caches for lookup columns
+            referenceDataService.prepare(target.getFileConfig());
+            targets.put(target.getFileConfig().getConfigName(), target);
+        }
+        this.targets = targets;
+        deltaDetector.configure(fileConfig, upload);
+    }
+    
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        lookupRejected.reset();
     }
     
-    public void configure(FileConfig fileConfig) {
-        this.fileConfig = fileConfig;
-        // Ensure table exists
-        genericDataService.createTableIfNotExists(fileConfig);
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        // Chunks run on several threads, so the count is applied once the step is done
+        long rejected = lookupRejected.sum();
+        if (rejected > 0) {
+            stepExecution.setFilterCount(stepExecution.getFilterCount() + rejected);
+            log.info("{} records failed their lookups and were filtered", rejected);
+        }
+        return null;
     }
     
     @Override
@@ -33,9 +91,65 @@ public class GenericItemWriter implements ItemWriter<GenericDataRecord> {
             log.error("FileConfig not set for writer");
             return;
         }
+        if (fileConfig.isRouting()) {
+            writeRouted(chunk);
+            return;
+        }
+        
+        // Validate and enrich lookup columns for the whole chunk at once
+        resolve(chunk, fileConfig);
+        // In delta mode only new and changed records stay in the chunk
+        deltaDetector.filter(chunk);
+        if (chunk.isEmpty()) {
+            return;
+        }
         
         log.info("Writing {} records to table {}", chunk.size(), fileConfig.getTargetTableName());
-        genericDataService.insertBatch(chunk.getItems(), fileConfig);
+        if (deltaDetector.isActive()) {
+            genericDataService.mergeBatch(chunk.getItems(), plan);
+        } else {
+            genericDataService.insertBatch(chunk.getItems(), plan);
+        }
         log.debug("Successfully wrote {} records", chunk.size());
     }
+    
+    /**
+     * Splits a chunk of routed records by child config and writes each part as its own batch,
+     * in the chunk's transaction.
+     */
+    private void writeRouted(Chunk<? extends GenericDataRecord> chunk) throws IOException {
+        Map<String, Chunk<GenericDataRecord>> parts = new LinkedHashMap<>();
+        for (GenericDataRecord record : chunk) {
+            parts.computeIfAbsent(record.getConfigName(), configName -> new Chunk<>()).add(record);
+        }
+        
+        for (Map.Entry<String, Chunk<GenericDataRecord>> part : parts.entrySet()) {
+            FileConfigPlan target = targets.get(part.getKey());
+            Chunk<GenericDataRecord> records = part.getValue();
+            resolve(records, target.getFileConfig());
+            if (records.isEmpty()) {
+                continue;
+            }
+            
+            log.info("Writing {} records to table {}", records.size(), target.getFileConfig().getTargetTableName());
+            genericDataService.insertBatch(records.getItems(), target);
+        }
+    }
+    
+    private void resolve(Chunk<? extends GenericDataRecord> chunk, FileConfig target) throws IOException {
+        List<GenericDataRecord> before = new ArrayList<>(chunk.getItems());
+        referenceDataService.resolve(chunk, target);
+        lookupRejected.add(before.size() - chunk.size());
+        
+        if (deltaDetector.isActive() && before.size() > chunk.size()) {
+            // Records failing their lookups are still part of the snapshot
+            Set<GenericDataRecord> written = Collections.newSetFromMap(new IdentityHashMap<>());
+            written.addAll(chunk.getItems());
+            for (GenericDataRecord record : before) {
+                if (!written.contains(record)) {
+                    deltaDetector.retain(record);
+                }
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,279 @@
+package com.example.batchspark.batch;
+
+import com.example.batchspark.delta.DeltaIndex;
+import com.example.batchspark.model.ColumnConfig;
+import com.example.batchspark.model.EmployeeAnalytics;
+import com.example.batchspark.model.FileConfig;
+import com.example.batchspark.model.GenericDataRecord;
+import com.example.batchspark.repository.EmployeeAnalyticsRepository;
+import com.example.batchspark.service.GenericDataService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Summarizes the loaded records per group (count, sum, min, max and average of one numeric
+ * column) while they are written, and folds the summary into EMPLOYEE_ANALYTICS when the step
+ * completes, so the group summary needs no scan of the loaded table.
+ *
+ * Active for configs with AGGREGATE_GROUP_COLUMN and AGGREGATE_VALUE_COLUMN. Each chunk is
+ * summarized locally first and then merged into a concurrent map, so step threads only contend
+ * on the groups they share.
+ *
+ * Each load's aggregates are stored in GROUP_AGGREGATE_LOAD under a fingerprint of its records
+ * (an order-independent hash and the record count), and the config's EMPLOYEE_ANALYTICS rows
+ * are recomputed from all of its loads. Running the same records again replaces their earlier
+ * contribution instead of adding to it.
+ */
+@Component
+public class GroupAggregateWriter implements ItemWriter<GenericDataRecord>, StepExecutionListener {
+    
+    private static final Logger log = LoggerFactory.getLogger(GroupAggregateWriter.class);
+    
+    static final String NULL_GROUP = "(none)";
+    
+    private final GenericDataService genericDataService;
+    private final EmployeeAnalyticsRepository employeeAnalyticsRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    
+    private final Map<String, GroupAggregate> groups = new ConcurrentHashMap<>();
+    // Sum of the record hashes wraps around, so the fingerprint does not depend on write order
+    private final AtomicLong recordHashSum = new AtomicLong();
+    private final LongAdder recordCount = new LongAdder();
+    
+    private FileConfig fileConfig;
+    private ColumnConfig groupColumn;
+    private ColumnConfig valueColumn;
+    
+    public GroupAggregateWriter(GenericDataService genericDataService, EmployeeAnalyticsRepository employeeAnalyticsRepository,
+                                JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.genericDataService = genericDataService;
+        this.employeeAnalyticsRepository = employeeAnalyticsRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    public void configure(FileConfig fileConfig) {
+        this.fileConfig = fileConfig;
+        this.groupColumn = null;
+        this.valueColumn = null;
+        if (!fileConfig.hasAggregation()) {
+            return;
+        }
+        if (Boolean.TRUE.equals(fileConfig.getDeltaLoad())) {
+            // Delta loads write updates and skip deletes, which a running summary cannot account for
+            log.warn("Load-time aggregation is not available for delta loads of config {}", fileConfig.getConfigName());
+            return;
+        }
+        
+        for (ColumnConfig column : fileConfig.getColumnConfigs()) {
+            if (column.getTargetColumnName().equalsIgnoreCase(fileConfig.getAggregateGroupColumn())) {
+                groupColumn = column;
+            }
+            if (column.getTargetColumnName().equalsIgnoreCase(fileConfig.getAggregateValueColumn())) {
+                valueColumn = column;
+            }
+        }
+        if (groupColumn == null || valueColumn == null) {
+            log.warn("Aggregation columns {} / {} not found in config {}, load-time aggregation disabled",
+                    fileConfig.getAggregateGroupColumn(), fileConfig.getAggregateValueColumn(), fileConfig.getConfigName());
+            groupColumn = null;
+            valueColumn = null;
+        }
+    }
+    
+    private boolean isActive() {
+        return groupColumn != null && valueColumn != null;
+    }
+    
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        groups.clear();
+        recordHashSum.set(0);
+        recordCount.reset();
+    }
+    
+    @Override
+    public void write(Chunk<? extends GenericDataRecord> chunk) throws Exception {
+        if (!isActive() || chunk.isEmpty()) {
+            return;
+        }
+        
+        Map<String, GroupAggregate> chunkGroups = new HashMap<>();
+        long hashSum = 0;
+        for (GenericDataRecord record : chunk) {
+            hashSum += recordHash(record);
+            Object group = record.getColumnValue(groupColumn.getSourceColumnName());
+            Object value = genericDataService.convertValue(
+                    record.getColumnValue(valueColumn.getSourceColumnName()), valueColumn.getDataType());
+            
+            chunkGroups.computeIfAbsent(group != null ? group.toString() : NULL_GROUP, key -> new GroupAggregate())
+                    .add(toBigDecimal(value));
+        }
+        
+        // merge() locks only the group's bin, so threads writing other groups are not blocked
+        chunkGroups.forEach((group, aggregate) -> groups.merge(group, aggregate, GroupAggregate::merge));
+        recordHashSum.addAndGet(hashSum);
+        recordCount.add(chunk.size());
+    }
+    
+    private long recordHash(GenericDataRecord record) {
+        StringBuilder values = new StringBuilder();
+        for (ColumnConfig column : fileConfig.getColumnConfigs()) {
+            values.append(record.getColumnValue(column.getSourceColumnName())).append('\u001F');
+        }
+        return DeltaIndex.hash(values.toString());
+    }
+    
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (!isActive() || groups.isEmpty()) {
+            return null;
+        }
+        
+        try {
+            if (stepExecution.getStatus() != BatchStatus.COMPLETED) {
+                log.warn("Discarding group aggregates of {} (step status {})",
+                        fileConfig.getTargetTableName(), stepExecution.getStatus());
+                return null;
+            }
+            flush(String.format("%016x-%d", recordHashSum.get(), recordCount.sum()));
+        } catch (Exception e) {
+            // The load itself succeeded; a failed summary must not fail the job
+            log.error("Could not store group aggregates of {}", fileConfig.getTargetTableName(), e);
+        } finally {
+            groups.clear();
+        }
+        return null;
+    }
+    
+    private void flush(String loadKey) {
+        String configName = fileConfig.getConfigName();
+        Integer stored = transactionTemplate.execute(status -> {
+            int replaced = jdbcTemplate.update(
+                    "DELETE FROM GROUP_AGGREGATE_LOAD WHERE CONFIG_NAME = ? AND LOAD_KEY = ?", configName, loadKey);
+            if (replaced > 0) {
+                log.info("Records of this load of {} were loaded before, replacing their group aggregates", configName);
+            }
+            List<Object[]> rows = new ArrayList<>();
+            groups.forEach((group, aggregate) -> rows.add(new Object[] {configName, loadKey, group,
+                    aggregate.count, aggregate.valueCount, aggregate.sum, aggregate.min, aggregate.max}));
+            jdbcTemplate.batchUpdate("INSERT INTO GROUP_AGGREGATE_LOAD (CONFIG_NAME, LOAD_KEY, GROUP_VALUE, ROW_COUNT,"
+                    + " VALUE_COUNT, TOTAL_VALUE, MIN_VALUE, MAX_VALUE) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", rows);
+            
+            Map<String, GroupAggregate> totals = new HashMap<>();
+            jdbcTemplate.query("SELECT GROUP_VALUE, ROW_COUNT, VALUE_COUNT, TOTAL_VALUE, MIN_VALUE, MAX_VALUE"
+                    + " FROM GROUP_AGGREGATE_LOAD WHERE CONFIG_NAME = ?", rs -> {
+                GroupAggregate aggregate = new GroupAggregate();
+                aggregate.count = rs.getLong("ROW_COUNT");
+                aggregate.valueCount = rs.getLong("VALUE_COUNT");
+                aggregate.sum = rs.getBigDecimal("TOTAL_VALUE") != null ? rs.getBigDecimal("TOTAL_VALUE") : BigDecimal.ZERO;
+                aggregate.min = rs.getBigDecimal("MIN_VALUE");
+                aggregate.max = rs.getBigDecimal("MAX_VALUE");
+                totals.merge(rs.getString("GROUP_VALUE"), aggregate, GroupAggregate::merge);
+            }, configName);
+            
+            Map<String, EmployeeAnalytics> analyticsByGroup = employeeAnalyticsRepository.findByConfigName(configName)
+                    .stream()
+                    .collect(Collectors.toMap(EmployeeAnalytics::getDepartment, Function.identity(), (a, b) -> a));
+            List<EmployeeAnalytics> updated = new ArrayList<>();
+            totals.forEach((group, aggregate) -> {
+                EmployeeAnalytics analytics = analyticsByGroup.get(group);
+                if (analytics == null) {
+                    analytics = new EmployeeAnalytics();
+                    analytics.setConfigName(configName);
+                    analytics.setDepartment(group);
+                }
+                aggregate.applyTo(analytics);
+                updated.add(analytics);
+            });
+            employeeAnalyticsRepository.saveAll(updated);
+            return updated.size();
+        });
+        log.info("Stored aggregates of {} {} groups of table {}",
+                stored, fileConfig.getAggregateGroupColumn(), fileConfig.getTargetTableName());
+    }
+    
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        if (value instanceof Number number) {
+            return new BigDecimal(number.toString());
+        }
+        return null;
+    }
+    
+    /**
+     * Count, sum, min and max of one group; null values count toward the group but not its
+     * value statistics.
+     */
+    static class GroupAggregate {
+        
+        long count;
+        long valueCount;
+        BigDecimal sum = BigDecimal.ZERO;
+        BigDecimal min;
+        BigDecimal max;
+        
+        void add(BigDecimal value) {
+            count++;
+            if (value == null) {
+                return;
+            }
+            valueCount++;
+            sum = sum.add(value);
+            min = min == null || value.compareTo(min) < 0 ? value : min;
+            max = max == null || value.compareTo(max) > 0 ? value : max;
+        }
+        
+        GroupAggregate merge(GroupAggregate other) {
+            count += other.count;
+            valueCount += other.valueCount;
+            sum = sum.add(other.sum);
+            if (other.min != null) {
+                min = min == null || other.min.compareTo(min) < 0 ? other.min : min;
+            }
+            if (other.max != null) {
+                max = max == null || other.max.compareTo(max) > 0 ? other.max : max;
+            }
+            return this;
+        }
+        
+        /**
+         * Stores this aggregate, the total of all loads of a group, in its analytics row.
+         */
+        void applyTo(EmployeeAnalytics analytics) {
+            analytics.setEmployeeCount(count);
+            analytics.setValueCount(valueCount);
+            analytics.setTotalSalary(sum);
+            analytics.setMinSalary(min);
+            analytics.setMaxSalary(max);
+            analytics.setAvgSalary(valueCount > 0
+                    ? sum.divide(BigDecimal.valueOf(valueCount), 2, RoundingMode.HALF_UP)
+                    : null);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.example.batchspark.batch;
+
+import com.example.batchspark.model.FileConfig;
+import com.example.batchspark.service.FileConfigPlanCache;
+import com.example.batchspark.service.SparkLoadEngine;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+import org.springframework.batch.core.job.flow.JobExecutionDecider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Routes a job to the chunk-oriented load step or the Spark load step, returning
+ * {@link SparkLoadEngine#BATCH} or {@link SparkLoadEngine#SPARK} for the job's config.
+ * Uploaded sources can only be read once, as a stream, so they always use the chunk-oriented step.
+ */
+@Component
+public class LoadEngineDecider implements JobExecutionDecider {
+    
+    public static final String SOURCE_PARAMETER = "source";
+    public static final String UPLOAD_SOURCE = "UPLOAD";
+    
+    private final SparkLoadEngine sparkLoadEngine;
+    private final FileConfigPlanCache fileConfigPlanCache;
+    
+    public LoadEngineDecider(SparkLoadEngine sparkLoadEngine, FileConfigPlanCache fileConfigPlanCache) {
+        this.sparkLoadEngine = sparkLoadEngine;
+        this.fileConfigPlanCache = fileConfigPlanCache;
+    }
+    
+    @Override
+    public FlowExecutionStatus decide(JobExecution jobExecution, StepExecution stepExecution) {
+        if (UPLOAD_SOURCE.equals(jobExecution.getJobParameters().getString(SOURCE_PARAMETER))) {
+            return new FlowExecutionStatus(SparkLoadEngine.BATCH);
+        }
+        String configName = jobExecution.getJobParameters().getString("configName");
+        FileConfig fileConfig = fileConfigPlanCache.find(configName)
+                .orElseThrow(() -> new RuntimeException("Configuration not found: " + configName))
+                .getFileConfig();
+        return new FlowExecutionStatus(sparkLoadEngine.selectEngine(fileConfig));
+    }
+}
\ No newline at end of file
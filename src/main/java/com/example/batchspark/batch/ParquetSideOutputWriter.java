@@ -0,0 +1,416 @@
+package com.example.batchspark.batch;
+
+import com.example.batchspark.model.ColumnConfig;
+import com.example.batchspark.model.FileConfig;
+import com.example.batchspark.model.GenericDataRecord;
+import com.example.batchspark.service.FileConfigPlan;
+import com.example.batchspark.service.GenericDataService;
+import com.example.batchspark.service.SideOutputManifest;
+import com.example.batchspark.service.TableVersionService;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Types;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Writes a Parquet copy of every record loaded into Oracle, so the analytics step can read
+ * the loaded data without extracting the table over JDBC again.
+ *
+ * Each load goes to {@code <path>/<TABLE>/load_id=<jobExecutionId>/}, one file per writer
+ * thread. A chunk's records are appended once its transaction commits, and the files are staged
+ * under {@code _staging} and only moved into place when the step completes, so rolled-back
+ * chunks and failed loads never leave rows behind. Columns are named and typed like the target
+ * table columns.
+ *
+ * The copy is kept consistent with the table through {@link TableVersionService}: every load
+ * step bumps the versions of the tables it writes when it starts, and a published load records
+ * the version it completed in the {@link SideOutputManifest}. A load only extends the copy when
+ * the manifest is at the table's current version, or the table is still empty; otherwise the
+ * table was written some other way (Spark, streams, delta loads, routing) and the stale loads
+ * are deleted. Delta and routing configs are never copied.
+ */
+@Component
+public class ParquetSideOutputWriter implements ItemWriter<GenericDataRecord>, StepExecutionListener {
+    
+    private static final Logger log = LoggerFactory.getLogger(ParquetSideOutputWriter.class);
+    
+    private final GenericDataService genericDataService;
+    private final TableVersionService tableVersionService;
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${app.load.side-output.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${app.load.side-output.path:output/side-output}")
+    private String basePath;
+    
+    @Value("${app.load.side-output.row-group-size:134217728}")
+    private long rowGroupSize;
+    
+    private final Map<Long, ParquetWriter<Group>> writers = new ConcurrentHashMap<>();
+    private final AtomicInteger fileCounter = new AtomicInteger();
+    
+    private List<String> targetTables;
+    private FileConfig fileConfig;
+    private ColumnConfig[] columns;
+    private MessageType schema;
+    private SimpleGroupFactory groupFactory;
+    
+    // State of the running load; copying is false when this load does not extend the copy
+    private volatile boolean copying;
+    private volatile boolean appendFailed;
+    private SideOutputManifest baseManifest;
+    private long loadVersion;
+    private String loadPartition;
+    private java.nio.file.Path stagingDirectory;
+    private java.nio.file.Path targetDirectory;
+    
+    public ParquetSideOutputWriter(GenericDataService genericDataService, TableVersionService tableVersionService,
+                                   JdbcTemplate jdbcTemplate) {
+        this.genericDataService = genericDataService;
+        this.tableVersionService = tableVersionService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    public void configure(FileConfigPlan plan) {
+        this.targetTables = plan.targets().stream().map(target -> target.getFileConfig().getTargetTableName()).toList();
+        FileConfig fileConfig = plan.getFileConfig();
+        if (fileConfig.isRouting() || Boolean.TRUE.equals(fileConfig.getDeltaLoad())) {
+            // Routed records have the schema of their child config, and delta loads update rows in place
+            if (enabled) {
+                log.warn("Parquet side output is not available for routing or delta config {}", fileConfig.getConfigName());
+            }
+            this.fileConfig = null;
+            return;
+        }
+        this.fileConfig = fileConfig;
+        this.columns = fileConfig.getColumnConfigs().toArray(new ColumnConfig[0]);
+        this.schema = buildSchema(columns);
+        this.groupFactory = new SimpleGroupFactory(schema);
+    }
+    
+    /**
+     * Directory holding all completed loads of a table, readable as one partitioned dataset.
+     */
+    private java.nio.file.Path tableDirectory(String tableName) {
+        return Paths.get(basePath, tableName);
+    }
+    
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        copying = false;
+        appendFailed = false;
+        String copiedTable = enabled && fileConfig != null ? fileConfig.getTargetTableName() : null;
+        for (String table : targetTables) {
+            if (!table.equals(copiedTable)) {
+                // Whatever copy exists of this table is stale once the step writes to it
+                tableVersionService.bump(table);
+            }
+        }
+        if (copiedTable == null) {
+            return;
+        }
+        
+        java.nio.file.Path tableDirectory = tableDirectory(copiedTable);
+        try {
+            Files.createDirectories(tableDirectory);
+            long version = tableVersionService.current(copiedTable);
+            SideOutputManifest manifest = SideOutputManifest.read(tableDirectory);
+            if (manifest == null || manifest.version() != version) {
+                // The copy missed writes to the table; it can only start over from an empty table
+                manifest = isEmpty(copiedTable) ? new SideOutputManifest(version, List.of()) : null;
+            }
+            if (manifest == null || !tableVersionService.advance(copiedTable, version)) {
+                tableVersionService.bump(copiedTable);
+                prune(tableDirectory, List.of());
+                log.info("Parquet side output of {} is behind the table, not extending it with this load", copiedTable);
+                return;
+            }
+            prune(tableDirectory, manifest.loads());
+            
+            baseManifest = manifest;
+            loadVersion = version + 1;
+            loadPartition = "load_id=" + stepExecution.getJobExecutionId();
+            stagingDirectory = tableDirectory.resolve("_staging").resolve(loadPartition);
+            targetDirectory = tableDirectory.resolve(loadPartition);
+            writers.clear();
+            fileCounter.set(0);
+            deleteRecursively(stagingDirectory);
+            Files.createDirectories(stagingDirectory);
+            copying = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not prepare side-output directory " + tableDirectory, e);
+        }
+    }
+    
+    @Override
+    public void write(Chunk<? extends GenericDataRecord> chunk) throws Exception {
+        if (!copying || chunk.isEmpty()) {
+            return;
+        }
+        
+        List<Group> groups = new ArrayList<>(chunk.size());
+        for (GenericDataRecord record : chunk) {
+            groups.add(toGroup(record));
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            appendCommitted(groups);
+            return;
+        }
+        // A rolled-back chunk must not reach the copy; the commit runs on the chunk's thread
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                appendCommitted(groups);
+            }
+        });
+    }
+    
+    private void appendCommitted(List<Group> groups) {
+        try {
+            // Writers are not thread-safe, so every step thread appends to its own file
+            ParquetWriter<Group> writer = writers.computeIfAbsent(Thread.currentThread().threadId(), id -> openWriter());
+            for (Group group : groups) {
+                writer.write(group);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // The chunk is already committed to Oracle; the incomplete copy is discarded when the step ends
+            appendFailed = true;
+            log.error("Could not append to Parquet side output in {}", stagingDirectory, e);
+        }
+    }
+    
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (!copying) {
+            return null;
+        }
+        
+        String table = fileConfig.getTargetTableName();
+        java.nio.file.Path tableDirectory = tableDirectory(table);
+        boolean closed = closeWriters();
+        try {
+            if (closed && !appendFailed && stepExecution.getStatus() == BatchStatus.COMPLETED) {
+                // A load without records has no files, and Spark cannot read an empty directory
+                boolean hasFiles = fileCounter.get() > 0;
+                deleteRecursively(targetDirectory);
+                if (hasFiles) {
+                    Files.move(stagingDirectory, targetDirectory);
+                } else {
+                    deleteRecursively(stagingDirectory);
+                }
+                if (tableVersionService.advance(table, loadVersion)) {
+                    (hasFiles ? baseManifest.withLoad(loadVersion + 1, loadPartition)
+                            : new SideOutputManifest(loadVersion + 1, baseManifest.loads())).write(tableDirectory);
+                    log.info("Published Parquet side output of {} records to {}", stepExecution.getWriteCount(), targetDirectory);
+                } else {
+                    prune(tableDirectory, List.of());
+                    log.warn("Discarded Parquet side output for {}: the table was written by another load meanwhile", table);
+                }
+            } else {
+                deleteRecursively(stagingDirectory);
+                log.warn("Discarded Parquet side output for {} (step status {})", table, stepExecution.getStatus());
+            }
+        } catch (IOException e) {
+            // The Oracle load succeeded; without a current manifest analytics read over JDBC
+            log.error("Could not publish Parquet side output to {}", targetDirectory, e);
+        } finally {
+            copying = false;
+            stagingDirectory = null;
+        }
+        return null;
+    }
+    
+    private boolean isEmpty(String tableName) {
+        return jdbcTemplate.queryForList("SELECT 1 FROM " + tableName + " WHERE ROWNUM = 1").isEmpty();
+    }
+    
+    /**
+     * Deletes the load directories of a table that are not listed in {@code keep}, and the
+     * manifest when nothing is kept.
+     */
+    private static void prune(java.nio.file.Path tableDirectory, List<String> keep) throws IOException {
+        if (keep.isEmpty()) {
+            Files.deleteIfExists(tableDirectory.resolve(SideOutputManifest.FILE_NAME));
+        }
+        try (Stream<java.nio.file.Path> loads = Files.list(tableDirectory)) {
+            for (java.nio.file.Path load : loads.toList()) {
+                String name = load.getFileName().toString();
+                if (name.startsWith("load_id=") && !keep.contains(name)) {
+                    deleteRecursively(load);
+                }
+            }
+        }
+    }
+    
+    private ParquetWriter<Group> openWriter() {
+        java.nio.file.Path file = stagingDirectory.resolve(String.format("part-%05d.snappy.parquet", fileCounter.getAndIncrement()));
+        try {
+            return ExampleParquetWriter.builder(new Path(file.toUri()))
+                    .withConf(new Configuration())
+                    .withType(schema)
+                    .withCompressionCodec(CompressionCodecName.SNAPPY)
+                    .withRowGroupSize(rowGroupSize)
+                    .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open Parquet file " + file, e);
+        }
+    }
+    
+    private boolean closeWriters() {
+        boolean closed = true;
+        for (ParquetWriter<Group> writer : writers.values()) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.error("Error closing Parquet side-output file", e);
+                closed = false;
+            }
+        }
+        writers.clear();
+        return closed;
+    }
+    
+    private Group toGroup(GenericDataRecord record) {
+        Group group = groupFactory.newGroup();
+        for (ColumnConfig column : columns) {
+            Object value = genericDataService.convertValue(record.getColumnValue(column.getSourceColumnName()), column.getDataType());
+            if (value != null) {
+                append(group, column, value);
+            }
+        }
+        return group;
+    }
+    
+    private void append(Group group, ColumnConfig column, Object value) {
+        String name = column.getTargetColumnName();
+        switch (column.getDataType().toUpperCase()) {
+            case "NUMBER":
+            case "DECIMAL":
+            case "BIGDECIMAL":
+                if (value instanceof BigDecimal decimal) {
+                    group.append(name, Binary.fromConstantByteArray(
+                            decimal.setScale(column.scale(), RoundingMode.HALF_UP).unscaledValue().toByteArray()));
+                }
+                break;
+            case "INTEGER":
+            case "INT":
+            case "BOOLEAN":
+                if (value instanceof Integer intValue) {
+                    group.append(name, intValue);
+                }
+                break;
+            case "LONG":
+                if (value instanceof Long longValue) {
+                    group.append(name, longValue);
+                }
+                break;
+            case "DATE":
+                if (value instanceof Date date) {
+                    group.append(name, (int) date.toLocalDate().toEpochDay());
+                }
+                break;
+            case "TIMESTAMP":
+            case "DATETIME":
+                if (value instanceof Timestamp timestamp) {
+                    Instant instant = timestamp.toInstant();
+                    group.append(name, instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000);
+                }
+                break;
+            default:
+                group.append(name, value.toString());
+        }
+        // Values that failed conversion stay null, as they have no valid representation in the column type
+    }
+    
+    /**
+     * Maps column data types to the Parquet types Spark reads back as the table's JDBC types,
+     * mirroring the Oracle types chosen when the table is created.
+     */
+    static MessageType buildSchema(ColumnConfig[] columns) {
+        Types.MessageTypeBuilder builder = Types.buildMessage();
+        for (ColumnConfig column : columns) {
+            String name = column.getTargetColumnName();
+            switch (column.getDataType().toUpperCase()) {
+                case "NUMBER":
+                case "DECIMAL":
+                case "BIGDECIMAL":
+                    builder = builder.optional(PrimitiveTypeName.BINARY)
+                            .as(LogicalTypeAnnotation.decimalType(column.scale(), column.precision())).named(name);
+                    break;
+                case "INTEGER":
+                case "INT":
+                case "BOOLEAN":
+                    builder = builder.optional(PrimitiveTypeName.INT32).named(name);
+                    break;
+                case "LONG":
+                    builder = builder.optional(PrimitiveTypeName.INT64).named(name);
+                    break;
+                case "DATE":
+                    builder = builder.optional(PrimitiveTypeName.INT32)
+                            .as(LogicalTypeAnnotation.dateType()).named(name);
+                    break;
+                case "TIMESTAMP":
+                case "DATETIME":
+                    builder = builder.optional(PrimitiveTypeName.INT64)
+                            .as(LogicalTypeAnnotation.timestampType(true, LogicalTypeAnnotation.TimeUnit.MICROS)).named(name);
+                    break;
+                default:
+                    builder = builder.optional(PrimitiveTypeName.BINARY)
+                            .as(LogicalTypeAnnotation.stringType()).named(name);
+            }
+        }
+        return builder.named("record");
+    }
+    
+    private static void deleteRecursively(java.nio.file.Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<java.nio.file.Path> paths = Files.walk(directory)) {
+            for (java.nio.file.Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
\ No newline at end of file
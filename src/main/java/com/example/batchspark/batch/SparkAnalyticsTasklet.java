@@ -2,6 +2,11 @@ package com.example.batchspark.batch;
 
 import com.example.batchspark.model.FileConfig;
 import com.example.batchspark.repository.FileConfigRepository;
+import com.example.batchspark.service.AnalyticsResultCache;
+import com.example.batchspark.service.AnalyticsRunner;
+import com.example.batchspark.service.FileConfigPlan;
+import com.example.batchspark.service.FileConfigPlanCache;
+import com.example.batchspark.service.IncrementalAnalyticsService;
 import com.example.batchspark.service.SparkService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,9 +16,9 @@ import org.springframework.batch.core.step.tasklet.Tasklet;
 import org.springframework.batch.repeat.RepeatStatus;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Component
 public class SparkAnalyticsTasklet implements Tasklet {
@@ -21,11 +26,21 @@ public class SparkAnalyticsTasklet implements Tasklet {
     private static final Logger log = LoggerFactory.getLogger(SparkAnalyticsTasklet.class);
     
     private final SparkService sparkService;
+    private final IncrementalAnalyticsService incrementalAnalyticsService;
     private final FileConfigRepository fileConfigRepository;
+    private final FileConfigPlanCache fileConfigPlanCache;
+    private final AnalyticsRunner analyticsRunner;
+    private final AnalyticsResultCache analyticsResultCache;
     
-    public SparkAnalyticsTasklet(SparkService sparkService, FileConfigRepository fileConfigRepository) {
+    public SparkAnalyticsTasklet(SparkService sparkService, IncrementalAnalyticsService incrementalAnalyticsService,
+                                 FileConfigRepository fileConfigRepository, FileConfigPlanCache fileConfigPlanCache,
+                                 AnalyticsRunner analyticsRunner, AnalyticsResultCache analyticsResultCache) {
         this.sparkService = sparkService;
+        this.incrementalAnalyticsService = incrementalAnalyticsService;
         this.fileConfigRepository = fileConfigRepository;
+        this.fileConfigPlanCache = fileConfigPlanCache;
+        this.analyticsRunner = analyticsRunner;
+        this.analyticsResultCache = analyticsResultCache;
     }
     
     @Override
@@ -39,29 +54,54 @@ public class SparkAnalyticsTasklet implements Tasklet {
                     .get("configName")
                     .toString();
             
-            Optional<FileConfig> configOpt = fileConfigRepository.findByConfigNameWithColumns(configName);
+            Optional<FileConfigPlan> planOpt = fileConfigPlanCache.find(configName);
             
-            if (!configOpt.isPresent()) {
+            if (!planOpt.isPresent()) {
                 log.error("Configuration not found: {}", configName);
                 throw new RuntimeException("Configuration not found: " + configName);
             }
             
-            FileConfig fileConfig = configOpt.get();
-            String outputPath = "output/analytics/" + fileConfig.getTargetTableName();
+            FileConfig fileConfig = planOpt.get().getFileConfig();
             
-            // Perform analytics using Spark
-            sparkService.performGenericAnalytics(fileConfig, outputPath);
+            List<AnalyticsRunner.Task> tasks = new ArrayList<>();
             
-            // Perform cross-table analytics if multiple active configs exist
-            List<FileConfig> allConfigs = fileConfigRepository.findByIsActiveTrue();
-            if (allConfigs.size() > 1) {
-                List<String> tableNames = allConfigs.stream()
-                        .map(FileConfig::getTargetTableName)
-                        .collect(Collectors.toList());
+            // A routing config loaded the tables of its child configs
+            for (FileConfig target : fileConfig.targetConfigs()) {
+                String outputPath = "output/analytics/" + target.getTargetTableName();
+                
+                // An unchanged table keeps the outputs of the last run
+                String fingerprint = analyticsResultCache.isEnabled() ? analyticsResultCache.fingerprint(target) : null;
+                if (fingerprint != null && analyticsResultCache.isFresh(outputPath, fingerprint)) {
+                    log.info("Table {} unchanged since its last analytics run, reusing outputs in {}",
+                            target.getTargetTableName(), outputPath);
+                    continue;
+                }
                 
-                sparkService.performCrossTableAnalytics(tableNames, outputPath + "/cross_analysis");
+                // Perform analytics using Spark, over the new rows only in incremental mode
+                tasks.add(new AnalyticsRunner.Task(target.getTargetTableName(), () -> {
+                    if (fingerprint != null) {
+                        analyticsResultCache.invalidate(outputPath);
+                    }
+                    if (incrementalAnalyticsService.isEnabled()) {
+                        incrementalAnalyticsService.performIncrementalAnalytics(target, outputPath);
+                    } else {
+                        sparkService.performGenericAnalytics(target, outputPath);
+                    }
+                    if (fingerprint != null) {
+                        analyticsResultCache.record(outputPath, fingerprint);
+                    }
+                }));
+            }
+            
+            // Cross-table analytics cover all active configs, so they run once per window rather than per job
+            List<FileConfig> allConfigs = fileConfigRepository.findActiveWithColumns();
+            if (allConfigs.size() > 1) {
+                tasks.add(new AnalyticsRunner.Task(SparkService.CROSS_TABLE_POOL,
+                        () -> sparkService.performCrossTableAnalyticsIfDue(allConfigs, "output/analytics/cross_analysis")));
             }
             
+            analyticsRunner.runAll(tasks);
+            
             contribution.incrementWriteCount(1);
             log.info("Completed Spark analytics processing for config: {}", configName);
             
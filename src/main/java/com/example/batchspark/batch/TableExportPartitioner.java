@@ -0,0 +1,152 @@
+package com.example.batchspark.batch;
+
+import com.example.batchspark.model.FileConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Splits the target table of an export into ID ranges, one partition each, and publishes the
+ * exported files once every range is written.
+ *
+ * Files are written to {@code <path>/<TABLE>/_staging/export_id=<jobInstanceId>/} and the
+ * directory is moved to {@code <path>/<TABLE>/export_id=<jobInstanceId>/} when the export step
+ * completes, so consumers never see a partial export.
+ */
+@Component
+public class TableExportPartitioner implements Partitioner, StepExecutionListener {
+    
+    private static final Logger log = LoggerFactory.getLogger(TableExportPartitioner.class);
+    
+    public static final String MIN_ID = "minId";
+    public static final String MAX_ID = "maxId";
+    public static final String PARTITION = "partition";
+    public static final String DIRECTORY = "directory";
+    
+    /**
+     * IDs {@code [minId, maxId]} of a partition.
+     */
+    record IdRange(long minId, long maxId) {}
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${app.export.path:output/exports}")
+    private String basePath;
+    
+    private FileConfig fileConfig;
+    private Path stagingDirectory;
+    private Path targetDirectory;
+    
+    public TableExportPartitioner(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    public void configure(FileConfig fileConfig) {
+        this.fileConfig = fileConfig;
+    }
+    
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        String exportPartition = "export_id=" + stepExecution.getJobExecution().getJobInstance().getInstanceId();
+        Path tableDirectory = Paths.get(basePath, fileConfig.getTargetTableName());
+        stagingDirectory = tableDirectory.resolve("_staging").resolve(exportPartition);
+        targetDirectory = tableDirectory.resolve(exportPartition);
+        try {
+            Files.createDirectories(stagingDirectory);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create export directory " + stagingDirectory, e);
+        }
+    }
+    
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Map<String, Object> bounds = jdbcTemplate.queryForMap(
+                "SELECT MIN(ID) AS MIN_ID, MAX(ID) AS MAX_ID FROM " + fileConfig.getTargetTableName());
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+        if (bounds.get("MIN_ID") == null) {
+            log.info("Table {} is empty, nothing to export", fileConfig.getTargetTableName());
+            return partitions;
+        }
+        
+        List<IdRange> ranges = split(((Number) bounds.get("MIN_ID")).longValue(),
+                ((Number) bounds.get("MAX_ID")).longValue(), gridSize);
+        for (int i = 0; i < ranges.size(); i++) {
+            ExecutionContext context = new ExecutionContext();
+            context.putLong(MIN_ID, ranges.get(i).minId());
+            context.putLong(MAX_ID, ranges.get(i).maxId());
+            context.putInt(PARTITION, i);
+            context.putString(DIRECTORY, stagingDirectory.toString());
+            partitions.put(PARTITION + i, context);
+        }
+        log.info("Exporting table {} in {} ID ranges", fileConfig.getTargetTableName(), ranges.size());
+        return partitions;
+    }
+    
+    /**
+     * Splits {@code [minId, maxId]} into at most {@code count} contiguous ranges of equal width.
+     * IDs come from a sequence, so equal widths give roughly equal row counts.
+     */
+    static List<IdRange> split(long minId, long maxId, int count) {
+        long span = maxId - minId + 1;
+        long width = Math.max(1, (span + count - 1) / count);
+        List<IdRange> ranges = new ArrayList<>();
+        for (long start = minId; start <= maxId && ranges.size() < count; start += width) {
+            ranges.add(new IdRange(start, Math.min(maxId, start + width - 1)));
+        }
+        return ranges;
+    }
+    
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (stagingDirectory == null) {
+            return null;
+        }
+        
+        try {
+            if (stepExecution.getStatus() == BatchStatus.COMPLETED) {
+                deleteRecursively(targetDirectory);
+                Files.move(stagingDirectory, targetDirectory);
+                log.info("Published export of {} rows to {}", stepExecution.getWriteCount(), targetDirectory);
+            } else {
+                deleteRecursively(stagingDirectory);
+                log.warn("Discarded export of {} (step status {})", fileConfig.getTargetTableName(), stepExecution.getStatus());
+            }
+        } catch (IOException e) {
+            log.error("Could not publish export to {}", targetDirectory, e);
+            return ExitStatus.FAILED;
+        } finally {
+            stagingDirectory = null;
+        }
+        return null;
+    }
+    
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,150 @@
+package com.example.batchspark.batch;
+
+import com.example.batchspark.model.GenericDataRecord;
+import com.example.batchspark.service.FileTailService;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Commits the tail offset of the load step's config when the step completes, and discards it
+ * otherwise.
+ *
+ * A failed tail step does not load its lines twice: every chunk transaction also records how
+ * many lines of the read are loaded without a gap, counting the lines of that chunk and of the
+ * chunks committed before it. Chunks of the multi-threaded step commit in any order, so a chunk
+ * committing ahead of an earlier one leaves the count where it is, and the earlier one then
+ * counts both. Chunk commits are serialized only while the count is written. The next run skips
+ * the counted lines ({@link FileTailService#loadedLines}) and reads the rest again.
+ */
+@Component
+public class TailStateListener implements StepExecutionListener, ItemReadListener<GenericDataRecord> {
+    
+    private final FileTailService fileTailService;
+    
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final ThreadLocal<NavigableMap<Integer, Integer>> chunkLines = new ThreadLocal<>();
+    
+    // Line ranges (first to last line) of committed chunks beyond the loaded lines, guarded by commitLock
+    private final NavigableMap<Integer, Integer> committedLines = new TreeMap<>();
+    private int loadedLines;
+    private volatile String tailConfigName; // Null unless the running step reads a tail config
+    
+    public TailStateListener(FileTailService fileTailService) {
+        this.fileTailService = fileTailService;
+    }
+    
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        String configName = stepExecution.getJobParameters().getString("configName");
+        commitLock.lock();
+        try {
+            committedLines.clear();
+            boolean tail = configName != null && fileTailService.isPending(configName);
+            loadedLines = tail ? fileTailService.loadedLines(configName) : 0;
+            tailConfigName = tail ? configName : null;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+    
+    @Override
+    public void afterRead(GenericDataRecord item) {
+        if (tailConfigName == null || item.getLastLine() == 0 || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        
+        NavigableMap<Integer, Integer> lines = chunkLines.get();
+        if (lines == null) {
+            lines = new TreeMap<>();
+            chunkLines.set(lines);
+            TransactionSynchronizationManager.registerSynchronization(new ChunkCommit(tailConfigName, lines));
+        }
+        lines.put(item.getFirstLine(), item.getLastLine());
+    }
+    
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        tailConfigName = null;
+        String configName = stepExecution.getJobParameters().getString("configName");
+        if (configName == null) {
+            return null;
+        }
+        if (stepExecution.getStatus() == BatchStatus.COMPLETED) {
+            fileTailService.commit(configName);
+        } else {
+            fileTailService.discard(configName);
+        }
+        return null;
+    }
+    
+    /**
+     * Lines loaded without a gap once the given chunk commits as well.
+     */
+    private int reachedWith(Map<Integer, Integer> lines) {
+        int reached = loadedLines;
+        while (true) {
+            Integer last = committedLines.get(reached + 1);
+            if (last == null) {
+                last = lines.get(reached + 1);
+            }
+            if (last == null) {
+                return reached;
+            }
+            reached = last;
+        }
+    }
+    
+    /**
+     * Writes the loaded line count inside the chunk transaction and, once it committed, adds the
+     * chunk's lines to the committed ones.
+     */
+    private class ChunkCommit implements TransactionSynchronization {
+        
+        private final String configName;
+        private final NavigableMap<Integer, Integer> lines;
+        
+        ChunkCommit(String configName, NavigableMap<Integer, Integer> lines) {
+            this.configName = configName;
+            this.lines = lines;
+        }
+        
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            commitLock.lock();
+            int reached = reachedWith(lines);
+            if (reached > loadedLines) {
+                fileTailService.recordLoadedLines(configName, reached);
+            }
+        }
+        
+        @Override
+        public void afterCompletion(int status) {
+            chunkLines.remove();
+            if (!commitLock.isHeldByCurrentThread()) {
+                return;
+            }
+            try {
+                if (status == STATUS_COMMITTED) {
+                    committedLines.putAll(lines);
+                    Integer last;
+                    while ((last = committedLines.remove(loadedLines + 1)) != null) {
+                        loadedLines = last;
+                    }
+                }
+            } finally {
+                commitLock.unlock();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -2,29 +2,44 @@ package com.example.batchspark.config;
 
 import com.example.batchspark.batch.*;
 import com.example.batchspark.model.GenericDataRecord;
+import com.example.batchspark.service.SparkLoadEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ItemReadListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.support.CompositeItemWriter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.transaction.PlatformTransactionManager;
 
+import java.util.List;
+
 @Configuration
 public class BatchConfig {
     
     private static final Logger log = LoggerFactory.getLogger(BatchConfig.class);
     
     private final SparkAnalyticsTasklet sparkAnalyticsTasklet;
+    private final SparkLoadTasklet sparkLoadTasklet;
+    
+    @Value("${app.batch.thread-pool-size:4}")
+    private int threadPoolSize;
+    
+    @Value("${app.batch.max-threads:8}")
+    private int maxThreads;
     
-    public BatchConfig(SparkAnalyticsTasklet sparkAnalyticsTasklet) {
+    public BatchConfig(SparkAnalyticsTasklet sparkAnalyticsTasklet, SparkLoadTasklet sparkLoadTasklet) {
         this.sparkAnalyticsTasklet = sparkAnalyticsTasklet;
+        this.sparkLoadTasklet = sparkLoadTasklet;
     }
     
     @Bean
@@ -32,11 +47,23 @@ public class BatchConfig {
                                       PlatformTransactionManager transactionManager,
                                       GenericItemReader reader,
                                       GenericItemProcessor processor,
-                                      GenericItemWriter writer) {
+                                      GenericItemWriter writer,
+                                      ParquetSideOutputWriter sideOutputWriter,
+                                      GroupAggregateWriter groupAggregateWriter,
+                                      TailStateListener tailStateListener,
+                                      DeltaDetector deltaDetector,
+                                      LoadEngineDecider loadEngineDecider) {
+        Step analyticsStep = sparkAnalyticsStep(jobRepository, transactionManager);
+        
+        // The decider picks the load engine per config; both loads end in the same analytics step
         return new JobBuilder("genericDataProcessingJob", jobRepository)
                 .incrementer(new RunIdIncrementer())
-                .start(loadDataStep(jobRepository, transactionManager, reader, processor, writer))
-                .next(sparkAnalyticsStep(jobRepository, transactionManager))
+                .start(loadEngineDecider)
+                .on(SparkLoadEngine.SPARK).to(sparkLoadStep(jobRepository, transactionManager)).next(analyticsStep)
+                .from(loadEngineDecider)
+                .on("*").to(loadDataStep(jobRepository, transactionManager, reader, processor, writer,
+                        sideOutputWriter, groupAggregateWriter, tailStateListener, deltaDetector)).next(analyticsStep)
+                .end()
                 .build();
     }
     
@@ -45,16 +72,39 @@ public class BatchConfig {
                            PlatformTransactionManager transactionManager,
                            GenericItemReader reader,
                            GenericItemProcessor processor,
-                           GenericItemWriter writer) {
+                           GenericItemWriter writer,
+                           ParquetSideOutputWriter sideOutputWriter,
+                           GroupAggregateWriter groupAggregateWriter,
+                           TailStateListener tailStateListener,
+                           DeltaDetector deltaDetector) {
+        // Oracle first: a failing side-output write then rolls back the chunk's insert as well,
+        // and the aggregates only see records that passed the lookups
+        CompositeItemWriter<GenericDataRecord> compositeWriter = new CompositeItemWriter<>();
+        compositeWriter.setDelegates(List.of(writer, groupAggregateWriter, sideOutputWriter));
+        
         return new StepBuilder("loadDataStep", jobRepository)
                 .<GenericDataRecord, GenericDataRecord>chunk(100, transactionManager)
                 .reader(reader)
                 .processor(processor)
-                .writer(writer)
+                .writer(compositeWriter)
+                .listener(writer)
+                .listener(sideOutputWriter)
+                .listener(groupAggregateWriter)
+                .listener((StepExecutionListener) tailStateListener)
+                .listener((ItemReadListener<GenericDataRecord>) tailStateListener)
+                .listener(deltaDetector)
                 .taskExecutor(taskExecutor())
                 .build();
     }
     
+    @Bean
+    public Step sparkLoadStep(JobRepository jobRepository,
+                              PlatformTransactionManager transactionManager) {
+        return new StepBuilder("sparkLoadStep", jobRepository)
+                .tasklet(sparkLoadTasklet, transactionManager)
+                .build();
+    }
+    
     @Bean
     public Step sparkAnalyticsStep(JobRepository jobRepository, 
                                  PlatformTransactionManager transactionManager) {
@@ -63,11 +113,51 @@ public class BatchConfig {
                 .build();
     }
     
+    /**
+     * Unloads a config's target table to files, scanning its ID ranges in parallel.
+     */
+    @Bean
+    public Job tableExportJob(JobRepository jobRepository,
+                              PlatformTransactionManager transactionManager,
+                              TableExportPartitioner partitioner,
+                              TableExportTasklet tasklet,
+                              @Value("${app.export.partitions:32}") int partitions,
+                              @Value("${app.export.threads:8}") int threads) {
+        Step exportRangeStep = new StepBuilder("exportRangeStep", jobRepository)
+                .tasklet(tasklet, transactionManager)
+                .build();
+        
+        Step exportStep = new StepBuilder("exportStep", jobRepository)
+                .partitioner("exportRangeStep", partitioner)
+                .step(exportRangeStep)
+                .gridSize(partitions)
+                .taskExecutor(exportTaskExecutor(threads))
+                .listener(partitioner)
+                .build();
+        
+        return new JobBuilder("tableExportJob", jobRepository)
+                .incrementer(new RunIdIncrementer())
+                .start(exportStep)
+                .build();
+    }
+    
+    @Bean
+    public TaskExecutor exportTaskExecutor(@Value("${app.export.threads:8}") int threads) {
+        // Each thread holds a JDBC connection for the whole scan of its range
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("export-");
+        executor.initialize();
+        return executor;
+    }
+    
     @Bean
     public TaskExecutor taskExecutor() {
+        // The job scheduler reserves a connection per thread up to max-threads for each load
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(4);
-        executor.setMaxPoolSize(8);
+        executor.setCorePoolSize(threadPoolSize);
+        executor.setMaxPoolSize(maxThreads);
         executor.setQueueCapacity(100);
         executor.setThreadNamePrefix("batch-");
         executor.initialize();
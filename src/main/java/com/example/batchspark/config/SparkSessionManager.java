@@ -0,0 +1,123 @@
+package com.example.batchspark.config;
+
+import org.apache.spark.sql.SparkSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Owns the application's single SparkSession. The session is built on first use from the
+ * app.spark.* properties, so load-only and API-only runs never pay the Spark startup cost.
+ */
+@Component
+public class SparkSessionManager {
+    
+    private static final Logger log = LoggerFactory.getLogger(SparkSessionManager.class);
+    
+    private volatile SparkSession sparkSession;
+    
+    @Value("${app.spark.master:local[*]}")
+    private String master;
+    
+    @Value("${app.spark.app-name:GenericDataProcessor}")
+    private String appName;
+    
+    @Value("${app.spark.executor-memory:}")
+    private String executorMemory;
+    
+    @Value("${app.spark.executor-cores:}")
+    private String executorCores;
+    
+    @Value("${app.spark.memory-fraction:}")
+    private String memoryFraction;
+    
+    @Value("${app.spark.shuffle-partitions:}")
+    private String shufflePartitions;
+    
+    @Value("${app.spark.advisory-partition-size:}")
+    private String advisoryPartitionSize;
+    
+    @Value("${app.spark.off-heap.enabled:false}")
+    private boolean offHeapEnabled;
+    
+    @Value("${app.spark.off-heap.size:}")
+    private String offHeapSize;
+    
+    @Value("${app.spark.scheduler-mode:FAIR}")
+    private String schedulerMode;
+    
+    @Value("${app.spark.scheduler-allocation-file:}")
+    private String schedulerAllocationFile;
+    
+    @Value("${app.spark.log-level:WARN}")
+    private String logLevel;
+    
+    public SparkSession getSession() {
+        SparkSession session = sparkSession;
+        if (session == null) {
+            synchronized (this) {
+                session = sparkSession;
+                if (session == null) {
+                    session = createSession();
+                    sparkSession = session;
+                }
+            }
+        }
+        return session;
+    }
+    
+    public boolean isStarted() {
+        return sparkSession != null;
+    }
+    
+    private SparkSession createSession() {
+        long start = System.currentTimeMillis();
+        
+        SparkSession.Builder builder = SparkSession.builder()
+                .appName(appName)
+                .master(master)
+                .config("spark.sql.adaptive.enabled", "true")
+                .config("spark.sql.adaptive.coalescePartitions.enabled", "true")
+                .config("spark.sql.adaptive.skewJoin.enabled", "true")
+                .config("spark.serializer", "org.apache.spark.serializer.KryoSerializer");
+        
+        // The driver runs in this JVM, so its memory is the application's -Xmx, not spark.driver.memory
+        setIfPresent(builder, "spark.executor.memory", executorMemory);
+        setIfPresent(builder, "spark.executor.cores", executorCores);
+        setIfPresent(builder, "spark.memory.fraction", memoryFraction);
+        setIfPresent(builder, "spark.sql.shuffle.partitions", shufflePartitions);
+        setIfPresent(builder, "spark.sql.adaptive.advisoryPartitionSizeInBytes", advisoryPartitionSize);
+        // Concurrent analytics submit jobs into per-table pools, which FAIR mode serves evenly
+        setIfPresent(builder, "spark.scheduler.mode", schedulerMode);
+        setIfPresent(builder, "spark.scheduler.allocation.file", schedulerAllocationFile);
+        
+        if (offHeapEnabled) {
+            builder.config("spark.memory.offHeap.enabled", "true");
+            setIfPresent(builder, "spark.memory.offHeap.size", offHeapSize);
+        }
+        
+        SparkSession session = builder.getOrCreate();
+        session.sparkContext().setLogLevel(logLevel);
+        
+        log.info("Spark session {} started on {} in {} ms (version {})",
+                appName, master, System.currentTimeMillis() - start, session.version());
+        return session;
+    }
+    
+    private void setIfPresent(SparkSession.Builder builder, String key, String value) {
+        if (value != null && !value.isBlank()) {
+            builder.config(key, value);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (sparkSession != null) {
+            sparkSession.stop();
+            log.info("Spark session stopped");
+        }
+    }
+}
\ No newline at end of file
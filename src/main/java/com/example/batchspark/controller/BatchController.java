@@ -1,21 +1,48 @@
 package com.example.batchspark.controller;
 
+import com.example.batchspark.batch.DeltaDetector;
 import com.example.batchspark.batch.GenericItemProcessor;
 import com.example.batchspark.batch.GenericItemReader;
 import com.example.batchspark.batch.GenericItemWriter;
+import com.example.batchspark.batch.GroupAggregateWriter;
+import com.example.batchspark.batch.LoadEngineDecider;
+import com.example.batchspark.batch.ParquetSideOutputWriter;
+import com.example.batchspark.batch.TableExportPartitioner;
+import com.example.batchspark.batch.TableExportTasklet;
 import com.example.batchspark.model.FileConfig;
 import com.example.batchspark.repository.FileConfigRepository;
+import com.example.batchspark.service.BatchJobScheduler;
+import com.example.batchspark.service.FileConfigPlan;
+import com.example.batchspark.service.FileConfigPlanCache;
+import com.example.batchspark.service.SparkService;
+import com.example.batchspark.service.StreamingIngestionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.Job;
-import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
 import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPInputStream;
 
 @RestController
 @RequestMapping("/api/batch")
@@ -23,59 +50,303 @@ public class BatchController {
     
     private static final Logger log = LoggerFactory.getLogger(BatchController.class);
     
+    private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
+    
     private final JobLauncher jobLauncher;
     private final Job genericDataProcessingJob;
+    private final Job tableExportJob;
     private final FileConfigRepository fileConfigRepository;
+    private final FileConfigPlanCache fileConfigPlanCache;
     private final GenericItemReader genericItemReader;
     private final GenericItemProcessor genericItemProcessor;
     private final GenericItemWriter genericItemWriter;
+    private final ParquetSideOutputWriter parquetSideOutputWriter;
+    private final GroupAggregateWriter groupAggregateWriter;
+    private final SparkService sparkService;
+    private final StreamingIngestionService streamingIngestionService;
+    private final TableExportPartitioner tableExportPartitioner;
+    private final TableExportTasklet tableExportTasklet;
+    private final BatchJobScheduler batchJobScheduler;
+    
+    @Value("${app.batch.max-threads:8}")
+    private int loadThreads;
+    
+    @Value("${app.scheduler.start-timeout:PT1M}")
+    private Duration startTimeout;
+    
+    @Value("${app.export.threads:8}")
+    private int exportThreads;
     
     public BatchController(JobLauncher jobLauncher, 
                           Job genericDataProcessingJob,
+                          Job tableExportJob,
                           FileConfigRepository fileConfigRepository,
+                          FileConfigPlanCache fileConfigPlanCache,
                           GenericItemReader genericItemReader,
                           GenericItemProcessor genericItemProcessor,
-                          GenericItemWriter genericItemWriter) {
+                          GenericItemWriter genericItemWriter,
+                          ParquetSideOutputWriter parquetSideOutputWriter,
+                          GroupAggregateWriter groupAggregateWriter,
+                          SparkService sparkService,
+                          StreamingIngestionService streamingIngestionService,
+                          TableExportPartitioner tableExportPartitioner,
+                          TableExportTasklet tableExportTasklet,
+                          BatchJobScheduler batchJobScheduler) {
         this.jobLauncher = jobLauncher;
         this.genericDataProcessingJob = genericDataProcessingJob;
+        this.tableExportJob = tableExportJob;
         this.fileConfigRepository = fileConfigRepository;
+        this.fileConfigPlanCache = fileConfigPlanCache;
         this.genericItemReader = genericItemReader;
         this.genericItemProcessor = genericItemProcessor;
         this.genericItemWriter = genericItemWriter;
+        this.parquetSideOutputWriter = parquetSideOutputWriter;
+        this.groupAggregateWriter = groupAggregateWriter;
+        this.sparkService = sparkService;
+        this.streamingIngestionService = streamingIngestionService;
+        this.tableExportPartitioner = tableExportPartitioner;
+        this.tableExportTasklet = tableExportTasklet;
+        this.batchJobScheduler = batchJobScheduler;
     }
     
+    /**
+     * Queues a job for the config and responds right away; the job starts when the scheduler
+     * admits it.
+     */
     @PostMapping("/start/{configName}")
     public ResponseEntity<String> startBatch(@PathVariable String configName) {
         try {
-            // Load configuration
+            BatchJobScheduler.Submission submission = submitJob(configName, null, false);
+            submission.result().whenComplete((execution, failure) -> {
+                if (failure != null) {
+                    log.error("Batch job for config {} failed to run", configName, failure);
+                } else {
+                    log.info("Batch job for config {} finished with status {}", configName, execution.getStatus());
+                }
+            });
+            return ResponseEntity.accepted()
+                    .body("Batch job queued for config: " + configName + " at position " + submission.position());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error starting batch job", e);
+            return ResponseEntity.internalServerError()
+                    .body("Error starting batch job: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Loads the request body instead of the config's source file. The body is read from the
+     * socket only as the load step pulls its chunks, so a slow writer slows the upload down and
+     * memory use does not depend on the upload size. Send {@code Content-Encoding: gzip} for
+     * compressed uploads. As the request holds the body until the job reads it, an upload is
+     * only accepted when its job can start right away, and gets {@code 429 Too Many Requests}
+     * otherwise; the response is sent once the job has finished.
+     */
+    @PostMapping(value = "/upload/{configName}", consumes = MediaType.ALL_VALUE)
+    public ResponseEntity<String> uploadBatch(@PathVariable String configName,
+                                              @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+                                              InputStream body) {
+        try {
+            InputStream source = "gzip".equalsIgnoreCase(contentEncoding)
+                    ? new GZIPInputStream(body, UPLOAD_BUFFER_SIZE)
+                    : body;
+            JobExecution execution = await(submitJob(configName, new InputStreamResource(source, "upload for config " + configName), true));
+            
+            StepExecution load = execution.getStepExecutions().stream()
+                    .filter(step -> step.getStepName().equals("loadDataStep"))
+                    .findFirst()
+                    .orElse(null);
+            String summary = "Upload for config " + configName + " " + execution.getStatus()
+                    + (load != null
+                            ? ": " + load.getReadCount() + " records read, " + load.getWriteCount() + " written, "
+                                    + load.getFilterCount() + " filtered"
+                            : "");
+            return execution.getStatus() == BatchStatus.COMPLETED
+                    ? ResponseEntity.ok(summary)
+                    : ResponseEntity.internalServerError().body(summary);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error loading upload", e);
+            return ResponseEntity.internalServerError()
+                    .body("Error loading upload: " + e.getMessage());
+        }
+    }
+    
+    private BatchJobScheduler.Submission submitJob(String configName, Resource source, boolean now) {
+        // Resolve the compiled configuration
+        FileConfigPlan plan = fileConfigPlanCache.find(configName)
+                .orElseThrow(() -> new IllegalArgumentException("Configuration not found: " + configName));
+        FileConfig fileConfig = plan.getFileConfig();
+        if (fileConfig.getParentConfigId() != null) {
+            throw new IllegalArgumentException("Configuration " + configName + " is loaded by the job of its parent configuration");
+        }
+        DeltaDetector.checkSource(fileConfig, source != null);
+        
+        // Each load step thread holds a connection, plus one for the job repository
+        int connections = loadThreads + 1;
+        BatchJobScheduler.JobLaunch launch = () -> runJob(plan, source);
+        String jobName = genericDataProcessingJob.getName();
+        return now
+                ? batchJobScheduler.submitNow(configName, jobName, fileConfig.getJobPriority(), connections, launch)
+                : batchJobScheduler.submit(configName, jobName, fileConfig.getJobPriority(), connections, launch);
+    }
+    
+    private JobExecution runJob(FileConfigPlan plan, Resource source) throws Exception {
+        FileConfig fileConfig = plan.getFileConfig();
+        
+        // Configure batch components
+        genericItemReader.configure(plan, source);
+        genericItemProcessor.configure(plan);
+        genericItemWriter.configure(plan, source != null);
+        parquetSideOutputWriter.configure(plan);
+        groupAggregateWriter.configure(fileConfig);
+        
+        JobParametersBuilder jobParameters = new JobParametersBuilder()
+                .addLong("startAt", System.currentTimeMillis())
+                .addString("configName", fileConfig.getConfigName());
+        if (source != null) {
+            jobParameters.addString(LoadEngineDecider.SOURCE_PARAMETER, LoadEngineDecider.UPLOAD_SOURCE);
+        }
+        
+        return jobLauncher.run(genericDataProcessingJob, jobParameters.toJobParameters());
+    }
+    
+    /**
+     * Waits for a queued job to finish, rethrowing what failed its launch. A job that has not
+     * started within {@code app.scheduler.start-timeout} is taken out of the queue and rejected.
+     */
+    private JobExecution await(BatchJobScheduler.Submission submission) throws Exception {
+        try {
+            try {
+                submission.started().get(startTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (batchJobScheduler.cancel(submission)) {
+                    throw new RejectedExecutionException("Job did not start within " + startTimeout);
+                }
+            }
+            return submission.result().get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+    
+    /**
+     * Exports the config's target table to {@code csv} (delimited like the config's source file)
+     * or {@code parquet} files. The export is queued with the config's jobs and the response is
+     * sent once it has been published.
+     */
+    @PostMapping("/export/{configName}")
+    public ResponseEntity<String> exportTable(@PathVariable String configName,
+                                              @RequestParam(required = false) String format) {
+        if (format != null && !format.equalsIgnoreCase(TableExportTasklet.CSV) && !format.equalsIgnoreCase(TableExportTasklet.PARQUET)) {
+            return ResponseEntity.badRequest().body("Unsupported export format: " + format);
+        }
+        try {
             Optional<FileConfig> configOpt = fileConfigRepository.findByConfigNameWithColumns(configName);
             if (!configOpt.isPresent()) {
                 return ResponseEntity.badRequest()
                         .body("Configuration not found: " + configName);
             }
-            
             FileConfig fileConfig = configOpt.get();
+            if (fileConfig.isRouting()) {
+                return ResponseEntity.badRequest()
+                        .body("Configuration " + configName + " routes records to child configurations; export those instead");
+            }
             
-            // Configure batch components
-            genericItemReader.configure(fileConfig);
-            genericItemProcessor.configure(fileConfig);
-            genericItemWriter.configure(fileConfig);
-            
-            JobParameters jobParameters = new JobParametersBuilder()
-                    .addLong("startAt", System.currentTimeMillis())
-                    .addString("configName", configName)
-                    .toJobParameters();
+            // Each export thread holds a connection, plus one for the job repository
+            JobExecution execution = await(batchJobScheduler.submit(configName, tableExportJob.getName(), fileConfig.getJobPriority(), exportThreads + 1, () -> {
+                tableExportPartitioner.configure(fileConfig);
+                tableExportTasklet.configure(fileConfig);
+                
+                JobParametersBuilder jobParameters = new JobParametersBuilder()
+                        .addLong("startAt", System.currentTimeMillis())
+                        .addString("configName", configName);
+                if (format != null) {
+                    jobParameters.addString("format", format.toLowerCase());
+                }
+                return jobLauncher.run(tableExportJob, jobParameters.toJobParameters());
+            }));
             
-            jobLauncher.run(genericDataProcessingJob, jobParameters);
+            long rows = execution.getStepExecutions().stream()
+                    .filter(step -> step.getStepName().equals("exportStep"))
+                    .mapToLong(StepExecution::getWriteCount)
+                    .sum();
+            String summary = "Export of " + fileConfig.getTargetTableName() + " " + execution.getStatus() + ": " + rows + " rows";
+            return execution.getStatus() == BatchStatus.COMPLETED
+                    ? ResponseEntity.ok(summary)
+                    : ResponseEntity.internalServerError().body(summary);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error exporting table", e);
+            return ResponseEntity.internalServerError()
+                    .body("Error exporting table: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * The configs of the running jobs and the queued jobs in the order they would start.
+     */
+    @GetMapping("/queue")
+    public ResponseEntity<Map<String, Object>> getQueue() {
+        return ResponseEntity.ok(Map.of(
+                "running", batchJobScheduler.running(),
+                "queued", batchJobScheduler.queued()));
+    }
+    
+    @PostMapping("/analytics")
+    public ResponseEntity<String> runAnalytics() {
+        try {
+            List<FileConfig> configs = fileConfigRepository.findActiveWithColumns();
+            sparkService.performAnalytics(configs, "output/analytics");
+            return ResponseEntity.ok("Analytics completed for " + configs.size() + " configs");
+        } catch (Exception e) {
+            log.error("Error running analytics", e);
+            return ResponseEntity.internalServerError()
+                    .body("Error running analytics: " + e.getMessage());
+        }
+    }
+    
+    @PostMapping("/stream/{configName}/start")
+    public ResponseEntity<String> startStream(@PathVariable String configName) {
+        try {
+            Optional<FileConfig> configOpt = fileConfigRepository.findByConfigNameWithColumns(configName);
+            if (!configOpt.isPresent()) {
+                return ResponseEntity.badRequest()
+                        .body("Configuration not found: " + configName);
+            }
             
-            return ResponseEntity.ok("Batch job started successfully for config: " + configName);
+            streamingIngestionService.start(configOpt.get());
+            return ResponseEntity.ok("Streaming ingestion started for config: " + configName);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
-            log.error("Error starting batch job", e);
+            log.error("Error starting streaming ingestion", e);
             return ResponseEntity.internalServerError()
-                    .body("Error starting batch job: " + e.getMessage());
+                    .body("Error starting streaming ingestion: " + e.getMessage());
         }
     }
     
+    @PostMapping("/stream/{configName}/stop")
+    public ResponseEntity<String> stopStream(@PathVariable String configName) {
+        if (!streamingIngestionService.stop(configName)) {
+            return ResponseEntity.badRequest()
+                    .body("No streaming ingestion running for config: " + configName);
+        }
+        return ResponseEntity.ok("Streaming ingestion stopped for config: " + configName);
+    }
+    
+    @GetMapping("/stream")
+    public ResponseEntity<Map<String, String>> getStreams() {
+        return ResponseEntity.ok(streamingIngestionService.status());
+    }
+    
     @GetMapping("/configs")
     public ResponseEntity<List<FileConfig>> getConfigs() {
         List<FileConfig> configs = fileConfigRepository.findByIsActiveTrue();
@@ -0,0 +1,133 @@
+package com.example.batchspark.delta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only, memory-mapped index of one loaded snapshot: for every record the hash of its
+ * primary key, the hash of its column values and the key itself.
+ *
+ * {@code entries.bin} holds fixed-width entries (key hash, row hash, key offset) sorted by key
+ * hash, so a key is found by binary search; {@code keys.bin} holds the length-prefixed UTF-8
+ * keys the offsets point to, which resolve hash collisions and give the keys of deleted rows.
+ * Lookups only use absolute reads and are safe from several threads.
+ */
+public final class DeltaIndex {
+    
+    static final String ENTRIES_FILE = "entries.bin";
+    static final String KEYS_FILE = "keys.bin";
+    static final int ENTRY_BYTES = 3 * Long.BYTES;
+    
+    private static final DeltaIndex EMPTY = new DeltaIndex(ByteBuffer.allocate(0), ByteBuffer.allocate(0), 0);
+    
+    private final ByteBuffer entries;
+    private final ByteBuffer keys;
+    private final int size;
+    
+    private DeltaIndex(ByteBuffer entries, ByteBuffer keys, int size) {
+        this.entries = entries;
+        this.keys = keys;
+        this.size = size;
+    }
+    
+    /**
+     * Maps the index in {@code directory}, or returns an empty index when there is none yet.
+     */
+    public static DeltaIndex open(Path directory) throws IOException {
+        if (!Files.exists(directory) && Files.exists(previousDirectory(directory))) {
+            directory = previousDirectory(directory);
+        }
+        Path entriesFile = directory.resolve(ENTRIES_FILE);
+        Path keysFile = directory.resolve(KEYS_FILE);
+        if (!Files.exists(entriesFile) || !Files.exists(keysFile)) {
+            return EMPTY;
+        }
+        
+        MappedByteBuffer entries = map(entriesFile);
+        MappedByteBuffer keys = map(keysFile);
+        return new DeltaIndex(entries, keys, entries.capacity() / ENTRY_BYTES);
+    }
+    
+    /**
+     * Where the replaced index is kept while a new one is moved into place.
+     */
+    static Path previousDirectory(Path directory) {
+        return directory.resolveSibling(directory.getFileName() + ".old");
+    }
+    
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Delta index file " + file + " exceeds 2 GB");
+            }
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Position of the entry for {@code key}, or -1 when the snapshot did not contain it.
+     */
+    public int find(long keyHash, String key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keyHash(middle) < keyHash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < size && keyHash(i) == keyHash; i++) {
+            if (key(i).equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    public long keyHash(int position) {
+        return entries.getLong(position * ENTRY_BYTES);
+    }
+    
+    public long rowHash(int position) {
+        return entries.getLong(position * ENTRY_BYTES + Long.BYTES);
+    }
+    
+    public String key(int position) {
+        int offset = (int) entries.getLong(position * ENTRY_BYTES + 2 * Long.BYTES);
+        int length = keys.getInt(offset);
+        byte[] bytes = new byte[length];
+        keys.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * 64-bit hash of a key or row string: FNV-1a over the characters, followed by the MurmurHash3
+     * finalizer so that nearby inputs spread over the whole range.
+     */
+    public static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe53a8b53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
\ No newline at end of file
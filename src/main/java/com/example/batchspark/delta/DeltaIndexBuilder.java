@@ -0,0 +1,227 @@
+package com.example.batchspark.delta;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * Writes the {@link DeltaIndex} of a new snapshot while it is loaded. Keys are appended to the
+ * keys file as they arrive; entries are collected in a fixed-size buffer that is sorted and
+ * spilled as a run file when full, and the runs are merged into the sorted entries file by
+ * {@link #finish}. Memory use is bounded by the run size, whatever the snapshot size.
+ */
+public class DeltaIndexBuilder {
+    
+    private final Path workDirectory;
+    private final int runSize;
+    
+    private final long[] keyHashes;
+    private final long[] rowHashes;
+    private final long[] keyOffsets;
+    private final List<Path> runs = new ArrayList<>();
+    private final DataOutputStream keys;
+    
+    private int buffered;
+    private long keysLength;
+    
+    /**
+     * Starts a new index in {@code workDirectory}, removing what an earlier attempt left there.
+     */
+    public DeltaIndexBuilder(Path workDirectory, int runSize) throws IOException {
+        this.workDirectory = workDirectory;
+        this.runSize = runSize;
+        this.keyHashes = new long[runSize];
+        this.rowHashes = new long[runSize];
+        this.keyOffsets = new long[runSize];
+        
+        deleteDirectory(workDirectory);
+        Files.createDirectories(workDirectory);
+        this.keys = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(workDirectory.resolve(DeltaIndex.KEYS_FILE))));
+    }
+    
+    public synchronized void add(long keyHash, long rowHash, String key) throws IOException {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        keys.writeInt(bytes.length);
+        keys.write(bytes);
+        
+        keyHashes[buffered] = keyHash;
+        rowHashes[buffered] = rowHash;
+        keyOffsets[buffered] = keysLength;
+        keysLength += Integer.BYTES + bytes.length;
+        if (++buffered == runSize) {
+            spill();
+        }
+    }
+    
+    /**
+     * Merges the runs into a complete index and moves it to {@code indexDirectory}, replacing
+     * the index that was there. The work directory must be on the same file system.
+     */
+    public synchronized void finish(Path indexDirectory) throws IOException {
+        spill();
+        keys.close();
+        
+        Path entries = workDirectory.resolve(DeltaIndex.ENTRIES_FILE);
+        merge(entries);
+        for (Path run : runs) {
+            Files.delete(run);
+        }
+        
+        // The directories are swapped by renames; DeltaIndex#open falls back to the previous
+        // index if the swap was interrupted between them
+        Path previous = DeltaIndex.previousDirectory(indexDirectory);
+        deleteDirectory(previous);
+        if (Files.exists(indexDirectory)) {
+            Files.move(indexDirectory, previous, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(workDirectory, indexDirectory, StandardCopyOption.ATOMIC_MOVE);
+        deleteDirectory(previous);
+    }
+    
+    /**
+     * Drops the partial index of a failed load.
+     */
+    public synchronized void discard() throws IOException {
+        keys.close();
+        deleteDirectory(workDirectory);
+    }
+    
+    private void spill() throws IOException {
+        if (buffered == 0) {
+            return;
+        }
+        sort(0, buffered - 1);
+        Path run = workDirectory.resolve("run-" + runs.size() + ".bin");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+            for (int i = 0; i < buffered; i++) {
+                out.writeLong(keyHashes[i]);
+                out.writeLong(rowHashes[i]);
+                out.writeLong(keyOffsets[i]);
+            }
+        }
+        runs.add(run);
+        buffered = 0;
+    }
+    
+    private void merge(Path target) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Comparator.comparingLong((RunReader reader) -> reader.keyHash));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target)))) {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                out.writeLong(reader.keyHash);
+                out.writeLong(reader.rowHash);
+                out.writeLong(reader.keyOffset);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        } finally {
+            for (RunReader reader : queue) {
+                reader.close();
+            }
+        }
+    }
+    
+    /**
+     * Quicksort of the buffered entries by key hash, moving the three arrays together.
+     */
+    private void sort(int low, int high) {
+        while (low < high) {
+            long pivot = keyHashes[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (keyHashes[i] < pivot) {
+                    i++;
+                }
+                while (keyHashes[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            // Recurse into the smaller part to bound the stack depth
+            if (j - low < high - i) {
+                sort(low, j);
+                low = i;
+            } else {
+                sort(i, high);
+                high = j;
+            }
+        }
+    }
+    
+    private void swap(int i, int j) {
+        long keyHash = keyHashes[i];
+        keyHashes[i] = keyHashes[j];
+        keyHashes[j] = keyHash;
+        long rowHash = rowHashes[i];
+        rowHashes[i] = rowHashes[j];
+        rowHashes[j] = rowHash;
+        long keyOffset = keyOffsets[i];
+        keyOffsets[i] = keyOffsets[j];
+        keyOffsets[j] = keyOffset;
+    }
+    
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+    
+    private static class RunReader {
+        
+        private final DataInputStream in;
+        long keyHash;
+        long rowHash;
+        long keyOffset;
+        
+        RunReader(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+        }
+        
+        boolean next() throws IOException {
+            try {
+                keyHash = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            rowHash = in.readLong();
+            keyOffset = in.readLong();
+            return true;
+        }
+        
+        void close() throws IOException {
+            in.close();
+        }
+    }
+}
\ No newline at end of file
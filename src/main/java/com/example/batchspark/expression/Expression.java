@@ -0,0 +1,13 @@
+package com.example.batchspark.expression;
+
+import com.example.batchspark.model.GenericDataRecord;
+
+/**
+ * A compiled column rule. {@code value} is the current column value and {@code record}
+ * gives access to the other columns of the row being processed.
+ */
+@FunctionalInterface
+public interface Expression {
+    
+    Object evaluate(Object value, GenericDataRecord record);
+}
\ No newline at end of file
@@ -0,0 +1,359 @@
+package com.example.batchspark.expression;
+
+import com.example.batchspark.model.GenericDataRecord;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles a parsed {@link Node} tree into nested {@link Expression} lambdas.
+ *
+ * Sub-expressions made only of literals are evaluated once at compile time, and literal
+ * regex and date-format arguments are compiled into {@link Pattern}s and
+ * {@link DateTimeFormatter}s up front, so evaluating a row never re-parses anything.
+ */
+public final class ExpressionCompiler {
+    
+    private ExpressionCompiler() {}
+    
+    public static Expression compile(Node node) {
+        if (node instanceof Node.Literal literal) {
+            return constant(literal.value());
+        }
+        if (node instanceof Node.ValueRef) {
+            return (value, record) -> value;
+        }
+        if (node instanceof Node.ColumnRef ref) {
+            String name = ref.name();
+            return (value, record) -> record != null ? record.getColumnValue(name) : null;
+        }
+        if (node instanceof Node.Unary unary) {
+            Expression operand = compile(unary.operand());
+            return fold(unary(unary.operator(), operand), List.of(operand));
+        }
+        if (node instanceof Node.Binary binary) {
+            Expression left = compile(binary.left());
+            Expression right = compile(binary.right());
+            return fold(binary(binary.operator(), left, right), List.of(left, right));
+        }
+        Node.Call call = (Node.Call) node;
+        List<Expression> arguments = call.arguments().stream().map(ExpressionCompiler::compile).toList();
+        return fold(function(call.function(), arguments), arguments);
+    }
+    
+    private static Expression unary(String operator, Expression operand) {
+        if (operator.equals("not")) {
+            return (value, record) -> !Values.isTrue(operand.evaluate(value, record));
+        }
+        return (value, record) -> {
+            BigDecimal number = Values.toNumber(operand.evaluate(value, record));
+            return number != null ? number.negate() : null;
+        };
+    }
+    
+    private static Expression binary(String operator, Expression left, Expression right) {
+        switch (operator) {
+            case "or":
+                return (value, record) -> Values.isTrue(left.evaluate(value, record))
+                        || Values.isTrue(right.evaluate(value, record));
+            case "and":
+                return (value, record) -> Values.isTrue(left.evaluate(value, record))
+                        && Values.isTrue(right.evaluate(value, record));
+            case "=":
+            case "==":
+                return (value, record) -> Values.equal(left.evaluate(value, record), right.evaluate(value, record));
+            case "!=":
+            case "<>":
+                return (value, record) -> !Values.equal(left.evaluate(value, record), right.evaluate(value, record));
+            case "<":
+                return comparison(left, right, c -> c < 0);
+            case "<=":
+                return comparison(left, right, c -> c <= 0);
+            case ">":
+                return comparison(left, right, c -> c > 0);
+            case ">=":
+                return comparison(left, right, c -> c >= 0);
+            case "&":
+                return (value, record) -> {
+                    Object l = left.evaluate(value, record);
+                    Object r = right.evaluate(value, record);
+                    return (l != null ? Values.toStr(l) : "") + (r != null ? Values.toStr(r) : "");
+                };
+            case "+":
+                return arithmetic(left, right, BigDecimal::add);
+            case "-":
+                return arithmetic(left, right, BigDecimal::subtract);
+            case "*":
+                return arithmetic(left, right, BigDecimal::multiply);
+            case "/":
+                return arithmetic(left, right, (l, r) -> r.signum() == 0 ? null : l.divide(r, MathContext.DECIMAL64));
+            case "%":
+                return arithmetic(left, right, (l, r) -> r.signum() == 0 ? null : l.remainder(r));
+            default:
+                throw new IllegalArgumentException("Unknown operator: " + operator);
+        }
+    }
+    
+    private static Expression function(String name, List<Expression> args) {
+        switch (name) {
+            case "upper":
+                return stringFunction(name, args, String::toUpperCase);
+            case "lower":
+                return stringFunction(name, args, String::toLowerCase);
+            case "trim":
+                return stringFunction(name, args, String::trim);
+            case "capitalize":
+                return stringFunction(name, args, ExpressionCompiler::capitalize);
+            case "length":
+            case "len":
+                return stringFunction(name, args, s -> BigDecimal.valueOf(s.length()));
+            case "str":
+                arity(name, args, 1, 1);
+                return (value, record) -> Values.toStr(args.get(0).evaluate(value, record));
+            case "num":
+                arity(name, args, 1, 1);
+                return (value, record) -> Values.toNumber(args.get(0).evaluate(value, record));
+            case "abs":
+                arity(name, args, 1, 1);
+                return (value, record) -> {
+                    BigDecimal number = Values.toNumber(args.get(0).evaluate(value, record));
+                    return number != null ? number.abs() : null;
+                };
+            case "round":
+                return round(name, args);
+            case "substr":
+                return substr(name, args);
+            case "concat":
+                arity(name, args, 1, Integer.MAX_VALUE);
+                return (value, record) -> {
+                    StringBuilder result = new StringBuilder();
+                    for (Expression arg : args) {
+                        Object part = arg.evaluate(value, record);
+                        if (part != null) {
+                            result.append(Values.toStr(part));
+                        }
+                    }
+                    return result.toString();
+                };
+            case "lpad":
+                return pad(name, args, true);
+            case "rpad":
+                return pad(name, args, false);
+            case "replace":
+                arity(name, args, 3, 3);
+                return (value, record) -> {
+                    String s = Values.toStr(args.get(0).evaluate(value, record));
+                    String target = Values.toStr(args.get(1).evaluate(value, record));
+                    String replacement = Values.toStr(args.get(2).evaluate(value, record));
+                    return s == null || target == null ? s : s.replace(target, replacement != null ? replacement : "");
+                };
+            case "regex_replace":
+                arity(name, args, 3, 3);
+                Function<Object, Pattern> replacePattern = patternOf(args.get(1));
+                return (value, record) -> {
+                    String s = Values.toStr(args.get(0).evaluate(value, record));
+                    Pattern pattern = replacePattern.apply(args.get(1).evaluate(value, record));
+                    String replacement = Values.toStr(args.get(2).evaluate(value, record));
+                    return s == null || pattern == null ? s : pattern.matcher(s).replaceAll(replacement != null ? replacement : "");
+                };
+            case "matches":
+                arity(name, args, 2, 2);
+                Function<Object, Pattern> matchPattern = patternOf(args.get(1));
+                return (value, record) -> {
+                    String s = Values.toStr(args.get(0).evaluate(value, record));
+                    Pattern pattern = matchPattern.apply(args.get(1).evaluate(value, record));
+                    return s != null && pattern != null && pattern.matcher(s).matches();
+                };
+            case "is_empty":
+                arity(name, args, 1, 1);
+                return (value, record) -> Values.isEmpty(args.get(0).evaluate(value, record));
+            case "is_number":
+                arity(name, args, 1, 1);
+                return (value, record) -> Values.toNumber(args.get(0).evaluate(value, record)) != null;
+            case "coalesce":
+                arity(name, args, 1, Integer.MAX_VALUE);
+                return (value, record) -> {
+                    for (Expression arg : args) {
+                        Object candidate = arg.evaluate(value, record);
+                        if (!Values.isEmpty(candidate)) {
+                            return candidate;
+                        }
+                    }
+                    return null;
+                };
+            case "if":
+                arity(name, args, 3, 3);
+                return (value, record) -> Values.isTrue(args.get(0).evaluate(value, record))
+                        ? args.get(1).evaluate(value, record)
+                        : args.get(2).evaluate(value, record);
+            case "date":
+                return date(name, args);
+            default:
+                throw new IllegalArgumentException("Unknown function: " + name);
+        }
+    }
+    
+    private static Expression stringFunction(String name, List<Expression> args, Function<String, Object> function) {
+        arity(name, args, 1, 1);
+        Expression arg = args.get(0);
+        return (value, record) -> {
+            String s = Values.toStr(arg.evaluate(value, record));
+            return s != null ? function.apply(s) : null;
+        };
+    }
+    
+    private static Expression substr(String name, List<Expression> args) {
+        arity(name, args, 2, 3);
+        return (value, record) -> {
+            String s = Values.toStr(args.get(0).evaluate(value, record));
+            BigDecimal start = Values.toNumber(args.get(1).evaluate(value, record));
+            if (s == null || start == null) {
+                return null;
+            }
+            int from = Math.min(Math.max(start.intValue(), 0), s.length());
+            if (args.size() == 2) {
+                return s.substring(from);
+            }
+            BigDecimal length = Values.toNumber(args.get(2).evaluate(value, record));
+            int to = length == null ? s.length() : Math.min(from + Math.max(length.intValue(), 0), s.length());
+            return s.substring(from, to);
+        };
+    }
+    
+    private static Expression pad(String name, List<Expression> args, boolean left) {
+        arity(name, args, 2, 3);
+        return (value, record) -> {
+            String s = Values.toStr(args.get(0).evaluate(value, record));
+            BigDecimal width = Values.toNumber(args.get(1).evaluate(value, record));
+            String padding = args.size() == 3 ? Values.toStr(args.get(2).evaluate(value, record)) : " ";
+            if (s == null || width == null || padding == null || padding.isEmpty() || s.length() >= width.intValue()) {
+                return s;
+            }
+            StringBuilder result = new StringBuilder(width.intValue());
+            int missing = width.intValue() - s.length();
+            if (!left) {
+                result.append(s);
+            }
+            for (int i = 0; i < missing; i++) {
+                result.append(padding.charAt(i % padding.length()));
+            }
+            if (left) {
+                result.append(s);
+            }
+            return result.toString();
+        };
+    }
+    
+    private static Expression round(String name, List<Expression> args) {
+        arity(name, args, 1, 2);
+        return (value, record) -> {
+            BigDecimal number = Values.toNumber(args.get(0).evaluate(value, record));
+            BigDecimal scale = args.size() == 2 ? Values.toNumber(args.get(1).evaluate(value, record)) : BigDecimal.ZERO;
+            return number == null || scale == null ? null : number.setScale(scale.intValue(), RoundingMode.HALF_UP);
+        };
+    }
+    
+    private static Expression date(String name, List<Expression> args) {
+        arity(name, args, 3, 3);
+        Function<Object, DateTimeFormatter> from = formatterOf(args.get(1));
+        Function<Object, DateTimeFormatter> to = formatterOf(args.get(2));
+        return (value, record) -> {
+            String s = Values.toStr(args.get(0).evaluate(value, record));
+            DateTimeFormatter input = from.apply(args.get(1).evaluate(value, record));
+            DateTimeFormatter output = to.apply(args.get(2).evaluate(value, record));
+            if (s == null || input == null || output == null) {
+                return null;
+            }
+            try {
+                TemporalAccessor parsed = input.parse(s.trim());
+                return output.format(parsed);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        };
+    }
+    
+    private static Function<Object, Pattern> patternOf(Expression arg) {
+        if (arg instanceof Constant constant) {
+            Pattern pattern = constant.value() != null ? Pattern.compile(Values.toStr(constant.value())) : null;
+            return ignored -> pattern;
+        }
+        return regex -> regex != null ? Pattern.compile(Values.toStr(regex)) : null;
+    }
+    
+    private static Function<Object, DateTimeFormatter> formatterOf(Expression arg) {
+        if (arg instanceof Constant constant) {
+            DateTimeFormatter formatter = constant.value() != null
+                    ? DateTimeFormatter.ofPattern(Values.toStr(constant.value())) : null;
+            return ignored -> formatter;
+        }
+        return format -> format != null ? DateTimeFormatter.ofPattern(Values.toStr(format)) : null;
+    }
+    
+    private static Expression comparison(Expression left, Expression right, ComparisonTest test) {
+        return (value, record) -> {
+            Integer comparison = Values.compare(left.evaluate(value, record), right.evaluate(value, record));
+            return comparison != null && test.test(comparison);
+        };
+    }
+    
+    private static Expression arithmetic(Expression left, Expression right, NumberOperator operator) {
+        return (value, record) -> {
+            BigDecimal l = Values.toNumber(left.evaluate(value, record));
+            BigDecimal r = Values.toNumber(right.evaluate(value, record));
+            return l == null || r == null ? null : operator.apply(l, r);
+        };
+    }
+    
+    private static Expression fold(Expression expression, List<Expression> operands) {
+        for (Expression operand : operands) {
+            if (!(operand instanceof Constant)) {
+                return expression;
+            }
+        }
+        return constant(expression.evaluate(null, null));
+    }
+    
+    private static Expression constant(Object value) {
+        return new Constant(value);
+    }
+    
+    private static void arity(String name, List<Expression> args, int min, int max) {
+        if (args.size() < min || args.size() > max) {
+            throw new IllegalArgumentException(
+                    "Function " + name + " expects " + (min == max ? String.valueOf(min) : min + ".." + max)
+                            + " arguments but got " + args.size());
+        }
+    }
+    
+    static String capitalize(String str) {
+        if (str.isEmpty()) {
+            return str;
+        }
+        return str.substring(0, 1).toUpperCase() + str.substring(1).toLowerCase();
+    }
+    
+    private record Constant(Object value) implements Expression {
+        @Override
+        public Object evaluate(Object ignored, GenericDataRecord record) {
+            return value;
+        }
+    }
+    
+    @FunctionalInterface
+    private interface ComparisonTest {
+        boolean test(int comparison);
+    }
+    
+    @FunctionalInterface
+    private interface NumberOperator {
+        BigDecimal apply(BigDecimal left, BigDecimal right);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,266 @@
+package com.example.batchspark.expression;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recursive-descent parser for rule expressions.
+ *
+ * <pre>
+ * or         := and ('or' and)*
+ * and        := not ('and' not)*
+ * not        := 'not' not | comparison
+ * comparison := additive (('=' | '==' | '!=' | '&lt;&gt;' | '&lt;' | '&lt;=' | '&gt;' | '&gt;=') additive)?
+ * additive   := term (('+' | '-' | '&amp;') term)*
+ * term       := unary (('*' | '/' | '%') unary)*
+ * unary      := '-' unary | primary
+ * primary    := NUMBER | 'string' | true | false | null | value | IDENT | IDENT '(' args ')' | '(' or ')'
+ * </pre>
+ */
+public final class ExpressionParser {
+    
+    private static final Set<String> TWO_CHAR_OPERATORS = Set.of("==", "!=", "<>", "<=", ">=");
+    private static final String SINGLE_CHAR_OPERATORS = "+-*/%&()<>=,";
+    private static final Set<String> COMPARISON_OPERATORS = Set.of("=", "==", "!=", "<>", "<", "<=", ">", ">=");
+    
+    private enum TokenType { NUMBER, STRING, IDENTIFIER, OPERATOR, END }
+    
+    private record Token(TokenType type, String text, int position) {}
+    
+    private final String source;
+    private final List<Token> tokens;
+    private int pos;
+    
+    private ExpressionParser(String source) {
+        this.source = source;
+        this.tokens = tokenize(source);
+    }
+    
+    public static Node parse(String source) {
+        ExpressionParser parser = new ExpressionParser(source);
+        Node node = parser.parseOr();
+        if (parser.peek().type() != TokenType.END) {
+            throw parser.error("Unexpected '" + parser.peek().text() + "'");
+        }
+        return node;
+    }
+    
+    private Node parseOr() {
+        Node left = parseAnd();
+        while (acceptKeyword("or")) {
+            left = new Node.Binary("or", left, parseAnd());
+        }
+        return left;
+    }
+    
+    private Node parseAnd() {
+        Node left = parseNot();
+        while (acceptKeyword("and")) {
+            left = new Node.Binary("and", left, parseNot());
+        }
+        return left;
+    }
+    
+    private Node parseNot() {
+        if (acceptKeyword("not")) {
+            return new Node.Unary("not", parseNot());
+        }
+        return parseComparison();
+    }
+    
+    private Node parseComparison() {
+        Node left = parseAdditive();
+        Token token = peek();
+        if (token.type() == TokenType.OPERATOR && COMPARISON_OPERATORS.contains(token.text())) {
+            pos++;
+            return new Node.Binary(token.text(), left, parseAdditive());
+        }
+        return left;
+    }
+    
+    private Node parseAdditive() {
+        Node left = parseTerm();
+        while (peekOperator("+") || peekOperator("-") || peekOperator("&")) {
+            String operator = tokens.get(pos++).text();
+            left = new Node.Binary(operator, left, parseTerm());
+        }
+        return left;
+    }
+    
+    private Node parseTerm() {
+        Node left = parseUnary();
+        while (peekOperator("*") || peekOperator("/") || peekOperator("%")) {
+            String operator = tokens.get(pos++).text();
+            left = new Node.Binary(operator, left, parseUnary());
+        }
+        return left;
+    }
+    
+    private Node parseUnary() {
+        if (peekOperator("-")) {
+            pos++;
+            return new Node.Unary("-", parseUnary());
+        }
+        return parsePrimary();
+    }
+    
+    private Node parsePrimary() {
+        Token token = tokens.get(pos++);
+        
+        switch (token.type()) {
+            case NUMBER:
+                try {
+                    return new Node.Literal(new BigDecimal(token.text()));
+                } catch (NumberFormatException e) {
+                    throw error("Invalid number '" + token.text() + "'", token);
+                }
+            
+            case STRING:
+                return new Node.Literal(token.text());
+            
+            case IDENTIFIER:
+                return parseIdentifier(token);
+            
+            case OPERATOR:
+                if (token.text().equals("(")) {
+                    Node inner = parseOr();
+                    expectOperator(")");
+                    return inner;
+                }
+                throw error("Unexpected '" + token.text() + "'", token);
+            
+            default:
+                throw error("Unexpected end of expression", token);
+        }
+    }
+    
+    private Node parseIdentifier(Token token) {
+        String name = token.text();
+        
+        if (peekOperator("(")) {
+            pos++;
+            List<Node> arguments = new ArrayList<>();
+            if (!peekOperator(")")) {
+                do {
+                    arguments.add(parseOr());
+                } while (acceptOperator(","));
+            }
+            expectOperator(")");
+            return new Node.Call(name.toLowerCase(), arguments);
+        }
+        
+        switch (name.toLowerCase()) {
+            case "true":
+                return new Node.Literal(Boolean.TRUE);
+            case "false":
+                return new Node.Literal(Boolean.FALSE);
+            case "null":
+                return new Node.Literal(null);
+            case "value":
+                return new Node.ValueRef();
+            default:
+                return new Node.ColumnRef(name);
+        }
+    }
+    
+    private Token peek() {
+        return tokens.get(pos);
+    }
+    
+    private boolean peekOperator(String operator) {
+        Token token = peek();
+        return token.type() == TokenType.OPERATOR && token.text().equals(operator);
+    }
+    
+    private boolean acceptOperator(String operator) {
+        if (peekOperator(operator)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+    
+    private void expectOperator(String operator) {
+        if (!acceptOperator(operator)) {
+            throw error("Expected '" + operator + "'");
+        }
+    }
+    
+    private boolean acceptKeyword(String keyword) {
+        Token token = peek();
+        if (token.type() == TokenType.IDENTIFIER && token.text().equalsIgnoreCase(keyword)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+    
+    private IllegalArgumentException error(String message) {
+        return error(message, peek());
+    }
+    
+    private IllegalArgumentException error(String message, Token token) {
+        return new IllegalArgumentException(
+                message + " at position " + token.position() + " in rule: " + source);
+    }
+    
+    private static List<Token> tokenize(String source) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            int start = i;
+            
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (Character.isDigit(c)
+                    || (c == '.' && i + 1 < source.length() && Character.isDigit(source.charAt(i + 1)))) {
+                while (i < source.length() && (Character.isDigit(source.charAt(i)) || source.charAt(i) == '.')) {
+                    i++;
+                }
+                tokens.add(new Token(TokenType.NUMBER, source.substring(start, i), start));
+            } else if (c == '\'') {
+                StringBuilder literal = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= source.length()) {
+                        throw new IllegalArgumentException(
+                                "Unterminated string at position " + start + " in rule: " + source);
+                    }
+                    char ch = source.charAt(i++);
+                    if (ch == '\'') {
+                        // '' is an escaped quote
+                        if (i < source.length() && source.charAt(i) == '\'') {
+                            literal.append('\'');
+                            i++;
+                            continue;
+                        }
+                        break;
+                    }
+                    literal.append(ch);
+                }
+                tokens.add(new Token(TokenType.STRING, literal.toString(), start));
+            } else if (Character.isLetter(c) || c == '_') {
+                while (i < source.length() && (Character.isLetterOrDigit(source.charAt(i)) || source.charAt(i) == '_')) {
+                    i++;
+                }
+                tokens.add(new Token(TokenType.IDENTIFIER, source.substring(start, i), start));
+            } else if (i + 1 < source.length() && TWO_CHAR_OPERATORS.contains(source.substring(i, i + 2))) {
+                tokens.add(new Token(TokenType.OPERATOR, source.substring(i, i + 2), start));
+                i += 2;
+            } else if (SINGLE_CHAR_OPERATORS.indexOf(c) >= 0) {
+                tokens.add(new Token(TokenType.OPERATOR, String.valueOf(c), start));
+                i++;
+            } else {
+                throw new IllegalArgumentException(
+                        "Unexpected character '" + c + "' at position " + i + " in rule: " + source);
+            }
+        }
+        
+        tokens.add(new Token(TokenType.END, "", source.length()));
+        return tokens;
+    }
+}
\ No newline at end of file
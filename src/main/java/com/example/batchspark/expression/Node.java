@@ -0,0 +1,24 @@
+package com.example.batchspark.expression;
+
+import java.util.List;
+
+/**
+ * Syntax tree of a rule expression. Trees are only used at compile time; rows are
+ * evaluated by the {@link Expression} lambdas built from them.
+ */
+public sealed interface Node {
+    
+    record Literal(Object value) implements Node {}
+    
+    /** The current column value, written as {@code value}. */
+    record ValueRef() implements Node {}
+    
+    /** Another column of the same record, referenced by its source column name. */
+    record ColumnRef(String name) implements Node {}
+    
+    record Unary(String operator, Node operand) implements Node {}
+    
+    record Binary(String operator, Node left, Node right) implements Node {}
+    
+    record Call(String function, List<Node> arguments) implements Node {}
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.example.batchspark.expression;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles TRANSFORMATION_RULE and VALIDATION_RULE strings into {@link Expression}s,
+ * caching the result per rule string.
+ *
+ * Rules starting with {@value #EXPRESSION_PREFIX} are expressions, e.g.
+ * {@code =lpad(trim(value), 8, '0')} or {@code =len(value) <= 20 and value != 'N/A'}.
+ * Anything else keeps its original meaning: the transformation keywords, the validation
+ * keywords, or a regex the whole value must match.
+ */
+@Component
+public class RuleCompiler {
+    
+    private static final Logger log = LoggerFactory.getLogger(RuleCompiler.class);
+    
+    public static final String EXPRESSION_PREFIX = "=";
+    
+    private static final Expression IDENTITY = (value, record) -> value;
+    private static final Expression ALWAYS_VALID = (value, record) -> Boolean.TRUE;
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[A-Za-z0-9+_.-]+@(.+)$");
+    
+    private final Map<String, Expression> transformations = new ConcurrentHashMap<>();
+    private final Map<String, Expression> validations = new ConcurrentHashMap<>();
+    
+    public static boolean isExpression(String rule) {
+        return rule != null && rule.startsWith(EXPRESSION_PREFIX);
+    }
+    
+    /**
+     * Returns the compiled transformation. It is only applied to non-null values.
+     */
+    public Expression compileTransformation(String rule) {
+        if (rule == null || rule.isEmpty()) {
+            return IDENTITY;
+        }
+        return transformations.computeIfAbsent(rule, this::buildTransformation);
+    }
+    
+    /**
+     * Returns the compiled validation, which evaluates to {@link Boolean#TRUE} for valid values.
+     */
+    public Expression compileValidation(String rule) {
+        if (rule == null || rule.isEmpty()) {
+            return ALWAYS_VALID;
+        }
+        return validations.computeIfAbsent(rule, this::buildValidation);
+    }
+    
+    private Expression buildTransformation(String rule) {
+        if (isExpression(rule)) {
+            log.debug("Compiling transformation expression: {}", rule);
+            return ExpressionCompiler.compile(ExpressionParser.parse(rule.substring(EXPRESSION_PREFIX.length())));
+        }
+        
+        switch (rule.toUpperCase()) {
+            case "UPPER":
+                return (value, record) -> value.toString().toUpperCase();
+            
+            case "LOWER":
+                return (value, record) -> value.toString().toLowerCase();
+            
+            case "TRIM":
+                return (value, record) -> value.toString().trim();
+            
+            case "CAPITALIZE":
+                return (value, record) -> ExpressionCompiler.capitalize(value.toString());
+            
+            case "TRIM_UPPER":
+                return (value, record) -> value.toString().trim().toUpperCase();
+            
+            default:
+                return IDENTITY;
+        }
+    }
+    
+    private Expression buildValidation(String rule) {
+        if (isExpression(rule)) {
+            log.debug("Compiling validation expression: {}", rule);
+            Expression expression = ExpressionCompiler.compile(ExpressionParser.parse(rule.substring(EXPRESSION_PREFIX.length())));
+            return (value, record) -> Values.isTrue(expression.evaluate(value, record));
+        }
+        
+        switch (rule.toUpperCase()) {
+            case "NOT_NULL":
+                return (value, record) -> !trimmed(value).isEmpty();
+            
+            case "NUMERIC":
+                return (value, record) -> Values.toNumber(trimmed(value)) != null;
+            
+            case "EMAIL":
+                return (value, record) -> EMAIL_PATTERN.matcher(trimmed(value)).matches();
+            
+            case "POSITIVE_NUMBER":
+                return (value, record) -> {
+                    BigDecimal number = Values.toNumber(trimmed(value));
+                    return number != null && number.compareTo(BigDecimal.ZERO) > 0;
+                };
+            
+            default:
+                // Treat as regex pattern, compiled once instead of per row
+                Pattern pattern = Pattern.compile(rule);
+                return (value, record) -> pattern.matcher(trimmed(value)).matches();
+        }
+    }
+    
+    private static String trimmed(Object value) {
+        return value != null ? value.toString().trim() : "";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,441 @@
+package com.example.batchspark.expression;
+
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.DecimalType;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.apache.spark.sql.functions.*;
+
+/**
+ * Translates TRANSFORMATION_RULE and VALIDATION_RULE strings into Spark SQL {@link Column}s with
+ * the same meaning as the {@link Expression}s built by {@link RuleCompiler}, so a load can run
+ * as distributed expressions instead of per-row lambdas.
+ *
+ * Columns are resolved through a map from source column name to the column's current
+ * expression, so a rule that references a column processed earlier sees its transformed value,
+ * as it does in the record-based path. Spark decimals have one scale per column, so numeric
+ * expressions carry the scale the row path's {@link BigDecimal} would have next to their value,
+ * and numbers used as text are rendered like {@link BigDecimal#toPlainString()}: {@code 1.50}
+ * stays {@code 1.50} and {@code round(value * 1.1, 2)} of {@code 100} is {@code 110.00}. Quotients
+ * that do not terminate keep the 6 digits of Spark's decimal division instead of the row path's
+ * 16 significant digits. Rules Spark cannot express (a non-literal rounding scale or date
+ * format) are rejected with an {@link IllegalArgumentException}, leaving the config on the
+ * batch path.
+ */
+public final class SparkRuleTranslator {
+    
+    private static final DecimalType NUMBER = DataTypes.createDecimalType(38, 10);
+    private static final int TEXT_SCALE = 10;
+    private static final String EMAIL_PATTERN = "^[A-Za-z0-9+_.-]+@(.+)$";
+    
+    private enum Kind { STRING, NUMBER, BOOLEAN }
+    
+    /**
+     * A translated expression; numbers also carry the scale of the row path's result.
+     */
+    private record Typed(Column column, Kind kind, Object literal, Column scale) {
+        Typed(Column column, Kind kind) {
+            this(column, kind, null, null);
+        }
+        
+        static Typed number(Column column, Column scale) {
+            return new Typed(column, Kind.NUMBER, null, scale);
+        }
+    }
+    
+    private SparkRuleTranslator() {}
+    
+    /**
+     * Returns the transformed value as a string column. Like the compiled transformation it is
+     * meant for non-null values only.
+     */
+    public static Column transformation(String rule, Column value, Map<String, Column> columns) {
+        if (rule == null || rule.isEmpty()) {
+            return value;
+        }
+        if (RuleCompiler.isExpression(rule)) {
+            return str(translate(parse(rule), value, columns));
+        }
+        
+        switch (rule.toUpperCase()) {
+            case "UPPER":
+                return upper(value);
+            case "LOWER":
+                return lower(value);
+            case "TRIM":
+                return trim(value);
+            case "CAPITALIZE":
+                return capitalize(value);
+            case "TRIM_UPPER":
+                return upper(trim(value));
+            default:
+                return value;
+        }
+    }
+    
+    /**
+     * Returns a non-null boolean column that is true for valid values.
+     */
+    public static Column validation(String rule, Column value, Map<String, Column> columns) {
+        if (rule == null || rule.isEmpty()) {
+            return lit(true);
+        }
+        if (RuleCompiler.isExpression(rule)) {
+            return isTrue(translate(parse(rule), value, columns));
+        }
+        
+        Column trimmed = coalesce(trim(value), lit(""));
+        switch (rule.toUpperCase()) {
+            case "NOT_NULL":
+                return trimmed.notEqual("");
+            case "NUMERIC":
+                return num(trimmed).isNotNull();
+            case "EMAIL":
+                return trimmed.rlike(EMAIL_PATTERN);
+            case "POSITIVE_NUMBER":
+                return coalesce(num(trimmed).gt(0), lit(false));
+            default:
+                return trimmed.rlike(fullMatch(checkedPattern(rule)));
+        }
+    }
+    
+    private static Node parse(String rule) {
+        return ExpressionParser.parse(rule.substring(RuleCompiler.EXPRESSION_PREFIX.length()));
+    }
+    
+    private static Typed translate(Node node, Column value, Map<String, Column> columns) {
+        if (node instanceof Node.Literal literal) {
+            return literal(literal.value());
+        }
+        if (node instanceof Node.ValueRef) {
+            return new Typed(value, Kind.STRING);
+        }
+        if (node instanceof Node.ColumnRef ref) {
+            Column column = columns.get(ref.name());
+            return column != null ? new Typed(column, Kind.STRING) : literal(null);
+        }
+        if (node instanceof Node.Unary unary) {
+            Typed operand = translate(unary.operand(), value, columns);
+            return unary.operator().equals("not")
+                    ? new Typed(not(isTrue(operand)), Kind.BOOLEAN)
+                    : Typed.number(negate(num(operand)), scale(operand));
+        }
+        if (node instanceof Node.Binary binary) {
+            return binary(binary.operator(),
+                    translate(binary.left(), value, columns), translate(binary.right(), value, columns));
+        }
+        Node.Call call = (Node.Call) node;
+        List<Typed> arguments = call.arguments().stream().map(argument -> translate(argument, value, columns)).toList();
+        return function(call.function(), arguments);
+    }
+    
+    private static Typed literal(Object value) {
+        if (value == null) {
+            return new Typed(lit(null).cast("string"), Kind.STRING, null, null);
+        }
+        if (value instanceof Boolean bool) {
+            return new Typed(lit(bool), Kind.BOOLEAN, bool, null);
+        }
+        if (value instanceof BigDecimal decimal) {
+            return new Typed(lit(decimal).cast(NUMBER), Kind.NUMBER, decimal, lit(decimal.scale()));
+        }
+        return new Typed(lit(value.toString()), Kind.STRING, value.toString(), null);
+    }
+    
+    private static Typed binary(String operator, Typed left, Typed right) {
+        switch (operator) {
+            case "or":
+                return new Typed(isTrue(left).or(isTrue(right)), Kind.BOOLEAN);
+            case "and":
+                return new Typed(isTrue(left).and(isTrue(right)), Kind.BOOLEAN);
+            case "=":
+            case "==":
+                return new Typed(equal(left, right), Kind.BOOLEAN);
+            case "!=":
+            case "<>":
+                return new Typed(not(equal(left, right)), Kind.BOOLEAN);
+            case "<":
+                return comparison(left, right, "<");
+            case "<=":
+                return comparison(left, right, "<=");
+            case ">":
+                return comparison(left, right, ">");
+            case ">=":
+                return comparison(left, right, ">=");
+            case "&":
+                return new Typed(concat(coalesce(str(left), lit("")), coalesce(str(right), lit(""))), Kind.STRING);
+            case "+":
+                return Typed.number(num(left).plus(num(right)), greatest(scale(left), scale(right)));
+            case "-":
+                return Typed.number(num(left).minus(num(right)), greatest(scale(left), scale(right)));
+            case "*":
+                return Typed.number(num(left).multiply(num(right)), scale(left).plus(scale(right)));
+            case "/":
+                // An exact quotient keeps at least the preferred scale of BigDecimal.divide
+                return Typed.number(when(num(right).notEqual(0), num(left).divide(num(right))),
+                        greatest(scale(left).minus(scale(right)), lit(0)));
+            case "%":
+                return Typed.number(when(num(right).notEqual(0), num(left).mod(num(right))), greatest(scale(left), scale(right)));
+            default:
+                throw new IllegalArgumentException("Unknown operator: " + operator);
+        }
+    }
+    
+    private static Typed function(String name, List<Typed> args) {
+        switch (name) {
+            case "upper":
+                return new Typed(upper(str(arg(name, args, 1, 1))), Kind.STRING);
+            case "lower":
+                return new Typed(lower(str(arg(name, args, 1, 1))), Kind.STRING);
+            case "trim":
+                return new Typed(trim(str(arg(name, args, 1, 1))), Kind.STRING);
+            case "capitalize":
+                return new Typed(capitalize(str(arg(name, args, 1, 1))), Kind.STRING);
+            case "length":
+            case "len":
+                return Typed.number(length(str(arg(name, args, 1, 1))).cast(NUMBER), lit(0));
+            case "str":
+                return new Typed(str(arg(name, args, 1, 1)), Kind.STRING);
+            case "num":
+                return Typed.number(num(arg(name, args, 1, 1)), scale(args.get(0)));
+            case "abs":
+                return Typed.number(abs(num(arg(name, args, 1, 1))), scale(args.get(0)));
+            case "round":
+                return round(name, args);
+            case "substr":
+                return substr(name, args);
+            case "concat": {
+                arg(name, args, 1, Integer.MAX_VALUE);
+                // concat_ws skips nulls, as the row path does
+                return new Typed(concat_ws("", args.stream().map(SparkRuleTranslator::str).toArray(Column[]::new)), Kind.STRING);
+            }
+            case "lpad":
+            case "rpad":
+                return pad(name, args);
+            case "replace": {
+                arg(name, args, 3, 3);
+                Column s = str(args.get(0));
+                Column target = str(args.get(1));
+                return new Typed(when(s.isNull().or(target.isNull()), s)
+                        .otherwise(call_function("replace", s, target, coalesce(str(args.get(2)), lit("")))), Kind.STRING);
+            }
+            case "regex_replace": {
+                arg(name, args, 3, 3);
+                Column s = str(args.get(0));
+                Column pattern = pattern(args.get(1));
+                return new Typed(when(s.isNull().or(pattern.isNull()), s)
+                        .otherwise(regexp_replace(s, pattern, coalesce(str(args.get(2)), lit("")))), Kind.STRING);
+            }
+            case "matches": {
+                arg(name, args, 2, 2);
+                Typed pattern = args.get(1);
+                Column fullPattern = pattern.literal() != null
+                        ? lit(fullMatch(checkedPattern(pattern.literal().toString())))
+                        : concat(lit("^(?:"), str(pattern), lit(")\\z"));
+                return new Typed(coalesce(call_function("rlike", str(args.get(0)), fullPattern), lit(false)), Kind.BOOLEAN);
+            }
+            case "is_empty":
+                return new Typed(isEmpty(arg(name, args, 1, 1)), Kind.BOOLEAN);
+            case "is_number":
+                return new Typed(num(arg(name, args, 1, 1)).isNotNull(), Kind.BOOLEAN);
+            case "coalesce": {
+                arg(name, args, 1, Integer.MAX_VALUE);
+                Column result = null;
+                for (Typed candidate : args) {
+                    Column present = not(isEmpty(candidate));
+                    result = result == null ? when(present, str(candidate)) : result.when(present, str(candidate));
+                }
+                return new Typed(result, Kind.STRING);
+            }
+            case "if": {
+                arg(name, args, 3, 3);
+                Typed then = args.get(1);
+                Typed otherwise = args.get(2);
+                if (then.kind() == Kind.NUMBER && otherwise.kind() == Kind.NUMBER) {
+                    Column condition = isTrue(args.get(0));
+                    return Typed.number(when(condition, then.column()).otherwise(otherwise.column()),
+                            when(condition, then.scale()).otherwise(otherwise.scale()));
+                }
+                if (then.kind() == otherwise.kind() && then.kind() != Kind.STRING) {
+                    return new Typed(when(isTrue(args.get(0)), then.column()).otherwise(otherwise.column()), then.kind());
+                }
+                return new Typed(when(isTrue(args.get(0)), str(then)).otherwise(str(otherwise)), Kind.STRING);
+            }
+            case "date":
+                return date(name, args);
+            default:
+                throw new IllegalArgumentException("Unknown function: " + name);
+        }
+    }
+    
+    private static Typed round(String name, List<Typed> args) {
+        arg(name, args, 1, 2);
+        if (args.size() == 1) {
+            return Typed.number(org.apache.spark.sql.functions.round(num(args.get(0)), 0), lit(0));
+        }
+        if (!(args.get(1).literal() instanceof BigDecimal scale)) {
+            throw new IllegalArgumentException("round needs a literal scale to run on Spark");
+        }
+        // Spark rounds decimals half up, like the row path
+        return Typed.number(org.apache.spark.sql.functions.round(num(args.get(0)), scale.intValue()), lit(scale.intValue()));
+    }
+    
+    private static Typed substr(String name, List<Typed> args) {
+        arg(name, args, 2, 3);
+        Column s = str(args.get(0));
+        Column start = num(args.get(1)).cast("int");
+        Column from = least(greatest(start, lit(0)), length(s));
+        Column to = args.size() == 2
+                ? length(s)
+                : coalesce(least(from.plus(greatest(num(args.get(2)).cast("int"), lit(0))), length(s)), length(s));
+        // Spark positions are 1-based; the row path uses 0-based offsets
+        return new Typed(when(start.isNotNull(), s.substr(from.plus(1), to.minus(from))), Kind.STRING);
+    }
+    
+    private static Typed pad(String name, List<Typed> args) {
+        arg(name, args, 2, 3);
+        Column s = str(args.get(0));
+        Column width = num(args.get(1)).cast("int");
+        Column padding = args.size() == 3 ? str(args.get(2)) : lit(" ");
+        // The row path leaves values at or above the width unchanged, while Spark's lpad/rpad truncate
+        Column unchanged = s.isNull().or(width.isNull()).or(padding.isNull()).or(padding.equalTo(""))
+                .or(length(s).geq(width));
+        return new Typed(when(unchanged, s).otherwise(call_function(name, s, width, padding)), Kind.STRING);
+    }
+    
+    private static Typed date(String name, List<Typed> args) {
+        arg(name, args, 3, 3);
+        if (!(args.get(1).literal() instanceof String from) || !(args.get(2).literal() instanceof String to)) {
+            throw new IllegalArgumentException("date needs literal formats to run on Spark");
+        }
+        return new Typed(date_format(to_timestamp(trim(str(args.get(0))), from), to), Kind.STRING);
+    }
+    
+    private static Typed comparison(Typed left, Typed right, String operator) {
+        Column leftNumber = num(left);
+        Column rightNumber = num(right);
+        Column numeric = compare(leftNumber, rightNumber, operator);
+        Column text = compare(str(left), str(right), operator);
+        Column result = when(leftNumber.isNotNull().and(rightNumber.isNotNull()), numeric).otherwise(text);
+        return new Typed(coalesce(result, lit(false)), Kind.BOOLEAN);
+    }
+    
+    private static Column compare(Column left, Column right, String operator) {
+        switch (operator) {
+            case "<":
+                return left.lt(right);
+            case "<=":
+                return left.leq(right);
+            case ">":
+                return left.gt(right);
+            default:
+                return left.geq(right);
+        }
+    }
+    
+    private static Column equal(Typed left, Typed right) {
+        Column leftNumber = num(left);
+        Column rightNumber = num(right);
+        Column leftNull = left.column().isNull();
+        Column rightNull = right.column().isNull();
+        return when(leftNull.or(rightNull), leftNull.and(rightNull))
+                .when(leftNumber.isNotNull().and(rightNumber.isNotNull()), leftNumber.equalTo(rightNumber))
+                .otherwise(str(left).equalTo(str(right)));
+    }
+    
+    private static Column isTrue(Typed value) {
+        if (value.kind() == Kind.BOOLEAN) {
+            return coalesce(value.column(), lit(false));
+        }
+        return coalesce(lower(trim(str(value))).equalTo("true"), lit(false));
+    }
+    
+    private static Column isEmpty(Typed value) {
+        Column s = str(value);
+        return s.isNull().or(trim(s).equalTo(""));
+    }
+    
+    private static Column num(Typed value) {
+        if (value.kind() == Kind.NUMBER) {
+            return value.column();
+        }
+        return num(str(value));
+    }
+    
+    private static Column num(Column text) {
+        // Casts of malformed numbers yield null, matching the row path's lenient conversion
+        return trim(text).cast(NUMBER);
+    }
+    
+    /**
+     * Scale of the BigDecimal the row path computes for a value: the scale of a number, or of
+     * the number a text parses to ({@code 1.50} has scale 2, {@code 1E+3} scale -3).
+     */
+    private static Column scale(Typed value) {
+        if (value.kind() == Kind.NUMBER) {
+            return value.scale();
+        }
+        Column text = trim(str(value));
+        Column fractionDigits = length(regexp_extract(text, "\\.(\\d*)", 1));
+        Column exponent = coalesce(regexp_extract(text, "[eE]([+-]?\\d+)$", 1).cast("int"), lit(0));
+        return fractionDigits.minus(exponent);
+    }
+    
+    private static Column str(Typed value) {
+        if (value.kind() != Kind.NUMBER) {
+            return value.column().cast("string");
+        }
+        // Built from the integral digits, as a decimal cast to string can use exponent notation
+        Column number = value.column();
+        Column digits = abs(number).multiply(lit(BigDecimal.TEN.pow(TEXT_SCALE))).cast(DataTypes.createDecimalType(38, 0)).cast("string");
+        Column padded = lpad(digits, TEXT_SCALE + 1, "0");
+        Column integral = padded.substr(lit(1), length(padded).minus(TEXT_SCALE));
+        Column fraction = regexp_replace(substring(padded, -TEXT_SCALE, TEXT_SCALE), "0+$", "");
+        // Trailing zeros within the scale are kept, as BigDecimal.toPlainString does
+        Column minScale = least(greatest(value.scale(), lit(0)), lit(TEXT_SCALE));
+        fraction = when(length(fraction).geq(minScale), fraction).otherwise(call_function("rpad", fraction, minScale, lit("0")));
+        Column text = concat(when(number.lt(0), lit("-")).otherwise(lit("")), integral,
+                when(fraction.equalTo(""), lit("")).otherwise(concat(lit("."), fraction)));
+        return when(number.isNotNull(), text);
+    }
+    
+    private static Column pattern(Typed value) {
+        if (value.literal() != null) {
+            checkedPattern(value.literal().toString());
+        }
+        return str(value);
+    }
+    
+    private static Column capitalize(Column value) {
+        return concat(upper(substring(value, 1, 1)), lower(value.substr(lit(2), length(value))));
+    }
+    
+    private static String checkedPattern(String regex) {
+        try {
+            Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid regex in rule: " + regex, e);
+        }
+        return regex;
+    }
+    
+    private static String fullMatch(String regex) {
+        // rlike finds a match anywhere, the row path requires the whole value to match
+        return "^(?:" + regex + ")\\z";
+    }
+    
+    private static Typed arg(String name, List<Typed> args, int min, int max) {
+        if (args.size() < min || args.size() > max) {
+            throw new IllegalArgumentException(
+                    "Function " + name + " expects " + (min == max ? String.valueOf(min) : min + ".." + max)
+                            + " arguments but got " + args.size());
+        }
+        return args.isEmpty() ? null : args.get(0);
+    }
+}
\ No newline at end of file
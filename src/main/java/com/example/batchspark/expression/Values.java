@@ -0,0 +1,75 @@
+package com.example.batchspark.expression;
+
+import java.math.BigDecimal;
+
+/**
+ * Conversions shared by compiled expressions. Values that cannot be converted become
+ * null, so a bad input yields a null result or a failed validation instead of an exception.
+ */
+final class Values {
+    
+    private Values() {}
+    
+    static String toStr(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof BigDecimal decimal) {
+            return decimal.toPlainString();
+        }
+        return value.toString();
+    }
+    
+    static BigDecimal toNumber(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        String stringValue = value.toString().trim();
+        if (stringValue.isEmpty()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(stringValue);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    static boolean isTrue(Object value) {
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        return value != null && "true".equalsIgnoreCase(value.toString().trim());
+    }
+    
+    static boolean isEmpty(Object value) {
+        return value == null || value.toString().trim().isEmpty();
+    }
+    
+    static boolean equal(Object left, Object right) {
+        if (left == null || right == null) {
+            return left == right;
+        }
+        BigDecimal leftNumber = toNumber(left);
+        BigDecimal rightNumber = toNumber(right);
+        if (leftNumber != null && rightNumber != null) {
+            return leftNumber.compareTo(rightNumber) == 0;
+        }
+        return toStr(left).equals(toStr(right));
+    }
+    
+    static Integer compare(Object left, Object right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        BigDecimal leftNumber = toNumber(left);
+        BigDecimal rightNumber = toNumber(right);
+        if (leftNumber != null && rightNumber != null) {
+            return leftNumber.compareTo(rightNumber);
+        }
+        return toStr(left).compareTo(toStr(right));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.example.batchspark.model;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Mergeable aggregate state of one column of an analytics target table, together with the
+ * high-water mark of the rows already folded into it.
+ */
+@Entity
+@Table(name = "ANALYTICS_STATE")
+public class AnalyticsState {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "analytics_state_seq")
+    @SequenceGenerator(name = "analytics_state_seq", sequenceName = "ANALYTICS_STATE_SEQ", allocationSize = 1)
+    private Long id;
+    
+    @Column(name = "TABLE_NAME", nullable = false)
+    private String tableName;
+    
+    @Column(name = "COLUMN_NAME", nullable = false)
+    private String columnName;
+    
+    @Column(name = "DATA_TYPE")
+    private String dataType; // Spark type name, e.g. string, decimal(10,2), timestamp
+    
+    @Column(name = "ROW_COUNT")
+    private Long rowCount = 0L;
+    
+    @Column(name = "NON_NULL_COUNT")
+    private Long nonNullCount = 0L;
+    
+    @Column(name = "SUM_VALUE", precision = 38, scale = 10)
+    private BigDecimal sumValue; // Numeric columns only
+    
+    @Column(name = "SUM_SQUARES")
+    private Double sumSquares; // Numeric columns only
+    
+    @Column(name = "MIN_VALUE", length = 4000)
+    private String minValue;
+    
+    @Column(name = "MAX_VALUE", length = 4000)
+    private String maxValue;
+    
+    @Lob
+    @Column(name = "DISTINCT_SKETCH")
+    private byte[] distinctSketch; // Serialized HLL sketch
+    
+    @Column(name = "DISTINCT_ESTIMATE")
+    private Long distinctEstimate;
+    
+    @Column(name = "HIGH_WATER_ID")
+    private Long highWaterId;
+    
+    @Column(name = "HIGH_WATER_DATE")
+    private LocalDateTime highWaterDate;
+    
+    @Column(name = "SOURCE_MIN_ID")
+    private Long sourceMinId; // Smallest ID aggregated
+    
+    @Column(name = "SOURCE_MAX_UPDATED")
+    private LocalDateTime sourceMaxUpdated; // Latest UPDATED_DATE of the aggregated rows
+    
+    @Column(name = "UPDATED_DATE")
+    private LocalDateTime updatedDate;
+    
+    // Constructors
+    public AnalyticsState() {}
+    
+    public AnalyticsState(String tableName, String columnName, String dataType) {
+        this.tableName = tableName;
+        this.columnName = columnName;
+        this.dataType = dataType;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public String getTableName() { return tableName; }
+    public void setTableName(String tableName) { this.tableName = tableName; }
+    
+    public String getColumnName() { return columnName; }
+    public void setColumnName(String columnName) { this.columnName = columnName; }
+    
+    public String getDataType() { return dataType; }
+    public void setDataType(String dataType) { this.dataType = dataType; }
+    
+    public Long getRowCount() { return rowCount; }
+    public void setRowCount(Long rowCount) { this.rowCount = rowCount; }
+    
+    public Long getNonNullCount() { return nonNullCount; }
+    public void setNonNullCount(Long nonNullCount) { this.nonNullCount = nonNullCount; }
+    
+    public BigDecimal getSumValue() { return sumValue; }
+    public void setSumValue(BigDecimal sumValue) { this.sumValue = sumValue; }
+    
+    public Double getSumSquares() { return sumSquares; }
+    public void setSumSquares(Double sumSquares) { this.sumSquares = sumSquares; }
+    
+    public String getMinValue() { return minValue; }
+    public void setMinValue(String minValue) { this.minValue = minValue; }
+    
+    public String getMaxValue() { return maxValue; }
+    public void setMaxValue(String maxValue) { this.maxValue = maxValue; }
+    
+    public byte[] getDistinctSketch() { return distinctSketch; }
+    public void setDistinctSketch(byte[] distinctSketch) { this.distinctSketch = distinctSketch; }
+    
+    public Long getDistinctEstimate() { return distinctEstimate; }
+    public void setDistinctEstimate(Long distinctEstimate) { this.distinctEstimate = distinctEstimate; }
+    
+    public Long getHighWaterId() { return highWaterId; }
+    public void setHighWaterId(Long highWaterId) { this.highWaterId = highWaterId; }
+    
+    public LocalDateTime getHighWaterDate() { return highWaterDate; }
+    public void setHighWaterDate(LocalDateTime highWaterDate) { this.highWaterDate = highWaterDate; }
+    
+    public Long getSourceMinId() { return sourceMinId; }
+    public void setSourceMinId(Long sourceMinId) { this.sourceMinId = sourceMinId; }
+    
+    public LocalDateTime getSourceMaxUpdated() { return sourceMaxUpdated; }
+    public void setSourceMaxUpdated(LocalDateTime sourceMaxUpdated) { this.sourceMaxUpdated = sourceMaxUpdated; }
+    
+    public LocalDateTime getUpdatedDate() { return updatedDate; }
+    public void setUpdatedDate(LocalDateTime updatedDate) { this.updatedDate = updatedDate; }
+    
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedDate = LocalDateTime.now();
+    }
+}
\ No newline at end of file
@@ -33,6 +33,12 @@ public class ColumnConfig {
     @Column(name = "MAX_LENGTH")
     private Integer maxLength;
     
+    @Column(name = "NUMERIC_PRECISION")
+    private Integer numericPrecision; // NUMBER/DECIMAL only, defaults to 19
+    
+    @Column(name = "NUMERIC_SCALE")
+    private Integer numericScale; // NUMBER/DECIMAL only, defaults to 2
+    
     @Column(name = "IS_NULLABLE")
     private Boolean isNullable = true;
     
@@ -43,15 +49,42 @@ public class ColumnConfig {
     @NotNull(message = "Column order is required")
     private Integer columnOrder;
     
-    @Column(name = "TRANSFORMATION_RULE")
+    @Column(name = "TRANSFORMATION_RULE", length = 4000)
     private String transformationRule; // UPPER, LOWER, TRIM, etc.
     
-    @Column(name = "VALIDATION_RULE")
+    @Column(name = "VALIDATION_RULE", length = 4000)
     private String validationRule; // NOT_NULL, REGEX, RANGE, etc.
     
     @Column(name = "IS_PRIMARY_KEY")
     private Boolean isPrimaryKey = false;
     
+    @Column(name = "LOOKUP_TABLE")
+    private String lookupTable; // Reference table the value must exist in
+    
+    @Column(name = "LOOKUP_KEY_COLUMN")
+    private String lookupKeyColumn;
+    
+    @Column(name = "LOOKUP_VALUE_COLUMN")
+    private String lookupValueColumn; // Optional, replaces the value when set
+    
+    @Column(name = "LOOKUP_MODE")
+    private String lookupMode = "LAZY"; // PRELOAD, LAZY
+    
+    @Column(name = "LOOKUP_CACHE_SIZE")
+    private Integer lookupCacheSize;
+    
+    @Column(name = "REFERENCES_TABLE")
+    private String referencesTable; // Target table of another config this column is a foreign key to
+    
+    @Column(name = "REFERENCES_COLUMN")
+    private String referencesColumn; // Optional, defaults to the referenced config's primary key
+    
+    @Column(name = "IS_PARTITION_KEY")
+    private Boolean isPartitionKey = false; // Partitions the target table by the FILE_CONFIG's PARTITION_SCHEME
+    
+    @Column(name = "INDEX_NAME")
+    private String indexName; // Columns sharing a name form one index, in column order
+    
     // Constructors
     public ColumnConfig() {}
     
@@ -81,6 +114,12 @@ public class ColumnConfig {
     public Integer getMaxLength() { return maxLength; }
     public void setMaxLength(Integer maxLength) { this.maxLength = maxLength; }
     
+    public Integer getNumericPrecision() { return numericPrecision; }
+    public void setNumericPrecision(Integer numericPrecision) { this.numericPrecision = numericPrecision; }
+    
+    public Integer getNumericScale() { return numericScale; }
+    public void setNumericScale(Integer numericScale) { this.numericScale = numericScale; }
+    
     public Boolean getIsNullable() { return isNullable; }
     public void setIsNullable(Boolean isNullable) { this.isNullable = isNullable; }
     
@@ -98,4 +137,53 @@ public class ColumnConfig {
     
     public Boolean getIsPrimaryKey() { return isPrimaryKey; }
     public void setIsPrimaryKey(Boolean isPrimaryKey) { this.isPrimaryKey = isPrimaryKey; }
+    
+    public String getLookupTable() { return lookupTable; }
+    public void setLookupTable(String lookupTable) { this.lookupTable = lookupTable; }
+    
+    public String getLookupKeyColumn() { return lookupKeyColumn; }
+    public void setLookupKeyColumn(String lookupKeyColumn) { this.lookupKeyColumn = lookupKeyColumn; }
+    
+    public String getLookupValueColumn() { return lookupValueColumn; }
+    public void setLookupValueColumn(String lookupValueColumn) { this.lookupValueColumn = lookupValueColumn; }
+    
+    public String getLookupMode() { return lookupMode; }
+    public void setLookupMode(String lookupMode) { this.lookupMode = lookupMode; }
+    
+    public Integer getLookupCacheSize() { return lookupCacheSize; }
+    public void setLookupCacheSize(Integer lookupCacheSize) { this.lookupCacheSize = lookupCacheSize; }
+    
+    public String getReferencesTable() { return referencesTable; }
+    public void setReferencesTable(String referencesTable) { this.referencesTable = referencesTable; }
+    
+    public String getReferencesColumn() { return referencesColumn; }
+    public void setReferencesColumn(String referencesColumn) { this.referencesColumn = referencesColumn; }
+    
+    public Boolean getIsPartitionKey() { return isPartitionKey; }
+    public void setIsPartitionKey(Boolean isPartitionKey) { this.isPartitionKey = isPartitionKey; }
+    
+    public String getIndexName() { return indexName; }
+    public void setIndexName(String indexName) { this.indexName = indexName; }
+    
+    /**
+     * Precision of the column's NUMBER type in the target table.
+     */
+    public int precision() {
+        return numericPrecision != null ? numericPrecision : 19;
+    }
+    
+    /**
+     * Scale of the column's NUMBER type in the target table.
+     */
+    public int scale() {
+        return numericScale != null ? numericScale : 2;
+    }
+    
+    public boolean hasReference() {
+        return referencesTable != null && !referencesTable.isEmpty();
+    }
+    
+    public boolean hasLookup() {
+        return lookupTable != null && !lookupTable.isEmpty() && lookupKeyColumn != null && !lookupKeyColumn.isEmpty();
+    }
 }
\ No newline at end of file
@@ -5,13 +5,17 @@ import java.math.BigDecimal;
 import java.util.Objects;
 
 @Entity
-@Table(name = "employee_analytics")
+@Table(name = "employee_analytics",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"config_name", "department"}))
 public class EmployeeAnalytics {
     
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
+    @Column(name = "config_name")
+    private String configName; // Config whose loads the group summarizes
+    
     @Column(name = "department")
     private String department;
     
@@ -30,6 +34,9 @@ public class EmployeeAnalytics {
     @Column(name = "total_salary")
     private BigDecimal totalSalary;
     
+    @Column(name = "value_count")
+    private Long valueCount; // Rows with a value, the divisor of avg_salary
+    
     // Default constructor
     public EmployeeAnalytics() {}
     
@@ -62,6 +69,9 @@ public class EmployeeAnalytics {
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
     
+    public String getConfigName() { return configName; }
+    public void setConfigName(String configName) { this.configName = configName; }
+    
     public String getDepartment() { return department; }
     public void setDepartment(String department) { this.department = department; }
     
@@ -80,6 +90,9 @@ public class EmployeeAnalytics {
     public BigDecimal getTotalSalary() { return totalSalary; }
     public void setTotalSalary(BigDecimal totalSalary) { this.totalSalary = totalSalary; }
     
+    public Long getValueCount() { return valueCount; }
+    public void setValueCount(Long valueCount) { this.valueCount = valueCount; }
+    
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -98,6 +111,7 @@ public class EmployeeAnalytics {
     public String toString() {
         return "EmployeeAnalytics{" +
                 "id=" + id +
+                ", configName='" + configName + '\'' +
                 ", department='" + department + '\'' +
                 ", employeeCount=" + employeeCount +
                 ", avgSalary=" + avgSalary +
@@ -40,6 +40,54 @@ public class FileConfig {
     @Column(name = "IS_ACTIVE")
     private Boolean isActive = true;
     
+    @Column(name = "SPARK_READ_PREDICATES", length = 4000)
+    private String sparkReadPredicates; // Semicolon-separated WHERE clauses, one Spark partition each
+    
+    @Column(name = "AGGREGATE_GROUP_COLUMN")
+    private String aggregateGroupColumn; // Target column to group the load-time summary by
+    
+    @Column(name = "AGGREGATE_VALUE_COLUMN")
+    private String aggregateValueColumn; // Numeric target column summarized per group
+    
+    @Column(name = "CONFIG_VERSION")
+    private Integer configVersion = 1; // Bump to invalidate analytics computed under earlier settings
+    
+    @Column(name = "LOAD_ENGINE")
+    private String loadEngine = "AUTO"; // BATCH, SPARK, AUTO (by source file size)
+    
+    @Column(name = "INGESTION_MODE")
+    private String ingestionMode = "BATCH"; // BATCH, STREAMING (SOURCE_FILE_PATH is watched as a directory)
+    
+    @Column(name = "READ_MODE")
+    private String readMode = "FULL"; // FULL, TAIL (only lines appended since the last run)
+    
+    @Column(name = "DELTA_LOAD")
+    private Boolean deltaLoad = false; // Source is a full snapshot; write only its changes, keyed by IS_PRIMARY_KEY columns
+    
+    @Column(name = "PARENT_CONFIG_ID")
+    private Long parentConfigId; // Set on child configs, which are loaded by their parent's run
+    
+    @Column(name = "DISCRIMINATOR_POSITION")
+    private Integer discriminatorPosition; // 1-based field routing each line of a mixed-record file to a child config
+    
+    @Column(name = "DISCRIMINATOR_VALUE")
+    private String discriminatorValue; // Value of the parent's discriminator field selecting this child config
+    
+    @Column(name = "PARTITION_SCHEME")
+    private String partitionScheme = "NONE"; // NONE, RANGE, LIST, HASH on the IS_PARTITION_KEY column
+    
+    @Column(name = "PARTITION_INTERVAL")
+    private String partitionInterval; // RANGE only: DAY, MONTH, YEAR for date keys, a width for numeric keys
+    
+    @Column(name = "PARTITION_COUNT")
+    private Integer partitionCount; // HASH only, defaults to 16
+    
+    @Column(name = "TABLE_COMPRESSION")
+    private String tableCompression; // BASIC, ADVANCED, QUERY_LOW, QUERY_HIGH, ARCHIVE_LOW, ARCHIVE_HIGH
+    
+    @Column(name = "JOB_PRIORITY")
+    private Integer jobPriority = 5; // 0-9, queued jobs of higher priority are started first
+    
     @Column(name = "CREATED_DATE")
     private LocalDateTime createdDate;
     
@@ -49,6 +97,9 @@ public class FileConfig {
     @OneToMany(mappedBy = "fileConfig", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<ColumnConfig> columnConfigs;
     
+    @Transient
+    private List<FileConfig> childConfigs = List.of(); // Loaded for routing parents before a run
+    
     // Constructors
     public FileConfig() {}
     
@@ -83,6 +134,88 @@ public class FileConfig {
     public Boolean getIsActive() { return isActive; }
     public void setIsActive(Boolean isActive) { this.isActive = isActive; }
     
+    public String getSparkReadPredicates() { return sparkReadPredicates; }
+    public void setSparkReadPredicates(String sparkReadPredicates) { this.sparkReadPredicates = sparkReadPredicates; }
+    
+    public String getAggregateGroupColumn() { return aggregateGroupColumn; }
+    public void setAggregateGroupColumn(String aggregateGroupColumn) { this.aggregateGroupColumn = aggregateGroupColumn; }
+    
+    public String getAggregateValueColumn() { return aggregateValueColumn; }
+    public void setAggregateValueColumn(String aggregateValueColumn) { this.aggregateValueColumn = aggregateValueColumn; }
+    
+    public boolean hasAggregation() {
+        return aggregateGroupColumn != null && !aggregateGroupColumn.isEmpty()
+                && aggregateValueColumn != null && !aggregateValueColumn.isEmpty();
+    }
+    
+    public Integer getConfigVersion() { return configVersion; }
+    public void setConfigVersion(Integer configVersion) { this.configVersion = configVersion; }
+    
+    public String getLoadEngine() { return loadEngine; }
+    public void setLoadEngine(String loadEngine) { this.loadEngine = loadEngine; }
+    
+    public String getIngestionMode() { return ingestionMode; }
+    public void setIngestionMode(String ingestionMode) { this.ingestionMode = ingestionMode; }
+    
+    public String getReadMode() { return readMode; }
+    public void setReadMode(String readMode) { this.readMode = readMode; }
+    
+    public Boolean getDeltaLoad() { return deltaLoad; }
+    public void setDeltaLoad(Boolean deltaLoad) { this.deltaLoad = deltaLoad; }
+    
+    public Long getParentConfigId() { return parentConfigId; }
+    public void setParentConfigId(Long parentConfigId) { this.parentConfigId = parentConfigId; }
+    
+    public Integer getDiscriminatorPosition() { return discriminatorPosition; }
+    public void setDiscriminatorPosition(Integer discriminatorPosition) { this.discriminatorPosition = discriminatorPosition; }
+    
+    public String getDiscriminatorValue() { return discriminatorValue; }
+    public void setDiscriminatorValue(String discriminatorValue) { this.discriminatorValue = discriminatorValue; }
+    
+    public String getPartitionScheme() { return partitionScheme; }
+    public void setPartitionScheme(String partitionScheme) { this.partitionScheme = partitionScheme; }
+    
+    public String getPartitionInterval() { return partitionInterval; }
+    public void setPartitionInterval(String partitionInterval) { this.partitionInterval = partitionInterval; }
+    
+    public Integer getPartitionCount() { return partitionCount; }
+    public void setPartitionCount(Integer partitionCount) { this.partitionCount = partitionCount; }
+    
+    public String getTableCompression() { return tableCompression; }
+    public void setTableCompression(String tableCompression) { this.tableCompression = tableCompression; }
+    
+    public Integer getJobPriority() { return jobPriority; }
+    public void setJobPriority(Integer jobPriority) { this.jobPriority = jobPriority; }
+    
+    public boolean isPartitioned() {
+        return partitionScheme != null && !partitionScheme.isEmpty() && !"NONE".equalsIgnoreCase(partitionScheme);
+    }
+    
+    /**
+     * The column flagged IS_PARTITION_KEY, or null when there is none.
+     */
+    public ColumnConfig partitionKeyColumn() {
+        if (columnConfigs == null) {
+            return null;
+        }
+        return columnConfigs.stream()
+                .filter(column -> Boolean.TRUE.equals(column.getIsPartitionKey()))
+                .findFirst()
+                .orElse(null);
+    }
+    
+    public boolean isRouting() {
+        return discriminatorPosition != null;
+    }
+    
+    /**
+     * The configs whose tables a run of this config loads: its child configs when it routes
+     * records by a discriminator, otherwise the config itself.
+     */
+    public List<FileConfig> targetConfigs() {
+        return isRouting() ? childConfigs : List.of(this);
+    }
+    
     public LocalDateTime getCreatedDate() { return createdDate; }
     public void setCreatedDate(LocalDateTime createdDate) { this.createdDate = createdDate; }
     
@@ -92,6 +225,9 @@ public class FileConfig {
     public List<ColumnConfig> getColumnConfigs() { return columnConfigs; }
     public void setColumnConfigs(List<ColumnConfig> columnConfigs) { this.columnConfigs = columnConfigs; }
     
+    public List<FileConfig> getChildConfigs() { return childConfigs; }
+    public void setChildConfigs(List<FileConfig> childConfigs) { this.childConfigs = childConfigs; }
+    
     @PrePersist
     protected void onCreate() {
         createdDate = LocalDateTime.now();
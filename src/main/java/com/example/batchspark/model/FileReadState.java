@@ -0,0 +1,97 @@
+package com.example.batchspark.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * How far the source file of a TAIL config has been loaded, and which file that was: the
+ * file system key (device and inode on Unix) and a hash of its first bytes, so a rotated or
+ * truncated file is recognized.
+ */
+@Entity
+@Table(name = "FILE_READ_STATE")
+public class FileReadState {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "file_read_state_seq")
+    @SequenceGenerator(name = "file_read_state_seq", sequenceName = "FILE_READ_STATE_SEQ", allocationSize = 1)
+    private Long id;
+    
+    @Column(name = "CONFIG_NAME", unique = true, nullable = false)
+    private String configName;
+    
+    @Column(name = "FILE_PATH", nullable = false)
+    private String filePath;
+    
+    @Column(name = "FILE_KEY")
+    private String fileKey; // Null on file systems without file keys
+    
+    @Column(name = "FILE_SIZE")
+    private Long fileSize;
+    
+    @Column(name = "LAST_MODIFIED")
+    private LocalDateTime lastModified;
+    
+    @Column(name = "COMMITTED_OFFSET")
+    private Long committedOffset = 0L; // Byte offset after the last loaded line
+    
+    @Column(name = "HEAD_LENGTH")
+    private Integer headLength = 0;
+    
+    @Column(name = "HEAD_HASH")
+    private String headHash; // SHA-256 of the first HEAD_LENGTH bytes
+    
+    @Column(name = "LOADED_LINES")
+    private Integer loadedLines = 0; // Lines past the committed offset loaded by an incomplete run
+    
+    @Column(name = "UPDATED_DATE")
+    private LocalDateTime updatedDate;
+    
+    // Constructors
+    public FileReadState() {}
+    
+    public FileReadState(String configName) {
+        this.configName = configName;
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public String getConfigName() { return configName; }
+    public void setConfigName(String configName) { this.configName = configName; }
+    
+    public String getFilePath() { return filePath; }
+    public void setFilePath(String filePath) { this.filePath = filePath; }
+    
+    public String getFileKey() { return fileKey; }
+    public void setFileKey(String fileKey) { this.fileKey = fileKey; }
+    
+    public Long getFileSize() { return fileSize; }
+    public void setFileSize(Long fileSize) { this.fileSize = fileSize; }
+    
+    public LocalDateTime getLastModified() { return lastModified; }
+    public void setLastModified(LocalDateTime lastModified) { this.lastModified = lastModified; }
+    
+    public Long getCommittedOffset() { return committedOffset; }
+    public void setCommittedOffset(Long committedOffset) { this.committedOffset = committedOffset; }
+    
+    public Integer getHeadLength() { return headLength; }
+    public void setHeadLength(Integer headLength) { this.headLength = headLength; }
+    
+    public String getHeadHash() { return headHash; }
+    public void setHeadHash(String headHash) { this.headHash = headHash; }
+    
+    public Integer getLoadedLines() { return loadedLines; }
+    public void setLoadedLines(Integer loadedLines) { this.loadedLines = loadedLines; }
+    
+    public LocalDateTime getUpdatedDate() { return updatedDate; }
+    public void setUpdatedDate(LocalDateTime updatedDate) { this.updatedDate = updatedDate; }
+    
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedDate = LocalDateTime.now();
+    }
+}
\ No newline at end of file
@@ -6,7 +6,10 @@ import java.util.Map;
 public class GenericDataRecord {
     
     private String tableName;
+    private String configName;
     private Map<String, Object> columnValues = new HashMap<>();
+    private int firstLine; // Source lines the record was read from, with any comment lines before it; 0 when not tracked
+    private int lastLine;
     
     public GenericDataRecord() {}
     
@@ -30,6 +33,15 @@ public class GenericDataRecord {
     public String getTableName() { return tableName; }
     public void setTableName(String tableName) { this.tableName = tableName; }
     
+    public String getConfigName() { return configName; }
+    public void setConfigName(String configName) { this.configName = configName; }
+    
     public Map<String, Object> getColumnValues() { return columnValues; }
     public void setColumnValues(Map<String, Object> columnValues) { this.columnValues = columnValues; }
+    
+    public int getFirstLine() { return firstLine; }
+    public void setFirstLine(int firstLine) { this.firstLine = firstLine; }
+    
+    public int getLastLine() { return lastLine; }
+    public void setLastLine(int lastLine) { this.lastLine = lastLine; }
 }
\ No newline at end of file
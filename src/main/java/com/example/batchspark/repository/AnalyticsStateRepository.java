@@ -0,0 +1,17 @@
+package com.example.batchspark.repository;
+
+import com.example.batchspark.model.AnalyticsState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface AnalyticsStateRepository extends JpaRepository<AnalyticsState, Long> {
+    
+    List<AnalyticsState> findByTableName(String tableName);
+    
+    @Transactional
+    void deleteByTableName(String tableName);
+}
\ No newline at end of file
@@ -4,6 +4,10 @@ import com.example.batchspark.model.EmployeeAnalytics;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface EmployeeAnalyticsRepository extends JpaRepository<EmployeeAnalytics, Long> {
+    
+    List<EmployeeAnalytics> findByConfigName(String configName);
 }
\ No newline at end of file
@@ -20,4 +20,13 @@ public interface FileConfigRepository extends JpaRepository<FileConfig, Long> {
            "WHERE fc.configName = :configName AND fc.isActive = true " +
            "ORDER BY cc.columnOrder")
     Optional<FileConfig> findByConfigNameWithColumns(@Param("configName") String configName);
+    
+    // Configs loading a table of their own; routing parents only feed the tables of their child configs
+    @Query("SELECT DISTINCT fc FROM FileConfig fc LEFT JOIN FETCH fc.columnConfigs " +
+           "WHERE fc.isActive = true AND fc.discriminatorPosition IS NULL")
+    List<FileConfig> findActiveWithColumns();
+    
+    @Query("SELECT DISTINCT fc FROM FileConfig fc LEFT JOIN FETCH fc.columnConfigs " +
+           "WHERE fc.parentConfigId = :parentConfigId AND fc.isActive = true")
+    List<FileConfig> findActiveChildrenWithColumns(@Param("parentConfigId") Long parentConfigId);
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.example.batchspark.repository;
+
+import com.example.batchspark.model.FileReadState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface FileReadStateRepository extends JpaRepository<FileReadState, Long> {
+    
+    Optional<FileReadState> findByConfigName(String configName);
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.config.SparkSessionManager;
+import com.example.batchspark.model.FileConfig;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.apache.spark.sql.functions.col;
+
+/**
+ * Provides the data of an analytics target table, preferring the Parquet copy written
+ * during the load over a JDBC extract.
+ *
+ * The copy is used only when its manifest is at the table's current version (see
+ * {@link TableVersionService}), so a table written by anything but a copied batch load, or
+ * being loaded right now, is read from Oracle.
+ */
+@Component
+public class AnalyticsDataReader {
+    
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsDataReader.class);
+    
+    private final SparkSessionManager sparkSessionManager;
+    private final SparkJdbcReader sparkJdbcReader;
+    private final TableVersionService tableVersionService;
+    
+    @Value("${app.load.side-output.enabled:false}")
+    private boolean sideOutputEnabled;
+    
+    @Value("${app.load.side-output.path:output/side-output}")
+    private String sideOutputPath;
+    
+    public AnalyticsDataReader(SparkSessionManager sparkSessionManager, SparkJdbcReader sparkJdbcReader,
+                               TableVersionService tableVersionService) {
+        this.sparkSessionManager = sparkSessionManager;
+        this.sparkJdbcReader = sparkJdbcReader;
+        this.tableVersionService = tableVersionService;
+    }
+    
+    public Dataset<Row> read(FileConfig fileConfig) {
+        if (sideOutputEnabled) {
+            Dataset<Row> copy = readSideOutput(fileConfig);
+            if (copy != null) {
+                return copy;
+            }
+        }
+        return sparkJdbcReader.read(fileConfig);
+    }
+    
+    private Dataset<Row> readSideOutput(FileConfig fileConfig) {
+        String tableName = fileConfig.getTargetTableName();
+        Path directory = Paths.get(sideOutputPath, tableName);
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        
+        try {
+            SideOutputManifest manifest = SideOutputManifest.read(directory);
+            long version = tableVersionService.current(tableName);
+            if (manifest == null || manifest.version() != version || manifest.loads().isEmpty()) {
+                log.info("Parquet side output of {} is not current (table version {}), reading over JDBC", tableName, version);
+                return null;
+            }
+            
+            Column[] columns = fileConfig.getColumnConfigs().stream()
+                    .map(column -> col(column.getTargetColumnName()))
+                    .toArray(Column[]::new);
+            // Only the loads listed in the manifest make up the copy
+            String[] loads = manifest.loads().stream()
+                    .map(load -> directory.resolve(load).toString())
+                    .toArray(String[]::new);
+            log.info("Reading {} from {} loads of Parquet side output {}", tableName, loads.length, directory);
+            return sparkSessionManager.getSession().read().parquet(loads).select(columns);
+        } catch (Exception e) {
+            log.warn("Could not read Parquet side output of {}, reading over JDBC: {}", tableName, e.getMessage());
+        }
+        return null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+package com.example.batchspark.service;
+
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.DataFrameWriter;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Properties;
+
+import static org.apache.spark.sql.functions.col;
+
+/**
+ * Writes analytics results in the configured format (Parquet by default, or CSV).
+ *
+ * Large results are rebalanced instead of coalesced, so they are written by many tasks and
+ * adaptive execution sizes the files from {@code spark.sql.adaptive.advisoryPartitionSizeInBytes};
+ * {@code max-records-per-file} caps each file. Small results, such as summaries with one row per
+ * column, are written as a single file and can also be copied to a database table.
+ */
+@Component
+public class AnalyticsOutputSink {
+    
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsOutputSink.class);
+    
+    @Value("${app.analytics.output.format:parquet}")
+    private String format;
+    
+    @Value("${app.analytics.output.compression:snappy}")
+    private String compression;
+    
+    @Value("${app.analytics.output.max-records-per-file:1000000}")
+    private long maxRecordsPerFile;
+    
+    @Value("${app.analytics.output.write-back.enabled:false}")
+    private boolean writeBackEnabled;
+    
+    @Value("${app.analytics.output.write-back.table-prefix:ANALYTICS_}")
+    private String writeBackTablePrefix;
+    
+    @Value("${app.analytics.output.write-back.max-rows:10000}")
+    private long writeBackMaxRows;
+    
+    @Value("${spring.datasource.url}")
+    private String dbUrl;
+    
+    @Value("${spring.datasource.username}")
+    private String dbUsername;
+    
+    @Value("${spring.datasource.password}")
+    private String dbPassword;
+    
+    /**
+     * Writes a result of any size, spread over as many files as its size calls for.
+     */
+    public void write(Dataset<Row> result, String path) {
+        writer(result.hint("rebalance")).save(path);
+    }
+    
+    /**
+     * Writes a result with one directory per value of {@code partitionColumn}, each sorted by
+     * the given columns.
+     */
+    public void writePartitioned(Dataset<Row> result, String path, String partitionColumn, Column... sortColumns) {
+        Dataset<Row> rebalanced = result.hint("rebalance", col(partitionColumn));
+        if (sortColumns.length > 0) {
+            rebalanced = rebalanced.sortWithinPartitions(sortColumns);
+        }
+        writer(rebalanced).partitionBy(partitionColumn).save(path);
+    }
+    
+    /**
+     * Writes a result small enough for one file, e.g. a summary built on the driver, and copies
+     * it to a database table when write-back is enabled.
+     */
+    public void writeSmall(Dataset<Row> result, String path) {
+        writer(result.coalesce(1)).save(path);
+        
+        if (writeBackEnabled) {
+            writeBack(result, path.substring(path.lastIndexOf('/') + 1));
+        }
+    }
+    
+    private DataFrameWriter<Row> writer(Dataset<Row> result) {
+        DataFrameWriter<Row> writer = result.write()
+                .mode("overwrite")
+                .format(format)
+                .option("maxRecordsPerFile", maxRecordsPerFile);
+        
+        if ("csv".equalsIgnoreCase(format)) {
+            writer.option("header", "true");
+        } else {
+            writer.option("compression", compression);
+        }
+        return writer;
+    }
+    
+    private void writeBack(Dataset<Row> result, String resultName) {
+        String tableName = (writeBackTablePrefix + resultName).toUpperCase();
+        try {
+            long rows = result.count();
+            if (rows > writeBackMaxRows) {
+                log.info("Skipping write-back of {} ({} rows, limit {})", resultName, rows, writeBackMaxRows);
+                return;
+            }
+            
+            Properties connectionProperties = new Properties();
+            connectionProperties.put("user", dbUsername);
+            connectionProperties.put("password", dbPassword);
+            connectionProperties.put("driver", "oracle.jdbc.OracleDriver");
+            
+            // Truncate keeps the table and its grants when the result schema is unchanged
+            result.coalesce(1)
+                    .write()
+                    .mode("overwrite")
+                    .option("truncate", "true")
+                    .jdbc(dbUrl, tableName, connectionProperties);
+            
+            log.info("Wrote {} rows of {} to table {}", rows, resultName, tableName);
+        } catch (Exception e) {
+            // The file output is authoritative; a failed copy must not fail the analytics
+            log.warn("Write-back of {} to table {} failed: {}", resultName, tableName, e.getMessage());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.model.FileConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Lets the analytics step skip tables that have not changed since their outputs were written.
+ *
+ * A table's fingerprint combines its row count, max ID and max UPDATED_DATE (one indexed
+ * query) with the config version, its column definitions and the analytics settings that shape
+ * the outputs. It is stored as a {@code _fingerprint} marker in the table's output directory
+ * after a successful run and removed before a new run starts, so a marker always describes
+ * complete outputs. Spark ignores files starting with an underscore when reading the outputs.
+ */
+@Component
+public class AnalyticsResultCache {
+    
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsResultCache.class);
+    
+    private static final String MARKER_FILE = "_fingerprint";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${app.analytics.cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.analytics.output.format:parquet}")
+    private String outputFormat;
+    
+    @Value("${app.analytics.approximate.enabled:false}")
+    private boolean approximate;
+    
+    @Value("${app.analytics.approximate.compare-exact:false}")
+    private boolean compareExact;
+    
+    @Value("${app.analytics.incremental.enabled:false}")
+    private boolean incremental;
+    
+    public AnalyticsResultCache(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Returns the table's current fingerprint.
+     */
+    public String fingerprint(FileConfig fileConfig) {
+        Map<String, Object> stats = jdbcTemplate.queryForMap(
+                "SELECT COUNT(*) AS ROW_COUNT, MAX(ID) AS MAX_ID, MAX(UPDATED_DATE) AS MAX_UPDATED FROM "
+                        + fileConfig.getTargetTableName());
+        
+        String columns = fileConfig.getColumnConfigs().stream()
+                .map(column -> column.getTargetColumnName() + ":" + column.getDataType())
+                .collect(Collectors.joining(","));
+        
+        return "rows=" + stats.get("ROW_COUNT")
+                + ";maxId=" + stats.get("MAX_ID")
+                + ";maxUpdated=" + stats.get("MAX_UPDATED")
+                + ";configVersion=" + fileConfig.getConfigVersion()
+                + ";columns=" + columns
+                + ";format=" + outputFormat
+                + ";approximate=" + approximate + "/" + compareExact
+                + ";incremental=" + incremental;
+    }
+    
+    /**
+     * Whether the outputs under {@code outputPath} were produced from a table with this fingerprint.
+     */
+    public boolean isFresh(String outputPath, String fingerprint) {
+        Path marker = Paths.get(outputPath, MARKER_FILE);
+        try {
+            return Files.exists(marker) && Files.readString(marker, StandardCharsets.UTF_8).equals(fingerprint);
+        } catch (IOException e) {
+            log.warn("Could not read analytics fingerprint {}: {}", marker, e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Removes the marker before the outputs are rewritten.
+     */
+    public void invalidate(String outputPath) {
+        try {
+            Files.deleteIfExists(Paths.get(outputPath, MARKER_FILE));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not remove analytics fingerprint in " + outputPath, e);
+        }
+    }
+    
+    /**
+     * Marks the outputs under {@code outputPath} as complete for the given fingerprint.
+     */
+    public void record(String outputPath, String fingerprint) {
+        Path marker = Paths.get(outputPath, MARKER_FILE);
+        try {
+            Files.createDirectories(marker.getParent());
+            Files.writeString(marker, fingerprint, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // Only costs a recomputation on the next run
+            log.warn("Could not write analytics fingerprint {}: {}", marker, e.getMessage());
+        }
+    }
+}
\ No newline at end of file
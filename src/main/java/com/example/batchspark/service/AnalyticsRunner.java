@@ -0,0 +1,118 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.config.SparkSessionManager;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.spark.SparkContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs independent analytics concurrently, so their Spark jobs are submitted together and keep
+ * the executors busy instead of queuing behind each other on one driver thread.
+ *
+ * Each task runs in a named Spark scheduler pool (one per table by convention); with
+ * {@code spark.scheduler.mode=FAIR} the pools share the cluster evenly. At most
+ * {@code parallelism} worker threads run tasks. The calling thread runs any task no worker has
+ * started yet, so analytics that use the runner from inside a task cannot starve the pool.
+ */
+@Component
+public class AnalyticsRunner {
+    
+    private static final String POOL_PROPERTY = "spark.scheduler.pool";
+    
+    /**
+     * An analytics action and the scheduler pool its Spark jobs are submitted to.
+     */
+    public record Task(String pool, Runnable action) {}
+    
+    private final SparkSessionManager sparkSessionManager;
+    
+    @Value("${app.analytics.runner.parallelism:4}")
+    private int parallelism;
+    
+    private ExecutorService executor;
+    
+    public AnalyticsRunner(SparkSessionManager sparkSessionManager) {
+        this.sparkSessionManager = sparkSessionManager;
+    }
+    
+    @PostConstruct
+    void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "analytics-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Runs the actions concurrently in one scheduler pool and waits for all of them.
+     */
+    public void runAll(String pool, List<Runnable> actions) {
+        runAll(actions.stream().map(action -> new Task(pool, action)).toList());
+    }
+    
+    /**
+     * Runs the tasks concurrently and waits for all of them. The first failure is rethrown once
+     * every task has finished, with later failures attached as suppressed exceptions.
+     */
+    public void runAll(List<Task> tasks) {
+        if (tasks.size() == 1) {
+            runInPool(tasks.get(0));
+            return;
+        }
+        
+        List<FutureTask<Void>> futures = tasks.stream()
+                .map(task -> new FutureTask<Void>(() -> runInPool(task), null))
+                .toList();
+        futures.forEach(executor::execute);
+        
+        // A task that a worker already started is skipped here
+        futures.forEach(FutureTask::run);
+        
+        RuntimeException failure = null;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = new RuntimeException("Analytics task failed in pool " + tasks.get(i).pool(), e.getCause());
+                } else {
+                    failure.addSuppressed(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for analytics tasks", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    private void runInPool(Task task) {
+        // Spark local properties are per thread, so the pool is set on whichever thread runs the task
+        SparkContext sparkContext = sparkSessionManager.getSession().sparkContext();
+        String previousPool = sparkContext.getLocalProperty(POOL_PROPERTY);
+        sparkContext.setLocalProperty(POOL_PROPERTY, task.pool());
+        try {
+            task.action().run();
+        } finally {
+            sparkContext.setLocalProperty(POOL_PROPERTY, previousPool);
+        }
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
\ No newline at end of file
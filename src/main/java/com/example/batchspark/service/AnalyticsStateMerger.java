@@ -0,0 +1,77 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.model.AnalyticsState;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Merges the moments and extremes of a delta into a stored {@link AnalyticsState} and derives
+ * the reported statistics from them. Sketches are merged in Spark by the caller.
+ */
+final class AnalyticsStateMerger {
+    
+    private AnalyticsStateMerger() {}
+    
+    static void merge(AnalyticsState state, AnalyticsState delta, boolean numeric) {
+        state.setRowCount(state.getRowCount() + delta.getRowCount());
+        state.setNonNullCount(state.getNonNullCount() + delta.getNonNullCount());
+        
+        if (numeric) {
+            state.setSumValue(add(state.getSumValue(), delta.getSumValue()));
+            state.setSumSquares(add(state.getSumSquares(), delta.getSumSquares()));
+        }
+        
+        state.setMinValue(pick(state.getMinValue(), delta.getMinValue(), numeric, true));
+        state.setMaxValue(pick(state.getMaxValue(), delta.getMaxValue(), numeric, false));
+    }
+    
+    static Double mean(AnalyticsState state) {
+        if (state.getSumValue() == null || state.getNonNullCount() == 0) {
+            return null;
+        }
+        return state.getSumValue().divide(BigDecimal.valueOf(state.getNonNullCount()), MathContext.DECIMAL64).doubleValue();
+    }
+    
+    /**
+     * Sample standard deviation from the count, sum and sum of squares, matching Spark's {@code stddev}.
+     */
+    static Double stddev(AnalyticsState state) {
+        long n = state.getNonNullCount();
+        if (state.getSumValue() == null || state.getSumSquares() == null || n < 2) {
+            return null;
+        }
+        double sum = state.getSumValue().doubleValue();
+        double variance = (state.getSumSquares() - sum * sum / n) / (n - 1);
+        // Rounding can leave a tiny negative variance for constant columns
+        return Math.sqrt(Math.max(0.0, variance));
+    }
+    
+    private static BigDecimal add(BigDecimal left, BigDecimal right) {
+        if (left == null) {
+            return right;
+        }
+        return right == null ? left : left.add(right);
+    }
+    
+    private static Double add(Double left, Double right) {
+        if (left == null) {
+            return right;
+        }
+        return right == null ? left : left + right;
+    }
+    
+    private static String pick(String current, String candidate, boolean numeric, boolean lowest) {
+        if (current == null) {
+            return candidate;
+        }
+        if (candidate == null) {
+            return current;
+        }
+        // Non-numeric values are compared as strings; Spark renders dates and timestamps in sortable ISO form
+        int comparison = numeric
+                ? new BigDecimal(candidate).compareTo(new BigDecimal(current))
+                : candidate.compareTo(current);
+        return (lowest ? comparison < 0 : comparison > 0) ? candidate : current;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.example.batchspark.service;
+
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static org.apache.spark.sql.functions.*;
+
+/**
+ * Sketch-based replacements for the exact distinct, quantile and top-value computations.
+ *
+ * Distinct counts use HyperLogLog++ ({@code approx_count_distinct}) with a configurable
+ * relative standard deviation, quantiles use Greenwald-Khanna with a configurable relative
+ * error, and top values come from a single frequent-items pass whose candidates are then
+ * counted exactly. With {@code app.analytics.approximate.compare-exact} the exact values are
+ * computed as well and written next to the estimates.
+ */
+@Component
+public class ApproximateAnalytics {
+    
+    private static final Logger log = LoggerFactory.getLogger(ApproximateAnalytics.class);
+    
+    @Value("${app.analytics.approximate.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${app.analytics.approximate.compare-exact:false}")
+    private boolean compareExact;
+    
+    @Value("${app.analytics.approximate.distinct-rsd:0.02}")
+    private double distinctRsd;
+    
+    @Value("${app.analytics.approximate.quantile-error:0.0001}")
+    private double quantileError;
+    
+    @Value("${app.analytics.approximate.top-k:20}")
+    private int topK;
+    
+    @Value("${app.analytics.approximate.top-k-support:0.01}")
+    private double topKSupport;
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public boolean isCompareExact() {
+        return enabled && compareExact;
+    }
+    
+    public int getTopK() {
+        return topK;
+    }
+    
+    /**
+     * The {@code accuracy} argument of {@code percentile_approx} matching the configured relative error.
+     */
+    public int quantileAccuracy() {
+        return (int) Math.max(1, Math.ceil(1.0 / quantileError));
+    }
+    
+    public Column distinctCount(Column column) {
+        return approx_count_distinct(column, distinctRsd);
+    }
+    
+    /**
+     * Estimates the number of distinct rows from a 64-bit hash of every column, without the
+     * full shuffle of {@code distinct().count()}.
+     */
+    public long estimateDistinctRows(Dataset<Row> dataDF) {
+        Column[] columns = Arrays.stream(dataDF.columns()).map(c -> col(c)).toArray(Column[]::new);
+        return dataDF.select(distinctCount(xxhash64(columns))).first().getLong(0);
+    }
+    
+    /**
+     * Finds, in one pass over the data, every value occurring in more than
+     * {@code top-k-support} of the rows of each column. The result may contain false
+     * positives but no false negatives above the support threshold.
+     */
+    public Map<String, List<Object>> heavyHitterCandidates(Dataset<Row> dataDF, List<String> columns) {
+        if (columns.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        
+        Row frequentItems = dataDF.stat().freqItems(columns.toArray(new String[0]), topKSupport).first();
+        Map<String, List<Object>> candidates = new HashMap<>();
+        for (String column : columns) {
+            List<Object> items = frequentItems.getList(frequentItems.fieldIndex(column + "_freqItems"));
+            candidates.put(column, items.stream().filter(Objects::nonNull).collect(Collectors.toList()));
+        }
+        return candidates;
+    }
+    
+    public void logComparison(String metric, long estimate, long exact) {
+        log.info("{}: approximate={} exact={} relative error={}", metric, estimate, exact,
+                String.format("%.4f", relativeError(estimate, exact)));
+    }
+    
+    public static double relativeError(double estimate, double exact) {
+        if (exact == 0) {
+            return estimate == 0 ? 0.0 : 1.0;
+        }
+        return Math.abs(estimate - exact) / Math.abs(exact);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,409 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.config.SparkSessionManager;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.spark.SparkContext;
+import org.apache.spark.SparkExecutorInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queues job launches per config and starts them one at a time, highest priority first, once
+ * the system has room for them.
+ *
+ * A job is admitted when the connection pool has the connections it needs free and nobody is
+ * waiting for one, the CPU load is below {@code max-cpu-load} and Spark has task slots left
+ * below {@code max-spark-load}. Jobs at or above {@code high-priority} only wait for
+ * connections, so high-priority feeds are not held back by background analytics or streams.
+ * Waiting raises a job's priority by one per {@code aging-interval}, and a job waits at most
+ * {@code max-admission-wait} for headroom before it is started anyway.
+ *
+ * Jobs run on two dispatcher threads, or lanes: the main lane starts any job, the priority lane
+ * only jobs at or above {@code high-priority}, so a high-priority job does not queue behind a
+ * long job of another Spring Batch job, such as a load behind an export. The load job's reader,
+ * processor and writer, like the export job's partitioner and tasklet, are singletons
+ * configured for each run, so the lanes never run two jobs of the same Spring Batch job, nor two
+ * jobs of one config, at once. Loads are therefore fully serialized: a high-priority load waits
+ * for a running load to finish, and only overtakes the loads still queued.
+ */
+@Service
+public class BatchJobScheduler {
+    
+    private static final Logger log = LoggerFactory.getLogger(BatchJobScheduler.class);
+    
+    /**
+     * Configures the job's components and runs the job on a dispatcher thread.
+     */
+    @FunctionalInterface
+    public interface JobLaunch {
+        JobExecution launch() throws Exception;
+    }
+    
+    /**
+     * A queued launch; {@code started} completes when the job is started, {@code result} with the
+     * finished job execution.
+     */
+    public record Submission(CompletableFuture<Void> started, CompletableFuture<JobExecution> result, int position) {}
+    
+    public record QueuedJob(String configName, int priority, int position, long waitingMillis) {}
+    
+    private static final class Entry {
+        final String configName;
+        final String jobName;
+        final int priority;
+        final int connections;
+        final JobLaunch launch;
+        final long sequence;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Void> started = new CompletableFuture<>();
+        final CompletableFuture<JobExecution> result = new CompletableFuture<>();
+        
+        Entry(String configName, String jobName, int priority, int connections, JobLaunch launch, long sequence) {
+            this.configName = configName;
+            this.jobName = jobName;
+            this.priority = priority;
+            this.connections = connections;
+            this.launch = launch;
+            this.sequence = sequence;
+        }
+    }
+    
+    private static final int MAIN_LANE = 0;
+    private static final int PRIORITY_LANE = 1;
+    
+    private final DataSource dataSource;
+    private final SparkSessionManager sparkSessionManager;
+    private final MeterRegistry meterRegistry;
+    
+    private final Map<String, Deque<Entry>> queues = new LinkedHashMap<>();
+    private long sequence;
+    private final Entry[] running = new Entry[2];
+    private volatile boolean stopped;
+    private final List<Thread> dispatchers = new ArrayList<>();
+    
+    @Value("${app.scheduler.max-queued-per-config:10}")
+    private int maxQueuedPerConfig;
+    
+    @Value("${app.scheduler.max-cpu-load:0.85}")
+    private double maxCpuLoad;
+    
+    @Value("${app.scheduler.max-spark-load:0.9}")
+    private double maxSparkLoad;
+    
+    @Value("${app.scheduler.high-priority:8}")
+    private int highPriority;
+    
+    @Value("${app.scheduler.aging-interval:PT1M}")
+    private Duration agingInterval;
+    
+    @Value("${app.scheduler.max-admission-wait:PT5M}")
+    private Duration maxAdmissionWait;
+    
+    @Value("${app.scheduler.poll-interval:PT1S}")
+    private Duration pollInterval;
+    
+    public BatchJobScheduler(DataSource dataSource, SparkSessionManager sparkSessionManager, MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.sparkSessionManager = sparkSessionManager;
+        this.meterRegistry = meterRegistry;
+    }
+    
+    @PostConstruct
+    void start() {
+        Gauge.builder("batch.scheduler.running", this, scheduler -> scheduler.running().size())
+                .register(meterRegistry);
+        dispatchers.add(new Thread(() -> dispatch(MAIN_LANE), "job-scheduler"));
+        dispatchers.add(new Thread(() -> dispatch(PRIORITY_LANE), "job-scheduler-priority"));
+        for (Thread dispatcher : dispatchers) {
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        }
+    }
+    
+    /**
+     * Queues a job of a config. {@code jobName} is the Spring Batch job it runs and
+     * {@code connections} the number of pooled connections the job holds while it runs.
+     *
+     * @throws RejectedExecutionException when the config already has {@code max-queued-per-config} jobs queued
+     */
+    public Submission submit(String configName, String jobName, Integer priority, int connections, JobLaunch launch) {
+        return submit(configName, jobName, priority, connections, launch, false);
+    }
+    
+    /**
+     * Queues a job that has to start right away, such as an upload whose request holds the
+     * source stream: it is rejected unless it is first in the queue and a lane is free for it.
+     *
+     * @throws RejectedExecutionException when the job cannot start right away
+     */
+    public Submission submitNow(String configName, String jobName, Integer priority, int connections, JobLaunch launch) {
+        return submit(configName, jobName, priority, connections, launch, true);
+    }
+    
+    private synchronized Submission submit(String configName, String jobName, Integer priority, int connections,
+                                           JobLaunch launch, boolean now) {
+        if (stopped) {
+            throw new RejectedExecutionException("Job scheduler is shut down");
+        }
+        Deque<Entry> queue = queues.computeIfAbsent(configName, this::newQueue);
+        if (queue.size() >= maxQueuedPerConfig) {
+            meterRegistry.counter("batch.scheduler.rejected", "config", configName).increment();
+            throw new RejectedExecutionException(queue.size() + " jobs of config " + configName + " are already queued");
+        }
+        
+        Entry entry = new Entry(configName, jobName, priority != null ? priority : 5, connections, launch, sequence++);
+        queue.addLast(entry);
+        int position = ordered(System.nanoTime()).indexOf(entry) + 1;
+        if (now && (position > 1 || !hasFreeLane(entry))) {
+            queue.removeLast();
+            meterRegistry.counter("batch.scheduler.rejected", "config", configName).increment();
+            throw new RejectedExecutionException("Job scheduler is busy, job of config " + configName + " cannot start right away");
+        }
+        notifyAll();
+        
+        log.info("Queued job of config {} with priority {} at position {}", configName, entry.priority, position);
+        return new Submission(entry.started, entry.result, position);
+    }
+    
+    /**
+     * Removes a job that has not started yet from the queue.
+     *
+     * @return false when the job has already started
+     */
+    public boolean cancel(Submission submission) {
+        Entry cancelled = null;
+        synchronized (this) {
+            for (Deque<Entry> queue : queues.values()) {
+                for (Entry entry : queue) {
+                    if (entry.result == submission.result()) {
+                        cancelled = entry;
+                    }
+                }
+                if (cancelled != null) {
+                    queue.remove(cancelled);
+                    break;
+                }
+            }
+        }
+        if (cancelled == null) {
+            return false;
+        }
+        log.info("Cancelled queued job of config {}", cancelled.configName);
+        CancellationException cancellation = new CancellationException("Job of config " + cancelled.configName + " was cancelled");
+        cancelled.started.completeExceptionally(cancellation);
+        cancelled.result.completeExceptionally(cancellation);
+        return true;
+    }
+    
+    /**
+     * Queued jobs in the order they would be started now.
+     */
+    public synchronized List<QueuedJob> queued() {
+        long now = System.nanoTime();
+        List<Entry> ordered = ordered(now);
+        List<QueuedJob> jobs = new ArrayList<>(ordered.size());
+        for (int i = 0; i < ordered.size(); i++) {
+            Entry entry = ordered.get(i);
+            jobs.add(new QueuedJob(entry.configName, entry.priority, i + 1,
+                    TimeUnit.NANOSECONDS.toMillis(now - entry.enqueuedAt)));
+        }
+        return jobs;
+    }
+    
+    /**
+     * The configs whose jobs are running.
+     */
+    public synchronized List<String> running() {
+        List<String> configs = new ArrayList<>();
+        for (Entry entry : running) {
+            if (entry != null) {
+                configs.add(entry.configName);
+            }
+        }
+        return configs;
+    }
+    
+    private Deque<Entry> newQueue(String configName) {
+        Gauge.builder("batch.scheduler.queue.depth", this, scheduler -> scheduler.depth(configName))
+                .tag("config", configName)
+                .register(meterRegistry);
+        return new ArrayDeque<>();
+    }
+    
+    private synchronized int depth(String configName) {
+        Deque<Entry> queue = queues.get(configName);
+        return queue != null ? queue.size() : 0;
+    }
+    
+    private List<Entry> ordered(long now) {
+        List<Entry> entries = new ArrayList<>();
+        queues.values().forEach(entries::addAll);
+        entries.sort(startOrder(now));
+        return entries;
+    }
+    
+    private Comparator<Entry> startOrder(long now) {
+        return Comparator.comparingLong((Entry entry) -> -effectivePriority(entry, now))
+                .thenComparingLong(entry -> entry.sequence);
+    }
+    
+    private long effectivePriority(Entry entry, long now) {
+        return entry.priority + (now - entry.enqueuedAt) / Math.max(1, agingInterval.toNanos());
+    }
+    
+    private void dispatch(int lane) {
+        while (!stopped) {
+            Entry entry;
+            try {
+                entry = nextAdmitted(lane);
+            } catch (InterruptedException e) {
+                return;
+            }
+            run(lane, entry);
+        }
+    }
+    
+    /**
+     * Whether a lane can start the job now, apart from headroom.
+     */
+    private boolean canStart(int lane, Entry entry) {
+        if (running[lane] != null || (lane == PRIORITY_LANE && entry.priority < highPriority)) {
+            return false;
+        }
+        Entry other = running[1 - lane];
+        return other == null || (!other.configName.equals(entry.configName) && !other.jobName.equals(entry.jobName));
+    }
+    
+    private boolean hasFreeLane(Entry entry) {
+        return canStart(MAIN_LANE, entry) || canStart(PRIORITY_LANE, entry);
+    }
+    
+    private synchronized Entry nextAdmitted(int lane) throws InterruptedException {
+        while (true) {
+            long now = System.nanoTime();
+            // Each config's queue is FIFO, so only its head competes
+            Entry next = queues.values().stream()
+                    .filter(queue -> !queue.isEmpty())
+                    .map(Deque::peekFirst)
+                    .filter(entry -> canStart(lane, entry))
+                    .min(startOrder(now))
+                    .orElse(null);
+            if (next == null) {
+                wait();
+                continue;
+            }
+            
+            String blockedBy = blockedBy(next);
+            if (blockedBy == null || now - next.enqueuedAt >= maxAdmissionWait.toNanos()) {
+                if (blockedBy != null) {
+                    log.warn("Starting job of config {} after waiting {} for {} headroom", next.configName, maxAdmissionWait, blockedBy);
+                }
+                queues.get(next.configName).removeFirst();
+                running[lane] = next;
+                return next;
+            }
+            
+            meterRegistry.counter("batch.scheduler.deferred", "reason", blockedBy).increment();
+            log.debug("Job of config {} waits for {} headroom", next.configName, blockedBy);
+            wait(Math.max(1, pollInterval.toMillis()));
+        }
+    }
+    
+    private void run(int lane, Entry entry) {
+        long waited = System.nanoTime() - entry.enqueuedAt;
+        Timer.builder("batch.scheduler.wait")
+                .tag("config", entry.configName)
+                .tag("priority", String.valueOf(entry.priority))
+                .register(meterRegistry)
+                .record(waited, TimeUnit.NANOSECONDS);
+        log.info("Starting job of config {} after {} ms in queue", entry.configName, TimeUnit.NANOSECONDS.toMillis(waited));
+        
+        entry.started.complete(null);
+        try {
+            entry.result.complete(entry.launch.launch());
+        } catch (Exception e) {
+            entry.result.completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                running[lane] = null;
+                // Jobs held back by this one may start now
+                notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * The resource a job has to wait for, or null when it can start.
+     */
+    private String blockedBy(Entry entry) {
+        if (dataSource instanceof HikariDataSource hikari) {
+            HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+            if (pool != null && (pool.getThreadsAwaitingConnection() > 0
+                    || hikari.getMaximumPoolSize() - pool.getActiveConnections() < entry.connections)) {
+                return "connections";
+            }
+        }
+        if (entry.priority >= highPriority) {
+            return null;
+        }
+        
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean osStats && osStats.getCpuLoad() >= maxCpuLoad) {
+            return "cpu";
+        }
+        
+        // Spark is only checked once it runs; an idle application should not start it
+        if (sparkSessionManager.isStarted()) {
+            SparkContext sparkContext = sparkSessionManager.getSession().sparkContext();
+            int runningTasks = 0;
+            for (SparkExecutorInfo executor : sparkContext.statusTracker().getExecutorInfos()) {
+                runningTasks += executor.numRunningTasks();
+            }
+            if (runningTasks >= sparkContext.defaultParallelism() * maxSparkLoad) {
+                return "spark";
+            }
+        }
+        return null;
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        List<Entry> pending = new ArrayList<>();
+        synchronized (this) {
+            stopped = true;
+            queues.values().forEach(pending::addAll);
+            queues.values().forEach(Deque::clear);
+        }
+        pending.forEach(entry -> {
+            CancellationException cancellation = new CancellationException("Job scheduler shut down");
+            entry.started.completeExceptionally(cancellation);
+            entry.result.completeExceptionally(cancellation);
+        });
+        dispatchers.forEach(Thread::interrupt);
+    }
+}
\ No newline at end of file
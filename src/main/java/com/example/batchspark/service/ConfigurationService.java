@@ -18,9 +18,11 @@ public class ConfigurationService {
     private static final Logger log = LoggerFactory.getLogger(ConfigurationService.class);
     
     private final FileConfigRepository fileConfigRepository;
+    private final FileConfigPlanCache fileConfigPlanCache;
     
-    public ConfigurationService(FileConfigRepository fileConfigRepository) {
+    public ConfigurationService(FileConfigRepository fileConfigRepository, FileConfigPlanCache fileConfigPlanCache) {
         this.fileConfigRepository = fileConfigRepository;
+        this.fileConfigPlanCache = fileConfigPlanCache;
     }
     
     @Transactional
@@ -44,6 +46,7 @@ public class ConfigurationService {
         fileConfig.setColumnConfigs(columns);
         
         FileConfig saved = fileConfigRepository.save(fileConfig);
+        fileConfigPlanCache.invalidate(configName);
         log.info("Created file configuration: {} with {} columns", configName, columns.size());
         
         return saved;
@@ -65,6 +68,7 @@ public class ConfigurationService {
             config.setIsActive(false);
             config.setUpdatedDate(LocalDateTime.now());
             fileConfigRepository.save(config);
+            fileConfigPlanCache.invalidate(configName);
             log.info("Deactivated configuration: {}", configName);
         }
     }
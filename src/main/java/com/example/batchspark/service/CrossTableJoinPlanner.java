@@ -0,0 +1,217 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.config.SparkSessionManager;
+import com.example.batchspark.model.ColumnConfig;
+import com.example.batchspark.model.FileConfig;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.storage.StorageLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.apache.spark.sql.functions.broadcast;
+import static org.apache.spark.sql.functions.col;
+
+/**
+ * Plans joins between the target tables of different configs on the business keys declared in
+ * their column metadata: a column with REFERENCES_TABLE is a foreign key to that table's
+ * REFERENCES_COLUMN, or to its primary key column when none is given.
+ *
+ * The referenced side is broadcast when its row count is below {@code broadcast-max-rows}.
+ * Otherwise both sides are hash-partitioned on the join key and cached, so later joins of the
+ * same table and key in the window reuse the partitioned copy and need no further shuffle.
+ * Runs that join call {@link #acquire()} first and {@link #release()} when done; the cached
+ * copies are shared by concurrent runs and dropped when the last of them releases.
+ */
+@Component
+public class CrossTableJoinPlanner {
+    
+    private static final Logger log = LoggerFactory.getLogger(CrossTableJoinPlanner.class);
+    
+    /**
+     * Foreign key from {@code leftTable.leftColumn} to {@code rightTable.rightColumn}.
+     */
+    public record JoinDefinition(String leftTable, String leftColumn, String rightTable, String rightColumn) {
+        
+        /**
+         * Name of a referenced-side column in the joined result.
+         */
+        public String rightAlias(String column) {
+            return rightTable + "_" + column;
+        }
+        
+        @Override
+        public String toString() {
+            return leftTable + "." + leftColumn + " -> " + rightTable + "." + rightColumn;
+        }
+    }
+    
+    private final SparkSessionManager sparkSessionManager;
+    private final SparkJdbcReader sparkJdbcReader;
+    private final JdbcTemplate jdbcTemplate;
+    
+    private final Map<String, Dataset<Row>> partitionedCopies = new ConcurrentHashMap<>();
+    private int activeRuns;
+    
+    @Value("${app.analytics.joins.broadcast-max-rows:1000000}")
+    private long broadcastMaxRows;
+    
+    @Value("${app.analytics.joins.buckets:0}")
+    private int buckets;
+    
+    public CrossTableJoinPlanner(SparkSessionManager sparkSessionManager, SparkJdbcReader sparkJdbcReader,
+                                 JdbcTemplate jdbcTemplate) {
+        this.sparkSessionManager = sparkSessionManager;
+        this.sparkJdbcReader = sparkJdbcReader;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Collects the joins declared by the given configs' columns. References to a table without a
+     * REFERENCES_COLUMN whose config has no single primary key column are skipped.
+     */
+    public List<JoinDefinition> joinDefinitions(List<FileConfig> fileConfigs) {
+        Map<String, FileConfig> configsByTable = new HashMap<>();
+        fileConfigs.forEach(fileConfig -> configsByTable.put(fileConfig.getTargetTableName().toUpperCase(), fileConfig));
+        
+        List<JoinDefinition> joins = new ArrayList<>();
+        for (FileConfig fileConfig : fileConfigs) {
+            for (ColumnConfig column : fileConfig.getColumnConfigs()) {
+                if (!column.hasReference()) {
+                    continue;
+                }
+                
+                String rightTable = column.getReferencesTable().toUpperCase();
+                String rightColumn = column.getReferencesColumn();
+                if (rightColumn == null || rightColumn.isEmpty()) {
+                    rightColumn = primaryKeyColumn(configsByTable.get(rightTable));
+                }
+                if (rightColumn == null) {
+                    log.warn("Skipping reference from {}.{} to {}: no REFERENCES_COLUMN and no single primary key column",
+                            fileConfig.getTargetTableName(), column.getTargetColumnName(), rightTable);
+                    continue;
+                }
+                joins.add(new JoinDefinition(fileConfig.getTargetTableName().toUpperCase(), column.getTargetColumnName(),
+                        rightTable, rightColumn));
+            }
+        }
+        return joins;
+    }
+    
+    /**
+     * Left outer joins the referencing table to the referenced one. Empty column lists read all
+     * columns; the join keys are always included. Referenced-side columns are renamed with
+     * {@link JoinDefinition#rightAlias(String)}.
+     */
+    public Dataset<Row> join(JoinDefinition join, List<String> leftColumns, List<String> rightColumns) {
+        String rightKey = join.rightAlias(join.rightColumn());
+        long rightRows = estimateRows(join.rightTable());
+        
+        if (rightRows >= 0 && rightRows <= broadcastMaxRows) {
+            log.info("Joining {} with broadcast of {} (~{} rows)", join, join.rightTable(), rightRows);
+            Dataset<Row> left = side(join.leftTable(), join.leftColumn(), leftColumns, null);
+            Dataset<Row> right = side(join.rightTable(), join.rightColumn(), rightColumns, join);
+            return left.join(broadcast(right), left.col(join.leftColumn()).equalTo(right.col(rightKey)), "left_outer");
+        }
+        
+        log.info("Joining {} on partitioned copies (~{} referenced rows)", join, rightRows);
+        Dataset<Row> left = partitioned(join.leftTable(), join.leftColumn(), leftColumns, null);
+        Dataset<Row> right = partitioned(join.rightTable(), join.rightColumn(), rightColumns, join);
+        return left.join(right, left.col(join.leftColumn()).equalTo(right.col(rightKey)), "left_outer");
+    }
+    
+    /**
+     * Registers a run that is about to join, keeping the cached copies until it releases.
+     */
+    public synchronized void acquire() {
+        activeRuns++;
+    }
+    
+    /**
+     * Ends a run; the partitioned copies are dropped once no other run is using them.
+     */
+    public void release() {
+        List<Dataset<Row>> copies;
+        synchronized (this) {
+            if (--activeRuns > 0) {
+                return;
+            }
+            activeRuns = 0;
+            copies = new ArrayList<>(partitionedCopies.values());
+            partitionedCopies.clear();
+        }
+        copies.forEach(Dataset::unpersist);
+    }
+    
+    private Dataset<Row> partitioned(String table, String key, List<String> columns, JoinDefinition renameFor) {
+        String cacheKey = table + "|" + key + "|" + columns + "|" + (renameFor != null);
+        return partitionedCopies.computeIfAbsent(cacheKey, k -> {
+            Dataset<Row> side = side(table, key, columns, renameFor);
+            String partitionKey = renameFor != null ? renameFor.rightAlias(key) : key;
+            // Both sides use the same partition count, so the sort-merge join reuses this partitioning
+            return side.repartition(partitionCount(), col(partitionKey)).persist(StorageLevel.MEMORY_AND_DISK());
+        });
+    }
+    
+    private Dataset<Row> side(String table, String key, List<String> columns, JoinDefinition renameFor) {
+        List<String> readColumns = new ArrayList<>(columns);
+        if (!readColumns.isEmpty() && !readColumns.contains(key)) {
+            readColumns.add(key);
+        }
+        Dataset<Row> side = sparkJdbcReader.read(table, readColumns);
+        
+        if (renameFor != null) {
+            Column[] renamed = Arrays.stream(side.columns())
+                    .map(name -> col(name).alias(renameFor.rightAlias(name)))
+                    .toArray(Column[]::new);
+            side = side.select(renamed);
+        }
+        return side;
+    }
+    
+    private int partitionCount() {
+        if (buckets > 0) {
+            return buckets;
+        }
+        return Integer.parseInt(sparkSessionManager.getSession().conf().get("spark.sql.shuffle.partitions"));
+    }
+    
+    private long estimateRows(String tableName) {
+        try {
+            // Optimizer statistics are free to read; counting is the fallback when they are missing
+            List<Long> numRows = jdbcTemplate.queryForList(
+                    "SELECT NUM_ROWS FROM user_tables WHERE table_name = ?", Long.class, tableName.toUpperCase());
+            if (!numRows.isEmpty() && numRows.get(0) != null && numRows.get(0) > 0) {
+                return numRows.get(0);
+            }
+            Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + tableName, Long.class);
+            return count != null ? count : -1;
+        } catch (DataAccessException e) {
+            log.warn("Could not estimate the size of {}: {}", tableName, e.getMessage());
+            return -1;
+        }
+    }
+    
+    private static String primaryKeyColumn(FileConfig fileConfig) {
+        if (fileConfig == null) {
+            return null;
+        }
+        List<String> keys = fileConfig.getColumnConfigs().stream()
+                .filter(column -> Boolean.TRUE.equals(column.getIsPrimaryKey()))
+                .map(ColumnConfig::getTargetColumnName)
+                .toList();
+        return keys.size() == 1 ? keys.get(0) : null;
+    }
+}
\ No newline at end of file
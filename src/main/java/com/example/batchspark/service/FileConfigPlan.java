@@ -0,0 +1,102 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.expression.Expression;
+import com.example.batchspark.expression.RuleCompiler;
+import com.example.batchspark.model.ColumnConfig;
+import com.example.batchspark.model.FileConfig;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Everything a load derives from a config, compiled once: the columns in file order, the
+ * compiled column rules, and the SQL of the target table. Routing configs hold the plans of
+ * their child configs. Plans are shared between jobs and never modified; their
+ * {@link FileConfig} must be treated as read-only.
+ */
+public final class FileConfigPlan {
+    
+    private final FileConfig fileConfig;
+    private final String stamp;
+    private final List<ColumnConfig> columns;
+    private final List<String> sourceColumnNames;
+    private final List<Expression> validations;
+    private final List<Expression> transformations;
+    private final List<String> createTableStatements;
+    private final String insertSql;
+    private final String mergeSql;
+    private final int partitionKeyIndex;
+    private final List<FileConfigPlan> children;
+    
+    FileConfigPlan(FileConfig fileConfig, String stamp, List<FileConfigPlan> children, RuleCompiler ruleCompiler) {
+        this.fileConfig = fileConfig;
+        this.stamp = stamp;
+        this.children = List.copyOf(children);
+        this.columns = fileConfig.getColumnConfigs().stream()
+                .sorted(Comparator.comparing(ColumnConfig::getColumnOrder))
+                .toList();
+        this.sourceColumnNames = columns.stream().map(ColumnConfig::getSourceColumnName).toList();
+        this.validations = columns.stream()
+                .map(column -> ruleCompiler.compileValidation(column.getValidationRule()))
+                .toList();
+        this.transformations = columns.stream()
+                .map(column -> ruleCompiler.compileTransformation(column.getTransformationRule()))
+                .toList();
+        
+        // A routing config has no table of its own
+        boolean hasTable = !fileConfig.isRouting();
+        String tableName = fileConfig.getTargetTableName();
+        List<ColumnConfig> keyColumns = GenericDataService.primaryKeyColumns(fileConfig);
+        this.createTableStatements = hasTable ? GenericDataService.createTableStatements(fileConfig, columns) : null;
+        this.insertSql = hasTable ? GenericDataService.insertSql(tableName, columns) : null;
+        this.mergeSql = hasTable && !keyColumns.isEmpty() ? GenericDataService.mergeSql(tableName, columns, keyColumns) : null;
+        this.partitionKeyIndex = fileConfig.isPartitioned() ? columns.indexOf(fileConfig.partitionKeyColumn()) : -1;
+        
+        fileConfig.setChildConfigs(this.children.stream().map(FileConfigPlan::getFileConfig).toList());
+    }
+    
+    /**
+     * The plans of the tables a run of this config loads: its children when it routes records,
+     * otherwise this plan.
+     */
+    public List<FileConfigPlan> targets() {
+        return fileConfig.isRouting() ? children : List.of(this);
+    }
+    
+    public FileConfig getFileConfig() { return fileConfig; }
+    
+    /**
+     * Identifies the config rows this plan was compiled from.
+     */
+    public String getStamp() { return stamp; }
+    
+    /**
+     * Columns in file order; rules and SQL parameters follow the same order.
+     */
+    public List<ColumnConfig> getColumns() { return columns; }
+    
+    public List<String> getSourceColumnNames() { return sourceColumnNames; }
+    
+    public List<Expression> getValidations() { return validations; }
+    
+    public List<Expression> getTransformations() { return transformations; }
+    
+    /**
+     * The table DDL followed by its index DDL.
+     */
+    public List<String> getCreateTableStatements() { return createTableStatements; }
+    
+    public String getInsertSql() { return insertSql; }
+    
+    /**
+     * MERGE on the primary key columns, or null when the config has none.
+     */
+    public String getMergeSql() { return mergeSql; }
+    
+    /**
+     * Position of the partition key in {@link #getColumns()}, or -1 when the table is not partitioned.
+     */
+    public int getPartitionKeyIndex() { return partitionKeyIndex; }
+    
+    public List<FileConfigPlan> getChildren() { return children; }
+}
\ No newline at end of file
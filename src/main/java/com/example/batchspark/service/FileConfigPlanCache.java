@@ -0,0 +1,113 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.expression.RuleCompiler;
+import com.example.batchspark.model.FileConfig;
+import com.example.batchspark.repository.FileConfigRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the compiled {@link FileConfigPlan} of each config, so launching a job does not load
+ * and re-derive the config from its entities.
+ *
+ * A cached plan is used as is for {@code app.config.plan-cache.revalidate-interval} after it
+ * was last checked. After that, one indexed query reads the ID, UPDATED_DATE, CONFIG_VERSION
+ * and IS_ACTIVE of the config and its child configs, and the plan is recompiled when any of
+ * them differs from the rows it was compiled from. Changes made through
+ * {@link ConfigurationService} invalidate the plan immediately; column changes made directly in
+ * the database take effect once the config's UPDATED_DATE or CONFIG_VERSION is bumped.
+ */
+@Service
+public class FileConfigPlanCache {
+    
+    private static final Logger log = LoggerFactory.getLogger(FileConfigPlanCache.class);
+    
+    private record Entry(FileConfigPlan plan, long checkedAt) {}
+    
+    private final FileConfigRepository fileConfigRepository;
+    private final RuleCompiler ruleCompiler;
+    private final JdbcTemplate jdbcTemplate;
+    
+    private final Map<String, Entry> plans = new ConcurrentHashMap<>();
+    
+    @Value("${app.config.plan-cache.revalidate-interval:PT10S}")
+    private Duration revalidateInterval;
+    
+    public FileConfigPlanCache(FileConfigRepository fileConfigRepository, RuleCompiler ruleCompiler,
+                               JdbcTemplate jdbcTemplate) {
+        this.fileConfigRepository = fileConfigRepository;
+        this.ruleCompiler = ruleCompiler;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Returns the plan of an active config, compiling it when it is not cached or out of date.
+     */
+    public Optional<FileConfigPlan> find(String configName) {
+        long now = System.nanoTime();
+        Entry entry = plans.get(configName);
+        if (entry != null && now - entry.checkedAt() < revalidateInterval.toNanos()) {
+            return Optional.of(entry.plan());
+        }
+        
+        String stamp = stamp(configName);
+        if (entry != null && entry.plan().getStamp().equals(stamp)) {
+            plans.put(configName, new Entry(entry.plan(), now));
+            return Optional.of(entry.plan());
+        }
+        
+        Optional<FileConfigPlan> plan = compile(configName, stamp);
+        if (plan.isPresent()) {
+            plans.put(configName, new Entry(plan.get(), now));
+            log.info("Compiled plan of config {} ({})", configName, stamp);
+        } else {
+            plans.remove(configName);
+        }
+        return plan;
+    }
+    
+    /**
+     * Drops the cached plan of a config and of the routing config it belongs to, if any.
+     */
+    public void invalidate(String configName) {
+        plans.remove(configName);
+        plans.values().removeIf(entry -> entry.plan().getChildren().stream()
+                .anyMatch(child -> child.getFileConfig().getConfigName().equals(configName)));
+    }
+    
+    private Optional<FileConfigPlan> compile(String configName, String stamp) {
+        Optional<FileConfig> configOpt = fileConfigRepository.findByConfigNameWithColumns(configName);
+        if (configOpt.isEmpty()) {
+            return Optional.empty();
+        }
+        
+        FileConfig fileConfig = configOpt.get();
+        List<FileConfigPlan> children = fileConfig.isRouting()
+                ? fileConfigRepository.findActiveChildrenWithColumns(fileConfig.getId()).stream()
+                        .map(child -> new FileConfigPlan(child, stamp, List.of(), ruleCompiler))
+                        .toList()
+                : List.of();
+        return Optional.of(new FileConfigPlan(fileConfig, stamp, children, ruleCompiler));
+    }
+    
+    private String stamp(String configName) {
+        List<String> rows = jdbcTemplate.query(
+                "SELECT ID, UPDATED_DATE, CONFIG_VERSION, IS_ACTIVE FROM FILE_CONFIG "
+                        + "WHERE CONFIG_NAME = ? "
+                        + "OR PARENT_CONFIG_ID IN (SELECT ID FROM FILE_CONFIG WHERE CONFIG_NAME = ?) "
+                        + "ORDER BY ID",
+                (rs, rowNum) -> rs.getLong("ID") + "@" + rs.getTimestamp("UPDATED_DATE") + "/v"
+                        + rs.getInt("CONFIG_VERSION") + (rs.getInt("IS_ACTIVE") == 1 ? "" : "/inactive"),
+                configName, configName);
+        return String.join(";", rows);
+    }
+}
\ No newline at end of file
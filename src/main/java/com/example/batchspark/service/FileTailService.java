@@ -0,0 +1,313 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.model.FileConfig;
+import com.example.batchspark.model.FileReadState;
+import com.example.batchspark.repository.FileReadStateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Plans incremental reads of growing source files for configs with READ_MODE = TAIL.
+ *
+ * A run reads from the committed offset of the last run to the end of the last complete line,
+ * so a line still being written is left for the next run. The file is recognized by its file
+ * system key and a hash of its first bytes: when either changed, or the file shrank below the
+ * committed offset, it was rotated or truncated. The unread remainder of a rotated file is then
+ * read first if the file is still found in the same directory (renamed rotation), followed by
+ * the new file from its start. The new offset is only committed when the load step completes.
+ *
+ * Tail loads are retry-safe: each chunk records, in its own transaction, how many lines past the
+ * committed offset are loaded without a gap ({@link #recordLoadedLines}). A failed run keeps that
+ * count, and the next run skips those lines as long as it continues from the same offset, so rows
+ * committed by the failed run are not inserted again. The count is cleared by {@link #commit}.
+ */
+@Service
+public class FileTailService {
+    
+    private static final Logger log = LoggerFactory.getLogger(FileTailService.class);
+    
+    public static final String TAIL = "TAIL";
+    
+    static final int HEAD_BYTES = 4096;
+    private static final int SCAN_BLOCK = 8192;
+    
+    /**
+     * Bytes {@code [start, end)} of a file.
+     */
+    public record Segment(Path path, long start, long end) {}
+    
+    /**
+     * The segments to read in this run and the state to commit once they are loaded.
+     */
+    record TailPlan(List<Segment> segments, String filePath, String fileKey, long fileSize, LocalDateTime lastModified,
+                    long offset, int headLength, String headHash, int loadedLines) {}
+    
+    private final FileReadStateRepository fileReadStateRepository;
+    private final JdbcTemplate jdbcTemplate;
+    
+    private final Map<String, TailPlan> pendingPlans = new ConcurrentHashMap<>();
+    
+    public FileTailService(FileReadStateRepository fileReadStateRepository, JdbcTemplate jdbcTemplate) {
+        this.fileReadStateRepository = fileReadStateRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    public static boolean isTailMode(FileConfig fileConfig) {
+        return TAIL.equalsIgnoreCase(fileConfig.getReadMode());
+    }
+    
+    /**
+     * Returns the segments the next load of the config should read, and keeps the plan until
+     * {@link #commit} or {@link #discard}.
+     */
+    public List<Segment> prepare(FileConfig fileConfig) {
+        FileReadState previous = fileReadStateRepository.findByConfigName(fileConfig.getConfigName()).orElse(null);
+        TailPlan plan = plan(fileConfig, previous);
+        pendingPlans.put(fileConfig.getConfigName(), plan);
+        
+        long bytes = plan.segments().stream().mapToLong(segment -> segment.end() - segment.start()).sum();
+        log.info("Tail read of {} for config {}: {} new bytes in {} segments, up to offset {}",
+                plan.filePath(), fileConfig.getConfigName(), bytes, plan.segments().size(), plan.offset());
+        if (plan.loadedLines() > 0) {
+            log.info("Skipping the first {} lines of the read, loaded by a failed run", plan.loadedLines());
+        }
+        return plan.segments();
+    }
+    
+    /**
+     * Whether a tail read of the config is prepared and not yet committed or discarded.
+     */
+    public boolean isPending(String configName) {
+        return pendingPlans.containsKey(configName);
+    }
+    
+    /**
+     * Leading lines of the prepared read that a failed run already loaded; the reader skips them.
+     */
+    public int loadedLines(String configName) {
+        TailPlan plan = pendingPlans.get(configName);
+        return plan != null ? plan.loadedLines() : 0;
+    }
+    
+    /**
+     * Records that the first {@code lines} lines of the prepared read are loaded. Called inside
+     * the chunk transaction that loaded the last of them, so the count commits with the rows.
+     * A config read for the first time gets a state row at offset 0 that the next plan accepts
+     * as the same file.
+     */
+    public void recordLoadedLines(String configName, int lines) {
+        int updated = jdbcTemplate.update(
+                "UPDATE FILE_READ_STATE SET LOADED_LINES = ?, UPDATED_DATE = CURRENT_TIMESTAMP WHERE CONFIG_NAME = ?",
+                lines, configName);
+        TailPlan plan = pendingPlans.get(configName);
+        if (updated == 0 && plan != null) {
+            jdbcTemplate.update("INSERT INTO FILE_READ_STATE (ID, CONFIG_NAME, FILE_PATH, FILE_KEY, COMMITTED_OFFSET, "
+                            + "HEAD_LENGTH, HEAD_HASH, LOADED_LINES) VALUES (FILE_READ_STATE_SEQ.NEXTVAL, ?, ?, ?, 0, 0, ?, ?)",
+                    configName, plan.filePath(), plan.fileKey(), sha256(new byte[0]), lines);
+        }
+    }
+    
+    /**
+     * Stores the offset reached by the prepared read after its load completed.
+     */
+    public void commit(String configName) {
+        TailPlan plan = pendingPlans.remove(configName);
+        if (plan == null) {
+            return;
+        }
+        
+        FileReadState state = fileReadStateRepository.findByConfigName(configName).orElseGet(() -> new FileReadState(configName));
+        state.setFilePath(plan.filePath());
+        state.setFileKey(plan.fileKey());
+        state.setFileSize(plan.fileSize());
+        state.setLastModified(plan.lastModified());
+        state.setCommittedOffset(plan.offset());
+        state.setHeadLength(plan.headLength());
+        state.setHeadHash(plan.headHash());
+        state.setLoadedLines(0);
+        fileReadStateRepository.save(state);
+        log.info("Committed tail offset {} of {} for config {}", plan.offset(), plan.filePath(), configName);
+    }
+    
+    /**
+     * Drops the prepared read of a failed load, so the next run reads the same lines again,
+     * except those its chunks already loaded.
+     */
+    public void discard(String configName) {
+        pendingPlans.remove(configName);
+    }
+    
+    TailPlan plan(FileConfig fileConfig, FileReadState previous) {
+        Path path = Paths.get(fileConfig.getSourceFilePath());
+        boolean hasHeader = Boolean.TRUE.equals(fileConfig.getHasHeader());
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            String fileKey = attributes.fileKey() != null ? attributes.fileKey().toString() : null;
+            long size = attributes.size();
+            
+            List<Segment> segments = new ArrayList<>();
+            long start;
+            // Lines loaded by a failed run are only skipped when this read continues from the same offset
+            boolean continues = false;
+            if (previous != null && isSameFile(path, fileKey, size, previous)) {
+                long offset = previous.getCommittedOffset();
+                start = offset == 0 && hasHeader ? headerEnd(path, size) : offset;
+                continues = true;
+            } else {
+                if (previous != null) {
+                    Segment remainder = rotatedRemainder(path, previous);
+                    if (remainder != null) {
+                        segments.add(remainder);
+                        continues = true;
+                    }
+                }
+                start = hasHeader ? headerEnd(path, size) : 0;
+            }
+            int loadedLines = continues && previous.getLoadedLines() != null ? previous.getLoadedLines() : 0;
+            
+            long end = lastLineEnd(path, start, size);
+            if (end > start) {
+                segments.add(new Segment(path, start, end));
+            }
+            
+            int headLength = (int) Math.min(HEAD_BYTES, end);
+            return new TailPlan(segments, path.toString(), fileKey, size,
+                    LocalDateTime.ofInstant(attributes.lastModifiedTime().toInstant(), ZoneId.systemDefault()),
+                    end, headLength, headHash(path, headLength), loadedLines);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not plan tail read of " + path, e);
+        }
+    }
+    
+    private boolean isSameFile(Path path, String fileKey, long size, FileReadState previous) throws IOException {
+        if (!path.toString().equals(previous.getFilePath())) {
+            return false;
+        }
+        if (fileKey != null && previous.getFileKey() != null && !fileKey.equals(previous.getFileKey())) {
+            return false;
+        }
+        if (size < previous.getCommittedOffset() || size < previous.getHeadLength()) {
+            return false;
+        }
+        return headHash(path, previous.getHeadLength()).equals(previous.getHeadHash());
+    }
+    
+    /**
+     * The unread end of the previously read file, when it was renamed and is still in the same
+     * directory. Rotated files are complete, so the remainder runs to the end of the file.
+     */
+    private Segment rotatedRemainder(Path path, FileReadState previous) throws IOException {
+        long offset = previous.getCommittedOffset();
+        Path directory = path.toAbsolutePath().getParent();
+        if (previous.getFileKey() == null || directory == null) {
+            log.warn("Source file {} was rotated or truncated; lines appended to the old file after offset {} cannot be located",
+                    path, offset);
+            return null;
+        }
+        
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path candidate : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(candidate) || candidate.equals(path.toAbsolutePath())) {
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(candidate, BasicFileAttributes.class);
+                if (attributes.fileKey() != null && previous.getFileKey().equals(attributes.fileKey().toString())) {
+                    log.info("Source file {} was rotated to {}, reading its remaining {} bytes first",
+                            path, candidate, attributes.size() - offset);
+                    return attributes.size() > offset ? new Segment(candidate, offset, attributes.size()) : null;
+                }
+            }
+        }
+        log.warn("Source file {} was rotated and the previous file is gone; reading the new file from its start", path);
+        return null;
+    }
+    
+    /**
+     * Offset after the first line, or 0 while the header line is incomplete.
+     */
+    private static long headerEnd(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BLOCK);
+            long position = 0;
+            while (position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        return position + i + 1;
+                    }
+                }
+                position += read;
+            }
+            return 0;
+        }
+    }
+    
+    /**
+     * Offset after the last newline in {@code [start, size)}, or {@code start} when there is none.
+     * Scans backwards, so the cost is bounded by the length of the incomplete last line.
+     */
+    private static long lastLineEnd(Path path, long start, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BLOCK);
+            long blockEnd = size;
+            while (blockEnd > start) {
+                long blockStart = Math.max(start, blockEnd - SCAN_BLOCK);
+                buffer.clear();
+                buffer.limit((int) (blockEnd - blockStart));
+                int read = channel.read(buffer, blockStart);
+                for (int i = read - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        return blockStart + i + 1;
+                    }
+                }
+                blockEnd = blockStart;
+            }
+            return start;
+        }
+    }
+    
+    private static String headHash(Path path, int length) throws IOException {
+        byte[] head = new byte[length];
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(head);
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // Fill the head buffer
+            }
+        }
+        return sha256(head);
+    }
+    
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,146 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.config.SparkSessionManager;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.expressions.Window;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.spark.sql.functions.*;
+
+/**
+ * Computes per-column breakdowns for many columns with a single scan and shuffle.
+ *
+ * Every row is exploded into (column_name, value) pairs, so one aggregation keyed on the pair
+ * replaces a separate group by per column. Results carry the column_name so they can be
+ * written with one directory per column.
+ */
+@Component
+public class FusedAnalyticsEngine {
+    
+    public static final String COLUMN_NAME = "column_name";
+    
+    private static final StructType CANDIDATE_SCHEMA = new StructType()
+            .add(COLUMN_NAME, DataTypes.StringType)
+            .add("value", DataTypes.StringType);
+    
+    private static final StructType MATRIX_SCHEMA = new StructType()
+            .add("column_a", DataTypes.StringType)
+            .add("column_b", DataTypes.StringType)
+            .add("covariance", DataTypes.DoubleType)
+            .add("correlation", DataTypes.DoubleType);
+    
+    private final SparkSessionManager sparkSessionManager;
+    
+    public FusedAnalyticsEngine(SparkSessionManager sparkSessionManager) {
+        this.sparkSessionManager = sparkSessionManager;
+    }
+    
+    /**
+     * Returns one (column_name, value) row per cell of the given columns, values as strings.
+     */
+    public Dataset<Row> columnValuePairs(Dataset<Row> dataDF, List<String> columns) {
+        Column[] pairs = columns.stream()
+                .map(c -> struct(lit(c).alias(COLUMN_NAME), col(c).cast("string").alias("value")))
+                .toArray(Column[]::new);
+        
+        return dataDF
+                .select(explode(array(pairs)).alias("pair"))
+                .select(col("pair." + COLUMN_NAME), col("pair.value"));
+    }
+    
+    /**
+     * Counts every value of every column in one aggregation. With {@code candidates} only those
+     * values are counted; with a positive {@code topK} only the most frequent values of each
+     * column are kept.
+     */
+    public Dataset<Row> valueFrequencies(Dataset<Row> dataDF, List<String> columns,
+                                         Map<String, List<Object>> candidates, int topK) {
+        Dataset<Row> pairs = columnValuePairs(dataDF, columns);
+        
+        if (candidates != null) {
+            Dataset<Row> candidateDF = broadcast(candidateFrame(candidates));
+            pairs = pairs.join(candidateDF,
+                    pairs.col(COLUMN_NAME).equalTo(candidateDF.col(COLUMN_NAME))
+                            .and(pairs.col("value").equalTo(candidateDF.col("value"))),
+                    "left_semi");
+        }
+        
+        Dataset<Row> frequencies = pairs
+                .groupBy(COLUMN_NAME, "value")
+                .agg(count(lit(1)).alias("count"));
+        
+        if (topK > 0) {
+            frequencies = frequencies
+                    .withColumn("rank", row_number().over(Window.partitionBy(COLUMN_NAME).orderBy(desc("count"))))
+                    .filter(col("rank").leq(topK))
+                    .drop("rank");
+        }
+        return frequencies;
+    }
+    
+    /**
+     * Counts the (length, alphabetic prefix) shapes of every column's values in one aggregation.
+     */
+    public Dataset<Row> patternFrequencies(Dataset<Row> dataDF, List<String> columns) {
+        return columnValuePairs(dataDF, columns)
+                .select(
+                        col(COLUMN_NAME),
+                        length(col("value")).alias("length"),
+                        regexp_extract(col("value"), "^[A-Za-z]+", 0).alias("alpha_prefix"))
+                .groupBy(COLUMN_NAME, "length", "alpha_prefix")
+                .agg(count(lit(1)).alias("count"));
+    }
+    
+    /**
+     * Computes the sample covariance and Pearson correlation of every pair of columns in one
+     * aggregation, returned as the full matrix in long format (column_a, column_b, covariance,
+     * correlation). Each pair uses the rows where both values are present.
+     */
+    public Dataset<Row> correlationMatrix(Dataset<Row> dataDF, List<String> columns) {
+        List<Column> aggregates = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            Column a = col(columns.get(i)).cast("double");
+            for (int j = i; j < columns.size(); j++) {
+                Column b = col(columns.get(j)).cast("double");
+                aggregates.add(covar_samp(a, b).alias("cov_" + i + "_" + j));
+                if (i != j) {
+                    aggregates.add(corr(a, b).alias("corr_" + i + "_" + j));
+                }
+            }
+        }
+        
+        Row result = dataDF.select(aggregates.toArray(new Column[0])).first();
+        
+        // Only the upper triangle is aggregated; the lower one mirrors it
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            for (int j = 0; j < columns.size(); j++) {
+                String pair = Math.min(i, j) + "_" + Math.max(i, j);
+                Double covariance = result.getAs("cov_" + pair);
+                Double correlation;
+                if (i == j) {
+                    correlation = covariance != null && covariance > 0 ? 1.0 : null;
+                } else {
+                    correlation = result.getAs("corr_" + pair);
+                }
+                rows.add(RowFactory.create(columns.get(i), columns.get(j), covariance, correlation));
+            }
+        }
+        return sparkSessionManager.getSession().createDataFrame(rows, MATRIX_SCHEMA);
+    }
+    
+    private Dataset<Row> candidateFrame(Map<String, List<Object>> candidates) {
+        List<Row> rows = new ArrayList<>();
+        candidates.forEach((column, values) -> values.forEach(value -> rows.add(RowFactory.create(column, value.toString()))));
+        return sparkSessionManager.getSession().createDataFrame(rows, CANDIDATE_SCHEMA);
+    }
+}
\ No newline at end of file
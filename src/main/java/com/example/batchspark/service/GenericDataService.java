@@ -6,6 +6,7 @@ import com.example.batchspark.model.GenericDataRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -15,7 +16,13 @@ import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,35 +38,25 @@ public class GenericDataService {
     
     @Transactional
     public void createTableIfNotExists(FileConfig fileConfig) {
-        String tableName = fileConfig.getTargetTableName();
-        
+        createTableIfNotExists(fileConfig.getTargetTableName(),
+                createTableStatements(fileConfig, fileConfig.getColumnConfigs()));
+    }
+    
+    @Transactional
+    public void createTableIfNotExists(FileConfigPlan plan) {
+        createTableIfNotExists(plan.getFileConfig().getTargetTableName(), plan.getCreateTableStatements());
+    }
+    
+    private void createTableIfNotExists(String tableName, List<String> createTableStatements) {
         // Check if table exists
         String checkTableSql = "SELECT COUNT(*) FROM user_tables WHERE table_name = ?";
         Integer count = jdbcTemplate.queryForObject(checkTableSql, Integer.class, tableName.toUpperCase());
         
         if (count == 0) {
-            // Create table
-            StringBuilder createTableSql = new StringBuilder();
-            createTableSql.append("CREATE TABLE ").append(tableName).append(" (");
-            createTableSql.append("ID NUMBER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, ");
-            
-            for (ColumnConfig column : fileConfig.getColumnConfigs()) {
-                createTableSql.append(column.getTargetColumnName()).append(" ");
-                createTableSql.append(getOracleDataType(column));
-                
-                if (!column.getIsNullable()) {
-                    createTableSql.append(" NOT NULL");
-                }
-                
-                createTableSql.append(", ");
+            for (String statement : createTableStatements) {
+                log.info("Creating table: {}", statement);
+                jdbcTemplate.execute(statement);
             }
-            
-            createTableSql.append("CREATED_DATE TIMESTAMP DEFAULT CURRENT_TIMESTAMP, ");
-            createTableSql.append("UPDATED_DATE TIMESTAMP DEFAULT CURRENT_TIMESTAMP");
-            createTableSql.append(")");
-            
-            log.info("Creating table: {}", createTableSql.toString());
-            jdbcTemplate.execute(createTableSql.toString());
         }
     }
     
@@ -69,10 +66,243 @@ public class GenericDataService {
             return;
         }
         
+        log.info("Executing batch insert for {} records into table {}", records.size(), fileConfig.getTargetTableName());
+        jdbcTemplate.batchUpdate(insertSql(fileConfig.getTargetTableName(), fileConfig.getColumnConfigs()),
+                batchArgs(records, fileConfig.getColumnConfigs()));
+    }
+    
+    @Transactional
+    public void insertBatch(List<? extends GenericDataRecord> records, FileConfigPlan plan) {
+        if (records.isEmpty()) {
+            return;
+        }
+        
+        log.info("Executing batch insert for {} records into table {}", records.size(), plan.getFileConfig().getTargetTableName());
+        jdbcTemplate.batchUpdate(plan.getInsertSql(), clusterByPartition(batchArgs(records, plan.getColumns()), plan));
+    }
+    
+    /**
+     * Inserts new records and updates existing ones, matched on the primary key columns.
+     */
+    @Transactional
+    public void mergeBatch(List<? extends GenericDataRecord> records, FileConfig fileConfig) {
+        if (records.isEmpty()) {
+            return;
+        }
+        
+        log.info("Executing batch merge for {} records into table {}", records.size(), fileConfig.getTargetTableName());
+        jdbcTemplate.batchUpdate(mergeSql(fileConfig.getTargetTableName(), fileConfig.getColumnConfigs(), primaryKeyColumns(fileConfig)),
+                batchArgs(records, fileConfig.getColumnConfigs()));
+    }
+    
+    /**
+     * Inserts new records and updates existing ones, matched on the primary key columns.
+     */
+    @Transactional
+    public void mergeBatch(List<? extends GenericDataRecord> records, FileConfigPlan plan) {
+        if (records.isEmpty()) {
+            return;
+        }
+        
+        log.info("Executing batch merge for {} records into table {}", records.size(), plan.getFileConfig().getTargetTableName());
+        jdbcTemplate.batchUpdate(plan.getMergeSql(), clusterByPartition(batchArgs(records, plan.getColumns()), plan));
+    }
+    
+    private List<Object[]> batchArgs(List<? extends GenericDataRecord> records, List<ColumnConfig> columns) {
+        return records.stream()
+                .map(record -> columns.stream()
+                        .map(column -> convertValue(
+                                record.getColumnValue(column.getSourceColumnName()),
+                                column.getDataType()))
+                        .toArray())
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Orders the rows of a batch by their range or list partition key, so that consecutive rows
+     * of the array DML go to the same table partition. Hash partitions cannot be derived from the
+     * key, so those batches keep their file order.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Object[]> clusterByPartition(List<Object[]> batchArgs, FileConfigPlan plan) {
+        int keyIndex = plan.getPartitionKeyIndex();
+        String scheme = plan.getFileConfig().getPartitionScheme();
+        if (keyIndex >= 0 && !"HASH".equalsIgnoreCase(scheme)) {
+            batchArgs.sort(Comparator.comparing(args -> (Comparable<Object>) args[keyIndex],
+                    Comparator.nullsLast(Comparator.naturalOrder())));
+        }
+        return batchArgs;
+    }
+    
+    /**
+     * The statements creating a config's table: the table, partitioned and compressed as the
+     * config describes, followed by one index per INDEX_NAME. Indexes of partitioned tables are
+     * local, so each table partition is indexed on its own. A DELTA_LOAD table also gets a unique
+     * index on its primary key columns, which the delta MERGE and deletes look rows up by; it is
+     * global, as a local unique index would need the partition key among its columns.
+     */
+    static List<String> createTableStatements(FileConfig fileConfig, List<ColumnConfig> columns) {
         String tableName = fileConfig.getTargetTableName();
-        List<ColumnConfig> columns = fileConfig.getColumnConfigs();
+        List<String> statements = new ArrayList<>();
+        statements.add(createTableSql(tableName, columns)
+                + compressionClause(fileConfig.getTableCompression())
+                + partitionClause(fileConfig, columns));
+        
+        Map<String, List<String>> indexes = new LinkedHashMap<>();
+        for (ColumnConfig column : columns) {
+            if (column.getIndexName() != null && !column.getIndexName().isBlank()) {
+                indexes.computeIfAbsent(column.getIndexName().trim(), name -> new ArrayList<>()).add(column.getTargetColumnName());
+            }
+        }
+        indexes.forEach((indexName, indexColumns) -> statements.add("CREATE INDEX " + indexName + " ON " + tableName
+                + " (" + String.join(", ", indexColumns) + ")" + (fileConfig.isPartitioned() ? " LOCAL" : "")));
         
-        // Build insert SQL
+        List<ColumnConfig> keyColumns = primaryKeyColumns(fileConfig);
+        if (Boolean.TRUE.equals(fileConfig.getDeltaLoad()) && !keyColumns.isEmpty()) {
+            statements.add("CREATE UNIQUE INDEX " + deltaKeyIndexName(tableName) + " ON " + tableName + " ("
+                    + keyColumns.stream().map(ColumnConfig::getTargetColumnName).collect(Collectors.joining(", ")) + ")");
+        }
+        return statements;
+    }
+    
+    static String deltaKeyIndexName(String tableName) {
+        return tableName.toUpperCase() + "_DELTA_KEY";
+    }
+    
+    /**
+     * Whether the table has a unique index on some of the given columns, so that rows can be
+     * looked up by them without a full scan.
+     */
+    public boolean hasUniqueIndex(String tableName, List<ColumnConfig> columns) {
+        Set<String> columnNames = columns.stream()
+                .map(column -> column.getTargetColumnName().toUpperCase())
+                .collect(Collectors.toSet());
+        Map<String, List<String>> indexColumns = new HashMap<>();
+        jdbcTemplate.query("SELECT c.INDEX_NAME, c.COLUMN_NAME FROM USER_INDEXES i"
+                        + " JOIN USER_IND_COLUMNS c ON c.INDEX_NAME = i.INDEX_NAME"
+                        + " WHERE i.TABLE_NAME = ? AND i.UNIQUENESS = 'UNIQUE'",
+                (RowCallbackHandler) rs -> indexColumns.computeIfAbsent(rs.getString(1), name -> new ArrayList<>()).add(rs.getString(2)),
+                tableName.toUpperCase());
+        return indexColumns.values().stream().anyMatch(columnNames::containsAll);
+    }
+    
+    private static String createTableSql(String tableName, List<ColumnConfig> columns) {
+        StringBuilder createTableSql = new StringBuilder();
+        createTableSql.append("CREATE TABLE ").append(tableName).append(" (");
+        createTableSql.append("ID NUMBER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, ");
+        
+        for (ColumnConfig column : columns) {
+            createTableSql.append(column.getTargetColumnName()).append(" ");
+            createTableSql.append(getOracleDataType(column));
+            
+            if (!column.getIsNullable()) {
+                createTableSql.append(" NOT NULL");
+            }
+            
+            createTableSql.append(", ");
+        }
+        
+        createTableSql.append("CREATED_DATE TIMESTAMP DEFAULT CURRENT_TIMESTAMP, ");
+        createTableSql.append("UPDATED_DATE TIMESTAMP DEFAULT CURRENT_TIMESTAMP");
+        createTableSql.append(")");
+        return createTableSql.toString();
+    }
+    
+    private static String compressionClause(String compression) {
+        if (compression == null || compression.isBlank() || "NONE".equalsIgnoreCase(compression)) {
+            return "";
+        }
+        
+        switch (compression.trim().toUpperCase()) {
+            case "BASIC":
+                return " ROW STORE COMPRESS BASIC";
+            case "ADVANCED":
+                return " ROW STORE COMPRESS ADVANCED";
+            case "QUERY_LOW":
+            case "QUERY_HIGH":
+            case "ARCHIVE_LOW":
+            case "ARCHIVE_HIGH":
+                return " COLUMN STORE COMPRESS FOR " + compression.trim().toUpperCase().replace('_', ' ');
+            default:
+                throw new IllegalArgumentException("Unknown TABLE_COMPRESSION " + compression);
+        }
+    }
+    
+    /**
+     * Range partitions are created by Oracle as rows arrive (interval partitioning), one per
+     * PARTITION_INTERVAL; list partitions likewise, one per key value (automatic list
+     * partitioning). An interval-partitioned table cannot hold rows without a key, so the key of
+     * a range-partitioned config must be a NOT NULL column.
+     */
+    private static String partitionClause(FileConfig fileConfig, List<ColumnConfig> columns) {
+        if (!fileConfig.isPartitioned()) {
+            return "";
+        }
+        
+        List<ColumnConfig> keys = columns.stream()
+                .filter(column -> Boolean.TRUE.equals(column.getIsPartitionKey()))
+                .collect(Collectors.toList());
+        if (keys.size() != 1) {
+            throw new IllegalArgumentException("Config " + fileConfig.getConfigName() + " is partitioned by "
+                    + fileConfig.getPartitionScheme() + " and needs exactly one IS_PARTITION_KEY column, found " + keys.size());
+        }
+        ColumnConfig key = keys.get(0);
+        
+        switch (fileConfig.getPartitionScheme().toUpperCase()) {
+            case "RANGE":
+                if (!Boolean.FALSE.equals(key.getIsNullable())) {
+                    throw new IllegalArgumentException("Config " + fileConfig.getConfigName() + " is partitioned by RANGE on "
+                            + key.getTargetColumnName() + ", which has to be IS_NULLABLE = 0");
+                }
+                return " PARTITION BY RANGE (" + key.getTargetColumnName() + ")" + rangeInterval(key, fileConfig.getPartitionInterval());
+            case "LIST":
+                return " PARTITION BY LIST (" + key.getTargetColumnName() + ") AUTOMATIC (PARTITION P_NULL VALUES (NULL))";
+            case "HASH":
+                return " PARTITION BY HASH (" + key.getTargetColumnName() + ") PARTITIONS "
+                        + (fileConfig.getPartitionCount() != null ? fileConfig.getPartitionCount() : 16);
+            default:
+                throw new IllegalArgumentException("Unknown PARTITION_SCHEME " + fileConfig.getPartitionScheme());
+        }
+    }
+    
+    private static String rangeInterval(ColumnConfig key, String interval) {
+        String keyType = getOracleDataType(key);
+        if (keyType.equals("DATE") || keyType.equals("TIMESTAMP")) {
+            String unit = interval != null && !interval.isBlank() ? interval.trim().toUpperCase() : "MONTH";
+            String numToInterval;
+            switch (unit) {
+                case "DAY":
+                    numToInterval = "NUMTODSINTERVAL(1, 'DAY')";
+                    break;
+                case "MONTH":
+                case "YEAR":
+                    numToInterval = "NUMTOYMINTERVAL(1, '" + unit + "')";
+                    break;
+                default:
+                    throw new IllegalArgumentException("PARTITION_INTERVAL of a date key must be DAY, MONTH or YEAR, not " + interval);
+            }
+            String start = keyType.equals("DATE") ? "DATE '1970-01-01'" : "TIMESTAMP '1970-01-01 00:00:00'";
+            return " INTERVAL (" + numToInterval + ") (PARTITION P0 VALUES LESS THAN (" + start + "))";
+        }
+        
+        if (keyType.startsWith("NUMBER") && !keyType.equals("NUMBER(1)")) {
+            long width;
+            try {
+                width = Long.parseLong(interval != null ? interval.trim() : "");
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("PARTITION_INTERVAL of a numeric key must be a positive width, not " + interval);
+            }
+            if (width <= 0) {
+                throw new IllegalArgumentException("PARTITION_INTERVAL of a numeric key must be a positive width, not " + interval);
+            }
+            return " INTERVAL (" + width + ") (PARTITION P0 VALUES LESS THAN (0))";
+        }
+        
+        throw new IllegalArgumentException("RANGE partitioning needs a date or numeric key, "
+                + key.getTargetColumnName() + " is " + key.getDataType());
+    }
+    
+    static String insertSql(String tableName, List<ColumnConfig> columns) {
         StringBuilder insertSql = new StringBuilder();
         insertSql.append("INSERT INTO ").append(tableName).append(" (");
         
@@ -87,21 +317,64 @@ public class GenericDataService {
                 .collect(Collectors.joining(", "));
         
         insertSql.append(placeholders).append(")");
+        return insertSql.toString();
+    }
+    
+    static String mergeSql(String tableName, List<ColumnConfig> columns, List<ColumnConfig> keyColumns) {
+        String source = columns.stream()
+                .map(column -> "? AS " + column.getTargetColumnName())
+                .collect(Collectors.joining(", "));
+        String on = keyColumns.stream()
+                .map(column -> "t." + column.getTargetColumnName() + " = s." + column.getTargetColumnName())
+                .collect(Collectors.joining(" AND "));
+        String set = columns.stream()
+                .filter(column -> !keyColumns.contains(column))
+                .map(column -> "t." + column.getTargetColumnName() + " = s." + column.getTargetColumnName() + ", ")
+                .collect(Collectors.joining());
+        String names = columns.stream()
+                .map(ColumnConfig::getTargetColumnName)
+                .collect(Collectors.joining(", "));
+        String values = columns.stream()
+                .map(column -> "s." + column.getTargetColumnName())
+                .collect(Collectors.joining(", "));
         
-        // Prepare batch data
-        List<Object[]> batchArgs = records.stream()
-                .map(record -> columns.stream()
-                        .map(column -> convertValue(
-                                record.getColumnValue(column.getSourceColumnName()),
-                                column.getDataType()))
-                        .toArray())
+        return "MERGE INTO " + tableName + " t"
+                + " USING (SELECT " + source + " FROM dual) s ON (" + on + ")"
+                + " WHEN MATCHED THEN UPDATE SET " + set + "t.UPDATED_DATE = CURRENT_TIMESTAMP"
+                + " WHEN NOT MATCHED THEN INSERT (" + names + ") VALUES (" + values + ")";
+    }
+    
+    /**
+     * Deletes the rows with the given key values, one array per row in key column order.
+     */
+    @Transactional
+    public void deleteByKeys(List<Object[]> keys, List<ColumnConfig> keyColumns, FileConfig fileConfig) {
+        String deleteSql = "DELETE FROM " + fileConfig.getTargetTableName() + " WHERE "
+                + keyColumns.stream()
+                        .map(column -> column.getTargetColumnName() + " = ?")
+                        .collect(Collectors.joining(" AND "));
+        
+        List<Object[]> batchArgs = keys.stream()
+                .map(key -> {
+                    Object[] args = new Object[key.length];
+                    for (int i = 0; i < key.length; i++) {
+                        args[i] = convertValue(key[i], keyColumns.get(i).getDataType());
+                    }
+                    return args;
+                })
                 .collect(Collectors.toList());
         
-        log.info("Executing batch insert for {} records into table {}", records.size(), tableName);
-        jdbcTemplate.batchUpdate(insertSql.toString(), batchArgs);
+        log.info("Deleting {} rows from table {}", keys.size(), fileConfig.getTargetTableName());
+        jdbcTemplate.batchUpdate(deleteSql, batchArgs);
+    }
+    
+    public static List<ColumnConfig> primaryKeyColumns(FileConfig fileConfig) {
+        return fileConfig.getColumnConfigs().stream()
+                .filter(column -> Boolean.TRUE.equals(column.getIsPrimaryKey()))
+                .collect(Collectors.toList());
     }
     
-    private String getOracleDataType(ColumnConfig column) {
+    private static String getOracleDataType(ColumnConfig column) {
         String dataType = column.getDataType().toUpperCase();
         
         switch (dataType) {
@@ -111,7 +384,7 @@ public class GenericDataService {
             case "NUMBER":
             case "DECIMAL":
             case "BIGDECIMAL":
-                return "NUMBER(19,2)";
+                return "NUMBER(" + column.precision() + "," + column.scale() + ")";
             case "INTEGER":
             case "INT":
                 return "NUMBER(10)";
@@ -129,7 +402,10 @@ public class GenericDataService {
         }
     }
     
-    private Object convertValue(Object value, String dataType) {
+    /**
+     * Converts a processed value to the JDBC type stored for the given column data type.
+     */
+    public Object convertValue(Object value, String dataType) {
         if (value == null || value.toString().trim().isEmpty()) {
             return null;
         }
@@ -0,0 +1,321 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.config.SparkSessionManager;
+import com.example.batchspark.model.AnalyticsState;
+import com.example.batchspark.model.ColumnConfig;
+import com.example.batchspark.model.FileConfig;
+import com.example.batchspark.repository.AnalyticsStateRepository;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.NumericType;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.apache.spark.sql.functions.*;
+
+/**
+ * Keeps per-column aggregate state (counts, sum, sum of squares, min/max and an HLL distinct
+ * sketch) for each analytics table and folds only the rows added since the last run into it.
+ *
+ * The high-water mark is the largest ID already aggregated; the largest CREATED_DATE is kept
+ * alongside for reporting. With the state, the row count, smallest ID and latest UPDATED_DATE of
+ * the aggregated rows are stored. Before a delta is merged they are compared with the table's
+ * rows up to the mark: a difference means rows were reloaded, updated (UPDATED_DATE moved) or
+ * deleted since, and the state is rebuilt from the whole table, as it is when a column has no
+ * state yet.
+ */
+@Service
+public class IncrementalAnalyticsService {
+    
+    private static final Logger log = LoggerFactory.getLogger(IncrementalAnalyticsService.class);
+    
+    private static final String WATERMARK_COLUMN = "ID";
+    private static final String CREATED_DATE_COLUMN = "CREATED_DATE";
+    private static final String UPDATED_DATE_COLUMN = "UPDATED_DATE";
+    
+    private static final StructType SUMMARY_SCHEMA = new StructType()
+            .add("column_name", DataTypes.StringType)
+            .add("data_type", DataTypes.StringType)
+            .add("count", DataTypes.LongType)
+            .add("null_count", DataTypes.LongType)
+            .add("mean", DataTypes.DoubleType)
+            .add("stddev", DataTypes.DoubleType)
+            .add("min", DataTypes.StringType)
+            .add("max", DataTypes.StringType)
+            .add("approx_distinct", DataTypes.LongType);
+    
+    private final SparkSessionManager sparkSessionManager;
+    private final SparkJdbcReader sparkJdbcReader;
+    private final AnalyticsStateRepository analyticsStateRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final AnalyticsOutputSink analyticsOutputSink;
+    
+    @Value("${app.analytics.incremental.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${app.analytics.incremental.sketch-lg-k:12}")
+    private int sketchLgK;
+    
+    public IncrementalAnalyticsService(SparkSessionManager sparkSessionManager, SparkJdbcReader sparkJdbcReader,
+                                       AnalyticsStateRepository analyticsStateRepository, JdbcTemplate jdbcTemplate,
+                                       AnalyticsOutputSink analyticsOutputSink) {
+        this.sparkSessionManager = sparkSessionManager;
+        this.sparkJdbcReader = sparkJdbcReader;
+        this.analyticsStateRepository = analyticsStateRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.analyticsOutputSink = analyticsOutputSink;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    @Transactional
+    public void performIncrementalAnalytics(FileConfig fileConfig, String outputPath) {
+        String tableName = fileConfig.getTargetTableName();
+        List<String> columns = fileConfig.getColumnConfigs().stream()
+                .map(ColumnConfig::getTargetColumnName)
+                .collect(Collectors.toList());
+        
+        Map<String, AnalyticsState> states = analyticsStateRepository.findByTableName(tableName).stream()
+                .collect(Collectors.toMap(AnalyticsState::getColumnName, state -> state));
+        Long highWaterId = highWaterId(tableName, columns, states);
+        if (highWaterId == null && !states.isEmpty()) {
+            analyticsStateRepository.deleteAll(states.values());
+            analyticsStateRepository.flush();
+            states.clear();
+        }
+        
+        Set<String> readColumns = new LinkedHashSet<>(columns);
+        readColumns.add(WATERMARK_COLUMN);
+        readColumns.add(CREATED_DATE_COLUMN);
+        readColumns.add(UPDATED_DATE_COLUMN);
+        Dataset<Row> delta = sparkJdbcReader.readAfter(tableName, new ArrayList<>(readColumns), WATERMARK_COLUMN, highWaterId);
+        
+        StructField[] fields = columns.stream()
+                .map(column -> delta.schema().apply(column))
+                .toArray(StructField[]::new);
+        Row aggregates = aggregateDelta(delta, fields);
+        long deltaRows = aggregates.getLong(aggregates.fieldIndex("row_count"));
+        
+        if (deltaRows == 0) {
+            log.info("No rows added to {} after ID {}, analytics state unchanged", tableName, highWaterId);
+        } else {
+            mergeDelta(tableName, fields, aggregates, states);
+            log.info("Merged {} new rows of {} into analytics state (previous high-water ID {})",
+                    deltaRows, tableName, highWaterId);
+        }
+        
+        writeSummary(fileConfig, columns, states, outputPath);
+    }
+    
+    /**
+     * Returns the ID up to which the stored state is complete, or null when it has to be rebuilt.
+     */
+    private Long highWaterId(String tableName, List<String> columns, Map<String, AnalyticsState> states) {
+        if (states.isEmpty() || !states.keySet().containsAll(columns)) {
+            return null;
+        }
+        
+        AnalyticsState reference = states.get(columns.get(0));
+        Long highWaterId = reference.getHighWaterId();
+        if (highWaterId == null) {
+            return null;
+        }
+        
+        String mismatch = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) AS ROW_COUNT, MIN(" + WATERMARK_COLUMN + ") AS MIN_ID, MAX(" + UPDATED_DATE_COLUMN + ") AS MAX_UPDATED"
+                        + " FROM " + tableName + " WHERE " + WATERMARK_COLUMN + " <= ?",
+                (rs, rowNum) -> {
+                    long rowCount = rs.getLong("ROW_COUNT");
+                    long minId = rs.getLong("MIN_ID");
+                    Long sourceMinId = rs.wasNull() ? null : minId;
+                    Timestamp maxUpdated = rs.getTimestamp("MAX_UPDATED");
+                    if (reference.getRowCount() == null || rowCount != reference.getRowCount()) {
+                        return rowCount + " rows instead of " + reference.getRowCount();
+                    }
+                    if (!Objects.equals(sourceMinId, reference.getSourceMinId())) {
+                        return "smallest ID " + sourceMinId + " instead of " + reference.getSourceMinId();
+                    }
+                    LocalDateTime sourceMaxUpdated = maxUpdated != null ? maxUpdated.toLocalDateTime() : null;
+                    if (!Objects.equals(sourceMaxUpdated, reference.getSourceMaxUpdated())) {
+                        return "rows updated at " + sourceMaxUpdated;
+                    }
+                    return "";
+                },
+                highWaterId);
+        if (!mismatch.isEmpty()) {
+            log.info("Table {} changed up to high-water ID {} ({}), rebuilding analytics state",
+                    tableName, highWaterId, mismatch);
+            return null;
+        }
+        return highWaterId;
+    }
+    
+    private Row aggregateDelta(Dataset<Row> delta, StructField[] fields) {
+        List<Column> aggregates = new ArrayList<>();
+        aggregates.add(count(lit(1)).alias("row_count"));
+        aggregates.add(max(col(WATERMARK_COLUMN)).cast("long").alias("max_id"));
+        aggregates.add(max(col(CREATED_DATE_COLUMN)).cast("timestamp").alias("max_created"));
+        aggregates.add(min(col(WATERMARK_COLUMN)).cast("long").alias("min_id"));
+        aggregates.add(max(col(UPDATED_DATE_COLUMN)).cast("timestamp").alias("max_updated"));
+        
+        for (int i = 0; i < fields.length; i++) {
+            Column column = col(fields[i].name());
+            aggregates.add(count(column).alias("non_null_" + i));
+            aggregates.add(min(column).cast("string").alias("min_" + i));
+            aggregates.add(max(column).cast("string").alias("max_" + i));
+            aggregates.add(expr("hll_sketch_agg(CAST(`" + fields[i].name() + "` AS STRING), " + sketchLgK + ")")
+                    .alias("sketch_" + i));
+            
+            if (fields[i].dataType() instanceof NumericType) {
+                aggregates.add(sum(column).cast("string").alias("sum_" + i));
+                aggregates.add(sum(pow(column.cast("double"), 2)).alias("sum_squares_" + i));
+            }
+        }
+        
+        return delta.select(aggregates.toArray(new Column[0])).first();
+    }
+    
+    private void mergeDelta(String tableName, StructField[] fields, Row aggregates, Map<String, AnalyticsState> states) {
+        long deltaRows = aggregates.getLong(aggregates.fieldIndex("row_count"));
+        Long maxId = aggregates.getAs("max_id");
+        Timestamp maxCreated = aggregates.getAs("max_created");
+        Long minId = aggregates.getAs("min_id");
+        Timestamp maxUpdated = aggregates.getAs("max_updated");
+        
+        List<AnalyticsState> merged = new ArrayList<>();
+        List<byte[]> previousSketches = new ArrayList<>();
+        List<byte[]> deltaSketches = new ArrayList<>();
+        
+        for (int i = 0; i < fields.length; i++) {
+            boolean numeric = fields[i].dataType() instanceof NumericType;
+            
+            AnalyticsState delta = new AnalyticsState(tableName, fields[i].name(), fields[i].dataType().simpleString());
+            delta.setRowCount(deltaRows);
+            delta.setNonNullCount(aggregates.getLong(aggregates.fieldIndex("non_null_" + i)));
+            delta.setMinValue(aggregates.getAs("min_" + i));
+            delta.setMaxValue(aggregates.getAs("max_" + i));
+            if (numeric) {
+                String sumValue = aggregates.getAs("sum_" + i);
+                delta.setSumValue(sumValue != null ? new BigDecimal(sumValue) : null);
+                delta.setSumSquares(aggregates.getAs("sum_squares_" + i));
+            }
+            
+            AnalyticsState state = states.computeIfAbsent(fields[i].name(),
+                    name -> new AnalyticsState(tableName, name, delta.getDataType()));
+            previousSketches.add(state.getDistinctSketch());
+            deltaSketches.add(aggregates.getAs("sketch_" + i));
+            
+            AnalyticsStateMerger.merge(state, delta, numeric);
+            state.setDataType(delta.getDataType());
+            state.setHighWaterId(maxId);
+            if (maxCreated != null) {
+                state.setHighWaterDate(maxCreated.toLocalDateTime());
+            }
+            if (state.getSourceMinId() == null) {
+                state.setSourceMinId(minId);
+            }
+            if (maxUpdated != null && (state.getSourceMaxUpdated() == null
+                    || maxUpdated.toLocalDateTime().isAfter(state.getSourceMaxUpdated()))) {
+                state.setSourceMaxUpdated(maxUpdated.toLocalDateTime());
+            }
+            merged.add(state);
+        }
+        
+        mergeSketches(merged, previousSketches, deltaSketches);
+        analyticsStateRepository.saveAll(merged);
+    }
+    
+    /**
+     * Unions every column's stored sketch with its delta sketch and estimates the result, in one
+     * query over a single-row DataFrame.
+     */
+    private void mergeSketches(List<AnalyticsState> states, List<byte[]> previousSketches, List<byte[]> deltaSketches) {
+        StructType schema = new StructType();
+        List<Object> values = new ArrayList<>();
+        List<Column> sketches = new ArrayList<>();
+        
+        for (int i = 0; i < states.size(); i++) {
+            schema = schema.add("delta_" + i, DataTypes.BinaryType);
+            values.add(deltaSketches.get(i));
+            if (previousSketches.get(i) != null) {
+                schema = schema.add("previous_" + i, DataTypes.BinaryType);
+                values.add(previousSketches.get(i));
+                sketches.add(expr("hll_union(previous_" + i + ", delta_" + i + ", true)").alias("sketch_" + i));
+            } else {
+                sketches.add(col("delta_" + i).alias("sketch_" + i));
+            }
+        }
+        
+        List<Column> results = new ArrayList<>();
+        for (int i = 0; i < states.size(); i++) {
+            results.add(col("sketch_" + i));
+            results.add(expr("hll_sketch_estimate(sketch_" + i + ")").alias("estimate_" + i));
+        }
+        
+        Row row = sparkSessionManager.getSession()
+                .createDataFrame(List.of(RowFactory.create(values.toArray())), schema)
+                .select(sketches.toArray(new Column[0]))
+                .select(results.toArray(new Column[0]))
+                .first();
+        
+        for (int i = 0; i < states.size(); i++) {
+            states.get(i).setDistinctSketch(row.getAs("sketch_" + i));
+            states.get(i).setDistinctEstimate(row.getAs("estimate_" + i));
+        }
+    }
+    
+    private void writeSummary(FileConfig fileConfig, List<String> columns, Map<String, AnalyticsState> states, String outputPath) {
+        List<Row> summaryRows = new ArrayList<>();
+        for (String column : columns) {
+            AnalyticsState state = states.get(column);
+            if (state == null) {
+                continue;
+            }
+            summaryRows.add(RowFactory.create(
+                    column,
+                    state.getDataType(),
+                    state.getNonNullCount(),
+                    state.getRowCount() - state.getNonNullCount(),
+                    AnalyticsStateMerger.mean(state),
+                    AnalyticsStateMerger.stddev(state),
+                    state.getMinValue(),
+                    state.getMaxValue(),
+                    state.getDistinctEstimate()));
+        }
+        
+        if (summaryRows.isEmpty()) {
+            log.warn("No analytics state for table: {}", fileConfig.getTargetTableName());
+            return;
+        }
+        
+        Map<String, Long> nullCounts = new HashMap<>();
+        states.values().forEach(state -> nullCounts.put(state.getColumnName(), state.getRowCount() - state.getNonNullCount()));
+        log.info("Null counts for table {}: {}", fileConfig.getTargetTableName(), nullCounts);
+        
+        analyticsOutputSink.writeSmall(sparkSessionManager.getSession().createDataFrame(summaryRows, SUMMARY_SCHEMA),
+                outputPath + "/" + fileConfig.getTargetTableName() + "_summary");
+    }
+}
\ No newline at end of file
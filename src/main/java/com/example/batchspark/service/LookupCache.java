@@ -0,0 +1,79 @@
+package com.example.batchspark.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of reference-data lookups with hit/miss/eviction counters.
+ * Keys that were looked up and not found are cached as {@link #NOT_FOUND} so they
+ * are not queried again; keys whose reference value is null are cached as {@link #NULL_VALUE}.
+ */
+public class LookupCache {
+    
+    public static final Object NOT_FOUND = new Object();
+    public static final Object NULL_VALUE = new Object();
+    
+    private final int maxSize;
+    private final Map<String, Object> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    
+    // True when a preload fit entirely, so a miss means the key does not exist
+    private volatile boolean complete;
+    
+    public LookupCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                if (size() > LookupCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * Returns the cached value, {@link #NOT_FOUND}, or null when the key is not cached.
+     */
+    public synchronized Object get(String key) {
+        Object value = entries.get(key);
+        if (value != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return value;
+    }
+    
+    public synchronized void put(String key, Object value) {
+        entries.put(key, value != null ? value : NULL_VALUE);
+    }
+    
+    public synchronized void clear() {
+        entries.clear();
+        complete = false;
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    public int getMaxSize() { return maxSize; }
+    
+    public boolean isComplete() { return complete; }
+    public void setComplete(boolean complete) { this.complete = complete; }
+    
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+    
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+}
\ No newline at end of file
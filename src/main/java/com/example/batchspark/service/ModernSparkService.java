@@ -1,20 +1,18 @@
 package com.example.batchspark.service;
 
+import com.example.batchspark.config.SparkSessionManager;
 import com.example.batchspark.model.FileConfig;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
-import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.NumericType;
+import org.apache.spark.storage.StorageLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
-import jakarta.annotation.PreDestroy;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Properties;
+import java.util.stream.Collectors;
 
 import static org.apache.spark.sql.functions.*;
 
@@ -23,45 +21,36 @@ public class ModernSparkService {
     
     private static final Logger log = LoggerFactory.getLogger(ModernSparkService.class);
     
-    private SparkSession sparkSession;
-    private final JdbcTemplate jdbcTemplate;
+    private final SparkSessionManager sparkSessionManager;
+    private final ApproximateAnalytics approximateAnalytics;
+    private final FusedAnalyticsEngine fusedAnalyticsEngine;
+    private final AnalyticsOutputSink analyticsOutputSink;
+    private final AnalyticsDataReader analyticsDataReader;
+    private final CrossTableJoinPlanner crossTableJoinPlanner;
+    private final AnalyticsRunner analyticsRunner;
     
-    @Value("${spring.datasource.url}")
-    private String dbUrl;
-    
-    @Value("${spring.datasource.username}")
-    private String dbUsername;
-    
-    @Value("${spring.datasource.password}")
-    private String dbPassword;
-    
-    public ModernSparkService(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
-        initializeSparkSession();
-    }
-    
-    private void initializeSparkSession() {
-        this.sparkSession = SparkSession.builder()
-                .appName("ModernGenericDataProcessor")
-                .master("local[*]")
-                .config("spark.sql.adaptive.enabled", "true")
-                .config("spark.sql.adaptive.coalescePartitions.enabled", "true")
-                .config("spark.serializer", "org.apache.spark.serializer.KryoSerializer")
-                .config("spark.sql.execution.arrow.pyspark.enabled", "true")
-                .config("spark.sql.adaptive.skewJoin.enabled", "true")
-                .getOrCreate();
-        
-        sparkSession.sparkContext().setLogLevel("WARN");
-        log.info("Spark session initialized with version: {}", sparkSession.version());
+    public ModernSparkService(SparkSessionManager sparkSessionManager, ApproximateAnalytics approximateAnalytics,
+                              FusedAnalyticsEngine fusedAnalyticsEngine, AnalyticsOutputSink analyticsOutputSink,
+                              AnalyticsDataReader analyticsDataReader, CrossTableJoinPlanner crossTableJoinPlanner,
+                              AnalyticsRunner analyticsRunner) {
+        this.sparkSessionManager = sparkSessionManager;
+        this.approximateAnalytics = approximateAnalytics;
+        this.fusedAnalyticsEngine = fusedAnalyticsEngine;
+        this.analyticsOutputSink = analyticsOutputSink;
+        this.analyticsDataReader = analyticsDataReader;
+        this.crossTableJoinPlanner = crossTableJoinPlanner;
+        this.analyticsRunner = analyticsRunner;
     }
     
     public void performAdvancedAnalytics(FileConfig fileConfig, String outputPath) {
         log.info("Starting advanced Spark analytics for table: {}", fileConfig.getTargetTableName());
         
+        // Read once and cache, so the quality, statistical and pattern passes don't re-query Oracle
+        Dataset<Row> dataDF = analyticsDataReader.read(fileConfig)
+                .persist(StorageLevel.MEMORY_AND_DISK());
+        
         try {
-            Dataset<Row> dataDF = readFromOracle(fileConfig.getTargetTableName());
-            
-            if (dataDF.count() == 0) {
+            if (dataDF.isEmpty()) {
                 log.warn("No data found in table: {}", fileConfig.getTargetTableName());
                 return;
             }
@@ -70,30 +59,22 @@ public class ModernSparkService {
             String viewName = fileConfig.getTargetTableName().toLowerCase() + "_view";
             dataDF.createOrReplaceTempView(viewName);
             
-            // Perform comprehensive analytics
-            performDataQualityAnalysis(dataDF, fileConfig, outputPath);
-            performStatisticalAnalysis(dataDF, fileConfig, outputPath);
-            performPatternAnalysis(dataDF, fileConfig, outputPath);
+            // The analyses only share the cached input, so they run concurrently in the table's pool
+            analyticsRunner.runAll(fileConfig.getTargetTableName(), List.of(
+                    () -> performDataQualityAnalysis(dataDF, fileConfig, outputPath),
+                    () -> performStatisticalAnalysis(dataDF, fileConfig, outputPath),
+                    () -> performPatternAnalysis(dataDF, fileConfig, outputPath)));
             
             log.info("Completed advanced analytics for table: {}", fileConfig.getTargetTableName());
             
         } catch (Exception e) {
             log.error("Error in advanced analytics processing", e);
             throw new RuntimeException("Advanced analytics failed", e);
+        } finally {
+            dataDF.unpersist();
         }
     }
     
-    private Dataset<Row> readFromOracle(String tableName) {
-        Properties connectionProperties = new Properties();
-        connectionProperties.put("user", dbUsername);
-        connectionProperties.put("password", dbPassword);
-        connectionProperties.put("driver", "oracle.jdbc.OracleDriver");
-        connectionProperties.put("fetchsize", "10000");
-        
-        return sparkSession.read()
-                .jdbc(dbUrl, tableName, connectionProperties);
-    }
-    
     private void performDataQualityAnalysis(Dataset<Row> dataDF, FileConfig fileConfig, String outputPath) {
         log.info("Performing data quality analysis for table: {}", fileConfig.getTargetTableName());
         
@@ -112,16 +93,14 @@ public class ModernSparkService {
         nullAnalysis.show();
         
         // Save null analysis
-        nullAnalysis.coalesce(1)
-                .write()
-                .mode("overwrite")
-                .option("header", "true")
-                .csv(outputPath + "/" + fileConfig.getTargetTableName() + "_null_analysis");
+        analyticsOutputSink.writeSmall(nullAnalysis, outputPath + "/" + fileConfig.getTargetTableName() + "_null_analysis");
         
-        // Duplicate analysis
+        // Duplicate analysis; the approximate mode estimates distinct rows from a row hash instead of shuffling every column
         long totalRows = dataDF.count();
-        long distinctRows = dataDF.distinct().count();
-        long duplicateRows = totalRows - distinctRows;
+        long distinctRows = approximateAnalytics.isEnabled()
+                ? approximateAnalytics.estimateDistinctRows(dataDF)
+                : dataDF.distinct().count();
+        long duplicateRows = Math.max(0, totalRows - distinctRows);
         
         // Create duplicate analysis using SQL approach for better compatibility
         String duplicateAnalysisQuery = String.format(
@@ -131,13 +110,19 @@ public class ModernSparkService {
             totalRows, distinctRows, duplicateRows
         );
         
-        Dataset<Row> duplicateAnalysis = sparkSession.sql(duplicateAnalysisQuery);
+        if (approximateAnalytics.isCompareExact()) {
+            long exactDistinctRows = dataDF.distinct().count();
+            approximateAnalytics.logComparison(fileConfig.getTargetTableName() + " distinct rows", distinctRows, exactDistinctRows);
+            duplicateAnalysisQuery += String.format(
+                " UNION ALL SELECT 'distinct_rows_exact' as metric, %d as value" +
+                " UNION ALL SELECT 'duplicate_rows_exact' as metric, %d as value",
+                exactDistinctRows, totalRows - exactDistinctRows
+            );
+        }
+        
+        Dataset<Row> duplicateAnalysis = sparkSessionManager.getSession().sql(duplicateAnalysisQuery);
         
-        duplicateAnalysis.coalesce(1)
-                .write()
-                .mode("overwrite")
-                .option("header", "true")
-                .csv(outputPath + "/" + fileConfig.getTargetTableName() + "_duplicate_analysis");
+        analyticsOutputSink.writeSmall(duplicateAnalysis, outputPath + "/" + fileConfig.getTargetTableName() + "_duplicate_analysis");
     }
     
     private void performStatisticalAnalysis(Dataset<Row> dataDF, FileConfig fileConfig, String outputPath) {
@@ -147,25 +132,21 @@ public class ModernSparkService {
         Dataset<Row> enhancedSummary = dataDF.summary("count", "mean", "stddev", "min", "25%", "50%", "75%", "max");
         enhancedSummary.show();
         
-        enhancedSummary.coalesce(1)
-                .write()
-                .mode("overwrite")
-                .option("header", "true")
-                .csv(outputPath + "/" + fileConfig.getTargetTableName() + "_enhanced_summary");
+        analyticsOutputSink.writeSmall(enhancedSummary, outputPath + "/" + fileConfig.getTargetTableName() + "_enhanced_summary");
         
-        // Correlation analysis for numeric columns
-        String[] numericColumns = java.util.Arrays.stream(dataDF.dtypes())
-                .filter(tuple -> tuple._2().contains("Double") || tuple._2().contains("Integer") || tuple._2().contains("Long"))
-                .map(tuple -> tuple._1())
-                .toArray(String[]::new);
+        // Covariance and correlation of all numeric column pairs in one pass (Oracle NUMBER columns read as decimals)
+        List<String> numericColumns = java.util.Arrays.stream(dataDF.schema().fields())
+                .filter(field -> field.dataType() instanceof NumericType && !field.name().equalsIgnoreCase("ID"))
+                .map(field -> field.name())
+                .collect(Collectors.toList());
         
-        if (numericColumns.length > 1) {
-            for (int i = 0; i < numericColumns.length; i++) {
-                for (int j = i + 1; j < numericColumns.length; j++) {
-                    double correlation = dataDF.stat().corr(numericColumns[i], numericColumns[j]);
-                    log.info("Correlation between {} and {}: {}", numericColumns[i], numericColumns[j], correlation);
-                }
-            }
+        if (numericColumns.size() > 1) {
+            Dataset<Row> correlationMatrix = fusedAnalyticsEngine.correlationMatrix(dataDF, numericColumns);
+            
+            analyticsOutputSink.writeSmall(correlationMatrix, outputPath + "/" + fileConfig.getTargetTableName() + "_correlation_matrix");
+            
+            log.info("Computed {}x{} correlation matrix for table: {}",
+                    numericColumns.size(), numericColumns.size(), fileConfig.getTargetTableName());
         }
     }
     
@@ -178,74 +159,40 @@ public class ModernSparkService {
                 .map(tuple -> tuple._1())
                 .toArray(String[]::new);
         
-        for (String column : stringColumns) {
-            Dataset<Row> patternAnalysis = dataDF
-                    .select(
-                        col(column),
-                        length(col(column)).alias("length"),
-                        regexp_extract(col(column), "^[A-Za-z]+", 0).alias("alpha_prefix"),
-                        regexp_extract(col(column), "[0-9]+", 0).alias("numeric_part")
-                    )
-                    .groupBy("length", "alpha_prefix")
-                    .count()
-                    .orderBy(desc("count"));
-            
-            patternAnalysis.coalesce(1)
-                    .write()
-                    .mode("overwrite")
-                    .option("header", "true")
-                    .csv(outputPath + "/" + fileConfig.getTargetTableName() + "_" + column + "_patterns");
+        if (stringColumns.length == 0) {
+            return;
         }
+        
+        // One aggregation for all columns, written with a directory per column
+        Dataset<Row> patternAnalysis = fusedAnalyticsEngine.patternFrequencies(dataDF, java.util.Arrays.asList(stringColumns));
+        analyticsOutputSink.writePartitioned(patternAnalysis, outputPath + "/" + fileConfig.getTargetTableName() + "_patterns",
+                FusedAnalyticsEngine.COLUMN_NAME, col(FusedAnalyticsEngine.COLUMN_NAME), desc("count"));
     }
     
-    public void performMLReadyDataPreparation(List<String> tableNames, String outputPath) {
-        log.info("Preparing ML-ready datasets for tables: {}", tableNames);
-        
+    /**
+     * Writes one feature dataset per declared foreign key: every referencing row with the
+     * referenced row's columns and a has_relationship flag.
+     */
+    public void performMLReadyDataPreparation(List<FileConfig> fileConfigs, String outputPath) {
+        List<CrossTableJoinPlanner.JoinDefinition> joins = crossTableJoinPlanner.joinDefinitions(fileConfigs);
+        log.info("Preparing ML-ready datasets for {} declared joins", joins.size());
+        
+        crossTableJoinPlanner.acquire();
         try {
-            Map<String, Dataset<Row>> tables = new HashMap<>();
-            
-            // Load all tables
-            for (String tableName : tableNames) {
-                Dataset<Row> df = readFromOracle(tableName);
-                tables.put(tableName, df);
-                df.createOrReplaceTempView(tableName.toLowerCase());
-            }
-            
-            // Feature engineering example
-            if (tableNames.size() >= 2) {
-                String table1 = tableNames.get(0).toLowerCase();
-                String table2 = tableNames.get(1).toLowerCase();
-                
-                // Create feature-rich dataset
-                String sqlQuery = String.format(
-                    "SELECT " +
-                    "    t1.*, " +
-                    "    t2.*, " +
-                    "    CASE WHEN t1.id IS NOT NULL AND t2.id IS NOT NULL THEN 1 ELSE 0 END as has_relationship " +
-                    "FROM %s t1 " +
-                    "FULL OUTER JOIN %s t2 ON t1.id = t2.id", 
-                    table1, table2
-                );
-                
-                Dataset<Row> featureDataset = sparkSession.sql(sqlQuery);
+            for (CrossTableJoinPlanner.JoinDefinition join : joins) {
+                Dataset<Row> featureDataset = crossTableJoinPlanner
+                        .join(join, Collections.emptyList(), Collections.emptyList())
+                        .withColumn("has_relationship",
+                                when(col(join.rightAlias(join.rightColumn())).isNotNull(), 1).otherwise(0));
                 
-                featureDataset.coalesce(1)
-                        .write()
-                        .mode("overwrite")
-                        .option("header", "true")
-                        .parquet(outputPath + "/ml_ready_dataset.parquet");
+                analyticsOutputSink.write(featureDataset,
+                        outputPath + "/ml_ready_" + join.leftTable() + "_" + join.leftColumn());
             }
             
         } catch (Exception e) {
             log.error("Error in ML data preparation", e);
-        }
-    }
-    
-    @PreDestroy
-    public void shutdown() {
-        if (sparkSession != null) {
-            sparkSession.stop();
-            log.info("Spark session stopped");
+        } finally {
+            crossTableJoinPlanner.release();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,244 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.model.ColumnConfig;
+import com.example.batchspark.model.FileConfig;
+import com.example.batchspark.model.GenericDataRecord;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.Chunk;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Validates and enriches column values against reference tables configured on
+ * {@link ColumnConfig} (LOOKUP_TABLE / LOOKUP_KEY_COLUMN / LOOKUP_VALUE_COLUMN).
+ *
+ * PRELOAD mode reads the whole reference table when the job is configured, which suits
+ * small dimensions. LAZY mode resolves the keys missing from the cache once per chunk
+ * with a single IN-list query, so large dimensions never cost a query per row.
+ */
+@Service
+public class ReferenceDataService {
+    
+    private static final Logger log = LoggerFactory.getLogger(ReferenceDataService.class);
+    
+    // Oracle rejects IN lists with more than 1000 expressions
+    private static final int MAX_IN_LIST_SIZE = 1000;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, LookupCache> caches = new ConcurrentHashMap<>();
+    
+    @Value("${app.lookup.default-cache-size:10000}")
+    private int defaultCacheSize;
+    
+    public ReferenceDataService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+    
+    /**
+     * Resets the caches used by the lookup columns of the given configuration and
+     * preloads the ones in PRELOAD mode. Called once per job when the writer is configured.
+     */
+    public void prepare(FileConfig fileConfig) {
+        for (ColumnConfig column : fileConfig.getColumnConfigs()) {
+            if (!column.hasLookup()) {
+                continue;
+            }
+            
+            LookupCache cache = getCache(column);
+            if (cache.size() > 0) {
+                log.info("Lookup cache {} before reset: hits={}, misses={}, evictions={}, hitRatio={}",
+                        cacheKey(column), cache.getHits(), cache.getMisses(), cache.getEvictions(),
+                        String.format("%.3f", cache.getHitRatio()));
+            }
+            cache.clear();
+            
+            if ("PRELOAD".equalsIgnoreCase(column.getLookupMode())) {
+                preload(column, cache);
+            }
+        }
+    }
+    
+    /**
+     * Resolves the lookup columns of every record in the chunk, removing records whose
+     * value does not exist in the reference table and replacing values when a lookup
+     * value column is configured.
+     */
+    public void resolve(Chunk<? extends GenericDataRecord> chunk, FileConfig fileConfig) {
+        List<ColumnConfig> lookupColumns = fileConfig.getColumnConfigs().stream()
+                .filter(ColumnConfig::hasLookup)
+                .collect(Collectors.toList());
+        
+        if (lookupColumns.isEmpty() || chunk.isEmpty()) {
+            return;
+        }
+        
+        Map<ColumnConfig, Map<String, Object>> resolvedByColumn = new HashMap<>();
+        for (ColumnConfig column : lookupColumns) {
+            Set<String> keys = new LinkedHashSet<>();
+            for (GenericDataRecord record : chunk) {
+                String key = toKey(record.getColumnValue(column.getSourceColumnName()));
+                if (key != null) {
+                    keys.add(key);
+                }
+            }
+            resolvedByColumn.put(column, resolveKeys(column, keys));
+        }
+        
+        Iterator<? extends GenericDataRecord> iterator = chunk.iterator();
+        while (iterator.hasNext()) {
+            GenericDataRecord record = iterator.next();
+            
+            for (ColumnConfig column : lookupColumns) {
+                String key = toKey(record.getColumnValue(column.getSourceColumnName()));
+                if (key == null) {
+                    continue;
+                }
+                
+                Object value = resolvedByColumn.get(column).get(key);
+                if (value == LookupCache.NOT_FOUND) {
+                    log.warn("Lookup failed for column {} with value: {} (table {})",
+                            column.getSourceColumnName(), key, column.getLookupTable());
+                    iterator.remove();
+                    break;
+                }
+                
+                if (column.getLookupValueColumn() != null && !column.getLookupValueColumn().isEmpty()) {
+                    record.addColumnValue(column.getSourceColumnName(),
+                            value == LookupCache.NULL_VALUE ? null : value);
+                }
+            }
+        }
+    }
+    
+    private Map<String, Object> resolveKeys(ColumnConfig column, Set<String> keys) {
+        LookupCache cache = getCache(column);
+        Map<String, Object> resolved = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        
+        for (String key : keys) {
+            Object cached = cache.get(key);
+            if (cached != null) {
+                resolved.put(key, cached);
+            } else {
+                missing.add(key);
+            }
+        }
+        
+        if (missing.isEmpty()) {
+            return resolved;
+        }
+        
+        if (cache.isComplete()) {
+            // The preloaded cache holds the whole table, so a miss is definitive
+            missing.forEach(key -> resolved.put(key, LookupCache.NOT_FOUND));
+            return resolved;
+        }
+        
+        Map<String, Object> loaded = queryKeys(column, missing);
+        for (String key : missing) {
+            Object value = loaded.containsKey(key) ? loaded.get(key) : LookupCache.NOT_FOUND;
+            cache.put(key, value);
+            resolved.put(key, value == null ? LookupCache.NULL_VALUE : value);
+        }
+        
+        log.debug("Resolved {} lookup misses for column {} with one query per {} keys",
+                missing.size(), column.getSourceColumnName(), MAX_IN_LIST_SIZE);
+        return resolved;
+    }
+    
+    private Map<String, Object> queryKeys(ColumnConfig column, List<String> keys) {
+        Map<String, Object> loaded = new HashMap<>();
+        
+        for (int from = 0; from < keys.size(); from += MAX_IN_LIST_SIZE) {
+            List<String> batch = keys.subList(from, Math.min(from + MAX_IN_LIST_SIZE, keys.size()));
+            String placeholders = batch.stream().map(k -> "?").collect(Collectors.joining(", "));
+            String sql = selectSql(column) + " WHERE " + column.getLookupKeyColumn() + " IN (" + placeholders + ")";
+            
+            jdbcTemplate.query(sql, rs -> {
+                loaded.put(rs.getString(1), rs.getObject(2));
+            }, batch.toArray());
+        }
+        
+        return loaded;
+    }
+    
+    private void preload(ColumnConfig column, LookupCache cache) {
+        int[] rows = {0};
+        jdbcTemplate.query(selectSql(column), rs -> {
+            cache.put(rs.getString(1), rs.getObject(2));
+            rows[0]++;
+        });
+        
+        // Evicted entries would turn into false misses, so only trust a preload that fit
+        cache.setComplete(rows[0] <= cache.getMaxSize());
+        
+        if (cache.isComplete()) {
+            log.info("Preloaded {} reference rows from {} for column {}",
+                    rows[0], column.getLookupTable(), column.getSourceColumnName());
+        } else {
+            log.warn("Reference table {} has {} rows, more than the cache size {}; falling back to lazy lookups",
+                    column.getLookupTable(), rows[0], cache.getMaxSize());
+        }
+    }
+    
+    private String selectSql(ColumnConfig column) {
+        String valueColumn = column.getLookupValueColumn() != null && !column.getLookupValueColumn().isEmpty()
+                ? column.getLookupValueColumn()
+                : column.getLookupKeyColumn();
+        return "SELECT " + column.getLookupKeyColumn() + ", " + valueColumn + " FROM " + column.getLookupTable();
+    }
+    
+    private LookupCache getCache(ColumnConfig column) {
+        return caches.computeIfAbsent(cacheKey(column), name -> {
+            int size = column.getLookupCacheSize() != null ? column.getLookupCacheSize() : defaultCacheSize;
+            LookupCache cache = new LookupCache(size);
+            registerMetrics(name, cache);
+            return cache;
+        });
+    }
+    
+    private void registerMetrics(String name, LookupCache cache) {
+        FunctionCounter.builder("batch.lookup.cache.hits", cache, LookupCache::getHits)
+                .tag("lookup", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("batch.lookup.cache.misses", cache, LookupCache::getMisses)
+                .tag("lookup", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("batch.lookup.cache.evictions", cache, LookupCache::getEvictions)
+                .tag("lookup", name)
+                .register(meterRegistry);
+        Gauge.builder("batch.lookup.cache.size", cache, LookupCache::size)
+                .tag("lookup", name)
+                .register(meterRegistry);
+    }
+    
+    private String cacheKey(ColumnConfig column) {
+        String valueColumn = column.getLookupValueColumn() != null ? column.getLookupValueColumn() : "";
+        return (column.getLookupTable() + "." + column.getLookupKeyColumn() + ":" + valueColumn).toUpperCase();
+    }
+    
+    private String toKey(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String key = value.toString().trim();
+        return key.isEmpty() ? null : key;
+    }
+}
\ No newline at end of file
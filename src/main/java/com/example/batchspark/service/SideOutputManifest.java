@@ -0,0 +1,64 @@
+package com.example.batchspark.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Lists the load directories that make up the Parquet side output of a table and the table
+ * version they are complete for. Stored as {@code _manifest.properties} in the table's
+ * side-output directory; load directories it does not list are not part of the copy.
+ */
+public record SideOutputManifest(long version, List<String> loads) {
+    
+    public static final String FILE_NAME = "_manifest.properties";
+    
+    /**
+     * The manifest of a table directory, or null if there is none.
+     */
+    public static SideOutputManifest read(Path tableDirectory) {
+        Path file = tableDirectory.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read side-output manifest " + file, e);
+        }
+        String loads = properties.getProperty("loads", "");
+        return new SideOutputManifest(Long.parseLong(properties.getProperty("version")),
+                loads.isEmpty() ? List.of() : Arrays.asList(loads.split(",")));
+    }
+    
+    public SideOutputManifest withLoad(long version, String load) {
+        List<String> extended = new ArrayList<>(loads);
+        extended.add(load);
+        return new SideOutputManifest(version, List.copyOf(extended));
+    }
+    
+    /**
+     * Replaces the manifest of a table directory atomically, so readers see either the old or
+     * the new list of loads.
+     */
+    public void write(Path tableDirectory) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("version", String.valueOf(version));
+        properties.setProperty("loads", String.join(",", loads));
+        Path temporary = tableDirectory.resolve(FILE_NAME + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary)) {
+            properties.store(writer, null);
+        }
+        Files.move(temporary, tableDirectory.resolve(FILE_NAME),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
\ No newline at end of file
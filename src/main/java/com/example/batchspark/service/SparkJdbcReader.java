@@ -0,0 +1,319 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.config.SparkSessionManager;
+import com.example.batchspark.model.ColumnConfig;
+import com.example.batchspark.model.FileConfig;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.apache.spark.sql.functions.col;
+
+/**
+ * Reads Oracle tables into Spark over parallel JDBC connections.
+ *
+ * Tables are split into ID ranges whose bounds are looked up before the read, with the
+ * number of partitions derived from the table's row count. A FileConfig can instead list
+ * explicit SPARK_READ_PREDICATES, one partition per predicate. Tables partitioned by range or
+ * list are read along their table partitions, so each query is pruned to its own partitions.
+ * Only the requested columns are fetched.
+ */
+@Component
+public class SparkJdbcReader {
+    
+    private static final Logger log = LoggerFactory.getLogger(SparkJdbcReader.class);
+    
+    private static final int MAX_IN_LIST = 1000;
+    
+    private final SparkSessionManager sparkSessionManager;
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${spring.datasource.url}")
+    private String dbUrl;
+    
+    @Value("${spring.datasource.username}")
+    private String dbUsername;
+    
+    @Value("${spring.datasource.password}")
+    private String dbPassword;
+    
+    @Value("${app.spark.jdbc.partition-column:ID}")
+    private String partitionColumn;
+    
+    @Value("${app.spark.jdbc.rows-per-partition:500000}")
+    private long rowsPerPartition;
+    
+    @Value("${app.spark.jdbc.max-partitions:32}")
+    private int maxPartitions;
+    
+    @Value("${app.spark.jdbc.fetch-size:10000}")
+    private int fetchSize;
+    
+    public SparkJdbcReader(SparkSessionManager sparkSessionManager, JdbcTemplate jdbcTemplate) {
+        this.sparkSessionManager = sparkSessionManager;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Reads the configured target columns of a FileConfig's table.
+     */
+    public Dataset<Row> read(FileConfig fileConfig) {
+        List<String> columns = fileConfig.getColumnConfigs().stream()
+                .map(ColumnConfig::getTargetColumnName)
+                .collect(Collectors.toList());
+        List<String> predicates = parsePredicates(fileConfig.getSparkReadPredicates());
+        if (predicates.isEmpty()) {
+            predicates = tablePartitionPredicates(fileConfig);
+        }
+        return read(fileConfig.getTargetTableName(), columns, predicates);
+    }
+    
+    /**
+     * Reads the given columns of a table, or all columns when {@code columns} is empty.
+     */
+    public Dataset<Row> read(String tableName, List<String> columns) {
+        return read(tableName, columns, Collections.emptyList());
+    }
+    
+    public Dataset<Row> read(String tableName, List<String> columns, List<String> predicates) {
+        SparkSession sparkSession = sparkSessionManager.getSession();
+        Properties connectionProperties = connectionProperties();
+        Dataset<Row> dataDF;
+        
+        if (!predicates.isEmpty()) {
+            log.info("Reading table {} with {} configured predicates", tableName, predicates.size());
+            dataDF = sparkSession.read()
+                    .jdbc(dbUrl, tableName, predicates.toArray(new String[0]), connectionProperties);
+        } else {
+            dataDF = readByRange(sparkSession, tableName, partitionColumn, null, connectionProperties);
+        }
+        
+        return project(dataDF, columns);
+    }
+    
+    /**
+     * Reads only the rows whose {@code keyColumn} is greater than {@code afterKey}, split into
+     * ranges over that key. A null {@code afterKey} reads the whole table.
+     */
+    public Dataset<Row> readAfter(String tableName, List<String> columns, String keyColumn, Long afterKey) {
+        SparkSession sparkSession = sparkSessionManager.getSession();
+        return project(readByRange(sparkSession, tableName, keyColumn, afterKey, connectionProperties()), columns);
+    }
+    
+    private Dataset<Row> project(Dataset<Row> dataDF, List<String> columns) {
+        if (columns == null || columns.isEmpty()) {
+            return dataDF;
+        }
+        
+        // Spark pushes the projection into the generated SELECT, so only these columns are fetched
+        return dataDF.select(columns.stream().map(c -> col(c)).toArray(Column[]::new));
+    }
+    
+    private Dataset<Row> readByRange(SparkSession sparkSession, String tableName, String rangeColumn, Long afterKey,
+                                     Properties connectionProperties) {
+        Dataset<Row> dataDF = readRanges(sparkSession, tableName, rangeColumn, afterKey, connectionProperties);
+        // The filter is pushed down into every partition's WHERE clause
+        return afterKey != null ? dataDF.filter(col(rangeColumn).gt(afterKey)) : dataDF;
+    }
+    
+    private Dataset<Row> readRanges(SparkSession sparkSession, String tableName, String rangeColumn, Long afterKey,
+                                    Properties connectionProperties) {
+        Map<String, Object> bounds;
+        try {
+            bounds = jdbcTemplate.queryForMap(
+                    "SELECT MIN(" + rangeColumn + ") AS LOWER_BOUND, MAX(" + rangeColumn + ") AS UPPER_BOUND FROM " + tableName
+                            + (afterKey != null ? " WHERE " + rangeColumn + " > " + afterKey : ""));
+        } catch (DataAccessException e) {
+            log.warn("Could not determine {} bounds for table {}, reading with a single connection: {}",
+                    rangeColumn, tableName, e.getMessage());
+            return sparkSession.read().jdbc(dbUrl, tableName, connectionProperties);
+        }
+        
+        Number lower = (Number) bounds.get("LOWER_BOUND");
+        Number upper = (Number) bounds.get("UPPER_BOUND");
+        if (lower == null || upper == null) {
+            return sparkSession.read().jdbc(dbUrl, tableName, connectionProperties);
+        }
+        
+        // Table statistics describe the whole table, so an incremental read is sized from its key span
+        long estimatedRows = afterKey != null
+                ? upper.longValue() - lower.longValue() + 1
+                : estimateRowCount(tableName, lower.longValue(), upper.longValue());
+        int numPartitions = (int) Math.max(1, Math.min(maxPartitions, (estimatedRows + rowsPerPartition - 1) / rowsPerPartition));
+        
+        log.info("Reading table {} in {} partitions on {} between {} and {} (~{} rows)",
+                tableName, numPartitions, rangeColumn, lower, upper, estimatedRows);
+        
+        return sparkSession.read()
+                .jdbc(dbUrl, tableName, rangeColumn, lower.longValue(), upper.longValue() + 1,
+                        numPartitions, connectionProperties);
+    }
+    
+    private long estimateRowCount(String tableName, long lower, long upper) {
+        // Optimizer statistics are free to read; the ID span is the fallback when they are missing
+        List<Long> numRows = jdbcTemplate.queryForList(
+                "SELECT NUM_ROWS FROM user_tables WHERE table_name = ?", Long.class, tableName.toUpperCase());
+        if (!numRows.isEmpty() && numRows.get(0) != null && numRows.get(0) > 0) {
+            return numRows.get(0);
+        }
+        return upper - lower + 1;
+    }
+    
+    private List<String> tablePartitionPredicates(FileConfig fileConfig) {
+        ColumnConfig key = fileConfig.isPartitioned() ? fileConfig.partitionKeyColumn() : null;
+        if (key == null || "HASH".equalsIgnoreCase(fileConfig.getPartitionScheme())) {
+            return Collections.emptyList();
+        }
+        
+        List<String> highValues;
+        try {
+            highValues = jdbcTemplate.queryForList(
+                    "SELECT HIGH_VALUE FROM user_tab_partitions WHERE table_name = ? ORDER BY PARTITION_POSITION",
+                    String.class, fileConfig.getTargetTableName().toUpperCase());
+        } catch (DataAccessException e) {
+            log.warn("Could not read the partitions of table {}: {}", fileConfig.getTargetTableName(), e.getMessage());
+            return Collections.emptyList();
+        }
+        return partitionPredicates(fileConfig.getPartitionScheme(), key.getTargetColumnName(), highValues, maxPartitions);
+    }
+    
+    /**
+     * One predicate per group of adjacent table partitions, at most {@code maxPredicates} (two
+     * for list partitions, whatever the limit), built
+     * from the partitions' HIGH_VALUE bounds in partition order. Each predicate only matches keys
+     * of its own partitions, so Oracle prunes its query to them. The last range predicate is open
+     * ended, and list partitions get a last predicate for keys none of the others lists, so rows
+     * of partitions added since the bounds were read are still covered. Returns no predicates
+     * when the partitions cannot be expressed as key predicates.
+     */
+    static List<String> partitionPredicates(String scheme, String keyColumn, List<String> highValues, int maxPredicates) {
+        if (highValues.isEmpty()) {
+            return Collections.emptyList();
+        }
+        boolean range = "RANGE".equalsIgnoreCase(scheme);
+        
+        // A list predicate is kept free for the keys of later partitions
+        int groups = range ? maxPredicates : Math.max(1, maxPredicates - 1);
+        int groupSize = (highValues.size() + groups - 1) / groups;
+        List<String> predicates = new ArrayList<>();
+        List<String> listed = new ArrayList<>();
+        boolean listsNull = false;
+        for (int start = 0; start < highValues.size(); start += groupSize) {
+            int end = Math.min(highValues.size(), start + groupSize) - 1;
+            if (range) {
+                String lower = start > 0 ? keyColumn + " >= " + highValues.get(start - 1) : null;
+                String upper = end < highValues.size() - 1 ? keyColumn + " < " + highValues.get(end) : null;
+                predicates.add(lower == null && upper == null ? "1 = 1"
+                        : lower == null ? upper
+                        : upper == null ? lower
+                        : lower + " AND " + upper);
+            } else {
+                List<String> values = new ArrayList<>();
+                boolean matchesNull = false;
+                for (String highValue : highValues.subList(start, end + 1)) {
+                    for (String value : listValues(highValue)) {
+                        if (value.equalsIgnoreCase("NULL")) {
+                            matchesNull = true;
+                        } else if (value.equalsIgnoreCase("DEFAULT")) {
+                            return Collections.emptyList();
+                        } else {
+                            values.add(value);
+                        }
+                    }
+                }
+                listed.addAll(values);
+                listsNull |= matchesNull;
+                String in = values.isEmpty() ? null : in(keyColumn, values);
+                predicates.add(!matchesNull ? in
+                        : in == null ? keyColumn + " IS NULL"
+                        : "(" + in + " OR " + keyColumn + " IS NULL)");
+            }
+        }
+        if (!range) {
+            String notIn = listed.isEmpty() ? keyColumn + " IS NOT NULL" : notIn(keyColumn, listed);
+            predicates.add(listsNull ? notIn : "(" + notIn + " OR " + keyColumn + " IS NULL)");
+        }
+        return predicates;
+    }
+    
+    /**
+     * The values of a list partition's HIGH_VALUE, such as {@code 'EU', 'UK'}; commas in quotes
+     * or in the arguments of a {@code TO_DATE(...)} value do not separate values.
+     */
+    private static List<String> listValues(String highValue) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        int depth = 0;
+        for (char c : highValue.toCharArray()) {
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && c == '(') {
+                depth++;
+            } else if (!quoted && c == ')') {
+                depth--;
+            }
+            if (c == ',' && !quoted && depth == 0) {
+                values.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString().trim());
+        return values;
+    }
+    
+    /**
+     * An IN condition split into lists of at most {@value #MAX_IN_LIST} values, Oracle's limit.
+     */
+    private static String in(String keyColumn, List<String> values) {
+        List<String> conditions = new ArrayList<>();
+        for (int start = 0; start < values.size(); start += MAX_IN_LIST) {
+            conditions.add(keyColumn + " IN (" + String.join(", ", values.subList(start, Math.min(values.size(), start + MAX_IN_LIST))) + ")");
+        }
+        return conditions.size() == 1 ? conditions.get(0) : "(" + String.join(" OR ", conditions) + ")";
+    }
+    
+    private static String notIn(String keyColumn, List<String> values) {
+        List<String> conditions = new ArrayList<>();
+        for (int start = 0; start < values.size(); start += MAX_IN_LIST) {
+            conditions.add(keyColumn + " NOT IN (" + String.join(", ", values.subList(start, Math.min(values.size(), start + MAX_IN_LIST))) + ")");
+        }
+        return conditions.size() == 1 ? conditions.get(0) : "(" + String.join(" AND ", conditions) + ")";
+    }
+    
+    private Properties connectionProperties() {
+        Properties connectionProperties = new Properties();
+        connectionProperties.put("user", dbUsername);
+        connectionProperties.put("password", dbPassword);
+        connectionProperties.put("driver", "oracle.jdbc.OracleDriver");
+        connectionProperties.put("fetchsize", String.valueOf(fetchSize));
+        return connectionProperties;
+    }
+    
+    private List<String> parsePredicates(String predicates) {
+        if (predicates == null || predicates.isBlank()) {
+            return Collections.emptyList();
+        }
+        return Arrays.stream(predicates.split(";"))
+                .map(String::trim)
+                .filter(p -> !p.isEmpty())
+                .collect(Collectors.toList());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,383 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.config.SparkSessionManager;
+import com.example.batchspark.expression.SparkRuleTranslator;
+import com.example.batchspark.model.ColumnConfig;
+import com.example.batchspark.model.FileConfig;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SaveMode;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.Metadata;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.apache.spark.storage.StorageLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.apache.spark.sql.functions.*;
+
+/**
+ * Loads a source file with Spark instead of the chunk-oriented step: the file is read in
+ * parallel, the column rules run as Spark SQL expressions (see {@link SparkRuleTranslator}),
+ * valid rows are inserted over several JDBC connections and rejected rows are written as CSV
+ * with the reason next to them.
+ *
+ * The engine is chosen per FileConfig through LOAD_ENGINE: BATCH, SPARK, or AUTO, which uses
+ * Spark for files of at least {@code auto-threshold}. Configs with lookup columns, tail reads or
+ * delta loads, or with rules that cannot be translated, always use the batch engine.
+ *
+ * Each write partition commits on its own, so a failed Spark load can leave part of its rows
+ * in the table.
+ */
+@Component
+public class SparkLoadEngine {
+    
+    private static final Logger log = LoggerFactory.getLogger(SparkLoadEngine.class);
+    
+    public static final String BATCH = "BATCH";
+    public static final String SPARK = "SPARK";
+    public static final String AUTO = "AUTO";
+    
+    private static final String REJECT_COLUMN = "_reject";
+    private static final String TARGET_PREFIX = "__target_";
+    
+    /**
+     * Row counts of a Spark load.
+     */
+    public record LoadResult(long read, long written, long rejected) {}
+    
+    private final SparkSessionManager sparkSessionManager;
+    private final GenericDataService genericDataService;
+    private final TableVersionService tableVersionService;
+    
+    @Value("${spring.datasource.url}")
+    private String dbUrl;
+    
+    @Value("${spring.datasource.username}")
+    private String dbUsername;
+    
+    @Value("${spring.datasource.password}")
+    private String dbPassword;
+    
+    @Value("${app.load.spark.auto-threshold:1GB}")
+    private DataSize autoThreshold;
+    
+    @Value("${app.load.spark.write-partitions:8}")
+    private int writePartitions;
+    
+    @Value("${app.load.spark.batch-size:10000}")
+    private int batchSize;
+    
+    @Value("${app.load.spark.rejects-path:output/rejects}")
+    private String rejectsPath;
+    
+    public SparkLoadEngine(SparkSessionManager sparkSessionManager, GenericDataService genericDataService,
+                           TableVersionService tableVersionService) {
+        this.sparkSessionManager = sparkSessionManager;
+        this.genericDataService = genericDataService;
+        this.tableVersionService = tableVersionService;
+    }
+    
+    /**
+     * Returns {@link #SPARK} or {@link #BATCH} for the given config.
+     */
+    public String selectEngine(FileConfig fileConfig) {
+        String requested = fileConfig.getLoadEngine() != null ? fileConfig.getLoadEngine().toUpperCase() : AUTO;
+        if (requested.equals(BATCH)) {
+            return BATCH;
+        }
+        
+        String unsupported = unsupportedReason(fileConfig);
+        if (unsupported != null) {
+            if (requested.equals(SPARK)) {
+                log.warn("Config {} requests the Spark load engine but {}; using the batch engine",
+                        fileConfig.getConfigName(), unsupported);
+            }
+            return BATCH;
+        }
+        if (requested.equals(SPARK)) {
+            return SPARK;
+        }
+        
+        try {
+            long size = Files.size(Paths.get(fileConfig.getSourceFilePath()));
+            String engine = size >= autoThreshold.toBytes() ? SPARK : BATCH;
+            log.info("Source file {} is {} bytes, loading with the {} engine", fileConfig.getSourceFilePath(), size, engine);
+            return engine;
+        } catch (IOException e) {
+            log.warn("Could not determine the size of {}, loading with the batch engine: {}",
+                    fileConfig.getSourceFilePath(), e.getMessage());
+            return BATCH;
+        }
+    }
+    
+    /**
+     * Why the config cannot be loaded with Spark, or null when it can. Streams run the same
+     * Spark rules, so a config with a reason cannot be streamed either.
+     */
+    public static String unsupportedReason(FileConfig fileConfig) {
+        if (fileConfig.isRouting()) {
+            return "it routes records to child configs";
+        }
+        if (fileConfig.getColumnConfigs().stream().anyMatch(ColumnConfig::hasLookup)) {
+            return "it has lookup columns";
+        }
+        if (FileTailService.isTailMode(fileConfig)) {
+            return "it reads its source in tail mode";
+        }
+        if (Boolean.TRUE.equals(fileConfig.getDeltaLoad())) {
+            return "it loads deltas";
+        }
+        try {
+            Map<String, Column> columns = new HashMap<>();
+            for (ColumnConfig column : fileConfig.getColumnConfigs()) {
+                Column value = col(column.getSourceColumnName());
+                SparkRuleTranslator.validation(column.getValidationRule(), value, columns);
+                columns.put(column.getSourceColumnName(),
+                        SparkRuleTranslator.transformation(column.getTransformationRule(), value, columns));
+            }
+            return null;
+        } catch (IllegalArgumentException e) {
+            return "its rules cannot run on Spark (" + e.getMessage() + ")";
+        }
+    }
+    
+    /**
+     * Loads the config's source file into its target table. Rejected rows are written under
+     * {@code rejects-path/<TABLE>/load_id=<loadId>}.
+     */
+    public LoadResult load(FileConfig fileConfig, long loadId) {
+        genericDataService.createTableIfNotExists(fileConfig);
+        
+        Dataset<Row> source = sparkSessionManager.getSession().read()
+                .schema(sourceSchema(fileConfig))
+                .option("header", String.valueOf(Boolean.TRUE.equals(fileConfig.getHasHeader())))
+                .option("delimiter", fileConfig.getDelimiter() != null ? fileConfig.getDelimiter() : ",")
+                .csv(fileConfig.getSourceFilePath());
+        
+        Dataset<Row> processed = process(source, fileConfig).persist(StorageLevel.MEMORY_AND_DISK());
+        try {
+            LoadResult result = countRows(processed);
+            
+            log.info("Writing {} rows into {} over {} connections", result.written(), fileConfig.getTargetTableName(), writePartitions);
+            tableVersionService.bump(fileConfig.getTargetTableName());
+            write(clusterByPartition(validRows(processed, fileConfig), fileConfig), fileConfig.getTargetTableName(), SaveMode.Append);
+            
+            if (result.rejected() > 0) {
+                writeRejects(processed, fileConfig, "load_id=" + loadId);
+            }
+            return result;
+        } finally {
+            processed.unpersist();
+        }
+    }
+    
+    /**
+     * All-string schema of the source file, in COLUMN_ORDER.
+     */
+    public StructType sourceSchema(FileConfig fileConfig) {
+        return new StructType(sourceOrder(fileConfig).stream()
+                .map(column -> new StructField(column.getSourceColumnName(), DataTypes.StringType, true, Metadata.empty()))
+                .toArray(StructField[]::new));
+    }
+    
+    /**
+     * Applies the config's rules to source rows read with {@link #sourceSchema}. The result keeps
+     * the source columns and adds the converted target values and the reject reason.
+     */
+    public Dataset<Row> process(Dataset<Row> source, FileConfig fileConfig) {
+        return source.select(processedColumns(fileConfig, sourceOrder(fileConfig)));
+    }
+    
+    /**
+     * Counts the processed rows and the rejected ones in a single pass.
+     */
+    public LoadResult countRows(Dataset<Row> processed) {
+        Row counts = processed.agg(count(lit(1)), count(col(REJECT_COLUMN))).first();
+        long read = counts.getLong(0);
+        long rejected = counts.getLong(1);
+        return new LoadResult(read, read - rejected, rejected);
+    }
+    
+    /**
+     * The valid processed rows, with the target columns named as in the table.
+     */
+    public Dataset<Row> validRows(Dataset<Row> processed, FileConfig fileConfig) {
+        List<ColumnConfig> columns = fileConfig.getColumnConfigs();
+        Column[] targets = new Column[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            // Spark quotes the column names it inserts, so they must match Oracle's upper-case names
+            targets[i] = col(TARGET_PREFIX + i).alias(columns.get(i).getTargetColumnName().toUpperCase());
+        }
+        return processed.filter(col(REJECT_COLUMN).isNull()).select(targets);
+    }
+    
+    /**
+     * Inserts the rows into an existing table over {@code write-partitions} connections.
+     * {@link SaveMode#Overwrite} truncates the table instead of recreating it.
+     */
+    public void writeTable(Dataset<Row> rows, String tableName, SaveMode mode) {
+        write(rows.repartition(writePartitions), tableName, mode);
+    }
+    
+    /**
+     * Spreads the rows of a partitioned table over the write connections by partition key, so
+     * each connection inserts into a few table partitions instead of all of them: contiguous key
+     * ranges for range partitioning, whole key values for list partitioning. Oracle's hash
+     * function is not available to Spark, so hash-partitioned tables are spread round-robin.
+     */
+    private Dataset<Row> clusterByPartition(Dataset<Row> rows, FileConfig fileConfig) {
+        ColumnConfig key = fileConfig.isPartitioned() ? fileConfig.partitionKeyColumn() : null;
+        if (key == null || "HASH".equalsIgnoreCase(fileConfig.getPartitionScheme())) {
+            return rows.repartition(writePartitions);
+        }
+        
+        Column keyColumn = col(key.getTargetColumnName().toUpperCase());
+        Dataset<Row> clustered = "RANGE".equalsIgnoreCase(fileConfig.getPartitionScheme())
+                ? rows.repartitionByRange(writePartitions, keyColumn)
+                : rows.repartition(writePartitions, keyColumn);
+        // Consecutive rows of each JDBC batch then share a table partition
+        return clustered.sortWithinPartitions(keyColumn);
+    }
+    
+    private void write(Dataset<Row> rows, String tableName, SaveMode mode) {
+        rows.write()
+                .mode(mode)
+                .option("truncate", "true")
+                .option("batchsize", batchSize)
+                .option("numPartitions", writePartitions)
+                .option("isolationLevel", "READ_COMMITTED")
+                .jdbc(dbUrl, tableName, connectionProperties());
+    }
+    
+    /**
+     * Writes the rejected rows as CSV with their reason under
+     * {@code rejects-path/<TABLE>/<partition>}, replacing an earlier write of the same partition.
+     */
+    public void writeRejects(Dataset<Row> processed, FileConfig fileConfig, String partition) {
+        List<ColumnConfig> sourceOrder = sourceOrder(fileConfig);
+        Column[] rejectColumns = new Column[sourceOrder.size() + 1];
+        for (int i = 0; i < sourceOrder.size(); i++) {
+            rejectColumns[i] = col(sourceOrder.get(i).getSourceColumnName());
+        }
+        rejectColumns[sourceOrder.size()] = col(REJECT_COLUMN).alias("reject_reason");
+        
+        String path = Paths.get(rejectsPath, fileConfig.getTargetTableName().toUpperCase(), partition).toString();
+        processed.filter(col(REJECT_COLUMN).isNotNull())
+                .select(rejectColumns)
+                .write()
+                .mode(SaveMode.Overwrite)
+                .option("header", "true")
+                .csv(path);
+        log.warn("Rejected rows of {} written to {}", fileConfig.getTargetTableName(), path);
+    }
+    
+    private static List<ColumnConfig> sourceOrder(FileConfig fileConfig) {
+        List<ColumnConfig> sourceOrder = new ArrayList<>(fileConfig.getColumnConfigs());
+        sourceOrder.sort(Comparator.comparing(ColumnConfig::getColumnOrder));
+        return sourceOrder;
+    }
+    
+    /**
+     * Source columns, one converted column per target and the reject reason, which names the
+     * first failed validation or conversion in column order.
+     */
+    private Column[] processedColumns(FileConfig fileConfig, List<ColumnConfig> sourceOrder) {
+        List<ColumnConfig> columns = fileConfig.getColumnConfigs();
+        Map<String, Column> current = new HashMap<>();
+        for (ColumnConfig column : sourceOrder) {
+            // The tokenizer of the batch engine yields empty strings, never nulls, for present fields
+            current.put(column.getSourceColumnName(), coalesce(col(column.getSourceColumnName()), lit("")));
+        }
+        
+        List<Column> checks = new ArrayList<>();
+        Column[] converted = new Column[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnConfig column = columns.get(i);
+            Column value = current.get(column.getSourceColumnName());
+            
+            Column valid = SparkRuleTranslator.validation(column.getValidationRule(), value, current);
+            checks.add(when(not(valid), lit("Validation failed for column " + column.getSourceColumnName())));
+            
+            Column transformed = SparkRuleTranslator.transformation(column.getTransformationRule(), value, current);
+            current.put(column.getSourceColumnName(), transformed);
+            
+            converted[i] = convert(transformed, column);
+            Column text = trim(coalesce(transformed.cast("string"), lit("")));
+            checks.add(when(converted[i].isNull().and(text.notEqual("")),
+                    lit("Cannot convert column " + column.getSourceColumnName() + " to " + column.getDataType())));
+            if (Boolean.FALSE.equals(column.getIsNullable())) {
+                checks.add(when(converted[i].isNull(), lit("Missing value for column " + column.getSourceColumnName())));
+            }
+        }
+        
+        List<Column> selected = new ArrayList<>();
+        sourceOrder.forEach(column -> selected.add(col(column.getSourceColumnName())));
+        for (int i = 0; i < converted.length; i++) {
+            selected.add(converted[i].alias(TARGET_PREFIX + i));
+        }
+        // coalesce returns the first failed check, as the batch engine stops at the first failure
+        selected.add(checks.isEmpty()
+                ? lit(null).cast("string").alias(REJECT_COLUMN)
+                : coalesce(checks.toArray(new Column[0])).alias(REJECT_COLUMN));
+        return selected.toArray(new Column[0]);
+    }
+    
+    /**
+     * Converts a processed value to the column's target type the way
+     * {@link GenericDataService#convertValue} does; values that do not convert become null.
+     *
+     * Where convertValue cannot parse a value it binds the raw text and leaves the conversion to
+     * Oracle. A typed Spark column cannot carry that text, so the values Oracle would convert
+     * are converted here the same way: numeric text with a fraction or exponent in an integer
+     * column is rounded half away from zero, as Oracle rounds it into a NUMBER(10) or NUMBER(19).
+     */
+    private static Column convert(Column value, ColumnConfig column) {
+        Column text = trim(value.cast("string"));
+        Column present = text.notEqual("");
+        switch (column.getDataType().toUpperCase()) {
+            case "NUMBER":
+            case "DECIMAL":
+            case "BIGDECIMAL":
+                return when(present, text.cast(DataTypes.createDecimalType(38, Math.max(10, column.scale()))));
+            case "INTEGER":
+            case "INT":
+                // Casting "1.5" to an integer truncates, where Oracle rounds it
+                return when(present, round(text.cast(DataTypes.createDecimalType(38, 10)), 0).cast("int"));
+            case "LONG":
+                return when(present, round(text.cast(DataTypes.createDecimalType(38, 10)), 0).cast("long"));
+            case "DATE":
+                return when(present, to_date(text, "yyyy-MM-dd"));
+            case "TIMESTAMP":
+            case "DATETIME":
+                return when(present, text.cast("timestamp"));
+            case "BOOLEAN":
+                return when(present, when(lower(text).equalTo("true"), lit(1)).otherwise(lit(0)));
+            default:
+                return when(present, text);
+        }
+    }
+    
+    private Properties connectionProperties() {
+        Properties connectionProperties = new Properties();
+        connectionProperties.put("user", dbUsername);
+        connectionProperties.put("password", dbPassword);
+        connectionProperties.put("driver", "oracle.jdbc.OracleDriver");
+        return connectionProperties;
+    }
+}
\ No newline at end of file
@@ -1,21 +1,32 @@
 package com.example.batchspark.service;
 
+import com.example.batchspark.config.SparkSessionManager;
 import com.example.batchspark.model.FileConfig;
+import org.apache.spark.sql.Column;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
-import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.NumericType;
+import org.apache.spark.sql.types.StringType;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.apache.spark.storage.StorageLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import scala.Tuple2;
 
-import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.apache.spark.sql.functions.*;
 
@@ -24,39 +35,88 @@ public class SparkService {
     
     private static final Logger log = LoggerFactory.getLogger(SparkService.class);
     
-    private SparkSession sparkSession;
-    private final JdbcTemplate jdbcTemplate;
+    private static final StructType PROFILE_SCHEMA = new StructType()
+            .add("column_name", DataTypes.StringType)
+            .add("data_type", DataTypes.StringType)
+            .add("count", DataTypes.LongType)
+            .add("null_count", DataTypes.LongType)
+            .add("mean", DataTypes.DoubleType)
+            .add("stddev", DataTypes.DoubleType)
+            .add("min", DataTypes.StringType)
+            .add("25%", DataTypes.StringType)
+            .add("50%", DataTypes.StringType)
+            .add("75%", DataTypes.StringType)
+            .add("max", DataTypes.StringType)
+            .add("approx_distinct", DataTypes.LongType);
     
-    @Value("${spring.datasource.url}")
-    private String dbUrl;
+    private static final StructType APPROXIMATION_SCHEMA = new StructType()
+            .add("column_name", DataTypes.StringType)
+            .add("metric", DataTypes.StringType)
+            .add("approximate", DataTypes.DoubleType)
+            .add("exact", DataTypes.DoubleType)
+            .add("relative_error", DataTypes.DoubleType);
     
-    @Value("${spring.datasource.username}")
-    private String dbUsername;
+    private static final StructType NUMERIC_STATS_SCHEMA = new StructType()
+            .add("column_name", DataTypes.StringType)
+            .add("min", DataTypes.StringType)
+            .add("max", DataTypes.StringType)
+            .add("avg", DataTypes.DoubleType)
+            .add("stddev", DataTypes.DoubleType);
     
-    @Value("${spring.datasource.password}")
-    private String dbPassword;
+    private static final StructType JOIN_ANALYSIS_SCHEMA = new StructType()
+            .add("table_name", DataTypes.StringType)
+            .add("column_name", DataTypes.StringType)
+            .add("references_table", DataTypes.StringType)
+            .add("references_column", DataTypes.StringType)
+            .add("row_count", DataTypes.LongType)
+            .add("null_keys", DataTypes.LongType)
+            .add("matched", DataTypes.LongType)
+            .add("orphans", DataTypes.LongType);
     
-    public SparkService(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
-        this.sparkSession = SparkSession.builder()
-                .appName("GenericDataProcessor")
-                .master("local[*]") // Use all available cores
-                .config("spark.sql.adaptive.enabled", "true")
-                .config("spark.sql.adaptive.coalescePartitions.enabled", "true")
-                .config("spark.serializer", "org.apache.spark.serializer.KryoSerializer")
-                .getOrCreate();
-        
-        sparkSession.sparkContext().setLogLevel("WARN");
+    public static final String CROSS_TABLE_POOL = "cross_table";
+    
+    private static final String[] QUARTILE_NAMES = {"25%", "50%", "75%"};
+    
+    private final SparkSessionManager sparkSessionManager;
+    private final ApproximateAnalytics approximateAnalytics;
+    private final FusedAnalyticsEngine fusedAnalyticsEngine;
+    private final AnalyticsOutputSink analyticsOutputSink;
+    private final AnalyticsDataReader analyticsDataReader;
+    private final CrossTableJoinPlanner crossTableJoinPlanner;
+    private final AnalyticsRunner analyticsRunner;
+    
+    @Value("${app.analytics.cross-table.window:PT1H}")
+    private Duration crossTableWindow;
+    
+    private final AtomicReference<Instant> lastCrossTableRun = new AtomicReference<>();
+    private final AtomicBoolean crossTableRunning = new AtomicBoolean();
+    
+    public SparkService(SparkSessionManager sparkSessionManager, ApproximateAnalytics approximateAnalytics,
+                        FusedAnalyticsEngine fusedAnalyticsEngine, AnalyticsOutputSink analyticsOutputSink,
+                        AnalyticsDataReader analyticsDataReader, CrossTableJoinPlanner crossTableJoinPlanner,
+                        AnalyticsRunner analyticsRunner) {
+        this.sparkSessionManager = sparkSessionManager;
+        this.approximateAnalytics = approximateAnalytics;
+        this.fusedAnalyticsEngine = fusedAnalyticsEngine;
+        this.analyticsOutputSink = analyticsOutputSink;
+        this.analyticsDataReader = analyticsDataReader;
+        this.crossTableJoinPlanner = crossTableJoinPlanner;
+        this.analyticsRunner = analyticsRunner;
     }
     
     public void performGenericAnalytics(FileConfig fileConfig, String outputPath) {
         log.info("Starting Spark analytics for table: {}", fileConfig.getTargetTableName());
         
+        // Read data from Oracle database once; every analysis below works off the cached copy
+        Dataset<Row> dataDF = analyticsDataReader.read(fileConfig)
+                .persist(StorageLevel.MEMORY_AND_DISK());
+        
         try {
-            // Read data from Oracle database
-            Dataset<Row> dataDF = readFromOracle(fileConfig.getTargetTableName());
+            // Null counts, row count and column statistics in a single aggregation pass
+            Row profile = computeProfile(dataDF);
+            long rowCount = profile.getLong(profile.fieldIndex("row_count"));
             
-            if (dataDF.count() == 0) {
+            if (rowCount == 0) {
                 log.warn("No data found in table: {}", fileConfig.getTargetTableName());
                 return;
             }
@@ -65,156 +125,339 @@ public class SparkService {
             String viewName = fileConfig.getTargetTableName().toLowerCase() + "_view";
             dataDF.createOrReplaceTempView(viewName);
             
-            // Perform generic analytics based on data types
-            performDataProfiling(dataDF, fileConfig, outputPath);
-            performAggregationAnalytics(dataDF, fileConfig, outputPath);
+            // The analyses are independent, so their Spark jobs run side by side in the table's pool
+            analyticsRunner.runAll(fileConfig.getTargetTableName(), List.of(
+                    () -> performDataProfiling(dataDF, profile, fileConfig, outputPath),
+                    () -> performAggregationAnalytics(dataDF, fileConfig, outputPath),
+                    () -> performNumericAnalysis(dataDF, profile, fileConfig, outputPath)));
             
             log.info("Completed Spark analytics for table: {}", fileConfig.getTargetTableName());
             
         } catch (Exception e) {
             log.error("Error in Spark analytics processing", e);
             throw new RuntimeException("Spark analytics failed", e);
+        } finally {
+            dataDF.unpersist();
         }
     }
     
-    private Dataset<Row> readFromOracle(String tableName) {
-        Properties connectionProperties = new Properties();
-        connectionProperties.put("user", dbUsername);
-        connectionProperties.put("password", dbPassword);
-        connectionProperties.put("driver", "oracle.jdbc.OracleDriver");
+    /**
+     * Runs the analytics of every given config concurrently, each table in its own scheduler
+     * pool, together with the cross-table analytics when they are due.
+     */
+    public void performAnalytics(List<FileConfig> fileConfigs, String outputRoot) {
+        List<AnalyticsRunner.Task> tasks = new ArrayList<>();
+        for (FileConfig fileConfig : fileConfigs) {
+            tasks.add(new AnalyticsRunner.Task(fileConfig.getTargetTableName(),
+                    () -> performGenericAnalytics(fileConfig, outputRoot + "/" + fileConfig.getTargetTableName())));
+        }
+        if (fileConfigs.size() > 1) {
+            tasks.add(new AnalyticsRunner.Task(CROSS_TABLE_POOL,
+                    () -> performCrossTableAnalyticsIfDue(fileConfigs, outputRoot + "/cross_analysis")));
+        }
+        analyticsRunner.runAll(tasks);
+    }
+    
+    /**
+     * Computes the row count and, for every column, the null count, min and max plus mean,
+     * stddev and approximate quartiles for numeric columns, all in one aggregation. In
+     * approximate mode the distinct count is estimated too, and the exact distinct counts and
+     * quartiles are added when they are to be compared.
+     */
+    private Row computeProfile(Dataset<Row> dataDF) {
+        StructField[] fields = dataDF.schema().fields();
+        List<Column> aggregates = new ArrayList<>();
+        aggregates.add(count(lit(1)).alias("row_count"));
         
-        return sparkSession.read()
-                .jdbc(dbUrl, tableName, connectionProperties);
+        for (int i = 0; i < fields.length; i++) {
+            Column column = col(fields[i].name());
+            Column isEmpty = fields[i].dataType() instanceof StringType
+                    ? column.isNull().or(column.equalTo(""))
+                    : column.isNull();
+            
+            aggregates.add(sum(when(isEmpty, 1).otherwise(0)).alias("nulls_" + i));
+            aggregates.add(min(column).cast("string").alias("min_" + i));
+            aggregates.add(max(column).cast("string").alias("max_" + i));
+            
+            if (fields[i].dataType() instanceof NumericType) {
+                aggregates.add(avg(column).cast("double").alias("mean_" + i));
+                aggregates.add(stddev(column).alias("stddev_" + i));
+                aggregates.add(percentile_approx(column, array(lit(0.25), lit(0.5), lit(0.75)),
+                                lit(approximateAnalytics.quantileAccuracy()))
+                        .cast("array<string>").alias("quartiles_" + i));
+            }
+            
+            if (approximateAnalytics.isEnabled()) {
+                aggregates.add(approximateAnalytics.distinctCount(column).alias("distinct_" + i));
+            }
+            
+            if (approximateAnalytics.isCompareExact()) {
+                aggregates.add(countDistinct(column).alias("exact_distinct_" + i));
+                if (fields[i].dataType() instanceof NumericType) {
+                    aggregates.add(expr("percentile(`" + fields[i].name() + "`, array(0.25, 0.5, 0.75))")
+                            .alias("exact_quartiles_" + i));
+                }
+            }
+        }
+        
+        return dataDF.select(aggregates.toArray(new Column[0])).first();
     }
     
-    private void performDataProfiling(Dataset<Row> dataDF, FileConfig fileConfig, String outputPath) {
+    private void performDataProfiling(Dataset<Row> dataDF, Row profile, FileConfig fileConfig, String outputPath) {
         log.info("Performing data profiling for table: {}", fileConfig.getTargetTableName());
         
-        // Basic statistics
-        Dataset<Row> summary = dataDF.summary();
+        long rowCount = profile.getLong(profile.fieldIndex("row_count"));
+        StructField[] fields = dataDF.schema().fields();
+        List<Row> summaryRows = new ArrayList<>();
+        List<Row> approximationRows = new ArrayList<>();
+        Map<String, Long> nullCounts = new HashMap<>();
+        
+        for (int i = 0; i < fields.length; i++) {
+            long nullCount = profile.getLong(profile.fieldIndex("nulls_" + i));
+            nullCounts.put(fields[i].name(), nullCount);
+            
+            Double mean = null;
+            Double stddev = null;
+            List<String> quartiles = null;
+            if (fields[i].dataType() instanceof NumericType) {
+                mean = profile.getAs("mean_" + i);
+                stddev = profile.getAs("stddev_" + i);
+                int quartilesIndex = profile.fieldIndex("quartiles_" + i);
+                quartiles = profile.isNullAt(quartilesIndex) ? null : profile.getList(quartilesIndex);
+            }
+            
+            summaryRows.add(RowFactory.create(
+                    fields[i].name(),
+                    fields[i].dataType().simpleString(),
+                    rowCount - nullCount,
+                    nullCount,
+                    mean,
+                    stddev,
+                    profile.getAs("min_" + i),
+                    quartiles != null ? quartiles.get(0) : null,
+                    quartiles != null ? quartiles.get(1) : null,
+                    quartiles != null ? quartiles.get(2) : null,
+                    profile.getAs("max_" + i),
+                    approximateAnalytics.isEnabled() ? profile.getAs("distinct_" + i) : null));
+            
+            if (approximateAnalytics.isCompareExact()) {
+                addApproximationRows(approximationRows, profile, fields[i], i, quartiles);
+            }
+        }
+        
+        Dataset<Row> summary = sparkSessionManager.getSession().createDataFrame(summaryRows, PROFILE_SCHEMA);
         summary.show();
         
         // Save summary statistics
-        summary.coalesce(1)
-                .write()
-                .mode("overwrite")
-                .option("header", "true")
-                .csv(outputPath + "/" + fileConfig.getTargetTableName() + "_summary");
+        analyticsOutputSink.writeSmall(summary, outputPath + "/" + fileConfig.getTargetTableName() + "_summary");
         
-        // Null value analysis
-        Map<String, Long> nullCounts = new HashMap<>();
-        for (String column : dataDF.columns()) {
-            long nullCount = dataDF.filter(col(column).isNull().or(col(column).equalTo(""))).count();
-            nullCounts.put(column, nullCount);
+        log.info("Null counts for table {}: {}", fileConfig.getTargetTableName(), nullCounts);
+        
+        if (!approximationRows.isEmpty()) {
+            analyticsOutputSink.writeSmall(
+                    sparkSessionManager.getSession().createDataFrame(approximationRows, APPROXIMATION_SCHEMA),
+                    outputPath + "/" + fileConfig.getTargetTableName() + "_approximation_check");
         }
+    }
+    
+    private void addApproximationRows(List<Row> rows, Row profile, StructField field, int index, List<String> quartiles) {
+        long approxDistinct = profile.getLong(profile.fieldIndex("distinct_" + index));
+        long exactDistinct = profile.getLong(profile.fieldIndex("exact_distinct_" + index));
+        rows.add(RowFactory.create(field.name(), "distinct", (double) approxDistinct, (double) exactDistinct,
+                ApproximateAnalytics.relativeError(approxDistinct, exactDistinct)));
         
-        log.info("Null counts for table {}: {}", fileConfig.getTargetTableName(), nullCounts);
+        if (quartiles == null || !(field.dataType() instanceof NumericType)) {
+            return;
+        }
+        int exactIndex = profile.fieldIndex("exact_quartiles_" + index);
+        if (profile.isNullAt(exactIndex)) {
+            return;
+        }
+        List<Double> exactQuartiles = profile.getList(exactIndex);
+        for (int q = 0; q < QUARTILE_NAMES.length; q++) {
+            double approximate = Double.parseDouble(quartiles.get(q));
+            double exact = exactQuartiles.get(q);
+            rows.add(RowFactory.create(field.name(), QUARTILE_NAMES[q], approximate, exact,
+                    ApproximateAnalytics.relativeError(approximate, exact)));
+        }
     }
     
     private void performAggregationAnalytics(Dataset<Row> dataDF, FileConfig fileConfig, String outputPath) {
         log.info("Performing aggregation analytics for table: {}", fileConfig.getTargetTableName());
         
         // Find categorical columns (string types)
-        Tuple2<String, String>[] categoricalColumns = dataDF.dtypes();
-        
-        for (int i = 0; i < categoricalColumns.length; i++) {
-            String columnName = categoricalColumns[i]._1();
-            String dataType = categoricalColumns[i]._2();
-            
-            if (dataType.contains("String") && !columnName.equalsIgnoreCase("ID")) {
-                // Perform group by analysis for categorical columns
-                Dataset<Row> groupAnalysis = dataDF
-                        .groupBy(columnName)
-                        .agg(count("*").alias("count"))
-                        .orderBy(desc("count"));
-                
-                groupAnalysis.show(20);
-                
-                // Save group analysis
-                groupAnalysis.coalesce(1)
-                        .write()
-                        .mode("overwrite")
-                        .option("header", "true")
-                        .csv(outputPath + "/" + fileConfig.getTargetTableName() + "_" + columnName + "_analysis");
+        List<String> categoricalColumns = new ArrayList<>();
+        for (Tuple2<String, String> dtype : dataDF.dtypes()) {
+            if (dtype._2().contains("String") && !dtype._1().equalsIgnoreCase("ID")) {
+                categoricalColumns.add(dtype._1());
             }
         }
         
-        // Perform numeric column analysis
-        performNumericAnalysis(dataDF, fileConfig, outputPath);
+        if (!categoricalColumns.isEmpty()) {
+            // All columns are counted in one aggregation over (column_name, value) pairs; in approximate
+            // mode only the frequent-item candidates take part and the top-K per column is kept
+            Map<String, List<Object>> candidates = approximateAnalytics.isEnabled()
+                    ? approximateAnalytics.heavyHitterCandidates(dataDF, categoricalColumns)
+                    : null;
+            int topK = approximateAnalytics.isEnabled() ? approximateAnalytics.getTopK() : 0;
+            
+            Dataset<Row> frequencies = fusedAnalyticsEngine.valueFrequencies(dataDF, categoricalColumns, candidates, topK);
+            writeByColumn(frequencies, outputPath + "/" + fileConfig.getTargetTableName() + "_categorical_analysis");
+            
+            if (approximateAnalytics.isCompareExact()) {
+                compareTopValues(dataDF, frequencies, categoricalColumns, fileConfig, outputPath);
+            }
+        }
     }
     
-    private void performNumericAnalysis(Dataset<Row> dataDF, FileConfig fileConfig, String outputPath) {
-        Tuple2<String, String>[] numericColumns = dataDF.dtypes();
-        
-        for (int i = 0; i < numericColumns.length; i++) {
-            String columnName = numericColumns[i]._1();
-            String dataType = numericColumns[i]._2();
-            
-            if ((dataType.contains("Double") || dataType.contains("Integer") || dataType.contains("Long")) 
-                && !columnName.equalsIgnoreCase("ID")) {
-                
-                Dataset<Row> numericStats = dataDF
-                        .select(
-                                min(columnName).alias("min_" + columnName),
-                                max(columnName).alias("max_" + columnName),
-                                avg(columnName).alias("avg_" + columnName),
-                                stddev(columnName).alias("stddev_" + columnName)
-                        );
-                
-                numericStats.show();
-                
-                // Save numeric statistics
-                numericStats.coalesce(1)
-                        .write()
-                        .mode("overwrite")
-                        .option("header", "true")
-                        .csv(outputPath + "/" + fileConfig.getTargetTableName() + "_" + columnName + "_stats");
+    private void compareTopValues(Dataset<Row> dataDF, Dataset<Row> approximateTop, List<String> categoricalColumns,
+                                  FileConfig fileConfig, String outputPath) {
+        Dataset<Row> exactTop = fusedAnalyticsEngine
+                .valueFrequencies(dataDF, categoricalColumns, null, approximateAnalytics.getTopK())
+                .cache();
+        
+        try {
+            writeByColumn(exactTop, outputPath + "/" + fileConfig.getTargetTableName() + "_categorical_analysis_exact");
+            
+            // Candidate counts are exact, so the only possible error is a value missing from the top-K
+            Dataset<Row> found = approximateTop.select(
+                    col(FusedAnalyticsEngine.COLUMN_NAME).alias("found_column"), col("value").alias("found_value"));
+            List<Row> recall = exactTop
+                    .join(found, exactTop.col(FusedAnalyticsEngine.COLUMN_NAME).equalTo(found.col("found_column"))
+                            .and(exactTop.col("value").equalTo(found.col("found_value"))), "left")
+                    .groupBy(FusedAnalyticsEngine.COLUMN_NAME)
+                    .agg(count(lit(1)).alias("exact"), count(col("found_column")).alias("found"))
+                    .collectAsList();
+            
+            for (Row row : recall) {
+                log.info("Top-{} values of {}: {} of {} exact values found by the sketch",
+                        approximateAnalytics.getTopK(), row.getString(0), row.getLong(2), row.getLong(1));
             }
+        } finally {
+            exactTop.unpersist();
         }
     }
     
-    public void performCrossTableAnalytics(List<String> tableNames, String outputPath) {
-        log.info("Performing cross-table analytics for tables: {}", tableNames);
+    private void writeByColumn(Dataset<Row> frequencies, String path) {
+        analyticsOutputSink.writePartitioned(frequencies, path, FusedAnalyticsEngine.COLUMN_NAME,
+                col(FusedAnalyticsEngine.COLUMN_NAME), desc("count"));
+    }
+    
+    /**
+     * Writes min, max, average and standard deviation of every numeric column. These come out
+     * of the profile aggregation, so no further pass over the data is needed.
+     */
+    private void performNumericAnalysis(Dataset<Row> dataDF, Row profile, FileConfig fileConfig, String outputPath) {
+        StructField[] fields = dataDF.schema().fields();
+        List<Row> statsRows = new ArrayList<>();
         
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].dataType() instanceof NumericType && !fields[i].name().equalsIgnoreCase("ID")) {
+                statsRows.add(RowFactory.create(
+                        fields[i].name(),
+                        profile.getAs("min_" + i),
+                        profile.getAs("max_" + i),
+                        profile.getAs("mean_" + i),
+                        profile.getAs("stddev_" + i)));
+            }
+        }
+        
+        if (statsRows.isEmpty()) {
+            return;
+        }
+        
+        Dataset<Row> numericStats = sparkSessionManager.getSession().createDataFrame(statsRows, NUMERIC_STATS_SCHEMA);
+        numericStats.show();
+        
+        // Save numeric statistics
+        analyticsOutputSink.writeSmall(numericStats, outputPath + "/" + fileConfig.getTargetTableName() + "_numeric_stats");
+    }
+    
+    /**
+     * Runs the cross-table analytics unless they already succeeded within the current window, so
+     * the jobs of one batch window share a single run. A failed run is retried by the next job.
+     * Returns whether they ran and succeeded.
+     */
+    public boolean performCrossTableAnalyticsIfDue(List<FileConfig> fileConfigs, String outputPath) {
+        if (ranWithinWindow()) {
+            return false;
+        }
+        if (!crossTableRunning.compareAndSet(false, true)) {
+            // Another job is running this window's analytics
+            return false;
+        }
         try {
-            Map<String, Dataset<Row>> tables = new HashMap<>();
-            
-            // Load all tables
-            for (String tableName : tableNames) {
-                Dataset<Row> df = readFromOracle(tableName);
-                tables.put(tableName, df);
-                df.createOrReplaceTempView(tableName.toLowerCase());
+            // The running job may have finished between the check and taking over
+            if (ranWithinWindow()) {
+                return false;
             }
-            
-            // Perform cross-table analysis (example: join analysis)
-            if (tableNames.size() >= 2) {
-                String table1 = tableNames.get(0).toLowerCase();
-                String table2 = tableNames.get(1).toLowerCase();
-                
-                // Example join analysis
-                Dataset<Row> joinAnalysis = sparkSession.sql(
-                    String.format("SELECT COUNT(*) as total_records FROM %s t1 " +
-                                 "LEFT JOIN %s t2 ON t1.id = t2.id", table1, table2)
-                );
-                
-                joinAnalysis.show();
-                
-                joinAnalysis.coalesce(1)
-                        .write()
-                        .mode("overwrite")
-                        .option("header", "true")
-                        .csv(outputPath + "/cross_table_analysis");
+            Instant started = Instant.now();
+            boolean succeeded = performCrossTableAnalytics(fileConfigs, outputPath);
+            if (succeeded) {
+                lastCrossTableRun.set(started);
+            }
+            return succeeded;
+        } finally {
+            crossTableRunning.set(false);
+        }
+    }
+    
+    private boolean ranWithinWindow() {
+        Instant lastRun = lastCrossTableRun.get();
+        if (lastRun != null && lastRun.plus(crossTableWindow).isAfter(Instant.now())) {
+            log.info("Cross-table analytics already ran at {}, next run after {}", lastRun, lastRun.plus(crossTableWindow));
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Checks every declared foreign key between the given configs' tables: how many referencing
+     * rows have no key, how many match a referenced row and how many are orphans. Returns false
+     * when the analytics failed.
+     */
+    public boolean performCrossTableAnalytics(List<FileConfig> fileConfigs, String outputPath) {
+        List<CrossTableJoinPlanner.JoinDefinition> joins = crossTableJoinPlanner.joinDefinitions(fileConfigs);
+        log.info("Performing cross-table analytics for {} declared joins", joins.size());
+        if (joins.isEmpty()) {
+            return true;
+        }
+        
+        crossTableJoinPlanner.acquire();
+        try {
+            List<Row> rows = Collections.synchronizedList(new ArrayList<>());
+            List<Runnable> checks = new ArrayList<>();
+            for (CrossTableJoinPlanner.JoinDefinition join : joins) {
+                checks.add(() -> rows.add(checkJoin(join)));
             }
+            analyticsRunner.runAll(CROSS_TABLE_POOL, checks);
+            
+            Dataset<Row> joinAnalysis = sparkSessionManager.getSession().createDataFrame(rows, JOIN_ANALYSIS_SCHEMA);
+            joinAnalysis.show();
+            
+            analyticsOutputSink.writeSmall(joinAnalysis, outputPath + "/cross_table_analysis");
+            return true;
             
         } catch (Exception e) {
             log.error("Error in cross-table analytics", e);
+            return false;
+        } finally {
+            crossTableJoinPlanner.release();
         }
     }
     
-    @PreDestroy
-    public void shutdown() {
-        if (sparkSession != null) {
-            sparkSession.stop();
-        }
+    private Row checkJoin(CrossTableJoinPlanner.JoinDefinition join) {
+        // Only the keys are needed to check the relationship
+        Dataset<Row> joined = crossTableJoinPlanner.join(join, List.of(join.leftColumn()), List.of(join.rightColumn()));
+        Row counts = joined.agg(
+                count(lit(1)).alias("rows"),
+                count(col(join.leftColumn())).alias("keyed"),
+                count(col(join.rightAlias(join.rightColumn()))).alias("matched")).first();
+        
+        long total = counts.getLong(0);
+        long keyed = counts.getLong(1);
+        long matched = counts.getLong(2);
+        return RowFactory.create(join.leftTable(), join.leftColumn(), join.rightTable(), join.rightColumn(),
+                total, total - keyed, matched, keyed - matched);
     }
 }
\ No newline at end of file
@@ -0,0 +1,275 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.config.SparkSessionManager;
+import com.example.batchspark.model.ColumnConfig;
+import com.example.batchspark.model.FileConfig;
+import com.example.batchspark.repository.FileConfigRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.spark.api.java.function.VoidFunction2;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SaveMode;
+import org.apache.spark.sql.streaming.StreamingQuery;
+import org.apache.spark.sql.streaming.Trigger;
+import org.apache.spark.storage.StorageLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Ingests files continuously for configs with INGESTION_MODE = STREAMING. Spark Structured
+ * Streaming watches the config's source directory and runs the load engine's rules on each
+ * micro-batch of new files.
+ *
+ * Micro-batches are committed exactly once: the valid rows are written to a staging table, then
+ * moved to the target table in the same Oracle transaction that records the batch in
+ * STREAM_BATCH_LOG. A batch that Spark replays after a failure is skipped when it is already
+ * logged, and otherwise overwrites the staging table left behind by the failed attempt. Files
+ * already covered by a completed batch are tracked in the checkpoint and never read again.
+ */
+@Service
+public class StreamingIngestionService {
+    
+    private static final Logger log = LoggerFactory.getLogger(StreamingIngestionService.class);
+    
+    public static final String STREAMING = "STREAMING";
+    
+    private static final String STAGING_SUFFIX = "_STG";
+    
+    private final SparkSessionManager sparkSessionManager;
+    private final SparkLoadEngine sparkLoadEngine;
+    private final GenericDataService genericDataService;
+    private final FileConfigRepository fileConfigRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TableVersionService tableVersionService;
+    
+    private final Map<String, StreamingQuery> queries = new ConcurrentHashMap<>();
+    
+    @Value("${app.streaming.auto-start:false}")
+    private boolean autoStart;
+    
+    @Value("${app.streaming.trigger-interval:PT5S}")
+    private Duration triggerInterval;
+    
+    @Value("${app.streaming.max-files-per-trigger:100}")
+    private int maxFilesPerTrigger;
+    
+    @Value("${app.streaming.checkpoint-path:output/checkpoints}")
+    private String checkpointPath;
+    
+    public StreamingIngestionService(SparkSessionManager sparkSessionManager, SparkLoadEngine sparkLoadEngine,
+                                     GenericDataService genericDataService, FileConfigRepository fileConfigRepository,
+                                     JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                     TableVersionService tableVersionService) {
+        this.sparkSessionManager = sparkSessionManager;
+        this.sparkLoadEngine = sparkLoadEngine;
+        this.genericDataService = genericDataService;
+        this.fileConfigRepository = fileConfigRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tableVersionService = tableVersionService;
+    }
+    
+    /**
+     * Starts the streams of all active STREAMING configs once the application is up.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startConfiguredStreams() {
+        if (!autoStart) {
+            return;
+        }
+        fileConfigRepository.findActiveWithColumns().stream()
+                .filter(fileConfig -> STREAMING.equalsIgnoreCase(fileConfig.getIngestionMode()))
+                .forEach(fileConfig -> {
+                    try {
+                        start(fileConfig);
+                    } catch (Exception e) {
+                        log.error("Could not start streaming ingestion for config {}", fileConfig.getConfigName(), e);
+                    }
+                });
+    }
+    
+    /**
+     * Starts watching the config's source directory. Does nothing when its stream is running.
+     */
+    public synchronized void start(FileConfig fileConfig) {
+        String configName = fileConfig.getConfigName();
+        String unsupported = SparkLoadEngine.unsupportedReason(fileConfig);
+        if (unsupported != null) {
+            throw new IllegalArgumentException("Config " + configName + " cannot be streamed, as " + unsupported);
+        }
+        StreamingQuery running = queries.get(configName);
+        if (running != null && running.isActive()) {
+            log.info("Streaming ingestion for config {} is already running", configName);
+            return;
+        }
+        
+        genericDataService.createTableIfNotExists(fileConfig);
+        createStagingTableIfNotExists(fileConfig);
+        
+        String directory = sourceDirectory(fileConfig);
+        String fileFilter = sourceFileFilter(fileConfig);
+        VoidFunction2<Dataset<Row>, Long> ingest = (batch, batchId) -> ingestBatch(fileConfig, batch, batchId);
+        try {
+            StreamingQuery query = sparkSessionManager.getSession().readStream()
+                    .schema(sparkLoadEngine.sourceSchema(fileConfig))
+                    .option("header", String.valueOf(Boolean.TRUE.equals(fileConfig.getHasHeader())))
+                    .option("delimiter", fileConfig.getDelimiter() != null ? fileConfig.getDelimiter() : ",")
+                    .option("maxFilesPerTrigger", maxFilesPerTrigger)
+                    .option("pathGlobFilter", fileFilter)
+                    .csv(directory)
+                    .writeStream()
+                    .queryName("ingest_" + configName)
+                    .option("checkpointLocation", Paths.get(checkpointPath, configName).toString())
+                    .trigger(Trigger.ProcessingTime(triggerInterval.toMillis()))
+                    .foreachBatch(ingest)
+                    .start();
+            queries.put(configName, query);
+            log.info("Started streaming ingestion of {} into {} every {}", directory, fileConfig.getTargetTableName(), triggerInterval);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Could not start streaming ingestion for config " + configName, e);
+        }
+    }
+    
+    /**
+     * Stops the config's stream after its current micro-batch.
+     */
+    public synchronized boolean stop(String configName) {
+        StreamingQuery query = queries.remove(configName);
+        if (query == null) {
+            return false;
+        }
+        try {
+            query.stop();
+            log.info("Stopped streaming ingestion for config {}", configName);
+            return true;
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Could not stop streaming ingestion for config " + configName, e);
+        }
+    }
+    
+    /**
+     * Status message of each started stream, by config name.
+     */
+    public Map<String, String> status() {
+        return queries.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> {
+                    StreamingQuery query = entry.getValue();
+                    if (!query.isActive()) {
+                        return query.exception().isDefined()
+                                ? "Failed: " + query.exception().get().getMessage()
+                                : "Stopped";
+                    }
+                    return query.status().message();
+                }, (a, b) -> a, TreeMap::new));
+    }
+    
+    private void ingestBatch(FileConfig fileConfig, Dataset<Row> batch, long batchId) {
+        String configName = fileConfig.getConfigName();
+        if (isCommitted(configName, batchId)) {
+            log.info("Micro-batch {} of config {} was already committed, skipping its replay", batchId, configName);
+            return;
+        }
+        
+        Dataset<Row> processed = sparkLoadEngine.process(batch, fileConfig).persist(StorageLevel.MEMORY_AND_DISK());
+        try {
+            SparkLoadEngine.LoadResult result = sparkLoadEngine.countRows(processed);
+            if (result.read() == 0) {
+                return;
+            }
+            
+            String stagingTable = stagingTable(fileConfig);
+            sparkLoadEngine.writeTable(sparkLoadEngine.validRows(processed, fileConfig), stagingTable, SaveMode.Overwrite);
+            if (result.rejected() > 0) {
+                sparkLoadEngine.writeRejects(processed, fileConfig, "stream_batch=" + batchId);
+            }
+            
+            String columns = fileConfig.getColumnConfigs().stream()
+                    .map(ColumnConfig::getTargetColumnName)
+                    .collect(Collectors.joining(", "));
+            transactionTemplate.executeWithoutResult(status -> {
+                tableVersionService.bump(fileConfig.getTargetTableName());
+                jdbcTemplate.update("INSERT INTO " + fileConfig.getTargetTableName() + " (" + columns + ") SELECT "
+                        + columns + " FROM " + stagingTable);
+                jdbcTemplate.update(
+                        "INSERT INTO STREAM_BATCH_LOG (CONFIG_NAME, BATCH_ID, ROW_COUNT, REJECTED_COUNT) VALUES (?, ?, ?, ?)",
+                        configName, batchId, result.written(), result.rejected());
+            });
+            
+            log.info("Committed micro-batch {} of config {}: {} rows written, {} rejected",
+                    batchId, configName, result.written(), result.rejected());
+        } finally {
+            processed.unpersist();
+        }
+    }
+    
+    private boolean isCommitted(String configName, long batchId) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM STREAM_BATCH_LOG WHERE CONFIG_NAME = ? AND BATCH_ID = ?",
+                Integer.class, configName, batchId);
+        return count != null && count > 0;
+    }
+    
+    private void createStagingTableIfNotExists(FileConfig fileConfig) {
+        String stagingTable = stagingTable(fileConfig);
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user_tables WHERE table_name = ?", Integer.class, stagingTable.toUpperCase());
+        if (count != null && count > 0) {
+            return;
+        }
+        
+        String columns = fileConfig.getColumnConfigs().stream()
+                .map(ColumnConfig::getTargetColumnName)
+                .collect(Collectors.joining(", "));
+        log.info("Creating staging table {}", stagingTable);
+        jdbcTemplate.execute("CREATE TABLE " + stagingTable + " AS SELECT " + columns + " FROM "
+                + fileConfig.getTargetTableName() + " WHERE 1 = 0");
+    }
+    
+    private static String stagingTable(FileConfig fileConfig) {
+        return fileConfig.getTargetTableName() + STAGING_SUFFIX;
+    }
+    
+    private static String sourceDirectory(FileConfig fileConfig) {
+        // Batch configs point at a file; a streaming config may too, and then watches its directory
+        Path path = Paths.get(fileConfig.getSourceFilePath());
+        return Files.isDirectory(path) || path.getParent() == null ? path.toString() : path.getParent().toString();
+    }
+    
+    /**
+     * The files of the source directory the stream picks up: all of them for a directory,
+     * otherwise those matching the file name, which may be a glob such as {@code orders_*.csv}.
+     */
+    private static String sourceFileFilter(FileConfig fileConfig) {
+        Path path = Paths.get(fileConfig.getSourceFilePath());
+        return Files.isDirectory(path) || path.getParent() == null ? "*" : path.getFileName().toString();
+    }
+    
+    @PreDestroy
+    void stopAll() {
+        queries.keySet().forEach(configName -> {
+            try {
+                stop(configName);
+            } catch (Exception e) {
+                log.warn("Could not stop streaming ingestion for config {}: {}", configName, e.getMessage());
+            }
+        });
+    }
+}
\ No newline at end of file
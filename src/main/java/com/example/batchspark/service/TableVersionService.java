@@ -0,0 +1,63 @@
+package com.example.batchspark.service;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Keeps a version number per target table in TABLE_VERSION. Every load path bumps the version
+ * before it writes to a table, so a copy of the table stamped with the version it was made at
+ * (such as the Parquet side output) is current only while the version has not moved.
+ */
+@Service
+public class TableVersionService {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public TableVersionService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    /**
+     * Current version of a table, 0 if it was never written.
+     */
+    public long current(String tableName) {
+        List<Long> versions = jdbcTemplate.queryForList(
+                "SELECT VERSION FROM TABLE_VERSION WHERE TABLE_NAME = ?", Long.class, tableName.toUpperCase());
+        return versions.isEmpty() ? 0 : versions.get(0);
+    }
+    
+    /**
+     * Increments the version of a table and returns the new version.
+     */
+    public long bump(String tableName) {
+        while (true) {
+            long version = current(tableName);
+            if (advance(tableName, version)) {
+                return version + 1;
+            }
+        }
+    }
+    
+    /**
+     * Increments the version of a table only if it is still {@code expected}.
+     *
+     * @return false when another writer moved the version first
+     */
+    public boolean advance(String tableName, long expected) {
+        String table = tableName.toUpperCase();
+        if (expected == 0) {
+            try {
+                jdbcTemplate.update("INSERT INTO TABLE_VERSION (TABLE_NAME, VERSION) VALUES (?, 1)", table);
+                return true;
+            } catch (DuplicateKeyException e) {
+                return false;
+            }
+        }
+        return jdbcTemplate.update(
+                "UPDATE TABLE_VERSION SET VERSION = VERSION + 1, UPDATED_DATE = CURRENT_TIMESTAMP"
+                        + " WHERE TABLE_NAME = ? AND VERSION = ?", table, expected) == 1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,14 @@
+-- BATCH loads on demand through the job, STREAMING watches the source directory continuously
+ALTER TABLE FILE_CONFIG ADD (
+    INGESTION_MODE VARCHAR2(10) DEFAULT 'BATCH'
+);
+
+-- Micro-batches committed per streaming config; a replayed batch ID is skipped
+CREATE TABLE STREAM_BATCH_LOG (
+    CONFIG_NAME VARCHAR2(100) NOT NULL,
+    BATCH_ID NUMBER(19) NOT NULL,
+    ROW_COUNT NUMBER(19) DEFAULT 0,
+    REJECTED_COUNT NUMBER(19) DEFAULT 0,
+    COMMITTED_DATE TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT PK_STREAM_BATCH_LOG PRIMARY KEY (CONFIG_NAME, BATCH_ID)
+);
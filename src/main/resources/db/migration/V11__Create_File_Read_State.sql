@@ -0,0 +1,20 @@
+-- FULL re-reads the source file on every run, TAIL reads only what was appended since the last run
+ALTER TABLE FILE_CONFIG ADD (
+    READ_MODE VARCHAR2(10) DEFAULT 'FULL'
+);
+
+-- Last committed read position and identity of the source file of each TAIL config
+CREATE SEQUENCE FILE_READ_STATE_SEQ START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE FILE_READ_STATE (
+    ID NUMBER(19) PRIMARY KEY,
+    CONFIG_NAME VARCHAR2(100) NOT NULL UNIQUE,
+    FILE_PATH VARCHAR2(500) NOT NULL,
+    FILE_KEY VARCHAR2(200),
+    FILE_SIZE NUMBER(19),
+    LAST_MODIFIED TIMESTAMP,
+    COMMITTED_OFFSET NUMBER(19) DEFAULT 0,
+    HEAD_LENGTH NUMBER(10) DEFAULT 0,
+    HEAD_HASH VARCHAR2(64),
+    UPDATED_DATE TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,4 @@
+-- Load only the rows inserted, changed or deleted since the previous snapshot, matched on the primary key columns
+ALTER TABLE FILE_CONFIG ADD (
+    DELTA_LOAD NUMBER(1) DEFAULT 0
+);
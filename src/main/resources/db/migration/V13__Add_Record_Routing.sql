@@ -0,0 +1,9 @@
+-- Route the records of mixed-record files to child configs by a discriminator field, in one pass over the file
+ALTER TABLE FILE_CONFIG ADD (
+    PARENT_CONFIG_ID NUMBER(19),
+    DISCRIMINATOR_POSITION NUMBER(3),
+    DISCRIMINATOR_VALUE VARCHAR2(100),
+    CONSTRAINT FK_FILE_CONFIG_PARENT FOREIGN KEY (PARENT_CONFIG_ID) REFERENCES FILE_CONFIG(ID)
+);
+
+CREATE INDEX IDX_FILE_CONFIG_PARENT ON FILE_CONFIG(PARENT_CONFIG_ID);
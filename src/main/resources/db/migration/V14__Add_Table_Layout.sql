@@ -0,0 +1,12 @@
+-- Physical layout of generated target tables: partitioning, compression and secondary indexes
+ALTER TABLE FILE_CONFIG ADD (
+    PARTITION_SCHEME VARCHAR2(10) DEFAULT 'NONE',
+    PARTITION_INTERVAL VARCHAR2(20),
+    PARTITION_COUNT NUMBER(5),
+    TABLE_COMPRESSION VARCHAR2(20)
+);
+
+ALTER TABLE COLUMN_CONFIG ADD (
+    IS_PARTITION_KEY NUMBER(1) DEFAULT 0,
+    INDEX_NAME VARCHAR2(128)
+);
@@ -0,0 +1,4 @@
+-- Priority of a config's jobs in the job scheduler's queue, higher first
+ALTER TABLE FILE_CONFIG ADD (
+    JOB_PRIORITY NUMBER(2) DEFAULT 5
+);
@@ -0,0 +1,5 @@
+-- Rule expressions (=...) do not fit the original column sizes
+ALTER TABLE COLUMN_CONFIG MODIFY (
+    TRANSFORMATION_RULE VARCHAR2(4000),
+    VALIDATION_RULE VARCHAR2(4000)
+);
@@ -0,0 +1,5 @@
+-- Fingerprint of the aggregated rows, to detect reloads, updates and deletes below the high-water mark
+ALTER TABLE ANALYTICS_STATE ADD (
+    SOURCE_MIN_ID NUMBER(19),
+    SOURCE_MAX_UPDATED TIMESTAMP
+);
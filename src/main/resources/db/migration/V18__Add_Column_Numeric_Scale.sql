@@ -0,0 +1,5 @@
+-- Precision and scale of NUMBER/DECIMAL columns; unset keeps NUMBER(19,2)
+ALTER TABLE COLUMN_CONFIG ADD (
+    NUMERIC_PRECISION NUMBER(2),
+    NUMERIC_SCALE NUMBER(2)
+);
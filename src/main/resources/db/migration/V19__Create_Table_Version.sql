@@ -0,0 +1,6 @@
+-- Bumped whenever a target table is written, so copies of the table can tell whether they are current
+CREATE TABLE TABLE_VERSION (
+    TABLE_NAME VARCHAR2(128) PRIMARY KEY,
+    VERSION NUMBER(19) NOT NULL,
+    UPDATED_DATE TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
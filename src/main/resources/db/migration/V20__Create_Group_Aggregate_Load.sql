@@ -0,0 +1,14 @@
+-- Group aggregates contributed by each load, keyed by a fingerprint of the loaded records, so a
+-- re-run of the same records replaces its contribution instead of adding to it
+CREATE TABLE GROUP_AGGREGATE_LOAD (
+    CONFIG_NAME VARCHAR2(100) NOT NULL,
+    LOAD_KEY VARCHAR2(40) NOT NULL,
+    GROUP_VALUE VARCHAR2(1000) NOT NULL,
+    ROW_COUNT NUMBER(19) NOT NULL,
+    VALUE_COUNT NUMBER(19) NOT NULL,
+    TOTAL_VALUE NUMBER,
+    MIN_VALUE NUMBER,
+    MAX_VALUE NUMBER,
+    LOADED_DATE TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT PK_GROUP_AGGREGATE_LOAD PRIMARY KEY (CONFIG_NAME, LOAD_KEY, GROUP_VALUE)
+);
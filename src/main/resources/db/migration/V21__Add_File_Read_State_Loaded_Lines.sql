@@ -0,0 +1,5 @@
+-- Lines past COMMITTED_OFFSET already loaded by chunks of a tail run that did not complete, so the
+-- next run skips them instead of inserting them again
+ALTER TABLE FILE_READ_STATE ADD (
+    LOADED_LINES NUMBER(10) DEFAULT 0
+);
@@ -0,0 +1,8 @@
+-- Reference-data lookup rules for COLUMN_CONFIG
+ALTER TABLE COLUMN_CONFIG ADD (
+    LOOKUP_TABLE VARCHAR2(100),
+    LOOKUP_KEY_COLUMN VARCHAR2(100),
+    LOOKUP_VALUE_COLUMN VARCHAR2(100),
+    LOOKUP_MODE VARCHAR2(20) DEFAULT 'LAZY',
+    LOOKUP_CACHE_SIZE NUMBER(10)
+);
@@ -0,0 +1,4 @@
+-- Optional explicit partitioning predicates for Spark JDBC reads
+ALTER TABLE FILE_CONFIG ADD (
+    SPARK_READ_PREDICATES VARCHAR2(4000)
+);
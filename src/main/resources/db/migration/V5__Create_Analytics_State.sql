@@ -0,0 +1,21 @@
+-- Mergeable per-column aggregate state for incremental analytics
+CREATE SEQUENCE ANALYTICS_STATE_SEQ START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE ANALYTICS_STATE (
+    ID NUMBER(19) PRIMARY KEY,
+    TABLE_NAME VARCHAR2(100) NOT NULL,
+    COLUMN_NAME VARCHAR2(100) NOT NULL,
+    DATA_TYPE VARCHAR2(100),
+    ROW_COUNT NUMBER(19) DEFAULT 0,
+    NON_NULL_COUNT NUMBER(19) DEFAULT 0,
+    SUM_VALUE NUMBER(38,10),
+    SUM_SQUARES BINARY_DOUBLE,
+    MIN_VALUE VARCHAR2(4000),
+    MAX_VALUE VARCHAR2(4000),
+    DISTINCT_SKETCH BLOB,
+    DISTINCT_ESTIMATE NUMBER(19),
+    HIGH_WATER_ID NUMBER(19),
+    HIGH_WATER_DATE TIMESTAMP,
+    UPDATED_DATE TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT UK_ANALYTICS_STATE_COLUMN UNIQUE (TABLE_NAME, COLUMN_NAME)
+);
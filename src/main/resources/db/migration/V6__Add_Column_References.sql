@@ -0,0 +1,5 @@
+-- Foreign-key metadata used to join the target tables of different configs on business keys
+ALTER TABLE COLUMN_CONFIG ADD (
+    REFERENCES_TABLE VARCHAR2(100),
+    REFERENCES_COLUMN VARCHAR2(100)
+);
@@ -0,0 +1,12 @@
+-- Group and value columns summarized into EMPLOYEE_ANALYTICS while a file is loaded
+ALTER TABLE FILE_CONFIG ADD (
+    AGGREGATE_GROUP_COLUMN VARCHAR2(100),
+    AGGREGATE_VALUE_COLUMN VARCHAR2(100)
+);
+
+UPDATE FILE_CONFIG
+SET AGGREGATE_GROUP_COLUMN = 'DEPARTMENT',
+    AGGREGATE_VALUE_COLUMN = 'SALARY'
+WHERE CONFIG_NAME = 'EMPLOYEE_DATA';
+
+COMMIT;
@@ -0,0 +1,4 @@
+-- Part of the analytics fingerprint; bumping it invalidates cached analytics outputs
+ALTER TABLE FILE_CONFIG ADD (
+    CONFIG_VERSION NUMBER(10) DEFAULT 1
+);
@@ -0,0 +1,4 @@
+-- BATCH runs the chunk-oriented load step, SPARK the Spark load engine, AUTO picks by source file size
+ALTER TABLE FILE_CONFIG ADD (
+    LOAD_ENGINE VARCHAR2(10) DEFAULT 'AUTO'
+);
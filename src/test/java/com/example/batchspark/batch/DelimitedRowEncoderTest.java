@@ -0,0 +1,41 @@
+package com.example.batchspark.batch;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DelimitedRowEncoderTest {
+    
+    @Test
+    void encodesRowsTheReaderCanSplitAgain() throws Exception {
+        StringWriter out = new StringWriter();
+        DelimitedRowEncoder encoder = new DelimitedRowEncoder(out, ",");
+        
+        encoder.appendLong(42);
+        encoder.appendText("Smith, John");
+        encoder.appendText("say \"hi\"");
+        encoder.appendNull();
+        encoder.appendDecimal(new BigDecimal("1E+3"));
+        encoder.endRow();
+        encoder.appendText("plain");
+        encoder.appendText(null);
+        encoder.endRow();
+        
+        assertThat(out.toString()).isEqualTo("42,\"Smith, John\",\"say \"\"hi\"\"\",,1000\nplain,\n");
+    }
+    
+    @Test
+    void quotesValuesContainingAMultiCharacterDelimiter() throws Exception {
+        StringWriter out = new StringWriter();
+        DelimitedRowEncoder encoder = new DelimitedRowEncoder(out, "||");
+        
+        encoder.appendText("a|b");
+        encoder.appendText("a||b");
+        encoder.endRow();
+        
+        assertThat(out.toString()).isEqualTo("a|b||\"a||b\"\n");
+    }
+}
\ No newline at end of file
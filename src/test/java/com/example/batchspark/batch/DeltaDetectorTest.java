@@ -0,0 +1,126 @@
+package com.example.batchspark.batch;
+
+import com.example.batchspark.model.ColumnConfig;
+import com.example.batchspark.model.FileConfig;
+import com.example.batchspark.model.GenericDataRecord;
+import com.example.batchspark.repository.AnalyticsStateRepository;
+import com.example.batchspark.service.FileTailService;
+import com.example.batchspark.service.GenericDataService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.Chunk;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeltaDetectorTest {
+    
+    @TempDir
+    Path directory;
+    
+    private final List<Object> deletedKeys = new ArrayList<>();
+    private final List<String> invalidatedTables = new ArrayList<>();
+    private DeltaDetector deltaDetector;
+    
+    @BeforeEach
+    void setUp() {
+        GenericDataService genericDataService = new GenericDataService(null) {
+            @Override
+            public void deleteByKeys(List<Object[]> keys, List<ColumnConfig> keyColumns, FileConfig fileConfig) {
+                keys.forEach(key -> deletedKeys.add(key[0]));
+            }
+            
+            @Override
+            public boolean hasUniqueIndex(String tableName, List<ColumnConfig> columns) {
+                return true;
+            }
+        };
+        AnalyticsStateRepository analyticsStateRepository = (AnalyticsStateRepository) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {AnalyticsStateRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("deleteByTableName")) {
+                        invalidatedTables.add((String) args[0]);
+                    }
+                    return null;
+                });
+        deltaDetector = new DeltaDetector(genericDataService, analyticsStateRepository);
+        ReflectionTestUtils.setField(deltaDetector, "basePath", directory.toString());
+        ReflectionTestUtils.setField(deltaDetector, "runSize", 100);
+        ReflectionTestUtils.setField(deltaDetector, "deleteBatchSize", 100);
+        deltaDetector.configure(fileConfig(), false);
+    }
+    
+    @Test
+    void keepsRowsOfRejectedRecordsWhoseKeyExists() throws Exception {
+        load(List.of(record("1", "Ann"), record("2", "Bob")), List.of());
+        
+        // Key 2 is still in the snapshot, but its record is rejected
+        load(List.of(record("1", "Ann")), List.of(record("2", "Bobby")));
+        assertThat(deletedKeys).isEmpty();
+        assertThat(invalidatedTables).isEmpty();
+        
+        // The retained row stays in the index and is deleted once its key is gone
+        load(List.of(record("1", "Ann")), List.of());
+        assertThat(deletedKeys).containsExactly("2");
+        assertThat(invalidatedTables).containsExactly("EMPLOYEES");
+    }
+    
+    @Test
+    void refusesTailReadsAndUploads() {
+        FileConfig tail = fileConfig();
+        tail.setReadMode(FileTailService.TAIL);
+        
+        // A tail read holds only the appended lines; every other row would be deleted
+        assertThatThrownBy(() -> deltaDetector.configure(tail, false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("tail mode");
+        assertThatThrownBy(() -> deltaDetector.configure(fileConfig(), true))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("upload");
+    }
+    
+    private void load(List<GenericDataRecord> written, List<GenericDataRecord> rejected) throws Exception {
+        StepExecution stepExecution = new StepExecution("loadDataStep", new JobExecution(1L));
+        deltaDetector.beforeStep(stepExecution);
+        for (GenericDataRecord record : rejected) {
+            deltaDetector.retain(record);
+        }
+        deltaDetector.filter(new Chunk<>(written));
+        stepExecution.setStatus(BatchStatus.COMPLETED);
+        deltaDetector.afterStep(stepExecution);
+    }
+    
+    private static GenericDataRecord record(String id, String name) {
+        GenericDataRecord record = new GenericDataRecord("EMPLOYEES");
+        record.addColumnValue("id", id);
+        record.addColumnValue("name", name);
+        return record;
+    }
+    
+    private static FileConfig fileConfig() {
+        ColumnConfig id = new ColumnConfig();
+        id.setSourceColumnName("id");
+        id.setTargetColumnName("ID");
+        id.setIsPrimaryKey(true);
+        ColumnConfig name = new ColumnConfig();
+        name.setSourceColumnName("name");
+        name.setTargetColumnName("NAME");
+        
+        FileConfig fileConfig = new FileConfig();
+        fileConfig.setConfigName("employees");
+        fileConfig.setTargetTableName("EMPLOYEES");
+        fileConfig.setDeltaLoad(true);
+        fileConfig.setColumnConfigs(List.of(id, name));
+        return fileConfig;
+    }
+}
\ No newline at end of file
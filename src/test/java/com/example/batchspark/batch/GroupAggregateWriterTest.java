@@ -0,0 +1,51 @@
+package com.example.batchspark.batch;
+
+import com.example.batchspark.model.EmployeeAnalytics;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GroupAggregateWriterTest {
+    
+    @Test
+    void mergesChunkAggregates() {
+        GroupAggregateWriter.GroupAggregate first = new GroupAggregateWriter.GroupAggregate();
+        first.add(new BigDecimal("100"));
+        first.add(null);
+        GroupAggregateWriter.GroupAggregate second = new GroupAggregateWriter.GroupAggregate();
+        second.add(new BigDecimal("40"));
+        second.add(new BigDecimal("160"));
+        
+        first.merge(second);
+        
+        assertThat(first.count).isEqualTo(4);
+        assertThat(first.valueCount).isEqualTo(3);
+        assertThat(first.sum).isEqualByComparingTo("300");
+        assertThat(first.min).isEqualByComparingTo("40");
+        assertThat(first.max).isEqualByComparingTo("160");
+    }
+    
+    @Test
+    void storesTotalOfAllLoadsInAnalyticsRow() {
+        GroupAggregateWriter.GroupAggregate firstLoad = new GroupAggregateWriter.GroupAggregate();
+        firstLoad.add(new BigDecimal("40"));
+        firstLoad.add(new BigDecimal("60"));
+        firstLoad.add(null);
+        GroupAggregateWriter.GroupAggregate secondLoad = new GroupAggregateWriter.GroupAggregate();
+        secondLoad.add(new BigDecimal("80"));
+        secondLoad.add(new BigDecimal("20"));
+        EmployeeAnalytics stored = new EmployeeAnalytics("IT", 9L, new BigDecimal("1.00"),
+                new BigDecimal("1"), new BigDecimal("1"), new BigDecimal("9"));
+        
+        firstLoad.merge(secondLoad).applyTo(stored);
+        
+        assertThat(stored.getEmployeeCount()).isEqualTo(5);
+        assertThat(stored.getValueCount()).isEqualTo(4);
+        assertThat(stored.getTotalSalary()).isEqualByComparingTo("200");
+        assertThat(stored.getAvgSalary()).isEqualByComparingTo("50.00");
+        assertThat(stored.getMinSalary()).isEqualByComparingTo("20");
+        assertThat(stored.getMaxSalary()).isEqualByComparingTo("80");
+    }
+}
\ No newline at end of file
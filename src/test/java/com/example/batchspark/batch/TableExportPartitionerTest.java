@@ -0,0 +1,27 @@
+package com.example.batchspark.batch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TableExportPartitionerTest {
+    
+    @Test
+    void splitsIdsIntoContiguousRanges() {
+        List<TableExportPartitioner.IdRange> ranges = TableExportPartitioner.split(1, 10, 3);
+        
+        assertThat(ranges).containsExactly(
+                new TableExportPartitioner.IdRange(1, 4),
+                new TableExportPartitioner.IdRange(5, 8),
+                new TableExportPartitioner.IdRange(9, 10));
+    }
+    
+    @Test
+    void usesFewerRangesThanIds() {
+        assertThat(TableExportPartitioner.split(7, 8, 4)).containsExactly(
+                new TableExportPartitioner.IdRange(7, 7),
+                new TableExportPartitioner.IdRange(8, 8));
+    }
+}
\ No newline at end of file
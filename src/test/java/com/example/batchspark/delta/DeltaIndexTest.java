@@ -0,0 +1,80 @@
+package com.example.batchspark.delta;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeltaIndexTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void findsEntriesMergedFromSeveralRuns() throws IOException {
+        DeltaIndexBuilder builder = new DeltaIndexBuilder(directory.resolve("build"), 3);
+        for (int i = 0; i < 10; i++) {
+            builder.add(DeltaIndex.hash("key" + i), i, "key" + i);
+        }
+        builder.finish(directory.resolve("index"));
+        
+        DeltaIndex index = DeltaIndex.open(directory.resolve("index"));
+        
+        assertThat(index.size()).isEqualTo(10);
+        for (int i = 0; i < 10; i++) {
+            int position = index.find(DeltaIndex.hash("key" + i), "key" + i);
+            assertThat(index.rowHash(position)).isEqualTo(i);
+            assertThat(index.key(position)).isEqualTo("key" + i);
+        }
+        assertThat(index.find(DeltaIndex.hash("missing"), "missing")).isEqualTo(-1);
+        for (int i = 1; i < index.size(); i++) {
+            assertThat(index.keyHash(i - 1)).isLessThanOrEqualTo(index.keyHash(i));
+        }
+        assertThat(directory.resolve("build")).doesNotExist();
+    }
+    
+    @Test
+    void resolvesKeyHashCollisionsByKey() throws IOException {
+        DeltaIndexBuilder builder = new DeltaIndexBuilder(directory.resolve("build"), 10);
+        builder.add(42L, 1L, "a");
+        builder.add(42L, 2L, "b");
+        builder.finish(directory.resolve("index"));
+        
+        DeltaIndex index = DeltaIndex.open(directory.resolve("index"));
+        
+        assertThat(index.rowHash(index.find(42L, "a"))).isEqualTo(1L);
+        assertThat(index.rowHash(index.find(42L, "b"))).isEqualTo(2L);
+        assertThat(index.find(42L, "c")).isEqualTo(-1);
+    }
+    
+    @Test
+    void replacesPreviousIndexAndKeepsItOnDiscard() throws IOException {
+        Path indexDirectory = directory.resolve("index");
+        DeltaIndexBuilder first = new DeltaIndexBuilder(directory.resolve("build"), 10);
+        first.add(1L, 1L, "old");
+        first.finish(indexDirectory);
+        
+        DeltaIndexBuilder failed = new DeltaIndexBuilder(directory.resolve("build"), 10);
+        failed.add(2L, 2L, "new");
+        failed.discard();
+        assertThat(DeltaIndex.open(indexDirectory).find(1L, "old")).isEqualTo(0);
+        
+        DeltaIndexBuilder second = new DeltaIndexBuilder(directory.resolve("build"), 10);
+        second.add(2L, 2L, "new");
+        second.finish(indexDirectory);
+        
+        DeltaIndex index = DeltaIndex.open(indexDirectory);
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.find(2L, "new")).isEqualTo(0);
+        assertThat(Files.exists(directory.resolve("index.old"))).isFalse();
+    }
+    
+    @Test
+    void missingIndexIsEmpty() throws IOException {
+        assertThat(DeltaIndex.open(directory.resolve("none")).size()).isZero();
+    }
+}
\ No newline at end of file
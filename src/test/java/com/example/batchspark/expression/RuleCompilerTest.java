@@ -0,0 +1,67 @@
+package com.example.batchspark.expression;
+
+import com.example.batchspark.model.GenericDataRecord;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RuleCompilerTest {
+    
+    private final RuleCompiler ruleCompiler = new RuleCompiler();
+    
+    @Test
+    void keepsLegacyKeywords() {
+        assertThat(ruleCompiler.compileTransformation("TRIM_UPPER").evaluate(" hr ", null)).isEqualTo("HR");
+        assertThat(ruleCompiler.compileTransformation("capitalize").evaluate("jOHN", null)).isEqualTo("John");
+        assertThat(ruleCompiler.compileValidation("POSITIVE_NUMBER").evaluate("-5", null)).isEqualTo(false);
+        assertThat(ruleCompiler.compileValidation("[A-Z]{3}").evaluate(" ABC ", null)).isEqualTo(true);
+    }
+    
+    @Test
+    void evaluatesStringExpressions() {
+        Expression pad = ruleCompiler.compileTransformation("=lpad(trim(value), 6, '0')");
+        Expression name = ruleCompiler.compileTransformation("=upper(substr(value, 0, 1)) & '. ' & lastName");
+        
+        GenericDataRecord record = new GenericDataRecord("EMPLOYEES");
+        record.addColumnValue("lastName", "Smith");
+        
+        assertThat(pad.evaluate(" 42 ", record)).isEqualTo("000042");
+        assertThat(name.evaluate("john", record)).isEqualTo("J. Smith");
+    }
+    
+    @Test
+    void evaluatesArithmeticAndDates() {
+        assertThat(ruleCompiler.compileTransformation("=round(value * 1.1, 2)").evaluate("100", null))
+                .isEqualTo(new BigDecimal("110.00"));
+        assertThat(ruleCompiler.compileTransformation("=date(value, 'dd/MM/yyyy', 'yyyy-MM-dd')").evaluate("31/01/2024", null))
+                .isEqualTo("2024-01-31");
+    }
+    
+    @Test
+    void evaluatesValidationExpressions() {
+        Expression rule = ruleCompiler.compileValidation("=not is_empty(value) and len(value) <= 5 and value != 'N/A'");
+        
+        assertThat(rule.evaluate("ABC", null)).isEqualTo(true);
+        assertThat(rule.evaluate("N/A", null)).isEqualTo(false);
+        assertThat(rule.evaluate("TOO LONG", null)).isEqualTo(false);
+        assertThat(rule.evaluate(null, null)).isEqualTo(false);
+    }
+    
+    @Test
+    void cachesCompiledRulesPerRuleString() {
+        assertThat(ruleCompiler.compileTransformation("=upper(value)"))
+                .isSameAs(ruleCompiler.compileTransformation("=upper(value)"));
+    }
+    
+    @Test
+    void rejectsInvalidExpressions() {
+        assertThatThrownBy(() -> ruleCompiler.compileTransformation("=upper(value"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ruleCompiler.compileTransformation("=unknown(value)"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown function");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.example.batchspark.expression;
+
+import com.example.batchspark.model.GenericDataRecord;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.spark.sql.functions.col;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs rules through the row path and through their Spark translation on a local session and
+ * expects the same text, so loads give the same result on either engine.
+ */
+class SparkRuleTranslatorTest {
+    
+    private static final StructType SCHEMA = new StructType()
+            .add("value", DataTypes.StringType)
+            .add("lastName", DataTypes.StringType);
+    
+    private static SparkSession spark;
+    
+    private final RuleCompiler ruleCompiler = new RuleCompiler();
+    
+    @BeforeAll
+    static void startSpark() {
+        spark = SparkSession.builder()
+                .master("local[1]")
+                .appName("SparkRuleTranslatorTest")
+                .config("spark.ui.enabled", "false")
+                .config("spark.sql.shuffle.partitions", "1")
+                .getOrCreate();
+    }
+    
+    @AfterAll
+    static void stopSpark() {
+        spark.stop();
+    }
+    
+    @Test
+    void keepsLegacyKeywords() {
+        assertSameTransformation("TRIM_UPPER", " hr ");
+        assertSameTransformation("capitalize", "jOHN");
+        assertSameValidation("POSITIVE_NUMBER", "-5");
+        assertSameValidation("[A-Z]{3}", " ABC ");
+    }
+    
+    @Test
+    void evaluatesStringExpressions() {
+        assertSameTransformation("=lpad(trim(value), 6, '0')", " 42 ");
+        assertSameTransformation("=upper(substr(value, 0, 1)) & '. ' & lastName", "john");
+    }
+    
+    @Test
+    void evaluatesArithmeticAndDates() {
+        assertThat(assertSameTransformation("=round(value * 1.1, 2)", "100")).isEqualTo("110.00");
+        assertSameTransformation("=date(value, 'dd/MM/yyyy', 'yyyy-MM-dd')", "31/01/2024");
+    }
+    
+    @Test
+    void rendersNumbersAsPlainStrings() {
+        assertThat(assertSameTransformation("=value + 0.50", "1")).isEqualTo("1.50");
+        assertThat(assertSameTransformation("=abs(value)", "-1.50")).isEqualTo("1.50");
+        assertThat(assertSameTransformation("=value * 2", "0.00")).isEqualTo("0.00");
+        assertThat(assertSameTransformation("=value / 4", "10")).isEqualTo("2.5");
+        assertThat(assertSameTransformation("=num(value) & ' units'", "1E+3")).isEqualTo("1000 units");
+        assertThat(assertSameTransformation("=len(value) % 3", "ABCDE")).isEqualTo("2");
+    }
+    
+    @Test
+    void evaluatesValidationExpressions() {
+        String rule = "=not is_empty(value) and len(value) <= 5 and value != 'N/A'";
+        assertSameValidation(rule, "ABC");
+        assertSameValidation(rule, "N/A");
+        assertSameValidation(rule, "TOO LONG");
+        assertSameValidation(rule, null);
+    }
+    
+    private String assertSameTransformation(String rule, String value) {
+        String expected = Values.toStr(ruleCompiler.compileTransformation(rule).evaluate(value, record(value)));
+        String actual = evaluate(value, SparkRuleTranslator.transformation(rule, col("value"), columns()).cast("string"));
+        assertThat(actual).as(rule).isEqualTo(expected);
+        return actual;
+    }
+    
+    private void assertSameValidation(String rule, String value) {
+        Object expected = ruleCompiler.compileValidation(rule).evaluate(value, record(value));
+        Boolean actual = evaluate(value, SparkRuleTranslator.validation(rule, col("value"), columns()));
+        assertThat(actual).as(rule).isEqualTo(expected);
+    }
+    
+    private static GenericDataRecord record(String value) {
+        GenericDataRecord record = new GenericDataRecord("EMPLOYEES");
+        record.addColumnValue("value", value);
+        record.addColumnValue("lastName", "Smith");
+        return record;
+    }
+    
+    private static Map<String, Column> columns() {
+        return Map.of("value", col("value"), "lastName", col("lastName"));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> T evaluate(String value, Column expression) {
+        Dataset<Row> row = spark.createDataFrame(List.of(RowFactory.create(value, "Smith")), SCHEMA);
+        return (T) row.select(expression.alias("result")).first().get(0);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.model.AnalyticsState;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AnalyticsStateMergerTest {
+    
+    @Test
+    void mergedMomentsMatchStatisticsOfTheWholeColumn() {
+        // 2, 4, 4, 4 already aggregated; 5, 5, 7, 9 and one null arrive
+        AnalyticsState state = numericState(4, 4, "14", 52.0, "2", "4");
+        AnalyticsState delta = numericState(5, 4, "26", 180.0, "5", "9");
+        
+        AnalyticsStateMerger.merge(state, delta, true);
+        
+        assertThat(state.getRowCount()).isEqualTo(9);
+        assertThat(state.getNonNullCount()).isEqualTo(8);
+        assertThat(state.getMinValue()).isEqualTo("2");
+        assertThat(state.getMaxValue()).isEqualTo("9");
+        assertThat(AnalyticsStateMerger.mean(state)).isEqualTo(5.0);
+        assertThat(AnalyticsStateMerger.stddev(state)).isCloseTo(Math.sqrt(32.0 / 7), within(1e-9));
+    }
+    
+    @Test
+    void comparesNumericExtremesByValueAndOthersAsText() {
+        AnalyticsState numeric = numericState(1, 1, "10", 100.0, "10", "10");
+        AnalyticsStateMerger.merge(numeric, numericState(1, 1, "9", 81.0, "9", "9"), true);
+        assertThat(numeric.getMinValue()).isEqualTo("9");
+        assertThat(numeric.getMaxValue()).isEqualTo("10");
+        
+        AnalyticsState text = textState("2024-01-05 00:00:00", "2024-03-01 00:00:00");
+        AnalyticsStateMerger.merge(text, textState("2023-12-31 00:00:00", "2024-02-01 00:00:00"), false);
+        assertThat(text.getMinValue()).isEqualTo("2023-12-31 00:00:00");
+        assertThat(text.getMaxValue()).isEqualTo("2024-03-01 00:00:00");
+    }
+    
+    private static AnalyticsState numericState(long rows, long nonNull, String sum, double sumSquares, String min, String max) {
+        AnalyticsState state = new AnalyticsState("EMPLOYEES", "SALARY", "decimal(10,2)");
+        state.setRowCount(rows);
+        state.setNonNullCount(nonNull);
+        state.setSumValue(new BigDecimal(sum));
+        state.setSumSquares(sumSquares);
+        state.setMinValue(min);
+        state.setMaxValue(max);
+        return state;
+    }
+    
+    private static AnalyticsState textState(String min, String max) {
+        AnalyticsState state = new AnalyticsState("EMPLOYEES", "HIRE_DATE", "timestamp");
+        state.setRowCount(1L);
+        state.setNonNullCount(1L);
+        state.setMinValue(min);
+        state.setMaxValue(max);
+        return state;
+    }
+}
\ No newline at end of file
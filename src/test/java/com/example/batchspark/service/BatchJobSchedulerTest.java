@@ -0,0 +1,142 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.config.SparkSessionManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchJobSchedulerTest {
+    
+    private static final String LOAD = "genericDataProcessingJob";
+    private static final String EXPORT = "tableExportJob";
+    
+    private final List<String> started = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BatchJobScheduler scheduler;
+    
+    @BeforeEach
+    void setUp() {
+        // No Hikari pool and no Spark session, and a CPU limit no load reaches: every job has headroom
+        scheduler = new BatchJobScheduler(null, new SparkSessionManager(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(scheduler, "maxQueuedPerConfig", 10);
+        ReflectionTestUtils.setField(scheduler, "maxCpuLoad", 2.0);
+        ReflectionTestUtils.setField(scheduler, "maxSparkLoad", 0.9);
+        ReflectionTestUtils.setField(scheduler, "highPriority", 8);
+        ReflectionTestUtils.setField(scheduler, "agingInterval", Duration.ofHours(1));
+        ReflectionTestUtils.setField(scheduler, "maxAdmissionWait", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(scheduler, "pollInterval", Duration.ofMillis(10));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        scheduler.shutdown();
+    }
+    
+    @Test
+    void startsHighestPriorityFirstAndEachConfigInArrivalOrder() throws Exception {
+        scheduler.start();
+        BatchJobScheduler.Submission blocker = scheduler.submit("blocker", LOAD, 5, 1, this::blockingLaunch);
+        blocker.started().get(5, TimeUnit.SECONDS);
+        
+        // Loads wait for the running load on either lane
+        scheduler.submit("a", LOAD, 5, 1, () -> launch("a1"));
+        scheduler.submit("b", LOAD, 7, 1, () -> launch("b"));
+        scheduler.submit("a", LOAD, 9, 1, () -> launch("a2"));
+        BatchJobScheduler.Submission last = scheduler.submit("c", LOAD, 5, 1, () -> launch("c"));
+        
+        release.countDown();
+        last.result().get(5, TimeUnit.SECONDS);
+        
+        // a2 outranks everything but waits behind a1 of the same config; a1 and c tie and start in arrival order
+        assertThat(started).containsExactly("b", "a1", "a2", "c");
+    }
+    
+    @Test
+    void waitingRaisesPriority() throws InterruptedException {
+        ReflectionTestUtils.setField(scheduler, "agingInterval", Duration.ofMillis(50));
+        scheduler.submit("background", LOAD, 1, 1, () -> launch("background"));
+        Thread.sleep(300);
+        scheduler.submit("feed", LOAD, 5, 1, () -> launch("feed"));
+        
+        // Six aging intervals lift the background job from 1 to 7, past the feed's 5
+        assertThat(scheduler.queued()).extracting(BatchJobScheduler.QueuedJob::configName)
+                .containsExactly("background", "feed");
+    }
+    
+    @Test
+    void priorityLaneOnlyRunsHighPriorityJobsOfOtherJobsAndConfigs() throws Exception {
+        scheduler.start();
+        scheduler.submit("a", LOAD, 5, 1, this::blockingLaunch).started().get(5, TimeUnit.SECONDS);
+        
+        assertThatThrownBy(() -> scheduler.submitNow("b", EXPORT, 5, 1, () -> launch("b")))
+                .as("below high-priority")
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThatThrownBy(() -> scheduler.submitNow("c", LOAD, 9, 1, () -> launch("c")))
+                .as("same Spring Batch job as the running one")
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThatThrownBy(() -> scheduler.submitNow("a", EXPORT, 9, 1, () -> launch("a")))
+                .as("same config as the running one")
+                .isInstanceOf(RejectedExecutionException.class);
+        
+        BatchJobScheduler.Submission export = scheduler.submitNow("b", EXPORT, 9, 1, () -> launch("b"));
+        export.result().get(5, TimeUnit.SECONDS);
+        assertThat(started).containsExactly("b");
+        assertThat(scheduler.queued()).isEmpty();
+    }
+    
+    @Test
+    void submitNowRejectsJobBehindQueuedOnes() throws Exception {
+        scheduler.start();
+        scheduler.submit("a", LOAD, 5, 1, this::blockingLaunch).started().get(5, TimeUnit.SECONDS);
+        scheduler.submit("b", LOAD, 9, 1, () -> launch("b"));
+        
+        assertThatThrownBy(() -> scheduler.submitNow("c", EXPORT, 5, 1, () -> launch("c")))
+                .isInstanceOf(RejectedExecutionException.class)
+                .hasMessageContaining("cannot start right away");
+        assertThat(scheduler.queued()).extracting(BatchJobScheduler.QueuedJob::configName).containsExactly("b");
+    }
+    
+    @Test
+    void cancelRemovesQueuedJobOnly() throws Exception {
+        scheduler.start();
+        BatchJobScheduler.Submission running = scheduler.submit("a", LOAD, 5, 1, this::blockingLaunch);
+        running.started().get(5, TimeUnit.SECONDS);
+        BatchJobScheduler.Submission queued = scheduler.submit("b", LOAD, 5, 1, () -> launch("b"));
+        
+        assertThat(scheduler.cancel(queued)).isTrue();
+        assertThat(scheduler.cancel(running)).isFalse();
+        assertThat(scheduler.queued()).isEmpty();
+        assertThatThrownBy(() -> queued.started().get()).isInstanceOf(CancellationException.class);
+        assertThat(queued.result()).isCompletedExceptionally();
+        
+        release.countDown();
+        running.result().get(5, TimeUnit.SECONDS);
+        assertThat(started).isEmpty();
+    }
+    
+    private JobExecution blockingLaunch() throws InterruptedException {
+        release.await(5, TimeUnit.SECONDS);
+        return null;
+    }
+    
+    private JobExecution launch(String name) {
+        started.add(name);
+        return null;
+    }
+}
\ No newline at end of file
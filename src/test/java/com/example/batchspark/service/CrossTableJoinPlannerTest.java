@@ -0,0 +1,59 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.model.ColumnConfig;
+import com.example.batchspark.model.FileConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CrossTableJoinPlannerTest {
+    
+    private final CrossTableJoinPlanner planner = new CrossTableJoinPlanner(null, null, null);
+    
+    @Test
+    void joinsForeignKeyToReferencedPrimaryKey() {
+        FileConfig departments = config("departments", column("DEPT_CODE", true, null, null));
+        FileConfig employees = config("EMPLOYEES", column("EMP_NO", true, null, null),
+                column("DEPT_CODE", false, "departments", null));
+        
+        List<CrossTableJoinPlanner.JoinDefinition> joins = planner.joinDefinitions(List.of(employees, departments));
+        
+        assertThat(joins).containsExactly(
+                new CrossTableJoinPlanner.JoinDefinition("EMPLOYEES", "DEPT_CODE", "DEPARTMENTS", "DEPT_CODE"));
+        assertThat(joins.get(0).rightAlias("DEPT_CODE")).isEqualTo("DEPARTMENTS_DEPT_CODE");
+    }
+    
+    @Test
+    void prefersExplicitReferencedColumn() {
+        FileConfig employees = config("EMPLOYEES", column("MANAGER_NO", false, "MANAGERS", "EMP_NO"));
+        
+        assertThat(planner.joinDefinitions(List.of(employees))).containsExactly(
+                new CrossTableJoinPlanner.JoinDefinition("EMPLOYEES", "MANAGER_NO", "MANAGERS", "EMP_NO"));
+    }
+    
+    @Test
+    void skipsReferenceWithoutKnownKey() {
+        FileConfig departments = config("DEPARTMENTS", column("DEPT_CODE", false, null, null));
+        FileConfig employees = config("EMPLOYEES", column("DEPT_CODE", false, "DEPARTMENTS", null),
+                column("SITE_CODE", false, "SITES", null));
+        
+        assertThat(planner.joinDefinitions(List.of(employees, departments))).isEmpty();
+    }
+    
+    private static FileConfig config(String tableName, ColumnConfig... columns) {
+        FileConfig fileConfig = new FileConfig();
+        fileConfig.setTargetTableName(tableName);
+        fileConfig.setColumnConfigs(List.of(columns));
+        return fileConfig;
+    }
+    
+    private static ColumnConfig column(String name, boolean primaryKey, String referencesTable, String referencesColumn) {
+        ColumnConfig column = new ColumnConfig(name, name, "VARCHAR2", 1);
+        column.setIsPrimaryKey(primaryKey);
+        column.setReferencesTable(referencesTable);
+        column.setReferencesColumn(referencesColumn);
+        return column;
+    }
+}
\ No newline at end of file
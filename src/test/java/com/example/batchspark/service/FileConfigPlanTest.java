@@ -0,0 +1,85 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.expression.RuleCompiler;
+import com.example.batchspark.model.ColumnConfig;
+import com.example.batchspark.model.FileConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileConfigPlanTest {
+    
+    @Test
+    void ordersColumnsRulesAndSqlByColumnOrder() {
+        ColumnConfig name = new ColumnConfig("name", "NAME", "STRING", 2);
+        name.setTransformationRule("UPPER");
+        ColumnConfig id = new ColumnConfig("id", "EMP_ID", "LONG", 1);
+        id.setIsPrimaryKey(true);
+        FileConfig fileConfig = new FileConfig("EMPLOYEES_CSV", "employees.csv", "EMPLOYEES");
+        fileConfig.setColumnConfigs(List.of(name, id));
+        
+        FileConfigPlan plan = new FileConfigPlan(fileConfig, "1@now/v1", List.of(), new RuleCompiler());
+        
+        assertThat(plan.getSourceColumnNames()).containsExactly("id", "name");
+        assertThat(plan.getInsertSql()).isEqualTo("INSERT INTO EMPLOYEES (EMP_ID, NAME) VALUES (?, ?)");
+        assertThat(plan.getMergeSql()).startsWith("MERGE INTO EMPLOYEES t USING (SELECT ? AS EMP_ID, ? AS NAME FROM dual)");
+        assertThat(plan.getTransformations().get(1).evaluate("smith", null)).isEqualTo("SMITH");
+        assertThat(plan.targets()).containsExactly(plan);
+    }
+    
+    @Test
+    void routingPlanTargetsItsChildren() {
+        FileConfig detail = new FileConfig("ORDERS_DETAIL", "orders.txt", "ORDER_LINES");
+        detail.setColumnConfigs(List.of(new ColumnConfig("type", "RECORD_TYPE", "STRING", 1)));
+        FileConfig parent = new FileConfig("ORDERS", "orders.txt", "ORDERS_FILE");
+        parent.setDiscriminatorPosition(1);
+        parent.setColumnConfigs(List.of());
+        
+        FileConfigPlan child = new FileConfigPlan(detail, "stamp", List.of(), new RuleCompiler());
+        FileConfigPlan plan = new FileConfigPlan(parent, "stamp", List.of(child), new RuleCompiler());
+        
+        assertThat(plan.targets()).containsExactly(child);
+        assertThat(plan.getInsertSql()).isNull();
+        assertThat(parent.getChildConfigs()).containsExactly(detail);
+    }
+    
+    @Test
+    void createsPartitionedCompressedTableWithLocalIndexes() {
+        ColumnConfig region = new ColumnConfig("region", "REGION", "STRING", 2);
+        region.setIndexName("IDX_SALES_REGION");
+        ColumnConfig saleDate = new ColumnConfig("sale_date", "SALE_DATE", "DATE", 1);
+        saleDate.setIsPartitionKey(true);
+        saleDate.setIsNullable(false);
+        FileConfig fileConfig = new FileConfig("SALES_CSV", "sales.csv", "SALES");
+        fileConfig.setPartitionScheme("RANGE");
+        fileConfig.setPartitionInterval("DAY");
+        fileConfig.setTableCompression("ADVANCED");
+        fileConfig.setColumnConfigs(List.of(region, saleDate));
+        
+        FileConfigPlan plan = new FileConfigPlan(fileConfig, "stamp", List.of(), new RuleCompiler());
+        
+        assertThat(plan.getCreateTableStatements()).hasSize(2);
+        assertThat(plan.getCreateTableStatements().get(0)).endsWith(") ROW STORE COMPRESS ADVANCED"
+                + " PARTITION BY RANGE (SALE_DATE) INTERVAL (NUMTODSINTERVAL(1, 'DAY'))"
+                + " (PARTITION P0 VALUES LESS THAN (DATE '1970-01-01'))");
+        assertThat(plan.getCreateTableStatements().get(1)).isEqualTo("CREATE INDEX IDX_SALES_REGION ON SALES (REGION) LOCAL");
+        assertThat(plan.getPartitionKeyIndex()).isZero();
+    }
+    
+    @Test
+    void indexesPrimaryKeyOfDeltaTable() {
+        ColumnConfig id = new ColumnConfig("id", "EMP_ID", "LONG", 1);
+        id.setIsPrimaryKey(true);
+        ColumnConfig name = new ColumnConfig("name", "NAME", "STRING", 2);
+        FileConfig fileConfig = new FileConfig("EMPLOYEES_CSV", "employees.csv", "EMPLOYEES");
+        fileConfig.setDeltaLoad(true);
+        fileConfig.setColumnConfigs(List.of(id, name));
+        
+        FileConfigPlan plan = new FileConfigPlan(fileConfig, "stamp", List.of(), new RuleCompiler());
+        
+        assertThat(plan.getCreateTableStatements()).last()
+                .isEqualTo("CREATE UNIQUE INDEX EMPLOYEES_DELTA_KEY ON EMPLOYEES (EMP_ID)");
+    }
+}
\ No newline at end of file
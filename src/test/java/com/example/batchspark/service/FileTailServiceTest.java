@@ -0,0 +1,142 @@
+package com.example.batchspark.service;
+
+import com.example.batchspark.model.FileConfig;
+import com.example.batchspark.model.FileReadState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileTailServiceTest {
+    
+    private final FileTailService service = new FileTailService(null, null);
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void firstRunSkipsHeaderAndLeavesIncompleteLine() throws IOException {
+        Path file = Files.writeString(directory.resolve("events.csv"), "ID,NAME\n1,a\n2,b\n3,");
+        
+        FileTailService.TailPlan plan = service.plan(config(file), null);
+        
+        assertThat(plan.segments()).containsExactly(new FileTailService.Segment(file, 8, 16));
+        assertThat(plan.offset()).isEqualTo(16);
+    }
+    
+    @Test
+    void laterRunReadsOnlyAppendedLines() throws IOException {
+        Path file = Files.writeString(directory.resolve("events.csv"), "ID,NAME\n1,a\n");
+        FileReadState state = committed(service.plan(config(file), null));
+        
+        Files.writeString(file, "2,b\n3,c\n", StandardOpenOption.APPEND);
+        FileTailService.TailPlan plan = service.plan(config(file), state);
+        
+        assertThat(plan.segments()).containsExactly(new FileTailService.Segment(file, 12, 20));
+    }
+    
+    @Test
+    void unchangedFileHasNothingToRead() throws IOException {
+        Path file = Files.writeString(directory.resolve("events.csv"), "ID,NAME\n1,a\n");
+        FileReadState state = committed(service.plan(config(file), null));
+        
+        assertThat(service.plan(config(file), state).segments()).isEmpty();
+    }
+    
+    @Test
+    void truncatedFileIsReadFromStart() throws IOException {
+        Path file = Files.writeString(directory.resolve("events.csv"), "ID,NAME\n1,a\n2,b\n");
+        FileReadState state = committed(service.plan(config(file), null));
+        
+        Files.writeString(file, "ID,NAME\n9,z\n");
+        FileTailService.TailPlan plan = service.plan(config(file), state);
+        
+        assertThat(plan.segments()).containsExactly(new FileTailService.Segment(file, 8, 12));
+    }
+    
+    @Test
+    void renamedRotationReadsRemainderOfOldFileFirst() throws IOException {
+        Path file = Files.writeString(directory.resolve("events.csv"), "ID,NAME\n1,a\n");
+        FileReadState state = committed(service.plan(config(file), null));
+        
+        Files.writeString(file, "2,b\n", StandardOpenOption.APPEND);
+        Path rotated = Files.move(file, directory.resolve("events.csv.1"));
+        Files.writeString(file, "ID,NAME\n3,c\n");
+        FileTailService.TailPlan plan = service.plan(config(file), state);
+        
+        if (state.getFileKey() != null) {
+            assertThat(plan.segments()).containsExactly(
+                    new FileTailService.Segment(rotated.toAbsolutePath(), 12, 16),
+                    new FileTailService.Segment(file, 8, 12));
+        } else {
+            assertThat(plan.segments()).containsExactly(new FileTailService.Segment(file, 8, 12));
+        }
+    }
+    
+    @Test
+    void retryAfterFailedRunSkipsLinesItLoaded() throws IOException {
+        Path file = Files.writeString(directory.resolve("events.csv"), "ID,NAME\n1,a\n");
+        FileReadState state = committed(service.plan(config(file), null));
+        state.setLoadedLines(2);
+        
+        Files.writeString(file, "2,b\n3,c\n4,d\n", StandardOpenOption.APPEND);
+        FileTailService.TailPlan plan = service.plan(config(file), state);
+        
+        assertThat(plan.segments()).containsExactly(new FileTailService.Segment(file, 12, 24));
+        assertThat(plan.loadedLines()).isEqualTo(2);
+    }
+    
+    @Test
+    void retryAfterFailedFirstRunSkipsLinesItLoaded() throws IOException, NoSuchAlgorithmException {
+        Path file = Files.writeString(directory.resolve("events.csv"), "ID,NAME\n1,a\n2,b\n");
+        // The state row the first chunk of a run without committed state inserts
+        FileReadState state = new FileReadState("events");
+        state.setFilePath(file.toString());
+        state.setCommittedOffset(0L);
+        state.setHeadLength(0);
+        state.setHeadHash(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(new byte[0])));
+        state.setLoadedLines(1);
+        
+        FileTailService.TailPlan plan = service.plan(config(file), state);
+        
+        assertThat(plan.segments()).containsExactly(new FileTailService.Segment(file, 8, 16));
+        assertThat(plan.loadedLines()).isEqualTo(1);
+    }
+    
+    @Test
+    void truncatedFileForgetsLinesLoadedFromOldFile() throws IOException {
+        Path file = Files.writeString(directory.resolve("events.csv"), "ID,NAME\n1,a\n2,b\n");
+        FileReadState state = committed(service.plan(config(file), null));
+        state.setLoadedLines(3);
+        
+        Files.writeString(file, "ID,NAME\n9,z\n");
+        FileTailService.TailPlan plan = service.plan(config(file), state);
+        
+        assertThat(plan.loadedLines()).isZero();
+    }
+    
+    private static FileConfig config(Path file) {
+        FileConfig fileConfig = new FileConfig("events", file.toString(), "EVENTS");
+        fileConfig.setReadMode(FileTailService.TAIL);
+        return fileConfig;
+    }
+    
+    private static FileReadState committed(FileTailService.TailPlan plan) {
+        FileReadState state = new FileReadState("events");
+        state.setFilePath(plan.filePath());
+        state.setFileKey(plan.fileKey());
+        state.setFileSize(plan.fileSize());
+        state.setCommittedOffset(plan.offset());
+        state.setHeadLength(plan.headLength());
+        state.setHeadHash(plan.headHash());
+        return state;
+    }
+}
\ No newline at end of file
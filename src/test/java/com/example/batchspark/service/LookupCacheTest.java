@@ -0,0 +1,35 @@
+package com.example.batchspark.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LookupCacheTest {
+    
+    @Test
+    void evictsLeastRecentlyUsedEntryWhenFull() {
+        LookupCache cache = new LookupCache(2);
+        cache.put("HR", "Human Resources");
+        cache.put("IT", "Information Technology");
+        cache.get("HR");
+        cache.put("FIN", "Finance");
+        
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("IT")).isNull();
+        assertThat(cache.get("HR")).isEqualTo("Human Resources");
+        assertThat(cache.getEvictions()).isEqualTo(1);
+    }
+    
+    @Test
+    void countsHitsAndMisses() {
+        LookupCache cache = new LookupCache(10);
+        cache.put("HR", LookupCache.NOT_FOUND);
+        cache.put("IT", null);
+        
+        assertThat(cache.get("HR")).isSameAs(LookupCache.NOT_FOUND);
+        assertThat(cache.get("IT")).isSameAs(LookupCache.NULL_VALUE);
+        assertThat(cache.get("FIN")).isNull();
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+}
\ No newline at end of file
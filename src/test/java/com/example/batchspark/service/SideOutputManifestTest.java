@@ -0,0 +1,31 @@
+package com.example.batchspark.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SideOutputManifestTest {
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void readsBackTheLoadsOfTheLastWrite() throws IOException {
+        assertThat(SideOutputManifest.read(directory)).isNull();
+        
+        new SideOutputManifest(3, List.of()).write(directory);
+        assertThat(SideOutputManifest.read(directory)).isEqualTo(new SideOutputManifest(3, List.of()));
+        
+        SideOutputManifest manifest = SideOutputManifest.read(directory).withLoad(5, "load_id=7");
+        manifest.withLoad(7, "load_id=9").write(directory);
+        
+        SideOutputManifest read = SideOutputManifest.read(directory);
+        assertThat(read.version()).isEqualTo(7);
+        assertThat(read.loads()).containsExactly("load_id=7", "load_id=9");
+    }
+}
\ No newline at end of file
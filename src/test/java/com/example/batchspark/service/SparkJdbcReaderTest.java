@@ -0,0 +1,49 @@
+package com.example.batchspark.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SparkJdbcReaderTest {
+    
+    @Test
+    void groupsRangePartitionsIntoBoundedPredicates() {
+        List<String> predicates = SparkJdbcReader.partitionPredicates("RANGE", "LOAD_DATE",
+                List.of("DATE_A", "DATE_B", "DATE_C", "DATE_D", "DATE_E"), 2);
+        
+        assertThat(predicates).containsExactly("LOAD_DATE < DATE_C", "LOAD_DATE >= DATE_C");
+    }
+    
+    @Test
+    void readsListPartitionsByValueIncludingNulls() {
+        List<String> predicates = SparkJdbcReader.partitionPredicates("LIST", "REGION",
+                List.of("NULL", "'EU', 'UK'", "'US'"), 3);
+        
+        assertThat(predicates).containsExactly(
+                "(REGION IN ('EU', 'UK') OR REGION IS NULL)",
+                "REGION IN ('US')",
+                "REGION NOT IN ('EU', 'UK', 'US')");
+        assertThat(SparkJdbcReader.partitionPredicates("LIST", "REGION", List.of("'EU'", "DEFAULT"), 4)).isEmpty();
+    }
+    
+    @Test
+    void coversKeysOfListPartitionsAddedLater() {
+        assertThat(SparkJdbcReader.partitionPredicates("LIST", "REGION", List.of("'EU'", "'US'"), 1))
+                .containsExactly("REGION IN ('EU', 'US')", "(REGION NOT IN ('EU', 'US') OR REGION IS NULL)");
+    }
+    
+    @Test
+    void splitsListsAboveOracleInListLimit() {
+        List<String> highValues = IntStream.range(0, 1001).mapToObj(String::valueOf).collect(Collectors.toList());
+        
+        List<String> predicates = SparkJdbcReader.partitionPredicates("LIST", "CODE", highValues, 2);
+        
+        assertThat(predicates).hasSize(2);
+        assertThat(predicates.get(0)).startsWith("(CODE IN (0, 1, ").contains(", 999) OR CODE IN (1000))");
+        assertThat(predicates.get(1)).contains(", 999) AND CODE NOT IN (1000))");
+    }
+}
\ No newline at end of file